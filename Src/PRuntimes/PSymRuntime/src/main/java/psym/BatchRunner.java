@@ -0,0 +1,207 @@
+package psym;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import psym.commandline.PSymConfiguration;
+import psym.commandline.PSymOptions;
+import psym.runtime.PSymContext;
+import psym.runtime.PSymGlobal;
+import psym.runtime.PTestDriver;
+import psym.runtime.Program;
+import psym.runtime.logger.PSymLogger;
+import psym.utils.index.ProgramIndex;
+
+/**
+ * Runs several test cases one after another in a single JVM, so that the JVM start-up, class
+ * loading and JIT warm-up are paid once for the whole batch. Each test case is checked with the
+ * same commandline arguments in a fresh {@link PSymContext}, with its output written to a
+ * sub-folder of the output folder named after the test case.
+ */
+class BatchRunner {
+  /** Test cases of the batch, in the order they are run */
+  private final List<String> testCases;
+  /** Commandline arguments shared by all test cases */
+  private final String[] args;
+  /** Program instance created for the batch */
+  private final Program mainProgram;
+  /** Results of the test cases run so far */
+  private final List<Result> results = new ArrayList<>();
+
+  private BatchRunner(List<String> testCases, String[] args, Program mainProgram) {
+    this.testCases = testCases;
+    this.args = args;
+    this.mainProgram = mainProgram;
+  }
+
+  /**
+   * Run all test cases of the batch in the configuration of the current context
+   *
+   * @param args Commandline arguments
+   * @param mainProgram Program instance
+   * @return Highest exit code of the test cases
+   */
+  static int run(String[] args, Program mainProgram) {
+    PSymConfiguration config = PSymGlobal.getConfiguration();
+    if (mainProgram == null) {
+      PSymLogger.error("Batch mode cannot be combined with resuming a run");
+      return 5;
+    }
+    List<String> testCases;
+    try {
+      testCases = getTestCases(config.getBatch());
+    } catch (IOException e) {
+      PSymLogger.error("Failed to read test cases from " + config.getBatch());
+      return 5;
+    }
+    if (testCases.isEmpty()) {
+      PSymLogger.error("No test cases found in batch " + config.getBatch());
+      return 5;
+    }
+
+    BatchRunner runner = new BatchRunner(testCases, args, mainProgram);
+    int exitCode = 0;
+    for (String testCase : testCases) {
+      exitCode = Math.max(exitCode, runner.runTestCase(testCase));
+    }
+    runner.report(config.getProjectName(), config.getOutputFolder());
+    return exitCode;
+  }
+
+  /**
+   * Get the test cases of a batch
+   *
+   * @param batch Manifest file with one test case per line, "all" for every test case of the model,
+   *     or a comma-separated list of test cases
+   * @return List of test cases
+   * @throws IOException Throws exception if the manifest file cannot be read
+   */
+  private static List<String> getTestCases(String batch) throws IOException {
+    List<String> result = new ArrayList<>();
+    File manifest = new File(batch);
+    if (manifest.isFile()) {
+      for (String line : Files.readAllLines(manifest.toPath())) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          result.add(line);
+        }
+      }
+    } else if (batch.equals("all")) {
+      for (Class<? extends PTestDriver> td : ProgramIndex.getTestDrivers()) {
+        result.add(td.getSimpleName());
+      }
+      result.sort(String::compareTo);
+    } else {
+      for (String testCase : batch.split(",")) {
+        testCase = testCase.trim();
+        if (!testCase.isEmpty()) {
+          result.add(testCase);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Run a single test case in a fresh context
+   *
+   * @param testCase Name of the test case
+   * @return Exit code of the test case
+   */
+  private int runTestCase(String testCase) {
+    PSymLogger.info(
+        String.format("=== Batch %d/%d: %s ===", results.size() + 1, testCases.size(), testCase));
+    Result result = new Result(testCase);
+    long start = System.currentTimeMillis();
+    try {
+      new PSymContext().call(() -> runInContext(testCase, result));
+    } catch (Throwable e) {
+      e.printStackTrace();
+      result.exitCode = 5;
+    }
+    result.seconds = (System.currentTimeMillis() - start) / 1000.0;
+    results.add(result);
+    PSymLogger.info(
+        String.format(
+            "=== Batch %d/%d: %s finished with exit code %d in %.1f seconds ===",
+            results.size(), testCases.size(), testCase, result.exitCode, result.seconds));
+    return result.exitCode;
+  }
+
+  /** Check a test case in the current context, which must be fresh */
+  private Integer runInContext(String testCase, Result result) throws Exception {
+    PSymConfiguration config = PSymOptions.ParseCommandlineArgs(args);
+    config.setBatch("");
+    config.setTestDriver(testCase);
+    config.setOutputFolder(config.getOutputFolder() + "/" + testCase);
+    PSymGlobal.setConfiguration(config);
+
+    Program program = mainProgram.getClass().getDeclaredConstructor().newInstance();
+    PSym.setProjectName(program);
+    try {
+      PSym.setup();
+      result.exitCode = PSym.runChecker(program);
+    } finally {
+      result.status = PSymGlobal.getStatus();
+      result.result = PSymGlobal.getResult();
+    }
+    return result.exitCode;
+  }
+
+  /**
+   * Write the summary of the batch to a file in the output folder and log it
+   *
+   * @param projectName Name of the project
+   * @param outputFolder Output folder
+   */
+  private void report(String projectName, String outputFolder) {
+    List<String> lines = new ArrayList<>();
+    lines.add(
+        String.format(
+            "%-50s%12s%12s%12s  %s", "Test Case", "Exit-Code", "Time(s)", "Status", "Result"));
+    for (Result result : results) {
+      lines.add(result.toString());
+    }
+
+    String fileName = outputFolder + "/batch-" + projectName + ".log";
+    try {
+      File batchFile = new File(fileName);
+      batchFile.getParentFile().mkdirs();
+      try (PrintWriter out = new PrintWriter(batchFile)) {
+        for (String line : lines) {
+          out.println(line);
+        }
+      }
+    } catch (IOException e) {
+      PSymLogger.warn("Failed to write batch summary to " + fileName);
+    }
+
+    PSymLogger.info("--------------------");
+    PSymLogger.info("Batch Summary (see " + fileName + ")");
+    for (String line : lines) {
+      PSymLogger.info(line);
+    }
+  }
+
+  /** Outcome of a single test case */
+  private static class Result {
+    private final String testCase;
+    private int exitCode = 5;
+    private double seconds = 0;
+    private String status = "incomplete";
+    private String result = "error";
+
+    Result(String testCase) {
+      this.testCase = testCase;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%-50s%12d%12.1f%12s  %s", testCase, exitCode, seconds, status, result);
+    }
+  }
+}
@@ -1,16 +1,28 @@
 package psym;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.concurrent.*;
 import psym.runtime.Concretizer;
+import psym.runtime.PSymContext;
 import psym.runtime.PSymGlobal;
 import psym.runtime.Program;
 import psym.runtime.logger.*;
+import psym.runtime.scheduler.Schedule;
 import psym.runtime.scheduler.replay.ReplayScheduler;
+import psym.runtime.scheduler.replay.ScheduleMinimizer;
 import psym.runtime.scheduler.search.SearchScheduler;
 import psym.runtime.scheduler.search.explicit.ExplicitSearchScheduler;
+import psym.runtime.scheduler.search.explicit.ExplicitSearchWorkers;
 import psym.runtime.scheduler.search.symbolic.SymbolicSearchScheduler;
+import psym.utils.Assert;
 import psym.utils.exception.BugFoundException;
 import psym.utils.exception.MemoutException;
 import psym.utils.monitor.MemoryMonitor;
@@ -23,6 +35,9 @@ public class EntryPoint {
   private static ExecutorService executor;
   private static Future<Integer> future;
   private static SearchScheduler searchScheduler;
+  private static ExplicitSearchWorkers searchWorkers = null;
+  /** Context of the search while replaying a minimized counterexample in another context */
+  private static PSymContext searchContext = null;
 
   private static void runWithTimeout(long timeLimit)
       throws TimeoutException,
@@ -65,6 +80,20 @@ public class EntryPoint {
     if (PSymGlobal.getConfiguration().isIterative()) {
       searchScheduler.reportEstimatedCoverage();
     }
+    if (searchWorkers != null) {
+      // statistics above, such as the coverage and the states, are those of worker 0
+      StatWriter.log("stats-worker", "0");
+      StatWriter.log("#-workers", String.format("%d", searchWorkers.getNumWorkers()));
+      StatWriter.log(
+          "#-schedules-all-workers", String.format("%d", searchWorkers.getNumSchedules()));
+      StatWriter.log("#-states-all-workers", String.format("%d", searchWorkers.getNumStates()));
+      StatWriter.log(
+          "#-distinct-states-all-workers",
+          String.format("%d", searchWorkers.getNumDistinctStates()));
+      StatWriter.log(
+          "#-evicted-states-all-workers",
+          String.format("%d", searchWorkers.getNumEvictedStates()));
+    }
   }
 
   private static void preprocess() {
@@ -98,9 +127,15 @@ public class EntryPoint {
     }
     if (searchScheduler instanceof ExplicitSearchScheduler) {
       ExplicitSearchScheduler explicitSearchScheduler = (ExplicitSearchScheduler) searchScheduler;
+      int totalIter = explicitSearchScheduler.getIter();
+      int newIter = explicitSearchScheduler.getIter() - explicitSearchScheduler.getStart_iter();
+      if (searchWorkers != null) {
+        totalIter = searchWorkers.getNumSchedules();
+        newIter = totalIter;
+      }
       PSymLogger.finishedExplicit(
-              explicitSearchScheduler.getIter(),
-              explicitSearchScheduler.getIter() - explicitSearchScheduler.getStart_iter(),
+              totalIter,
+              newIter,
               Duration.between(TimeMonitor.getInstance().getStart(), end).getSeconds(),
               PSymGlobal.getResult());
     } else {
@@ -111,10 +146,89 @@ public class EntryPoint {
     }
   }
 
+  /**
+   * Hash of the compiled model, computed from the bytecode of the program class and its nested
+   * classes
+   *
+   * @param p Input program instance
+   * @return Model hash
+   */
+  private static long getModelHash(Program p) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      updateModelHash(digest, p.getClass());
+      return ByteBuffer.wrap(digest.digest()).getLong();
+    } catch (NoSuchAlgorithmException | IOException e) {
+      throw new RuntimeException("Failed to compute model hash", e);
+    }
+  }
+
+  private static void updateModelHash(MessageDigest digest, Class<?> cls) throws IOException {
+    String resource = cls.getName().replace('.', '/') + ".class";
+    try (InputStream in = cls.getClassLoader().getResourceAsStream(resource)) {
+      if (in != null) {
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+          digest.update(buffer, 0, n);
+        }
+      }
+    }
+    Class<?>[] nested = cls.getDeclaredClasses();
+    Arrays.sort(nested, Comparator.comparing(Class::getName));
+    for (Class<?> c : nested) {
+      updateModelHash(digest, c);
+    }
+  }
+
+  private static void loadLearning() {
+    String fileName = PSymGlobal.getConfiguration().getLearnLoadFile();
+    PSymGlobal.getChoiceLearningStats().setMaxQStates(PSymGlobal.getConfiguration().getLearnMaxStates());
+    if (fileName.equals("")) {
+      return;
+    }
+    PSymLogger.info("... Loading learned Q-table from file " + fileName);
+    boolean loaded =
+        PSymGlobal.getChoiceLearningStats()
+            .readFromFile(
+                fileName,
+                PSymGlobal.getConfiguration().getProjectName(),
+                PSymGlobal.getConfiguration().getChoiceLearningStateMode(),
+                getModelHash(searchScheduler.getProgram()));
+    if (loaded) {
+      PSymLogger.info(
+          String.format(
+              "... Loaded %d learned states", PSymGlobal.getChoiceLearningStats().numQStates()));
+    } else {
+      PSymLogger.info("... Ignored learned Q-table of a different project, model or state mode");
+    }
+  }
+
+  private static void saveLearning() {
+    String fileName = PSymGlobal.getConfiguration().getLearnSaveFile();
+    if (fileName.equals("")) {
+      return;
+    }
+    PSymGlobal.getChoiceLearningStats()
+        .writeToFile(
+            fileName,
+            PSymGlobal.getConfiguration().getProjectName(),
+            PSymGlobal.getConfiguration().getChoiceLearningStateMode(),
+            getModelHash(searchScheduler.getProgram()));
+    if (PSymGlobal.getConfiguration().getVerbosity() > 0) {
+      PSymLogger.info(
+          String.format(
+              "  %d learned states written in %s",
+              PSymGlobal.getChoiceLearningStats().numQStates(), fileName));
+    }
+  }
+
   private static void process(boolean resume) throws Exception {
     try {
-      TimedCall timedCall = new TimedCall(searchScheduler, resume);
-      future = executor.submit(timedCall);
+      if (searchWorkers != null) {
+        future = executor.submit(searchWorkers);
+      } else {
+        future = executor.submit(new TimedCall(searchScheduler, resume));
+      }
       TimeMonitor.getInstance().startInterval();
       runWithTimeout((long) PSymGlobal.getConfiguration().getTimeLimit());
       PSymGlobal.setStatus("completed");
@@ -125,6 +239,7 @@ public class EntryPoint {
       PSymGlobal.setStatus("memout");
       throw new Exception("MEMOUT", e);
     } catch (BugFoundException e) {
+      switchToFailedWorker();
       PSymGlobal.setStatus("cex");
       PSymGlobal.setResult(String.format(
               "found cex of %slength %d",
@@ -137,17 +252,27 @@ public class EntryPoint {
         PSymGlobal.printStackTrace(e, false);
       }
 
+      Guard pc = e.pathConstraint;
+      Program replayProgram = searchScheduler.getProgram();
+      Schedule replaySchedule = searchScheduler.getSchedule();
+      if (PSymGlobal.getConfiguration().isMinimizeCex()
+          && !Assert.getFailureType().equals("cycle")) {
+        ScheduleMinimizer minimizer = new ScheduleMinimizer(replayProgram, e);
+        if (minimizer.minimize(replaySchedule.guard(pc).getSingleSchedule())) {
+          searchContext = PSymContext.getCurrent();
+          switchContext(minimizer.getContext());
+          replayProgram = minimizer.getScheduler().getProgram();
+          replaySchedule = minimizer.getScheduler().getSchedule();
+          pc = Guard.constTrue();
+        }
+      }
+
       PSymLogger.setVerbosity(1);
       TraceLogger.setVerbosity(1);
       SearchLogger.disable();
       CoverageWriter.disable();
-      Guard pc = e.pathConstraint;
 
-      ReplayScheduler replayScheduler =
-          new ReplayScheduler(
-              searchScheduler.getProgram(),
-              searchScheduler.getSchedule(),
-              pc);
+      ReplayScheduler replayScheduler = new ReplayScheduler(replayProgram, replaySchedule, pc);
       PSymGlobal.setScheduler(replayScheduler);
       replay(replayScheduler);
     } catch (InterruptedException e) {
@@ -159,13 +284,22 @@ public class EntryPoint {
     } finally {
       //            GlobalData.getChoiceLearningStats().printQTable();
       future.cancel(true);
+      if (searchWorkers != null) {
+        searchWorkers.stop();
+      }
       executor.shutdownNow();
+      if (searchContext != null) {
+        switchContext(searchContext);
+        searchContext = null;
+      }
+      saveLearning();
       TraceLogger.setVerbosity(0);
       postprocess(!PSymGlobal.getStatus().equals("cex"));
     }
   }
 
   public static void run(Program p) throws Exception {
+    searchWorkers = null;
     if (PSymGlobal.getConfiguration().isSymbolic()) {
       searchScheduler = new SymbolicSearchScheduler(p);
     } else {
@@ -174,10 +308,43 @@ public class EntryPoint {
     PSymGlobal.setScheduler(searchScheduler);
 
     preprocess();
+    loadLearning();
+    if (PSymGlobal.getConfiguration().getNumWorkers() > 1) {
+      searchWorkers =
+          new ExplicitSearchWorkers(
+              (ExplicitSearchScheduler) searchScheduler,
+              PSymGlobal.getConfiguration().getNumWorkers());
+    }
     process(false);
   }
 
+  /**
+   * Continue in the context of the worker that found a bug, so that the bug is reported and
+   * replayed with the machines and guards of that worker
+   */
+  private static void switchToFailedWorker() {
+    if (searchWorkers == null || searchWorkers.getFailedScheduler() == null) {
+      return;
+    }
+    PSymContext.setCurrent(searchWorkers.getFailedContext());
+    searchScheduler = searchWorkers.getFailedScheduler();
+    PSymGlobal.setScheduler(searchScheduler);
+  }
+
+  /**
+   * Continue in another context, keeping the status and result of the run. Used to replay the
+   * smallest failing schedule found by counterexample minimization in the context that found it.
+   */
+  private static void switchContext(PSymContext context) {
+    String status = PSymGlobal.getStatus();
+    String result = PSymGlobal.getResult();
+    PSymContext.setCurrent(context);
+    PSymGlobal.setStatus(status);
+    PSymGlobal.setResult(result);
+  }
+
   public static void resume() throws Exception {
+    searchWorkers = null;
     assert (PSymGlobal.getConfiguration().isExplicit());
     searchScheduler = ExplicitSearchScheduler.readFromFile(PSymGlobal.getConfiguration().getReadFromFile());
     PSymGlobal.setScheduler(searchScheduler);
@@ -185,6 +352,7 @@ public class EntryPoint {
     SolverEngine.resumeEngine();
 
     preprocess();
+    loadLearning();
     process(true);
   }
 
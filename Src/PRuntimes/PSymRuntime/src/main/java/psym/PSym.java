@@ -2,24 +2,26 @@ package psym;
 
 import java.util.Optional;
 import java.util.Set;
-import org.reflections.Reflections;
 import psym.commandline.PSymOptions;
 import psym.runtime.PSymGlobal;
 import psym.runtime.PTestDriver;
 import psym.runtime.Program;
 import psym.runtime.logger.*;
 import psym.runtime.scheduler.replay.ReplayScheduler;
+import psym.runtime.statistics.HandlerProfiler;
+import psym.runtime.statistics.MetricsRegistry;
 import psym.utils.exception.BugFoundException;
+import psym.utils.index.ProgramIndex;
 import psym.utils.monitor.MemoryMonitor;
 import psym.utils.monitor.TimeMonitor;
 import psym.utils.random.RandomNumberGenerator;
+import psym.valuesummary.IntegerVS;
 import psym.valuesummary.solvers.SolverEngine;
 
 public class PSym {
 
   public static void main(String[] args) {
     Log4JConfig.configureLog4J();
-    Reflections reflections = new Reflections("psym.model");
     Program p = null;
 
     // parse the commandline arguments to create the configuration
@@ -28,7 +30,7 @@ public class PSym {
 
     try {
       if (PSymGlobal.getConfiguration().getReadFromFile().equals("")) {
-        Set<Class<? extends Program>> subTypesProgram = reflections.getSubTypesOf(Program.class);
+        Set<Class<? extends Program>> subTypesProgram = ProgramIndex.getPrograms();
         if (subTypesProgram.size() == 0) {
           throw new Exception("No program found.");
         }
@@ -42,8 +44,27 @@ public class PSym {
       System.exit(5);
     }
 
+    if (!PSymGlobal.getConfiguration().getBatch().equals("")) {
+      // batch mode
+      System.exit(BatchRunner.run(args, p));
+    }
+
     setup();
+    int exit_code = 5;
+    try {
+      exit_code = runChecker(p);
+    } finally {
+      System.exit(exit_code);
+    }
+  }
 
+  /**
+   * Run the checker with the configuration of the current context, after {@link #setup}
+   *
+   * @param p Input program instance, or null when resuming
+   * @return Exit code
+   */
+  static int runChecker(Program p) {
     int exit_code = 0;
     try {
       if (PSymGlobal.getConfiguration().isWriteToFile()) {
@@ -53,9 +74,9 @@ public class PSym {
       if (!PSymGlobal.getConfiguration().getReadScheduleFromFile().equals("")) {
         // replay mode
         assert (p != null);
-        setTestDriver(p, reflections);
         ReplayScheduler replayScheduler =
-            ReplayScheduler.readFromFile(PSymGlobal.getConfiguration().getReadScheduleFromFile());
+            ReplayScheduler.readFromFile(p, PSymGlobal.getConfiguration().getReadScheduleFromFile());
+        setTestDriver(p);
         EntryPoint.replayBug(replayScheduler);
         throw new Exception("ERROR");
       } else if(!PSymGlobal.getConfiguration().getReadFromFile().equals("")){
@@ -64,7 +85,7 @@ public class PSym {
       } else {
         // default mode
         assert (p != null);
-        setTestDriver(p, reflections);
+        setTestDriver(p);
         EntryPoint.run(p);
       }
 
@@ -74,30 +95,42 @@ public class PSym {
     } catch (BugFoundException e) {
       exit_code = 2;
     } catch (Exception ex) {
-      if (ex.getMessage().equals("TIMEOUT")) {
+      if ("TIMEOUT".equals(ex.getMessage())) {
         exit_code = 3;
-      } else if (ex.getMessage().equals("MEMOUT")) {
+      } else if ("MEMOUT".equals(ex.getMessage())) {
         exit_code = 4;
       } else {
         ex.printStackTrace();
         exit_code = 5;
       }
     } finally {
+      MetricsWriter.write();
+      HandlerProfiler.report(
+              PSymGlobal.getConfiguration().getProjectName(),
+              PSymGlobal.getConfiguration().getOutputFolder());
       StatWriter.log("result", PSymGlobal.getResult());
       StatWriter.log("status", String.format("%s", PSymGlobal.getStatus()));
       StatWriter.log("exit-code", String.format("%d", exit_code));
-      System.exit(exit_code);
     }
+    return exit_code;
   }
 
-  private static void setup() {
+  static void setup() {
     PSymLogger.ResetAllConfigurations(
             PSymGlobal.getConfiguration().getVerbosity(), PSymGlobal.getConfiguration().getProjectName(), PSymGlobal.getConfiguration().getOutputFolder());
     SolverEngine.resetEngine(PSymGlobal.getConfiguration().getSolverType(), PSymGlobal.getConfiguration().getExprLibType());
+    IntegerVS.setBitBlastThreshold(PSymGlobal.getConfiguration().getIntBitBlastThreshold());
     PSymGlobal.initializeSymmetryTracker(PSymGlobal.getConfiguration().isSymbolic());
     RandomNumberGenerator.setup(PSymGlobal.getConfiguration().getRandomSeed());
     MemoryMonitor.setup(PSymGlobal.getConfiguration().getMemLimit());
     TimeMonitor.setup(PSymGlobal.getConfiguration().getTimeLimit());
+    HandlerProfiler.setup(PSymGlobal.getConfiguration().isProfileHandlers());
+    MetricsRegistry.reset();
+    MetricsWriter.Initialize(
+            PSymGlobal.getConfiguration().getProjectName(),
+            PSymGlobal.getConfiguration().getOutputFolder(),
+            PSymGlobal.getConfiguration().getMetricsInterval(),
+            PSymGlobal.getConfiguration().getMetricsFormat());
   }
 
   /**
@@ -105,7 +138,7 @@ public class PSym {
    *
    * @param p Input program instance
    */
-  private static void setProjectName(Program p) {
+  static void setProjectName(Program p) {
     if (PSymGlobal.getConfiguration().getProjectName().equals("default")) {
       PSymGlobal.getConfiguration().setProjectName(sanitizeProgramName(p.getClass().getSimpleName()));
     }
@@ -125,12 +158,11 @@ public class PSym {
    * @param p Input program instance
    * @throws Exception Throws exception if test driver is not found
    */
-  private static void setTestDriver(Program p, Reflections reflections)
-      throws Exception {
+  private static void setTestDriver(Program p) throws Exception {
     final String name = sanitizeTestName(PSymGlobal.getConfiguration().getTestDriver());
     final String defaultTestDriver = sanitizeTestName(PSymGlobal.getConfiguration().getTestDriverDefault());
 
-    Set<Class<? extends PTestDriver>> subTypesDriver = reflections.getSubTypesOf(PTestDriver.class);
+    Set<Class<? extends PTestDriver>> subTypesDriver = ProgramIndex.getTestDrivers();
     PTestDriver driver = null;
     for (Class<? extends PTestDriver> td : subTypesDriver) {
       if (sanitizeTestName(td.getSimpleName()).equals(name)) {
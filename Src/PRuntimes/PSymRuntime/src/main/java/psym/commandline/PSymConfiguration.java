@@ -72,6 +72,14 @@ public class PSymConfiguration implements Serializable {
   // mode of choice learning reward mode
   @Getter @Setter
   ChoiceLearningRewardMode choiceLearningRewardMode = ChoiceLearningRewardMode.Coverage;
+  // name of the file to load the learned Q-table from
+  @Getter @Setter String learnLoadFile = "";
+  // name of the file to save the learned Q-table to
+  @Getter @Setter String learnSaveFile = "";
+  // max number of states in the learned Q-table (0 means unbounded)
+  @Getter @Setter int learnMaxStates = 100000;
+  // log2 of the number of weights of the linear Q-value approximation
+  @Getter @Setter int learnFeatureBits = 16;
   // mode of task orchestration
   @Getter @Setter
   TaskOrchestrationMode taskOrchestration = TaskOrchestrationMode.DepthFirst;
@@ -79,10 +87,30 @@ public class PSymConfiguration implements Serializable {
   @Getter @Setter SolverType solverType = SolverType.BDD;
   // type of expression engine
   @Getter @Setter ExprLibType exprLibType = ExprLibType.Bdd;
+  // number of integer value pairs above which arithmetic is bit-blasted (0 means disabled)
+  @Getter @Setter int intBitBlastThreshold = 0;
+  // number of iterations between reclaiming unreachable machines (0 means disabled)
+  @Getter @Setter int machineReclaimFrequency = 0;
   // name of the file to read the program state
   @Getter @Setter String readFromFile = "";
   // whether or not to write the program state(s) to file
   @Getter @Setter boolean writeToFile = false;
+  // interval in seconds of writing metrics to file (0 means disabled)
+  @Getter @Setter double metricsInterval = 0;
+  // format of the metrics file
+  @Getter @Setter String metricsFormat = "jsonl";
+  // whether or not to mitigate memory pressure before reaching the memory limit
+  @Getter @Setter boolean memGovernor = true;
+  // whether or not to profile the cost of each P handler
+  @Getter @Setter boolean profileHandlers = false;
+  // number of search workers running in parallel
+  @Getter @Setter int numWorkers = 1;
+  // test cases to run one after another in a single JVM, as a list or a manifest file
+  @Getter @Setter String batch = "";
+  // whether or not to minimize a counterexample schedule before replaying it
+  @Getter @Setter boolean minimizeCex = false;
+  // max number of candidate schedules to replay when minimizing a counterexample
+  @Getter @Setter int minimizeBudget = 1000;
 
   public String getStrategy() {
     String result = this.strategy;
@@ -108,7 +136,13 @@ public class PSymConfiguration implements Serializable {
 
   public boolean isChoiceOrchestrationLearning() {
     return (getChoiceOrchestration() == ChoiceOrchestrationMode.QLearning)
-        || (getChoiceOrchestration() == ChoiceOrchestrationMode.EpsilonGreedy);
+        || (getChoiceOrchestration() == ChoiceOrchestrationMode.EpsilonGreedy)
+        || (getChoiceOrchestration() == ChoiceOrchestrationMode.LinearApproximation);
+  }
+
+  public boolean isChoiceOrchestrationStateHashing() {
+    return isChoiceOrchestrationLearning()
+        || (getChoiceOrchestration() == ChoiceOrchestrationMode.Novelty);
   }
 
   public void setToSymbolic() {
@@ -112,6 +112,30 @@ public class PSymOptions {
             .build();
     addOption(strategy);
 
+    // number of search workers
+    Option workers =
+        Option.builder()
+            .longOpt("workers")
+            .desc("Number of parallel workers for the random strategy (default: 1)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Workers (integer)")
+            .build();
+    addOption(workers);
+
+    // batch of test cases
+    Option batch =
+        Option.builder()
+            .longOpt("batch")
+            .desc(
+                "Run test cases one after another in one JVM, given as a comma-separated list, a"
+                    + " manifest file with one test case per line, or all")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Test Cases (string)")
+            .build();
+    addOption(batch);
+
     // Systematic exploration options
 
     // max number of schedules for the search
@@ -158,6 +182,26 @@ public class PSymOptions {
             .build();
     addOption(readReplayerFromFile);
 
+    // minimize counterexample schedules
+    Option minimize =
+        Option.builder()
+            .longOpt("minimize")
+            .desc("Minimize the schedule of a counterexample before replaying it")
+            .numberOfArgs(0)
+            .build();
+    addOption(minimize);
+
+    // max number of candidate replays when minimizing a counterexample
+    Option minimizeBudget =
+        Option.builder()
+            .longOpt("minimize-budget")
+            .desc("Max number of candidate schedules to replay when minimizing (default: 1000)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Budget (integer)")
+            .build();
+    addHiddenOption(minimizeBudget);
+
     // Advanced options
 
     // random seed for the search
@@ -267,7 +311,7 @@ public class PSymOptions {
     Option choiceOrch =
         Option.builder("corch")
             .longOpt("choice-orch")
-            .desc("Choice orchestration options: none, random, learn (default: none)")
+            .desc("Choice orchestration options: none, random, novelty, learn, learn-fa (default: none)")
             .numberOfArgs(1)
             .hasArg()
             .argName("Choice Orch. (string)")
@@ -278,7 +322,7 @@ public class PSymOptions {
     Option taskOrch =
         Option.builder("torch")
             .longOpt("task-orch")
-            .desc("Task orchestration options: astar, random, dfs, learn (default: dfs)")
+            .desc("Task orchestration options: astar, random, dfs, learn, portfolio (default: dfs)")
             .numberOfArgs(1)
             .hasArg()
             .argName("Task Orch. (string)")
@@ -319,6 +363,76 @@ public class PSymOptions {
             .build();
     addHiddenOption(epsilonDecay);
 
+    // load learned Q-table from file
+    Option learnLoad =
+        Option.builder()
+            .longOpt("learn-load")
+            .desc("Name of the file to load a learned Q-table from")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("File Name (string)")
+            .build();
+    addHiddenOption(learnLoad);
+
+    // save learned Q-table to file
+    Option learnSave =
+        Option.builder()
+            .longOpt("learn-save")
+            .desc("Name of the file to save the learned Q-table to")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("File Name (string)")
+            .build();
+    addHiddenOption(learnSave);
+
+    // bound on number of learned states
+    Option learnMaxStates =
+        Option.builder()
+            .longOpt("learn-max-states")
+            .desc(
+                "Max number of states in the learned Q-table, pruning least recently used ones (default: 100000, 0 is unbounded)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("States (integer)")
+            .build();
+    addHiddenOption(learnMaxStates);
+
+    // size of linear Q-value approximation
+    Option learnFeatureBits =
+        Option.builder()
+            .longOpt("learn-feature-bits")
+            .desc(
+                "Log2 of the number of weights of the learn-fa choice orchestration (default: 16)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Bits (integer)")
+            .build();
+    addHiddenOption(learnFeatureBits);
+
+    // threshold for bit-blasting symbolic integer operations
+    Option intBitBlast =
+        Option.builder()
+            .longOpt("int-bitblast")
+            .desc(
+                "Bit-blast symbolic integer operations with more than these many value pairs (default: 0, disabled)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Threshold (integer)")
+            .build();
+    addHiddenOption(intBitBlast);
+
+    // frequency of reclaiming unreachable machines
+    Option reclaimMachines =
+        Option.builder()
+            .longOpt("reclaim-machines")
+            .desc(
+                "Release machines unreachable from any live schedule every these many iterations (default: 0, disabled)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Iterations (integer)")
+            .build();
+    addHiddenOption(reclaimMachines);
+
     // read program state from file
     Option readFromFile =
         Option.builder()
@@ -339,6 +453,46 @@ public class PSymOptions {
             .build();
     addHiddenOption(writeToFile);
 
+    // interval of writing metrics to file
+    Option metricsInterval =
+        Option.builder()
+            .longOpt("metrics-interval")
+            .desc("Interval in seconds of writing metrics to the output folder (default: 0, disabled)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Interval (seconds)")
+            .build();
+    addHiddenOption(metricsInterval);
+
+    // format of the metrics file
+    Option metricsFormat =
+        Option.builder()
+            .longOpt("metrics-format")
+            .desc("Format of the metrics file: jsonl, prometheus (default: jsonl)")
+            .numberOfArgs(1)
+            .hasArg()
+            .argName("Format (string)")
+            .build();
+    addHiddenOption(metricsFormat);
+
+    // Disable staged mitigation of memory pressure
+    Option noMemGovernor =
+        Option.builder()
+            .longOpt("no-mem-governor")
+            .desc("Disable cleanup, spilling and checkpointing when nearing the memory limit")
+            .numberOfArgs(0)
+            .build();
+    addHiddenOption(noMemGovernor);
+
+    // Enable profiling of P handlers
+    Option profileHandlers =
+        Option.builder()
+            .longOpt("profile-handlers")
+            .desc("Report time, guard operations and allocation of each P handler")
+            .numberOfArgs(0)
+            .build();
+    addHiddenOption(profileHandlers);
+
     // Help menu
     Option help = Option.builder("h").longOpt("help").desc("Show help menu").build();
     addOption(help);
@@ -508,6 +662,17 @@ public class PSymOptions {
                 option, String.format("File %s does not exist", config.getReadScheduleFromFile()));
           }
           break;
+        case "minimize":
+          config.setMinimizeCex(true);
+          break;
+        case "minimize-budget":
+          try {
+            config.setMinimizeBudget(Integer.parseInt(option.getValue()));
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected an integer value, got %s", option.getValue()));
+          }
+          break;
           // advanced options
         case "seed":
           try {
@@ -608,6 +773,12 @@ public class PSymOptions {
             case "learn-eg":
               config.setChoiceOrchestration(ChoiceOrchestrationMode.EpsilonGreedy);
               break;
+            case "novelty":
+              config.setChoiceOrchestration(ChoiceOrchestrationMode.Novelty);
+              break;
+            case "learn-fa":
+              config.setChoiceOrchestration(ChoiceOrchestrationMode.LinearApproximation);
+              break;
             default:
               optionError(
                   option,
@@ -678,6 +849,36 @@ public class PSymOptions {
                 option, String.format("Expected a double value, got %s", option.getValue()));
           }
           break;
+        case "learn-load":
+          config.setLearnLoadFile(option.getValue());
+          if (!new File(config.getLearnLoadFile()).exists()) {
+            optionError(option, String.format("File %s does not exist", config.getLearnLoadFile()));
+          }
+          break;
+        case "learn-save":
+          config.setLearnSaveFile(option.getValue());
+          break;
+        case "learn-max-states":
+          try {
+            config.setLearnMaxStates(Integer.parseInt(option.getValue()));
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected an integer value, got %s", option.getValue()));
+          }
+          break;
+        case "learn-feature-bits":
+          try {
+            int bits = Integer.parseInt(option.getValue());
+            if (bits < 1 || bits > 30) {
+              optionError(
+                  option, String.format("Expected a value between 1 and 30, got %s", option.getValue()));
+            }
+            config.setLearnFeatureBits(bits);
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected an integer value, got %s", option.getValue()));
+          }
+          break;
         case "torch":
         case "task-orch":
           switch (option.getValue()) {
@@ -694,12 +895,31 @@ public class PSymOptions {
             case "learn-eg":
               config.setTaskOrchestration(TaskOrchestrationMode.CoverageEpsilonGreedy);
               break;
+            case "portfolio":
+              config.setTaskOrchestration(TaskOrchestrationMode.Portfolio);
+              break;
             default:
               optionError(
                   option,
                   String.format("Unrecognized task orchestration mode, got %s", option.getValue()));
           }
           break;
+        case "int-bitblast":
+          try {
+            config.setIntBitBlastThreshold(Integer.parseInt(option.getValue()));
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected an integer value, got %s", option.getValue()));
+          }
+          break;
+        case "reclaim-machines":
+          try {
+            config.setMachineReclaimFrequency(Integer.parseInt(option.getValue()));
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected an integer value, got %s", option.getValue()));
+          }
+          break;
         case "read":
           config.setReadFromFile(option.getValue());
           File replayFile = new File(config.getReadFromFile());
@@ -712,6 +932,48 @@ public class PSymOptions {
         case "write":
           config.setWriteToFile(true);
           break;
+        case "no-mem-governor":
+          config.setMemGovernor(false);
+          break;
+        case "profile-handlers":
+          config.setProfileHandlers(true);
+          break;
+        case "workers":
+          try {
+            config.setNumWorkers(Integer.parseInt(option.getValue()));
+            if (config.getNumWorkers() < 1) {
+              optionError(
+                  option,
+                  String.format("Expected a positive integer value, got %s", option.getValue()));
+            }
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected an integer value, got %s", option.getValue()));
+          }
+          break;
+        case "batch":
+          config.setBatch(option.getValue());
+          break;
+        case "metrics-interval":
+          try {
+            config.setMetricsInterval(Double.parseDouble(option.getValue()));
+          } catch (NumberFormatException ex) {
+            optionError(
+                option, String.format("Expected a double value, got %s", option.getValue()));
+          }
+          break;
+        case "metrics-format":
+          switch (option.getValue()) {
+            case "jsonl":
+            case "prometheus":
+              config.setMetricsFormat(option.getValue());
+              break;
+            default:
+              optionError(
+                  option,
+                  String.format("Unrecognized metrics format, got %s", option.getValue()));
+          }
+          break;
         case "h":
         case "help":
           formatter.printHelp(
@@ -740,6 +1002,16 @@ public class PSymOptions {
     if (!config.isChoiceOrchestrationLearning()) {
       config.setChoiceLearningRewardMode(ChoiceLearningRewardMode.None);
     }
+    if (config.getNumWorkers() > 1 && !config.getStrategy().equals("random")) {
+      optionError(
+          null,
+          String.format(
+              "Parallel workers are only supported with the random strategy, got %s",
+              config.getStrategy()));
+    }
+    if (config.getNumWorkers() > 1 && config.isProfileHandlers()) {
+      optionError(null, "Handler profiling is not supported with parallel workers");
+    }
     return config;
   }
 
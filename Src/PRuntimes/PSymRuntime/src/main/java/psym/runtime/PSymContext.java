@@ -0,0 +1,167 @@
+package psym.runtime;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import lombok.Getter;
+import lombok.Setter;
+import psym.commandline.PSymConfiguration;
+import psym.runtime.machine.Machine;
+import psym.runtime.scheduler.Scheduler;
+import psym.runtime.scheduler.search.taskorchestration.TaskOrchestrationMode;
+import psym.runtime.scheduler.search.taskorchestration.TaskOrchestrator;
+import psym.runtime.statistics.HandlerProfiler;
+import psym.utils.monitor.TimeMonitor;
+import psym.utils.random.RandomNumberGenerator;
+import psym.valuesummary.solvers.SolverGuard;
+import psym.valuesummary.solvers.SolverLib;
+import psym.valuesummary.solvers.SolverType;
+import psym.valuesummary.solvers.sat.expr.ExprLibType;
+
+/**
+ * State of a single checker run: global data, solver engine and guards, machine registry, random
+ * number generator, time monitor, task orchestrator and output files. The static accessors of those
+ * classes read from the context bound to the current thread, or from a default context shared by
+ * all unbound threads, so a single run per JVM behaves as before. Several runs can share a JVM by
+ * binding each to a fresh context on its own thread.
+ *
+ * <p>Log4j loggers, the memory monitor and run metrics remain process-wide, as do the interned
+ * event ids, union types and state event handlers, which only depend on the model.
+ */
+public class PSymContext {
+  private static final PSymContext defaultContext = new PSymContext();
+  private static final ThreadLocal<PSymContext> current = new ThreadLocal<>();
+
+  /** Id of the search worker running in this context, 0 for the main run */
+  @Getter @Setter private int workerId = 0;
+
+  /** Global data that is retained when resuming a run */
+  @Getter @Setter private PSymGlobal global = null;
+
+  /** Global configuration */
+  @Getter @Setter private PSymConfiguration configuration = null;
+
+  /** Scheduler */
+  @Getter @Setter private Scheduler scheduler = null;
+
+  /** Status of the run */
+  @Getter @Setter private String status = "incomplete";
+
+  /** Result of the run */
+  @Getter @Setter private String result = "error";
+
+  /** Type and message of the last property failure, see {@link psym.utils.Assert} */
+  @Getter @Setter private String failureType = "";
+
+  @Getter @Setter private String failureMsg = "";
+
+  /** Handler profiler of the run, or null if handlers are not profiled */
+  @Getter @Setter private HandlerProfiler handlerProfiler = null;
+
+  /** Solver backend */
+  @Getter @Setter private SolverLib solver = null;
+
+  @Getter @Setter private SolverType solverType = SolverType.BDD;
+  @Getter @Setter private ExprLibType exprLibType = ExprLibType.Bdd;
+
+  /** Solver guards of the variables and of all guards, and solver guards by formula */
+  @Getter private final List<SolverGuard> solverGuardVars = new ArrayList<>();
+
+  @Getter private final List<SolverGuard> solverGuards = new ArrayList<>();
+  @Getter private final Map<Object, SolverGuard> solverGuardTable = new HashMap<>();
+
+  /** Whether solver guards are being recreated in a new solver backend */
+  @Getter @Setter private boolean solverGuardResume = false;
+
+  /** Machines by name, and the instance id of the next machine */
+  @Getter private final Map<String, Machine> nameToMachine = new HashMap<>();
+
+  @Getter @Setter private int nextMachineId = Machine.getMainMachineId();
+
+  /** Machines of each symmetric type */
+  @Getter private final Map<String, Set<Machine>> typeToAllSymmetricMachines = new HashMap<>();
+
+  @Getter @Setter private RandomNumberGenerator randomNumberGenerator = null;
+  @Getter @Setter private TimeMonitor timeMonitor = null;
+  @Getter @Setter private TaskOrchestrationMode taskOrchestration = null;
+  @Getter @Setter private TaskOrchestrator taskOrchestrator = null;
+
+  /** Output files */
+  @Getter @Setter private PrintWriter statWriter = null;
+
+  @Getter @Setter private PrintWriter coverageWriter = null;
+  @Getter @Setter private boolean coverageWriterEnabled = true;
+  @Getter @Setter private PrintWriter backtrackWriter = null;
+  @Getter @Setter private PrintWriter scheduleWriter = null;
+  @Getter @Setter private String scheduleFileName = "";
+  @Getter @Setter private int scheduleLogIdx = 0;
+  @Getter @Setter private PrintWriter textWriter = null;
+  @Getter @Setter private String textFileName = "";
+
+  /**
+   * Get the context bound to the current thread
+   *
+   * @return Bound context, or the default context if none is bound
+   */
+  public static PSymContext getCurrent() {
+    PSymContext context = current.get();
+    return (context == null) ? defaultContext : context;
+  }
+
+  /**
+   * Bind a context to the current thread
+   *
+   * @param context Context to bind, or null to fall back to the default context
+   */
+  public static void setCurrent(PSymContext context) {
+    if (context == null) {
+      current.remove();
+    } else {
+      current.set(context);
+    }
+  }
+
+  /**
+   * Create a context for another run of the same configuration. The new context shares the
+   * configuration, time monitor, symmetric machine types and stats file, and keeps the sync events
+   * of the global data, but starts with fresh search state. Coverage logging is disabled.
+   *
+   * @return New context
+   */
+  public PSymContext fork() {
+    PSymContext result = new PSymContext();
+    result.configuration = configuration;
+    result.timeMonitor = timeMonitor;
+    result.statWriter = statWriter;
+    result.coverageWriterEnabled = false;
+    if (global != null) {
+      result.global = global.fork();
+    }
+    for (String type : typeToAllSymmetricMachines.keySet()) {
+      result.typeToAllSymmetricMachines.put(type, new TreeSet<>());
+    }
+    return result;
+  }
+
+  /**
+   * Run a call with this context bound to the current thread, restoring the previous binding
+   * afterwards
+   *
+   * @param call Call to run
+   * @return Result of the call
+   */
+  public <T> T call(Callable<T> call) throws Exception {
+    PSymContext previous = current.get();
+    setCurrent(this);
+    try {
+      return call.call();
+    } finally {
+      setCurrent(previous);
+    }
+  }
+}
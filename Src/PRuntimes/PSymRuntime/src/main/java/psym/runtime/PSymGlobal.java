@@ -1,5 +1,8 @@
 package psym.runtime;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -7,8 +10,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import lombok.Getter;
-import lombok.Setter;
 import psym.commandline.PSymConfiguration;
 import psym.runtime.logger.PSymLogger;
 import psym.runtime.machine.Machine;
@@ -22,37 +23,10 @@ import psym.runtime.scheduler.search.symmetry.SymmetryTracker;
 import psym.runtime.statistics.CoverageStats;
 
 /**
- * Class containing global/shared data that is retained when resuming a run
+ * Class containing global/shared data that is retained when resuming a run. There is one object
+ * per {@link PSymContext}, along with the configuration, scheduler, status and result of the run.
  */
 public class PSymGlobal implements Serializable {
-    /**
-     * Singleton object of the class
-     */
-    private static PSymGlobal PSymGlobal = null;
-
-    /**
-     * Global configuration
-     */
-    private static PSymConfiguration configuration = null;
-
-    /**
-     * Scheduler
-     */
-    private static Scheduler scheduler = null;
-
-    /** Status of the run **/
-    @Getter @Setter
-    private static String status = "incomplete";
-
-    /** Result of the run **/
-    @Getter @Setter
-    private static String result = "error";
-
-    /**
-     * Mapping of each machine's state with its corresponding event handlers
-     */
-    private final Map<String, StateEvents> allStateEvents = new HashMap<>();
-
     /**
      * Set of sync event names
      */
@@ -79,41 +53,82 @@ public class PSymGlobal implements Serializable {
     private PSymGlobal() {}
 
     /**
-     * Get/create the singleton class object
+     * Get/create the global data object of the current context
      */
-    public static synchronized PSymGlobal getInstance() {
-        if (PSymGlobal == null) {
-            setInstance(new PSymGlobal());
+    public static PSymGlobal getInstance() {
+        PSymContext context = PSymContext.getCurrent();
+        PSymGlobal global = context.getGlobal();
+        if (global == null) {
+            global = new PSymGlobal();
+            context.setGlobal(global);
         }
-        return PSymGlobal;
+        return global;
     }
 
     /**
-     * Set the global data singleton object after resuming a run
+     * Set the global data object of the current context after resuming a run
      *
-     * @param rhs Singleton object to set to
+     * @param rhs Global data object to set to
      */
     public static void setInstance(PSymGlobal rhs) {
-        PSymGlobal = rhs;
+        PSymContext.getCurrent().setGlobal(rhs);
     }
 
     public static PSymConfiguration getConfiguration() {
-        return getInstance().configuration;
+        return PSymContext.getCurrent().getConfiguration();
     }
+
     public static void setConfiguration(PSymConfiguration config) {
-        getInstance().configuration = config;
+        PSymContext.getCurrent().setConfiguration(config);
     }
 
     public static Scheduler getScheduler() {
-        return getInstance().scheduler;
+        return PSymContext.getCurrent().getScheduler();
     }
 
     public static void setScheduler(Scheduler s) {
-        getInstance().scheduler = s;
+        PSymContext.getCurrent().setScheduler(s);
     }
 
-    public static Map<String, StateEvents> getAllStateEvents() {
-        return getInstance().allStateEvents;
+    public static String getStatus() {
+        return PSymContext.getCurrent().getStatus();
+    }
+
+    public static void setStatus(String status) {
+        PSymContext.getCurrent().setStatus(status);
+    }
+
+    public static String getResult() {
+        return PSymContext.getCurrent().getResult();
+    }
+
+    public static void setResult(String result) {
+        PSymContext.getCurrent().setResult(result);
+    }
+
+    /**
+     * Save the event handlers of all states along with the global data, since a resumed run does
+     * not create the machines that register them. The handlers are shared by all contexts, see
+     * {@link StateEvents}.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(StateEvents.getAll());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        StateEvents.addAll((Map<String, StateEvents>) in.readObject());
+    }
+
+    /**
+     * Create global data for another run of the same configuration, keeping the sync events
+     */
+    PSymGlobal fork() {
+        PSymGlobal result = new PSymGlobal();
+        result.syncEvents.putAll(syncEvents);
+        return result;
     }
 
     public static void addSyncEvent(String machineName, String eventName) {
@@ -124,7 +139,7 @@ public class PSymGlobal implements Serializable {
     }
 
     public static boolean hasSyncEvent(Machine machine, Event event) {
-        if (configuration.isAllowSyncEvents()) {
+        if (getConfiguration().isAllowSyncEvents()) {
             if (event.toString().startsWith("sync_")) {
                 return true;
             }
@@ -4,9 +4,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
+import psym.runtime.PSymContext;
 
 public class BacktrackWriter {
-  static PrintWriter log = null;
 
   public static void Initialize(String projectName, String outputFolder) {
     try {
@@ -16,13 +16,14 @@ public class BacktrackWriter {
       File statFile = new File(fileName);
       statFile.getParentFile().mkdirs();
       statFile.createNewFile();
-      log = new PrintWriter(statFile);
+      PSymContext.getCurrent().setBacktrackWriter(new PrintWriter(statFile));
     } catch (IOException e) {
       System.out.println("Failed to set printer to the StatLogger!!");
     }
   }
 
   public static void log(String name, BigDecimal prefixCoverage, int depth, int choiceDepth) {
+    PrintWriter log = PSymContext.getCurrent().getBacktrackWriter();
     log.println(String.format("%s %.20f %d %d", name, prefixCoverage, depth, choiceDepth));
     log.flush();
   }
@@ -3,11 +3,10 @@ package psym.runtime.logger;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import psym.runtime.PSymContext;
 import psym.runtime.statistics.CoverageStats;
 
 public class CoverageWriter {
-  static PrintWriter log = null;
-  static boolean enabled = true;
 
   public static void Initialize(String projectName, String outputFolder) {
     try {
@@ -17,14 +16,16 @@ public class CoverageWriter {
       File statFile = new File(fileName);
       statFile.getParentFile().mkdirs();
       statFile.createNewFile();
-      log = new PrintWriter(statFile);
+      PSymContext.getCurrent().setCoverageWriter(new PrintWriter(statFile));
     } catch (IOException e) {
       System.out.println("Failed to add appender to the CoverageLogger!!");
     }
   }
 
   public static void info(String msg) {
-    if (enabled) {
+    PSymContext context = PSymContext.getCurrent();
+    if (context.isCoverageWriterEnabled()) {
+      PrintWriter log = context.getCoverageWriter();
       log.println(msg);
       log.flush();
     }
@@ -42,10 +43,10 @@ public class CoverageWriter {
   }
 
   public static void enable() {
-    enabled = true;
+    PSymContext.getCurrent().setCoverageWriterEnabled(true);
   }
 
   public static void disable() {
-    enabled = false;
+    PSymContext.getCurrent().setCoverageWriterEnabled(false);
   }
 }
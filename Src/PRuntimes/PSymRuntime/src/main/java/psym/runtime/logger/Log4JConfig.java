@@ -2,8 +2,10 @@ package psym.runtime.logger;
 
 import lombok.Getter;
 import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.LoggerConfig;
 import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
 import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
 import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
@@ -40,4 +42,23 @@ public class Log4JConfig {
     // set level for reflections class
     Configurator.setLevel(Reflections.class, Level.ERROR);
   }
+
+  /**
+   * Stop and remove the appenders of a logger, so that initializing the logger again for another
+   * run does not duplicate its output
+   *
+   * @param context Logger context
+   * @param loggerName Name of the logger
+   */
+  public static void removeAppenders(LoggerContext context, String loggerName) {
+    LoggerConfig loggerConfig = context.getConfiguration().getLoggerConfig(loggerName);
+    if (!loggerConfig.getName().equals(loggerName)) {
+      // no appenders were added to this logger, only to a parent
+      return;
+    }
+    for (Appender appender : loggerConfig.getAppenders().values()) {
+      loggerConfig.removeAppender(appender.getName());
+      appender.stop();
+    }
+  }
 }
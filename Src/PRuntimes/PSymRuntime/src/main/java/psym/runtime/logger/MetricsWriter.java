@@ -0,0 +1,179 @@
+package psym.runtime.logger;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import psym.runtime.statistics.MetricsRegistry;
+import psym.utils.monitor.MemoryMonitor;
+import psym.valuesummary.solvers.SolverEngine;
+
+/**
+ * Writes snapshots of the {@link MetricsRegistry} to the output folder at a fixed interval, so that
+ * long runs can be tracked while they progress. In JSON-lines format, each snapshot is appended as
+ * one line. In Prometheus text format, the file is atomically replaced by the latest snapshot, as
+ * expected by the node exporter textfile collector. Each counter is also reported as a rate per
+ * second since the previous snapshot.
+ *
+ * <p>Snapshots are taken by the search thread when it polls, so gauges may read scheduler state
+ * without synchronization.
+ */
+public class MetricsWriter {
+  private static final String PREFIX = "psym_";
+
+  private static File metricsFile = null;
+  private static boolean prometheus = false;
+  private static long intervalNanos = 0;
+  private static long startNanos = 0;
+  private static long nextNanos = 0;
+  private static long lastNanos = 0;
+  private static final Map<String, Long> lastCounts = new HashMap<>();
+
+  /**
+   * Initialize the metrics writer
+   *
+   * @param projectName Name of the project
+   * @param outputFolder Output folder
+   * @param intervalSeconds Seconds between snapshots (0 disables the writer)
+   * @param format Format of the file, either jsonl or prometheus
+   */
+  public static void Initialize(
+      String projectName, String outputFolder, double intervalSeconds, String format) {
+    if (intervalSeconds <= 0) {
+      metricsFile = null;
+      return;
+    }
+    prometheus = format.equals("prometheus");
+    intervalNanos = (long) (intervalSeconds * 1e9);
+    startNanos = System.nanoTime();
+    lastNanos = startNanos;
+    nextNanos = startNanos + intervalNanos;
+    lastCounts.clear();
+    try {
+      String fileName =
+          outputFolder + "/metrics-" + projectName + (prometheus ? ".prom" : ".jsonl");
+      metricsFile = new File(fileName);
+      metricsFile.getParentFile().mkdirs();
+      Files.deleteIfExists(metricsFile.toPath());
+      metricsFile.createNewFile();
+    } catch (IOException e) {
+      System.out.println("Failed to set printer to the MetricsWriter!!");
+      metricsFile = null;
+    }
+
+    MetricsRegistry.gauge("guards", SolverEngine::getGuardCount);
+    MetricsRegistry.gauge("solver_nodes", () -> SolverEngine.getSolver().getNodeCount());
+    MetricsRegistry.gauge("memory_mb", MemoryMonitor::getMemSpent);
+    MetricsRegistry.gauge("memory_max_mb", MemoryMonitor::getMaxMemSpent);
+    MetricsRegistry.gauge("gc_time_ms", MetricsWriter::getGcTime);
+  }
+
+  private static double getGcTime() {
+    long result = 0;
+    for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      result += Math.max(0, gcBean.getCollectionTime());
+    }
+    return result;
+  }
+
+  /** Write a snapshot if the interval elapsed since the last one */
+  public static void poll() {
+    if (metricsFile != null && System.nanoTime() >= nextNanos) {
+      write();
+    }
+  }
+
+  /** Write a snapshot now */
+  public static void write() {
+    if (metricsFile == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    double seconds = (now - startNanos) / 1e9;
+    double interval = Math.max(1e-9, (now - lastNanos) / 1e9);
+    lastNanos = now;
+    nextNanos = now + intervalNanos;
+
+    Map<String, Double> values = new LinkedHashMap<>();
+    Map<String, String> types = new HashMap<>();
+    values.put("runtime_seconds", seconds);
+    types.put("runtime_seconds", "gauge");
+    for (Map.Entry<String, LongAdder> entry : MetricsRegistry.getCounters().entrySet()) {
+      long count = entry.getValue().sum();
+      long last = lastCounts.getOrDefault(entry.getKey(), 0L);
+      lastCounts.put(entry.getKey(), count);
+      values.put(entry.getKey(), (double) count);
+      types.put(entry.getKey(), "counter");
+      values.put(entry.getKey() + "_per_sec", (count - last) / interval);
+      types.put(entry.getKey() + "_per_sec", "gauge");
+    }
+    for (Map.Entry<String, DoubleAdder> entry : MetricsRegistry.getSums().entrySet()) {
+      values.put(entry.getKey(), entry.getValue().sum());
+      types.put(entry.getKey(), "counter");
+    }
+    for (Map.Entry<String, DoubleAccumulator> entry : MetricsRegistry.getMaximums().entrySet()) {
+      values.put(entry.getKey(), entry.getValue().get());
+      types.put(entry.getKey(), "gauge");
+    }
+    for (Map.Entry<String, DoubleSupplier> entry : MetricsRegistry.getGauges().entrySet()) {
+      values.put(entry.getKey(), entry.getValue().getAsDouble());
+      types.put(entry.getKey(), "gauge");
+    }
+
+    try {
+      if (prometheus) {
+        File tmpFile = new File(metricsFile.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(tmpFile)) {
+          for (Map.Entry<String, Double> entry : values.entrySet()) {
+            String name = PREFIX + entry.getKey();
+            out.println("# TYPE " + name + " " + types.get(entry.getKey()));
+            out.println(name + " " + formatValue(entry.getValue()));
+          }
+        }
+        Files.move(
+            tmpFile.toPath(),
+            metricsFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } else {
+        StringBuilder line = new StringBuilder(1024);
+        line.append('{');
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+          if (line.length() > 1) {
+            line.append(',');
+          }
+          line.append('"').append(entry.getKey()).append("\":");
+          line.append(formatValue(entry.getValue()));
+        }
+        line.append('}');
+        try (PrintWriter out = new PrintWriter(new FileWriter(metricsFile, true))) {
+          out.println(line);
+        }
+      }
+    } catch (IOException e) {
+      PSymLogger.warn("Failed to write metrics to " + metricsFile.getPath() + ": " + e.getMessage());
+    }
+  }
+
+  private static String formatValue(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return "0";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+}
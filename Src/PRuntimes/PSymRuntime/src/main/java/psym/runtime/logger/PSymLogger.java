@@ -22,6 +22,7 @@ public class PSymLogger {
     org.apache.logging.log4j.core.Logger coreLogger =
         (org.apache.logging.log4j.core.Logger) LogManager.getLogger(PSymLogger.class.getName());
     context = coreLogger.getContext();
+    Log4JConfig.removeAppenders(context, PSymLogger.class.getName());
 
     PatternLayout layout = Log4JConfig.getPatternLayout();
     ConsoleAppender consoleAppender = ConsoleAppender.createDefaultAppenderForLayout(layout);
@@ -4,7 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
-import lombok.Getter;
+import psym.runtime.PSymContext;
 import psym.runtime.PSymGlobal;
 import psym.runtime.machine.Machine;
 import psym.runtime.machine.Monitor;
@@ -16,32 +16,55 @@ import psym.valuesummary.GuardedValue;
 import psym.valuesummary.PrimitiveVS;
 
 public class ScheduleWriter {
-    static PrintWriter log = null;
-    @Getter static String fileName = "";
-    private static int logIdx = 0;
+    /** How a delivered event is taken by its target, marked in the schedule file */
+    public enum Delivery {
+        HANDLED(""),
+        IGNORED(" [ignored]"),
+        DEFERRED(" [deferred]"),
+        RECEIVED(" [received]");
+
+        private final String marker;
+
+        Delivery(String marker) {
+            this.marker = marker;
+        }
+
+        public String getMarker() {
+            return marker;
+        }
+    }
+
+    public static String getFileName() {
+        return PSymContext.getCurrent().getScheduleFileName();
+    }
 
     public static void Initialize() {
+        PSymContext context = PSymContext.getCurrent();
         try {
             // get new file name
-            fileName = PSymGlobal.getConfiguration().getOutputFolder() + "/" + PSymGlobal.getConfiguration().getProjectName() + "_0_0.schedule";
+            String fileName = PSymGlobal.getConfiguration().getOutputFolder() + "/" + PSymGlobal.getConfiguration().getProjectName() + "_0_0.schedule";
             // Define new file printer
             File schFile = new File(fileName);
             schFile.getParentFile().mkdirs();
             schFile.createNewFile();
-            log = new PrintWriter(schFile);
+            context.setScheduleFileName(fileName);
+            context.setScheduleWriter(new PrintWriter(schFile));
+            context.setScheduleLogIdx(0);
         } catch (IOException e) {
             System.out.println("Failed to set printer to the ScheduleWriter!!");
         }
     }
 
     private static void log(String value) {
+        PrintWriter log = PSymContext.getCurrent().getScheduleWriter();
         log.println(value);
         log.flush();
     }
 
     private static void logComment(String message) {
-        log(String.format("// Step %d: %s", logIdx, message));
-        logIdx++;
+        PSymContext context = PSymContext.getCurrent();
+        log(String.format("// Step %d: %s", context.getScheduleLogIdx(), message));
+        context.setScheduleLogIdx(context.getScheduleLogIdx() + 1);
     }
 
     public static void logBoolean(PrimitiveVS<Boolean> res) {
@@ -64,11 +87,13 @@ public class ScheduleWriter {
         log(gv.get(0).getValue().toString());
     }
 
-    public static void logDequeue(Machine target, State state, Event event) {
-        logComment(String.format("receive %s at %s in state %s",
+    public static void logDequeue(Machine sender, Machine target, State state, Event event, Delivery delivery) {
+        logComment(String.format("receive %s at %s in state %s from %s%s",
                 event,
                 target,
-                state));
+                state,
+                sender,
+                delivery.getMarker()));
         log(String.format("(%d)", target.getInstanceId()));
     }
 
@@ -25,6 +25,7 @@ public class ScratchLogger {
     org.apache.logging.log4j.core.Logger coreLogger =
         (org.apache.logging.log4j.core.Logger) LogManager.getLogger(ScratchLogger.class.getName());
     context = coreLogger.getContext();
+    Log4JConfig.removeAppenders(context, ScratchLogger.class.getName());
 
     try {
       // get new file name
@@ -29,6 +29,7 @@ public class SearchLogger {
     org.apache.logging.log4j.core.Logger coreLogger =
         (org.apache.logging.log4j.core.Logger) LogManager.getLogger(SearchLogger.class.getName());
     context = coreLogger.getContext();
+    Log4JConfig.removeAppenders(context, SearchLogger.class.getName());
 
     try {
       // get new file name
@@ -3,11 +3,11 @@ package psym.runtime.logger;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import psym.runtime.PSymContext;
 import psym.runtime.statistics.SolverStats;
 import psym.valuesummary.solvers.SolverEngine;
 
 public class StatWriter {
-  static PrintWriter log = null;
 
   public static void Initialize(String projectName, String outputFolder) {
     try {
@@ -17,13 +17,14 @@ public class StatWriter {
       File statFile = new File(fileName);
       statFile.getParentFile().mkdirs();
       statFile.createNewFile();
-      log = new PrintWriter(statFile);
+      PSymContext.getCurrent().setStatWriter(new PrintWriter(statFile));
     } catch (IOException e) {
       System.out.println("Failed to set printer to the StatLogger!!");
     }
   }
 
   public static void log(String key, String value) {
+    PrintWriter log = PSymContext.getCurrent().getStatWriter();
     log.println(String.format("%-40s%s", key + ":", value));
     log.flush();
   }
@@ -36,14 +37,17 @@ public class StatWriter {
         "#-op",
         String.format(
             "%d",
-            SolverStats.andOperations + SolverStats.orOperations + SolverStats.notOperations));
+            SolverStats.andOperations.sum()
+                + SolverStats.orOperations.sum()
+                + SolverStats.notOperations.sum()));
     log("solver-#-nodes", String.format("%d", SolverEngine.getSolver().getNodeCount()));
-    log("solver-#-sat-ops", String.format("%d", SolverStats.isSatOperations));
-    log("solver-#-sat-ops-sat", String.format("%d", SolverStats.isSatResult));
+    log("solver-#-sat-ops", String.format("%d", SolverStats.isSatOperations.sum()));
+    log("solver-#-sat-ops-sat", String.format("%d", SolverStats.isSatResult.sum()));
     log(
         "solver-%-sat-ops-sat",
         String.format(
             "%.1f",
-            SolverStats.isSatPercent(SolverStats.isSatOperations, SolverStats.isSatResult)));
+            SolverStats.isSatPercent(
+                SolverStats.isSatOperations.sum(), SolverStats.isSatResult.sum())));
   }
 }
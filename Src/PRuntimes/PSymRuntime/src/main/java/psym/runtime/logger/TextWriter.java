@@ -4,7 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
-import lombok.Getter;
+import psym.runtime.PSymContext;
 import psym.runtime.PSymGlobal;
 import psym.runtime.machine.Machine;
 import psym.runtime.machine.Monitor;
@@ -16,24 +16,28 @@ import psym.valuesummary.PrimitiveVS;
 import psym.valuesummary.UnionVS;
 
 public class TextWriter {
-    static PrintWriter log = null;
-    @Getter static String fileName = "";
+    public static String getFileName() {
+        return PSymContext.getCurrent().getTextFileName();
+    }
 
     public static void Initialize() {
+        PSymContext context = PSymContext.getCurrent();
         try {
             // get new file name
-            fileName = PSymGlobal.getConfiguration().getOutputFolder() + "/" + PSymGlobal.getConfiguration().getProjectName() + "_0_0.txt";
+            String fileName = PSymGlobal.getConfiguration().getOutputFolder() + "/" + PSymGlobal.getConfiguration().getProjectName() + "_0_0.txt";
             // Define new file printer
             File schFile = new File(fileName);
             schFile.getParentFile().mkdirs();
             schFile.createNewFile();
-            log = new PrintWriter(schFile);
+            context.setTextFileName(fileName);
+            context.setTextWriter(new PrintWriter(schFile));
         } catch (IOException e) {
             System.out.println("Failed to set printer to the TextWriter!!");
         }
     }
 
     private static void log(String value) {
+        PrintWriter log = PSymContext.getCurrent().getTextWriter();
         log.println(value);
         log.flush();
     }
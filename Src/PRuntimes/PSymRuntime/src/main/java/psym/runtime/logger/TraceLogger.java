@@ -34,6 +34,7 @@ public class TraceLogger {
     org.apache.logging.log4j.core.Logger coreLogger =
         (org.apache.logging.log4j.core.Logger) LogManager.getLogger(TraceLogger.class.getName());
     context = coreLogger.getContext();
+    Log4JConfig.removeAppenders(context, TraceLogger.class.getName());
 
     try {
       // get new file name
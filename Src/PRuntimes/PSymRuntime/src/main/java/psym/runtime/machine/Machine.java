@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.*;
 import lombok.Getter;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import psym.runtime.PSymContext;
 import psym.runtime.PSymGlobal;
 import psym.runtime.logger.TextWriter;
 import psym.runtime.logger.TraceLogger;
@@ -15,17 +16,31 @@ import psym.runtime.machine.events.Message;
 import psym.runtime.scheduler.Scheduler;
 import psym.runtime.scheduler.replay.ReplayScheduler;
 import psym.runtime.scheduler.search.choiceorchestration.ChoiceLearningStateMode;
+import psym.runtime.statistics.HandlerProfiler;
 import psym.utils.Assert;
+import psym.utils.monitor.events.ProcessEventEvent;
 import psym.utils.serialize.SerializableBiFunction;
 import psym.utils.serialize.SerializableFunction;
 import psym.utils.serialize.SerializableRunnable;
 import psym.valuesummary.*;
+import psym.valuesummary.solvers.SolverEngine;
 
 public abstract class Machine implements Serializable, Comparable<Machine> {
   @Getter
   private static final int mainMachineId = 2;
-  @Getter private static final Map<String, Machine> nameToMachine = new HashMap<>();
-  protected static int globalMachineId = mainMachineId;
+  // Handler of the create machine event in the start state, shared by all machines
+  private static final EventHandler createMachineHandler =
+      new EventHandler(Event.createMachine) {
+        @Override
+        public void handleEvent(
+            Guard pc,
+            Machine target,
+            UnionVS payload,
+            EventHandlerReturnReason eventHandlerReturnReason) {
+          assert (!BooleanVS.isEverTrue(target.hasStarted().restrict(pc)));
+          target.start(pc, payload);
+        }
+      };
   public final Map<
           String,
           SerializableFunction<
@@ -34,7 +49,7 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
   public final Set<SerializableRunnable> clearContinuationVars = new HashSet<>();
   @Getter protected final String name;
   private final State startState;
-  private final Set<State> states;
+  @Getter private final Set<State> states;
   @Getter protected int instanceId;
   @Getter private EventQueue sendBuffer;
   @Getter private DeferQueue deferredQueue;
@@ -54,26 +69,17 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
   public Machine(String name, int id, State startState, State... states) {
     this.name = name;
     //        this.instanceId = id;
-    this.instanceId = globalMachineId++;
-    nameToMachine.put(toString(), this);
+    PSymContext context = PSymContext.getCurrent();
+    this.instanceId = context.getNextMachineId();
+    context.setNextMachineId(this.instanceId + 1);
+    context.getNameToMachine().put(toString(), this);
 
     this.startState = startState;
     this.sendBuffer = new EventQueue(this);
     this.deferredQueue = new DeferQueue(this);
     this.currentState = new PrimitiveVS<>(startState);
 
-    startState.addHandlers(
-        new EventHandler(Event.createMachine) {
-          @Override
-          public void handleEvent(
-              Guard pc,
-              Machine target,
-              UnionVS payload,
-              EventHandlerReturnReason eventHandlerReturnReason) {
-            assert (!BooleanVS.isEverTrue(target.hasStarted().restrict(pc)));
-            target.start(pc, payload);
-          }
-        });
+    startState.addHandlers(createMachineHandler);
 
     this.states = new HashSet<>();
     Collections.addAll(this.states, states);
@@ -82,8 +88,42 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
     this.happensBeforePairs = new HashSet<>();
   }
 
+  /**
+   * Get the machines of the current context by name
+   *
+   * @return Map from machine name to machine
+   */
+  public static Map<String, Machine> getNameToMachine() {
+    return PSymContext.getCurrent().getNameToMachine();
+  }
+
+  /**
+   * Remove a machine from the registry of the current context once no schedule can reach it
+   *
+   * @param machine Machine to release
+   */
+  public static void releaseMachine(Machine machine) {
+    getNameToMachine().remove(machine.toString(), machine);
+  }
+
+  /**
+   * Give this newly created machine the instance id of a released machine it replaces, and return
+   * its own id to the context
+   *
+   * @param id Instance id of the released machine
+   */
+  public void reuseInstanceId(int id) {
+    PSymContext context = PSymContext.getCurrent();
+    assert (instanceId == context.getNextMachineId() - 1);
+    context.getNameToMachine().remove(toString(), this);
+    context.setNextMachineId(instanceId);
+    instanceId = id;
+    context.getNameToMachine().put(toString(), this);
+  }
+
   public void setScheduler(Scheduler scheduler) {
     this.scheduler = scheduler;
+    scheduler.updateMachineWithEvents(this, !sendBuffer.isEmpty());
   }
 
   public SymbolicQueue getEventBuffer() {
@@ -175,7 +215,12 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
     this.started = this.started.updateUnderGuard(pc, new PrimitiveVS<>(true));
 
     EventHandlerReturnReason initEventHandlerReturnReason = new EventHandlerReturnReason();
-    startState.entry(pc, this, initEventHandlerReturnReason, payload);
+    HandlerProfiler.enter(startState.machineName, startState.name, HandlerProfiler.ENTRY);
+    try {
+      startState.entry(pc, this, initEventHandlerReturnReason, payload);
+    } finally {
+      HandlerProfiler.exit();
+    }
 
     runOutcomesToCompletion(pc, initEventHandlerReturnReason);
   }
@@ -300,7 +345,13 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
     } else {
       PrimitiveVS<State> guardedState = this.currentState.restrict(pc);
       for (GuardedValue<State> entry : guardedState.getGuardedValues()) {
-        entry.getValue().exit(entry.getGuard(), this);
+        State state = entry.getValue();
+        HandlerProfiler.enter(state.machineName, state.name, HandlerProfiler.EXIT);
+        try {
+          state.exit(entry.getGuard(), this);
+        } finally {
+          HandlerProfiler.exit();
+        }
       }
 
       this.currentState = newState.merge(this.currentState.restrict(pc.not()));
@@ -310,7 +361,12 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
       State state = entry.getValue();
       Guard transitionCond = entry.getGuard();
       UnionVS payload = payloads.get(state);
-      state.entry(transitionCond, this, eventHandlerReturnReason, payload);
+      HandlerProfiler.enter(state.machineName, state.name, HandlerProfiler.ENTRY);
+      try {
+        state.entry(transitionCond, this, eventHandlerReturnReason, payload);
+      } finally {
+        HandlerProfiler.exit();
+      }
     }
   }
 
@@ -369,6 +425,10 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
   }
 
   public void processEventToCompletion(Guard pc, Message message) {
+    ProcessEventEvent processEvent = new ProcessEventEvent();
+    int guardCount = processEvent.isEnabled() ? SolverEngine.getGuardCount() : 0;
+    processEvent.begin();
+
     if (PSymGlobal.getConfiguration().getChoiceLearningStateMode()
         == ChoiceLearningStateMode.TimelineAbstraction) {
       updateObservedEvents(message);
@@ -385,6 +445,13 @@ public abstract class Machine implements Serializable, Comparable<Machine> {
 
     // Process events from the deferred queue again
     runDeferredEvents(pc.and(getBlockedOnReceiveGuard().not()));
+
+    if (processEvent.shouldCommit()) {
+      processEvent.machine = toString();
+      processEvent.event = message.getEvent().getValues().toString();
+      processEvent.guardCount = SolverEngine.getGuardCount() - guardCount;
+      processEvent.commit();
+    }
   }
 
   @Override
@@ -1,10 +1,13 @@
 package psym.runtime.machine;
 
+import psym.runtime.PSymContext;
+
 public class Monitor extends Machine {
     public Monitor(String name, int id, State startState, State... states) {
         super(name, id, startState, states);
         this.instanceId = 0;
-        globalMachineId--;
+        PSymContext context = PSymContext.getCurrent();
+        context.setNextMachineId(context.getNextMachineId() - 1);
     }
 
     @Override
@@ -3,17 +3,15 @@ package psym.runtime.machine;
 import java.io.Serializable;
 import java.util.Objects;
 import psym.runtime.PSymGlobal;
-import psym.runtime.logger.ScheduleWriter;
 import psym.runtime.logger.TextWriter;
 import psym.runtime.logger.TraceLogger;
-import psym.runtime.machine.eventhandlers.DeferEventHandler;
 import psym.runtime.machine.eventhandlers.EventHandler;
 import psym.runtime.machine.eventhandlers.EventHandlerReturnReason;
-import psym.runtime.machine.eventhandlers.IgnoreEventHandler;
 import psym.runtime.machine.events.Event;
 import psym.runtime.machine.events.Message;
 import psym.runtime.machine.events.StateEvents;
 import psym.runtime.scheduler.replay.ReplayScheduler;
+import psym.runtime.statistics.HandlerProfiler;
 import psym.utils.Assert;
 import psym.valuesummary.*;
 import psym.valuesummary.util.ValueSummaryChecks;
@@ -22,6 +20,8 @@ public abstract class State implements Serializable {
   public final String name;
   public final String machineName;
   public final StateTemperature temperature;
+  // Event handlers of the state, resolved once from the process-wide table
+  private transient StateEvents stateEvents = null;
 
   public State(
       String name,
@@ -50,35 +50,31 @@ public abstract class State implements Serializable {
   }
 
   private StateEvents getStateEvents() {
-    String key = getStateKey();
-    if (!PSymGlobal.getAllStateEvents().containsKey(key))
-      PSymGlobal.getAllStateEvents().put(key, new StateEvents());
-    return PSymGlobal.getAllStateEvents().get(key);
+    if (stateEvents == null) {
+      stateEvents = StateEvents.get(getStateKey());
+    }
+    return stateEvents;
   }
 
   public void addHandlers(EventHandler... eventHandlers) {
+    StateEvents events = getStateEvents();
     for (EventHandler handler : eventHandlers) {
-      getStateEvents().eventHandlers.put(handler.event, handler);
-      if (handler instanceof IgnoreEventHandler) {
-        getStateEvents().ignored.add(handler.event);
-      } else if (handler instanceof DeferEventHandler) {
-        getStateEvents().deferred.add(handler.event);
-      }
+      events.addHandler(handler);
     }
   }
 
   public Boolean isIgnored(Event event) {
-    return getStateEvents().ignored.contains(event);
+    return getStateEvents().isIgnored(event);
   }
 
   public Boolean isDeferred(Event event) {
-    return getStateEvents().deferred.contains(event);
+    return getStateEvents().isDeferred(event);
   }
 
   public PrimitiveVS<Boolean> hasHandler(Message message) {
     Guard has = Guard.constFalse();
     for (GuardedValue<Event> entry : message.getEvent().getGuardedValues()) {
-      if (getStateEvents().eventHandlers.containsKey(entry.getValue())) {
+      if (getStateEvents().hasHandler(entry.getValue())) {
         has = has.or(entry.getGuard());
       }
     }
@@ -101,7 +97,6 @@ public abstract class State implements Serializable {
             // exclude raise event from user
             if (!message.getTarget().getGuardedValues().isEmpty()) {
               assert (message.getTarget().getGuardedValues().get(0).getValue() == machine);
-              ScheduleWriter.logDequeue(machine, this, event);
               TextWriter.logDequeue(machine, this, event, message.getPayload());
             }
           }
@@ -110,17 +105,18 @@ public abstract class State implements Serializable {
 
       Guard handledPc = Guard.constFalse();
       for (GuardedValue<State> guardedValue : current.getGuardedValues()) {
-        if (guardedValue.getValue().getStateEvents().eventHandlers.containsKey(event)) {
-          guardedValue
-              .getValue()
-              .getStateEvents()
-              .eventHandlers
-              .get(event)
-              .handleEvent(
-                  eventPc.and(guardedValue.getGuard()),
-                  machine,
-                  message.restrict(guardedValue.getGuard()).getPayload(),
-                  outcome);
+        EventHandler handler = guardedValue.getValue().getStateEvents().getHandler(event);
+        if (handler != null) {
+          HandlerProfiler.enter(machineName, guardedValue.getValue().name, event);
+          try {
+            handler.handleEvent(
+                eventPc.and(guardedValue.getGuard()),
+                machine,
+                message.restrict(guardedValue.getGuard()).getPayload(),
+                outcome);
+          } finally {
+            HandlerProfiler.exit();
+          }
           handledPc = handledPc.or(guardedValue.getGuard());
         }
       }
@@ -1,6 +1,8 @@
 package psym.runtime.machine.buffer;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 import psym.runtime.PSymGlobal;
 import psym.runtime.machine.Machine;
@@ -9,17 +11,30 @@ import psym.runtime.scheduler.search.symmetry.SymmetryMode;
 import psym.valuesummary.*;
 
 /**
- * Represents a event-queue implementation using value summaries
+ * Represents a event-queue implementation using value summaries. The queue is stored as a list of
+ * all enqueued elements together with a symbolic head offset, so that a dequeue only advances the
+ * head under the dequeue guard and never shifts the remaining elements. Elements before the head
+ * under every guard are dropped from the front of the list.
  */
 public abstract class SymbolicQueue implements Serializable {
 
   private final Machine owner;
-  // elements in the queue
+  // elements in the queue, including already dequeued ones before the head
   protected ListVS<Message> elements;
+  // index of the first element of the queue in elements
+  private PrimitiveVS<Integer> head;
   private Message peek = null;
+  // cached guards under which the head is a create machine or sync event, cleared on updates
+  private PrimitiveVS<Boolean> hasCreateMachine = null;
+  private PrimitiveVS<Boolean> hasSyncEvent = null;
+  // cached guard under which the queue is non-empty, cleared on updates
+  private Guard nonEmpty = null;
+  // cached queue contents starting at the head under every guard, cleared on updates
+  private ListVS<Message> events = null;
 
   public SymbolicQueue(Machine m) {
     this.elements = new ListVS<>(Guard.constTrue());
+    this.head = new PrimitiveVS<>(0);
     this.owner = m;
     assert (elements.getUniverse().isTrue());
   }
@@ -29,19 +44,31 @@ public abstract class SymbolicQueue implements Serializable {
   }
 
   public PrimitiveVS<Integer> size() {
-    return elements.size();
+    return IntegerVS.subtract(elements.size(), head);
   }
 
   public PrimitiveVS<Integer> size(Guard pc) {
-    return elements.restrict(pc).size();
+    return IntegerVS.subtract(elements.size().restrict(pc), head.restrict(pc));
   }
 
   public boolean isEmpty() {
-    return elements.isEmpty();
+    return isEnabledUnderGuard().isFalse();
   }
 
   public Guard isEnabledUnderGuard() {
-    return elements.getNonEmptyUniverse();
+    if (nonEmpty == null) {
+      List<GuardedValue<Integer>> heads = head.getGuardedValues();
+      if (heads.size() == 1 && heads.get(0).getValue() == 0) {
+        nonEmpty = elements.getNonEmptyUniverse();
+      } else if (heads.size() == 1) {
+        int offset = heads.get(0).getValue();
+        nonEmpty = BooleanVS.getTrueGuard(IntegerVS.lessThan(offset, elements.size()));
+      } else {
+        // compares every pair of head and size values, so only done once per update
+        nonEmpty = BooleanVS.getTrueGuard(IntegerVS.lessThan(head, elements.size()));
+      }
+    }
+    return nonEmpty;
   }
 
   public Message peek(Guard pc) {
@@ -54,29 +81,62 @@ public abstract class SymbolicQueue implements Serializable {
       return peek.restrict(pc);
     }
     assert (elements.getUniverse().isTrue());
-    ListVS<Message> filtered = elements.restrict(pc);
-    PrimitiveVS<Integer> idxVs = new PrimitiveVS<>(0, pc);
+    PrimitiveVS<Integer> idxVs = head.restrict(pc);
     Guard outOfRange = elements.inRange(idxVs).getGuardFor(false);
     if (!outOfRange.isFalse()) {
       throw new RuntimeException("Internal error: peeking into an empty queue");
     }
     if (updatePeek) {
-      peek = filtered.get(idxVs);
+      // only the items at the head positions are accessed
+      peek = elements.getHelper(idxVs);
     }
     Message ret = peek.restrict(pc);
     if (dequeue) {
-      elements = elements.removeAt(idxVs);
+      head = head.updateUnderGuard(pc, IntegerVS.add(idxVs, 1));
+      dropDequeued();
       resetPeek();
+      clearCache();
+      onUpdate(!isEmpty());
     }
     assert (!pc.isFalse());
     return ret;
   }
 
+  /** Drop the elements that have been dequeued under every guard */
+  private void dropDequeued() {
+    Integer minHead = IntegerVS.minValue(head);
+    if (minHead != null && minHead > 0) {
+      elements = elements.removeFirst(minHead);
+      head = IntegerVS.subtract(head, minHead);
+    }
+  }
+
+  /** Clear the cached head predicates and queue contents */
+  private void clearCache() {
+    hasCreateMachine = null;
+    hasSyncEvent = null;
+    nonEmpty = null;
+    events = null;
+  }
+
+  /**
+   * Update the scheduler's index of machines with events
+   *
+   * @param hasEvents Whether the queue may be non-empty
+   */
+  private void onUpdate(boolean hasEvents) {
+    if (owner != null && owner.getEventBuffer() == this && owner.getScheduler() != null) {
+      owner.getScheduler().updateMachineWithEvents(owner, hasEvents);
+    }
+  }
+
   public void add(Message e) {
     if (PSymGlobal.getConfiguration().getSymmetryMode() != SymmetryMode.None) {
       PSymGlobal.getSymmetryTracker().updateSymmetrySet(owner, e.getUniverse());
     }
     elements = elements.add(e);
+    clearCache();
+    onUpdate(true);
   }
 
   public PrimitiveVS<Boolean> satisfiesPredUnderGuard(
@@ -95,25 +155,61 @@ public abstract class SymbolicQueue implements Serializable {
   }
 
   public PrimitiveVS<Boolean> hasCreateMachineUnderGuard() {
-    return satisfiesPredUnderGuard(Message::isCreateMachine);
+    if (hasCreateMachine == null) {
+      hasCreateMachine = satisfiesPredUnderGuard(Message::isCreateMachine);
+    }
+    return hasCreateMachine;
   }
 
   public PrimitiveVS<Boolean> hasSyncEventUnderGuard() {
-    return satisfiesPredUnderGuard(Message::isSyncEvent);
+    if (hasSyncEvent == null) {
+      hasSyncEvent = satisfiesPredUnderGuard(Message::isSyncEvent);
+    }
+    return hasSyncEvent;
   }
 
+  /**
+   * Get the queue contents as a list starting at the head under every guard. With a non-uniform
+   * head, the list is shifted and merged once per head value, so the result is cached until the
+   * queue is updated.
+   *
+   * @return List value summary of the queue contents
+   */
   public ValueSummary getEvents() {
-    return this.elements;
+    if (events == null) {
+      events = computeEvents();
+    }
+    return events;
+  }
+
+  private ListVS<Message> computeEvents() {
+    List<GuardedValue<Integer>> heads = head.getGuardedValues();
+    if (heads.size() == 1 && heads.get(0).getValue() == 0) {
+      return this.elements;
+    }
+    ListVS<Message> result = null;
+    List<ListVS<Message>> toMerge = new ArrayList<>();
+    for (GuardedValue<Integer> guardedHead : heads) {
+      ListVS<Message> shifted =
+          elements.restrict(guardedHead.getGuard()).removeFirst(guardedHead.getValue());
+      if (result == null) result = shifted;
+      else toMerge.add(shifted);
+    }
+    assert (result != null);
+    return result.merge(toMerge);
   }
 
   public void setEvents(ValueSummary events) {
     this.elements = (ListVS<Message>) events;
+    this.head = new PrimitiveVS<>(0);
     resetPeek();
+    clearCache();
+    onUpdate(!isEmpty());
   }
 
 
   @Override
   public String toString() {
-    return String.format("EventQueue{elements=%s}", elements);
+    return String.format("EventQueue{elements=%s}", getEvents());
   }
 }
@@ -1,10 +1,15 @@
 package psym.runtime.machine.events;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /** Represents a P event (Event Name) */
 public class Event implements Serializable {
+  // Dense ids of all event names seen in this run
+  private static final Map<String, Integer> eventIds = new HashMap<>();
+
   // Special event send to a machine on creation
   public static final Event createMachine = new Event("createMachine");
   // Special halt event
@@ -13,8 +18,34 @@ public class Event implements Serializable {
   // Name of the Event
   final String name;
 
+  // Dense id of the Event plus one, or 0 if not resolved yet since ids are not stable across runs.
+  // A single int field, so that threads reading a deserialized event see either 0 or the id.
+  private transient int idPlusOne;
+
   public Event(String name) {
     this.name = name;
+    this.idPlusOne = resolveId(name) + 1;
+  }
+
+  private static synchronized int resolveId(String name) {
+    Integer id = eventIds.get(name);
+    if (id == null) {
+      id = eventIds.size();
+      eventIds.put(name, id);
+    }
+    return id;
+  }
+
+  /**
+   * Get the dense id of the event, used to index per-state dispatch tables
+   *
+   * @return Id of the event
+   */
+  public int getId() {
+    if (idPlusOne == 0) {
+      idPlusOne = resolveId(name) + 1;
+    }
+    return idPlusOne - 1;
   }
 
   @Override
@@ -1,18 +1,164 @@
 package psym.runtime.machine.events;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import psym.runtime.machine.eventhandlers.DeferEventHandler;
 import psym.runtime.machine.eventhandlers.EventHandler;
+import psym.runtime.machine.eventhandlers.IgnoreEventHandler;
 
+/**
+ * Event handlers of a state. States are static fields of the generated program and their handlers
+ * only depend on the model, so there is one object per state for the whole process, shared by all
+ * contexts and threads, rather than one per {@link psym.runtime.PSymContext}.
+ *
+ * <p>Handlers are registered under a lock, which also rebuilds the dispatch tables. The tables are
+ * immutable once built and are published through a volatile field, so lookups take no lock.
+ */
 public class StateEvents implements Serializable {
+    /** Event handlers of all states, by state key */
+    private static final Map<String, StateEvents> allStateEvents = new ConcurrentHashMap<>();
+
     public final Map<Event, EventHandler> eventHandlers;
     public final Set<Event> ignored;
     public final Set<Event> deferred;
 
+    /**
+     * Dispatch tables indexed by event id. Event ids are only stable within a run, so the tables
+     * are rebuilt from the maps above after deserialization.
+     */
+    private transient volatile Tables tables = Tables.EMPTY;
+
     public StateEvents() {
         this.eventHandlers = new HashMap<>();
         this.ignored = new HashSet<>();
         this.deferred = new HashSet<>();
     }
 
+    /**
+     * Get the event handlers of a state
+     *
+     * @param stateKey Key of the state
+     * @return Event handlers of the state
+     */
+    public static StateEvents get(String stateKey) {
+        return allStateEvents.computeIfAbsent(stateKey, k -> new StateEvents());
+    }
+
+    /**
+     * Get a copy of the event handlers of all states, to be serialized when saving a run
+     *
+     * @return Map from state key to event handlers
+     */
+    public static Map<String, StateEvents> getAll() {
+        return new HashMap<>(allStateEvents);
+    }
+
+    /**
+     * Register the event handlers of states read back when resuming a run
+     *
+     * @param stateEvents Map from state key to event handlers
+     */
+    public static void addAll(Map<String, StateEvents> stateEvents) {
+        for (Map.Entry<String, StateEvents> entry : stateEvents.entrySet()) {
+            StateEvents events = get(entry.getKey());
+            for (EventHandler handler : entry.getValue().getHandlers()) {
+                events.addHandler(handler);
+            }
+        }
+    }
+
+    private synchronized List<EventHandler> getHandlers() {
+        return new ArrayList<>(eventHandlers.values());
+    }
+
+    /**
+     * Register an event handler. A handler of the same class as the one already registered for
+     * the event is the same handler created by another machine of the type, and is skipped.
+     *
+     * @param handler Event handler to add
+     */
+    public synchronized void addHandler(EventHandler handler) {
+        EventHandler existing = eventHandlers.get(handler.event);
+        if (existing != null && existing.getClass() == handler.getClass()) {
+            return;
+        }
+        eventHandlers.put(handler.event, handler);
+        ignored.remove(handler.event);
+        deferred.remove(handler.event);
+        if (handler instanceof IgnoreEventHandler) {
+            ignored.add(handler.event);
+        } else if (handler instanceof DeferEventHandler) {
+            deferred.add(handler.event);
+        }
+        tables = new Tables(eventHandlers, ignored, deferred);
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        synchronized (this) {
+            tables = new Tables(eventHandlers, ignored, deferred);
+        }
+    }
+
+    /**
+     * Get the handler for an event
+     *
+     * @param event Event to look up
+     * @return Event handler, or null if the state has no handler for the event
+     */
+    public EventHandler getHandler(Event event) {
+        EventHandler[] handlers = tables.handlersById;
+        int id = event.getId();
+        return id < handlers.length ? handlers[id] : null;
+    }
+
+    public boolean hasHandler(Event event) {
+        return getHandler(event) != null;
+    }
+
+    public boolean isIgnored(Event event) {
+        return tables.ignoredIds.get(event.getId());
+    }
+
+    public boolean isDeferred(Event event) {
+        return tables.deferredIds.get(event.getId());
+    }
+
+    /** Immutable dispatch tables, never modified after construction */
+    private static class Tables {
+        private static final Tables EMPTY =
+            new Tables(Collections.emptyMap(), Collections.emptySet(), Collections.emptySet());
+
+        private final EventHandler[] handlersById;
+        private final BitSet ignoredIds;
+        private final BitSet deferredIds;
+
+        Tables(Map<Event, EventHandler> eventHandlers, Set<Event> ignored, Set<Event> deferred) {
+            int maxId = -1;
+            for (Event event : eventHandlers.keySet()) {
+                maxId = Math.max(maxId, event.getId());
+            }
+            handlersById = new EventHandler[maxId + 1];
+            for (Map.Entry<Event, EventHandler> entry : eventHandlers.entrySet()) {
+                handlersById[entry.getKey().getId()] = entry.getValue();
+            }
+            ignoredIds = new BitSet();
+            for (Event event : ignored) {
+                ignoredIds.set(event.getId());
+            }
+            deferredIds = new BitSet();
+            for (Event event : deferred) {
+                deferredIds.set(event.getId());
+            }
+        }
+    }
+
 }
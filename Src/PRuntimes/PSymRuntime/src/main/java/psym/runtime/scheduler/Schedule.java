@@ -24,6 +24,8 @@ public class Schedule implements Serializable {
   private Map<Class<? extends Machine>, ListVS<PrimitiveVS<Machine>>> createdMachines =
       new HashMap<>();
   private Set<Machine> machines = new HashSet<>();
+  /** Instance ids of released machines by type and position among the created machines */
+  private Map<Class<? extends Machine>, Map<Integer, Integer>> releasedIds = new HashMap<>();
   private Guard pc = Guard.constTrue();
 
   public Schedule(SymmetryTracker symmetryTracker) {
@@ -301,6 +303,75 @@ public class Schedule implements Serializable {
     machines.add(m);
   }
 
+  /**
+   * Collect the machines referenced by the scheduling choices and stored states of a schedule
+   *
+   * @param choices Choices of the schedule
+   * @param result Set to add the referenced machines to
+   */
+  public static void collectMachines(List<Choice> choices, Set<Machine> result) {
+    for (Choice choice : choices) {
+      result.addAll(choice.getRepeatSchedulingChoice().getValues());
+      for (PrimitiveVS<Machine> backtrack : choice.getBacktrackSchedulingChoice()) {
+        result.addAll(backtrack.getValues());
+      }
+      if (choice.getChoiceState() != null) {
+        result.addAll(choice.getChoiceState().getMachineStates().keySet());
+      }
+    }
+  }
+
+  /**
+   * Release created machines that are not live. For each machine type, only the longest suffix of
+   * created machines with no live machine is dropped, so that machines are still allocated by
+   * their per-type count. The instance ids of the released machines are kept by their position,
+   * for the machines allocated again in their place.
+   *
+   * @param live Set of machines that must be kept
+   * @return Set of released machines
+   */
+  public Set<Machine> releaseMachines(Set<Machine> live) {
+    Set<Machine> released = new HashSet<>();
+    for (Map.Entry<Class<? extends Machine>, ListVS<PrimitiveVS<Machine>>> entry :
+        createdMachines.entrySet()) {
+      ListVS<PrimitiveVS<Machine>> created = entry.getValue();
+      List<PrimitiveVS<Machine>> items = created.getItems();
+      int keep = items.size();
+      while (keep > 0 && Collections.disjoint(items.get(keep - 1).getValues(), live)) {
+        keep--;
+      }
+      if (keep == items.size()) {
+        continue;
+      }
+      Map<Integer, Integer> ids = releasedIds.computeIfAbsent(entry.getKey(), k -> new HashMap<>());
+      for (int i = keep; i < items.size(); i++) {
+        for (Machine machine : items.get(i).getValues()) {
+          released.add(machine);
+          ids.putIfAbsent(i, machine.getInstanceId());
+        }
+      }
+      Map<Integer, Guard> newSize = new HashMap<>();
+      for (GuardedValue<Integer> size : created.size().getGuardedValues()) {
+        newSize.merge(Math.min(size.getValue(), keep), size.getGuard(), Guard::or);
+      }
+      entry.setValue(new ListVS<>(new PrimitiveVS<>(newSize), items.subList(0, keep)));
+    }
+    machines.removeAll(released);
+    return released;
+  }
+
+  /**
+   * Take the instance id of a released machine, to give it to the machine allocated in its place
+   *
+   * @param type Type of the machine
+   * @param position Position of the machine among the created machines of its type
+   * @return Instance id, or null if no machine was released at the position
+   */
+  public Integer takeReleasedId(Class<? extends Machine> type, int position) {
+    Map<Integer, Integer> ids = releasedIds.get(type);
+    return (ids == null) ? null : ids.remove(position);
+  }
+
   public boolean hasMachine(
       Class<? extends Machine> type, PrimitiveVS<Integer> idx, Guard otherPc) {
     if (!createdMachines.containsKey(type)) return false;
@@ -310,6 +381,23 @@ public class Schedule implements Serializable {
     return !machines.restrict(pc).restrict(otherPc).getUniverse().isFalse();
   }
 
+  /**
+   * Get the position of a machine among the created machines of its type
+   *
+   * @param m Machine
+   * @return Position of the machine, or -1 if the machine was not created in this schedule
+   */
+  public int getMachineIndex(Machine m) {
+    if (!createdMachines.containsKey(m.getClass())) return -1;
+    List<PrimitiveVS<Machine>> items = createdMachines.get(m.getClass()).getItems();
+    for (int i = 0; i < items.size(); i++) {
+      if (items.get(i).getValues().contains(m)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   public PrimitiveVS<Machine> getMachine(Class<? extends Machine> type, PrimitiveVS<Integer> idx) {
     PrimitiveVS<Machine> machines = createdMachines.get(type).get(idx);
     return machines.restrict(pc);
@@ -17,8 +17,10 @@ import psym.runtime.scheduler.search.symmetry.SymmetryTracker;
 import psym.runtime.statistics.SearchStats;
 import psym.utils.Assert;
 import psym.utils.exception.BugFoundException;
+import psym.utils.monitor.events.PerformEffectEvent;
 import psym.utils.random.NondetUtil;
 import psym.valuesummary.*;
+import psym.valuesummary.solvers.SolverEngine;
 
 public abstract class Scheduler implements SchedulerInterface {
   @Getter
@@ -55,6 +57,15 @@ public abstract class Scheduler implements SchedulerInterface {
   private Machine start;
   /** The map from events to listening monitors */
   private Map<Event, List<Monitor>> listeners;
+  /**
+   * Indices into monitors of the monitors listening to each event, indexed by event id. Event ids
+   * are not stable across runs, so this is rebuilt from listeners when needed.
+   */
+  private transient int[][] listenerIndicesByEventId = null;
+  /** Positions in machines of the machines whose event buffer may be non-empty */
+  private transient BitSet machinesWithEvents = null;
+  /** Position of each machine in machines */
+  private transient Map<Machine, Integer> machinePositions = null;
 
   /**
    * Make a new Scheduler
@@ -298,12 +309,13 @@ public abstract class Scheduler implements SchedulerInterface {
   public void initializeSearch() {
     assert (getDepth() == 0);
 
-    if (PSymGlobal.getConfiguration().isChoiceOrchestrationLearning()) {
+    if (PSymGlobal.getConfiguration().isChoiceOrchestrationStateHashing()) {
       PSymGlobal.getChoiceLearningStats()
           .setProgramStateHash(this, PSymGlobal.getConfiguration().getChoiceLearningStateMode(), null);
     }
     listeners = program.getListeners();
     monitors = new ArrayList<>(program.getMonitors());
+    listenerIndicesByEventId = null;
     for (Machine m : program.getMonitors()) {
       startWith(m);
     }
@@ -363,7 +375,12 @@ public abstract class Scheduler implements SchedulerInterface {
       Guard pc,
       PrimitiveVS<Integer> guardedCount,
       Function<Integer, ? extends Machine> constructor) {
-    Machine newMachine = constructor.apply(IntegerVS.maxValue(guardedCount));
+    int position = IntegerVS.maxValue(guardedCount);
+    Machine newMachine = constructor.apply(position);
+    Integer releasedId = schedule.takeReleasedId(newMachine.getClass(), position);
+    if (releasedId != null) {
+      newMachine.reuseInstanceId(releasedId);
+    }
 
     if (!machines.contains(newMachine)) {
       machines.add(newMachine);
@@ -377,33 +394,163 @@ public abstract class Scheduler implements SchedulerInterface {
     return newMachine;
   }
 
+  private int getMachinePosition(Machine machine) {
+    if (machinePositions == null) {
+      machinePositions = new HashMap<>();
+    }
+    Integer position = machinePositions.get(machine);
+    if (position == null) {
+      position = machines.indexOf(machine);
+      if (position < 0) {
+        return position;
+      }
+      machinePositions.put(machine, position);
+    }
+    return position;
+  }
+
+  /**
+   * Record whether the event buffer of a machine may be non-empty
+   *
+   * @param machine Machine whose event buffer changed
+   * @param hasEvents Whether the event buffer may be non-empty
+   */
+  public void updateMachineWithEvents(Machine machine, boolean hasEvents) {
+    if (machinesWithEvents == null) {
+      return;
+    }
+    int position = getMachinePosition(machine);
+    if (position < 0) {
+      // machine is not tracked yet, rebuild the index on next use
+      machinesWithEvents = null;
+    } else {
+      machinesWithEvents.set(position, hasEvents);
+    }
+  }
+
+  /**
+   * Release machines that are not live from the scheduler, the schedule and the static machine
+   * registry. A machine allocated again at the position of a released one of its type gets the
+   * same instance id, so machine names and state hashes stay the same across iterations.
+   *
+   * @param live Set of machines reachable from a schedule that may still be explored
+   */
+  protected void releaseMachines(Set<Machine> live) {
+    live.addAll(currentMachines);
+    live.addAll(program.getMonitors());
+    if (start != null) {
+      live.add(start);
+    }
+    Set<Machine> released = schedule.releaseMachines(live);
+    if (released.isEmpty()) {
+      return;
+    }
+    machines.removeAll(released);
+    machinePositions = null;
+    machinesWithEvents = null;
+    for (Machine machine : released) {
+      Machine.releaseMachine(machine);
+    }
+  }
+
+  /**
+   * Get the machines with a non-empty event buffer, in the order of machines
+   *
+   * @return List of machines with a non-empty event buffer
+   */
+  protected List<Machine> getMachinesWithEvents() {
+    if (machinesWithEvents == null) {
+      machinesWithEvents = new BitSet();
+      for (int i = 0; i < machines.size(); i++) {
+        if (!machines.get(i).getEventBuffer().isEmpty()) {
+          machinesWithEvents.set(i);
+        }
+      }
+    }
+    List<Machine> result = new ArrayList<>();
+    for (int i = machinesWithEvents.nextSetBit(0);
+        i >= 0;
+        i = machinesWithEvents.nextSetBit(i + 1)) {
+      Machine machine = machines.get(i);
+      if (machine.getEventBuffer().isEmpty()) {
+        machinesWithEvents.clear(i);
+      } else {
+        result.add(machine);
+      }
+    }
+    return result;
+  }
+
+  /** Build the table from event ids to the indices of listening monitors */
+  private void buildListenerTable() {
+    int maxId = -1;
+    for (Event e : listeners.keySet()) {
+      maxId = Math.max(maxId, e.getId());
+    }
+    int[][] table = new int[maxId + 1][];
+    for (Map.Entry<Event, List<Monitor>> entry : listeners.entrySet()) {
+      List<Integer> indices = new ArrayList<>();
+      for (int i = 0; i < monitors.size(); i++) {
+        if (entry.getValue().contains(monitors.get(i))) {
+          indices.add(i);
+        }
+      }
+      table[entry.getKey().getId()] = indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+    listenerIndicesByEventId = table;
+  }
+
   public void runMonitors(Message event) {
-    Map<Monitor, Guard> monitorConstraints = new HashMap<>();
-    for (Monitor m : monitors) {
-      monitorConstraints.put(m, Guard.constFalse());
+    if (listenerIndicesByEventId == null) {
+      buildListenerTable();
     }
+    // constraint for each monitor, allocated only once some monitor listens to the event
+    Guard[] monitorConstraints = null;
     for (GuardedValue<Event> e : event.getEvent().getGuardedValues()) {
-      List<Monitor> listenersForEvent = listeners.get(e.getValue());
-      if (listenersForEvent != null) {
-        for (Monitor listener : listenersForEvent) {
-          monitorConstraints.computeIfPresent(listener, (k, v) -> v.or(e.getGuard()));
-        }
+      if (e.getValue() == null) {
+        continue;
+      }
+      int id = e.getValue().getId();
+      int[] listenersForEvent =
+          id < listenerIndicesByEventId.length ? listenerIndicesByEventId[id] : null;
+      if (listenersForEvent == null || listenersForEvent.length == 0) {
+        continue;
+      }
+      if (monitorConstraints == null) {
+        monitorConstraints = new Guard[monitors.size()];
+      }
+      for (int i : listenersForEvent) {
+        monitorConstraints[i] =
+            monitorConstraints[i] == null ? e.getGuard() : monitorConstraints[i].or(e.getGuard());
       }
     }
-    for (Monitor m : monitors) {
-      Guard constraint = monitorConstraints.get(m);
-      if (!constraint.isFalse()) {
-        m.processEventToCompletion(constraint, event.restrict(constraint));
+    if (monitorConstraints == null) {
+      return;
+    }
+    for (int i = 0; i < monitorConstraints.length; i++) {
+      Guard constraint = monitorConstraints[i];
+      if (constraint != null && !constraint.isFalse()) {
+        monitors.get(i).processEventToCompletion(constraint, event.restrict(constraint));
       }
     }
   }
 
   public void performEffect(Message event) {
+    PerformEffectEvent effectEvent = new PerformEffectEvent();
+    int guardCount = effectEvent.isEnabled() ? SolverEngine.getGuardCount() : 0;
+    effectEvent.begin();
     for (GuardedValue<Machine> target : event.getTarget().getGuardedValues()) {
       target
           .getValue()
           .processEventToCompletion(target.getGuard(), event.restrict(target.getGuard()));
     }
+    if (effectEvent.shouldCommit()) {
+      effectEvent.depth = getDepth();
+      effectEvent.target = event.getTarget().getValues().toString();
+      effectEvent.event = event.getEvent().getValues().toString();
+      effectEvent.guardCount = SolverEngine.getGuardCount() - guardCount;
+      effectEvent.commit();
+    }
   }
 
   public void announce(PrimitiveVS<Event> names, UnionVS payload) {
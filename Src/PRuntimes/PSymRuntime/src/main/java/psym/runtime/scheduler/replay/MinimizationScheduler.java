@@ -0,0 +1,318 @@
+package psym.runtime.scheduler.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import lombok.Getter;
+import psym.runtime.PSymGlobal;
+import psym.runtime.Program;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.events.Message;
+import psym.runtime.scheduler.Scheduler;
+import psym.runtime.statistics.SolverStats;
+import psym.utils.Assert;
+import psym.valuesummary.*;
+
+/**
+ * Scheduler of the candidate replays of counterexample minimization. Replays a list of choices
+ * leniently: a choice that does not apply to the current step is replaced by the default choice,
+ * and a choice of another kind is left for a later step. Creates and sync events go first, as in
+ * the search. The replay ends when the choices run out.
+ *
+ * <p>The choices actually made are recorded both as a list of choices, to be minimized further,
+ * and in the schedule, to be replayed by a {@link ReplayScheduler}.
+ */
+class MinimizationScheduler extends Scheduler {
+  /** Choices to replay */
+  private final List<ReplayChoice> choices;
+  /** Position of the next choice to replay */
+  private int next = 0;
+  /** Whether to check for liveness bugs at the end of the replay */
+  private final boolean checkLivenessAtEnd;
+
+  /** Choices made */
+  @Getter private final List<ReplayChoice> recorded = new ArrayList<>();
+
+  MinimizationScheduler(Program p, List<ReplayChoice> choices, boolean checkLivenessAtEnd) {
+    super(p);
+    this.choices = choices;
+    this.checkLivenessAtEnd = checkLivenessAtEnd;
+  }
+
+  @Override
+  public void doSearch() throws TimeoutException {
+    initializeSearch();
+    performSearch();
+  }
+
+  @Override
+  public void resumeSearch() throws InterruptedException {
+    throw new InterruptedException("Not implemented");
+  }
+
+  @Override
+  protected void performSearch() throws TimeoutException {
+    while (!isDone()) {
+      step();
+    }
+    if (checkLivenessAtEnd) {
+      checkLiveness(Guard.constTrue());
+    }
+    Assert.prop(
+        !PSymGlobal.getConfiguration().isFailOnMaxStepBound()
+            || (getDepth() < PSymGlobal.getConfiguration().getMaxStepBound()),
+        "Scheduling steps bound of "
+            + PSymGlobal.getConfiguration().getMaxStepBound()
+            + " reached.",
+        Guard.constTrue());
+  }
+
+  @Override
+  protected void step() throws TimeoutException {
+    allMachinesHalted = Guard.constFalse();
+
+    removeHalted();
+
+    PrimitiveVS<Machine> schedulingChoice = getNextSchedulingChoice();
+    if (schedulingChoice.isEmptyVS()) {
+      done = Guard.constTrue();
+      return;
+    }
+
+    SolverStats.checkResourceLimits();
+
+    Machine machine = schedulingChoice.getGuardedValues().get(0).getValue();
+    Message effect = rmBuffer(machine, Guard.constTrue());
+
+    stickyStep = false;
+    if (!effect.isCreateMachine().getGuardFor(true).isFalse()
+        || !effect.isSyncEvent().getGuardFor(true).isFalse()) {
+      stickyStep = true;
+    }
+    if (!stickyStep) {
+      depth++;
+    }
+
+    performEffect(effect);
+  }
+
+  @Override
+  public PrimitiveVS<Machine> allocateMachine(
+      Guard pc,
+      Class<? extends Machine> machineType,
+      Function<Integer, ? extends Machine> constructor) {
+    if (!machineCounters.containsKey(machineType)) {
+      machineCounters.put(machineType, new PrimitiveVS<>(0));
+    }
+    PrimitiveVS<Integer> guardedCount = machineCounters.get(machineType).restrict(pc);
+
+    Machine newMachine = setupNewMachine(pc, guardedCount, constructor);
+    PrimitiveVS<Machine> allocated = new PrimitiveVS<>(newMachine).restrict(pc);
+
+    guardedCount = IntegerVS.add(guardedCount, 1);
+    machineCounters.put(
+        machineType, machineCounters.get(machineType).updateUnderGuard(pc, guardedCount));
+    return allocated;
+  }
+
+  /**
+   * Take the next choice if it is of the given kind
+   *
+   * @param kind Kind of choice
+   * @return Next choice, or null if it is of another kind or there are no choices left
+   */
+  private ReplayChoice take(ReplayChoice.Kind kind) {
+    if (next >= choices.size() || choices.get(next).getKind() != kind) {
+      return null;
+    }
+    return choices.get(next++);
+  }
+
+  private Machine getMachine(Class<? extends Machine> type, int index) {
+    PrimitiveVS<Integer> idx = new PrimitiveVS<>(index);
+    if (index < 0 || !schedule.hasMachine(type, idx, Guard.constTrue())) {
+      return null;
+    }
+    return schedule.getMachine(type, idx).getGuardedValues().get(0).getValue();
+  }
+
+  @Override
+  public PrimitiveVS<Machine> getNextSchedulingChoice() {
+    List<Machine> candidates = getMachinesWithEvents();
+    Machine chosen = null;
+    for (Machine machine : candidates) {
+      if (BooleanVS.isEverTrue(machine.getEventBuffer().hasCreateMachineUnderGuard())
+          || BooleanVS.isEverTrue(machine.getEventBuffer().hasSyncEventUnderGuard())) {
+        chosen = machine;
+        break;
+      }
+    }
+    if (chosen != null) {
+      // the step is forced, so only take a choice that agrees with it
+      if (next < choices.size()
+          && choices.get(next).getKind() == ReplayChoice.Kind.SCHEDULE
+          && getMachine(choices.get(next).getMachineType(), choices.get(next).getValue())
+              == chosen) {
+        next++;
+      }
+    } else {
+      List<Machine> runnable = new ArrayList<>();
+      for (Machine machine : candidates) {
+        if (BooleanVS.isEverTrue(
+            machine.getEventBuffer().satisfiesPredUnderGuard(Message::canRun))) {
+          runnable.add(machine);
+        }
+      }
+      if (runnable.isEmpty()) {
+        allMachinesHalted = Guard.constTrue();
+        return new PrimitiveVS<>();
+      }
+      if (next >= choices.size()) {
+        return new PrimitiveVS<>();
+      }
+      chosen = runnable.get(0);
+      ReplayChoice choice = take(ReplayChoice.Kind.SCHEDULE);
+      if (choice != null) {
+        Machine machine = getMachine(choice.getMachineType(), choice.getValue());
+        if (runnable.contains(machine)) {
+          chosen = machine;
+        }
+      }
+    }
+
+    PrimitiveVS<Machine> res = new PrimitiveVS<>(chosen);
+    recorded.add(ReplayChoice.ofMachine(chosen.getClass(), schedule.getMachineIndex(chosen)));
+    schedule.addRepeatSchedulingChoice(res, choiceDepth);
+    choiceDepth++;
+    return res;
+  }
+
+  @Override
+  public PrimitiveVS<Boolean> getNextBoolean(Guard pc) {
+    ReplayChoice choice = take(ReplayChoice.Kind.BOOLEAN);
+    boolean value = (choice != null) && (choice.getValue() != 0);
+    PrimitiveVS<Boolean> res = new PrimitiveVS<>(value).restrict(pc);
+    recorded.add(ReplayChoice.ofBoolean(value));
+    schedule.addRepeatBool(res, choiceDepth);
+    choiceDepth++;
+    return res;
+  }
+
+  @Override
+  public PrimitiveVS<Integer> getNextInteger(PrimitiveVS<Integer> bound, Guard pc) {
+    int numChoices = getNextIntegerChoices(bound, pc).size();
+    ReplayChoice choice = take(ReplayChoice.Kind.INTEGER);
+    int value = 0;
+    if (choice != null && choice.getValue() >= 0 && choice.getValue() < numChoices) {
+      value = choice.getValue();
+    }
+    PrimitiveVS<Integer> res = new PrimitiveVS<>(value).restrict(pc);
+    recorded.add(ReplayChoice.ofInteger(value));
+    schedule.addRepeatInt(res, choiceDepth);
+    choiceDepth++;
+    return res;
+  }
+
+  @Override
+  public ValueSummary getNextPrimitiveList(ListVS<? extends ValueSummary> candidates, Guard pc) {
+    List<ValueSummary> elements = getNextElementChoices(candidates, pc);
+    ReplayChoice choice = take(ReplayChoice.Kind.ELEMENT);
+    int index = 0;
+    if (choice != null && choice.getElement() != null) {
+      for (int i = 0; i < elements.size(); i++) {
+        if (choice.getElement().equals(getElementString(elements.get(i)))) {
+          index = i;
+          break;
+        }
+      }
+    }
+
+    PrimitiveVS<ValueSummary> res;
+    String element = null;
+    if (elements.isEmpty()) {
+      res = new PrimitiveVS<>();
+    } else {
+      ValueSummary chosen = elements.get(index);
+      res = new PrimitiveVS<ValueSummary>(chosen).restrict(chosen.getUniverse());
+      element = getElementString(chosen);
+    }
+    recorded.add(ReplayChoice.ofElement(index, element));
+    schedule.addRepeatElement(res, choiceDepth);
+    choiceDepth++;
+    return getNextElementFlattener(res);
+  }
+
+  /**
+   * Get the string of a concrete element, as written to schedule files
+   *
+   * @param element Element with a single value
+   * @return String of the element value
+   */
+  static String getElementString(ValueSummary element) {
+    List<GuardedValue<?>> gv = ValueSummary.getGuardedValues(element);
+    if (gv.size() != 1) {
+      return null;
+    }
+    return String.valueOf(gv.get(0).getValue());
+  }
+
+  /** Choice of a schedule, independent of the run in which it was made */
+  static class ReplayChoice {
+    enum Kind {
+      SCHEDULE,
+      BOOLEAN,
+      INTEGER,
+      ELEMENT
+    }
+
+    @Getter private final Kind kind;
+    /** Type of the machine scheduled */
+    @Getter private final Class<? extends Machine> machineType;
+    /**
+     * Position of the machine scheduled among the machines of its type, boolean value as 0 or 1,
+     * integer value, or position of the element chosen
+     */
+    @Getter private final int value;
+    /** String of the element chosen */
+    @Getter private final String element;
+
+    private ReplayChoice(
+        Kind kind, Class<? extends Machine> machineType, int value, String element) {
+      this.kind = kind;
+      this.machineType = machineType;
+      this.value = value;
+      this.element = element;
+    }
+
+    static ReplayChoice ofMachine(Class<? extends Machine> machineType, int index) {
+      return new ReplayChoice(Kind.SCHEDULE, machineType, index, null);
+    }
+
+    static ReplayChoice ofBoolean(boolean value) {
+      return new ReplayChoice(Kind.BOOLEAN, null, value ? 1 : 0, null);
+    }
+
+    static ReplayChoice ofInteger(int value) {
+      return new ReplayChoice(Kind.INTEGER, null, value, null);
+    }
+
+    static ReplayChoice ofElement(int index, String element) {
+      return new ReplayChoice(Kind.ELEMENT, null, index, element);
+    }
+
+    /** Whether this is a data choice other than the default one */
+    boolean isNonDefaultData() {
+      return kind != Kind.SCHEDULE && value != 0;
+    }
+
+    /**
+     * Get the default choice of the same kind: false, 0 or the first element
+     *
+     * @return Default choice
+     */
+    ReplayChoice getDefault() {
+      return new ReplayChoice(kind, machineType, 0, null);
+    }
+  }
+}
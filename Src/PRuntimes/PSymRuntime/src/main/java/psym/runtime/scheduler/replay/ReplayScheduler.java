@@ -1,29 +1,39 @@
 package psym.runtime.scheduler.replay;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import lombok.Getter;
-import org.apache.commons.lang3.NotImplementedException;
 import psym.runtime.PSymGlobal;
 import psym.runtime.Program;
 import psym.runtime.logger.*;
+import psym.runtime.logger.ScheduleWriter.Delivery;
 import psym.runtime.machine.Machine;
+import psym.runtime.machine.State;
+import psym.runtime.machine.events.Event;
 import psym.runtime.machine.events.Message;
 import psym.runtime.scheduler.Schedule;
 import psym.runtime.scheduler.Scheduler;
+import psym.runtime.scheduler.replay.ScheduleReader.Step;
+import psym.runtime.scheduler.replay.ScheduleReader.StepType;
 import psym.runtime.scheduler.search.symmetry.SymmetryMode;
 import psym.utils.Assert;
 import psym.utils.exception.BugFoundException;
 import psym.utils.exception.LivenessException;
+import psym.utils.monitor.events.SchedulerStepEvent;
 import psym.valuesummary.*;
+import psym.valuesummary.solvers.SolverEngine;
 
 public class ReplayScheduler extends Scheduler {
   @Getter
   /** Path constraint */
   private final Guard pathConstraint;
 
+  /** Schedule file to replay choices from, or null when replaying a schedule of this run */
+  private final ScheduleReader reader;
+
   public ReplayScheduler(
       Program p,
       Schedule schedule,
@@ -36,26 +46,52 @@ public class ReplayScheduler extends Scheduler {
     }
     PSymGlobal.getConfiguration().setToReplay();
     pathConstraint = pc;
+    reader = null;
   }
 
   /**
-   * Read scheduler state from a file
+   * Make a scheduler that replays a schedule file, starting with no search state. Choices are read
+   * from the file as the replay makes them.
    *
-   * @param readFromFile Name of the input file containing the scheduler state
+   * @param p Program
+   * @param reader Schedule file
+   */
+  public ReplayScheduler(Program p, ScheduleReader reader) {
+    super(p);
+    TraceLogger.enable();
+    PSymGlobal.getConfiguration().setToReplay();
+    pathConstraint = Guard.constTrue();
+    this.reader = reader;
+  }
+
+  /**
+   * Read a schedule file written by {@link ScheduleWriter}. The test case and the cycle named in the
+   * header of the file are applied to the configuration, unless a test case is already given.
+   *
+   * @param p Program
+   * @param readFromFile Name of the schedule file
    * @return A scheduler object
    * @throws Exception Throw error if reading fails
    */
-  public static ReplayScheduler readFromFile(String readFromFile) throws Exception {
-    ReplayScheduler result;
+  public static ReplayScheduler readFromFile(Program p, String readFromFile) throws Exception {
+    ScheduleReader reader;
     try {
       PSymLogger.info(".. Reading schedule from file " + readFromFile);
-      throw new NotImplementedException("Replaying a schedule is currently unsupported.");
-//      PSymLogger.info(".. Successfully read.");
-    } catch (NotImplementedException e) {
-      e.printStackTrace();
+      reader = new ScheduleReader(readFromFile);
+    } catch (IOException e) {
       throw new RuntimeException(".. Failed to read schedule from file " + readFromFile, e);
     }
-//    return result;
+    if (reader.getTestMethod() != null
+        && PSymGlobal.getConfiguration()
+            .getTestDriver()
+            .equals(PSymGlobal.getConfiguration().getTestDriverDefault())) {
+      PSymGlobal.getConfiguration().setTestDriver(reader.getTestMethod());
+    }
+    if (reader.getCycleMessage() != null) {
+      Assert.setFailureType("cycle");
+      Assert.setFailureMsg(reader.getCycleMessage());
+    }
+    return new ReplayScheduler(p, reader);
   }
 
   @Override
@@ -63,8 +99,14 @@ public class ReplayScheduler extends Scheduler {
     TraceLogger.logStartReplayCex();
     ScheduleWriter.logHeader();
     TextWriter.logHeader();
-    initializeSearch();
-    performSearch();
+    try {
+      initializeSearch();
+      performSearch();
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+    }
   }
 
   @Override
@@ -79,12 +121,21 @@ public class ReplayScheduler extends Scheduler {
           getDepth() < PSymGlobal.getConfiguration().getMaxStepBound(),
           "Maximum allowed depth " + PSymGlobal.getConfiguration().getMaxStepBound() + " exceeded",
           schedule.getLengthCond(schedule.size()));
+      SchedulerStepEvent stepEvent = new SchedulerStepEvent();
+      stepEvent.begin();
       step();
+      if (stepEvent.shouldCommit()) {
+        stepEvent.depth = getDepth();
+        stepEvent.choiceDepth = getChoiceDepth();
+        stepEvent.guardCount = SolverEngine.getGuardCount();
+        stepEvent.commit();
+      }
       if (Assert.getFailureType().equals("liveness")) {
         checkLiveness(allMachinesHalted);
       }
     }
-    if (Assert.getFailureType().equals("liveness")) {
+    if (Assert.getFailureType().equals("liveness") || (reader != null && reader.peek() == null)) {
+      // a schedule file that ends without a safety bug ends in a liveness bug
       checkLiveness(Guard.constTrue());
     }
     if (Assert.getFailureType().equals("cycle")) {
@@ -138,6 +189,7 @@ public class ReplayScheduler extends Scheduler {
 
     TraceLogger.schedule(depth, effect, machine);
 
+    logDelivery(machine, effect);
     performEffect(effect);
   }
 
@@ -152,6 +204,15 @@ public class ReplayScheduler extends Scheduler {
     PrimitiveVS<Integer> guardedCount = machineCounters.get(machineType).restrict(pc);
 
     PrimitiveVS<Machine> allocated;
+    if (reader != null) {
+      // no machines from a search to reuse
+      Machine newMachine = setupNewMachine(pc, guardedCount, constructor);
+      allocated = new PrimitiveVS<>(newMachine).restrict(pc);
+      guardedCount = IntegerVS.add(guardedCount, 1);
+      machineCounters.put(
+          machineType, machineCounters.get(machineType).updateUnderGuard(pc, guardedCount));
+      return allocated;
+    }
     assert (schedule.hasMachine(machineType, guardedCount, pc));
     allocated = schedule.getMachine(machineType, guardedCount).restrict(pc);
     for (GuardedValue gv : allocated.getGuardedValues()) {
@@ -180,7 +241,13 @@ public class ReplayScheduler extends Scheduler {
 
   @Override
   public PrimitiveVS<Machine> getNextSchedulingChoice() {
-    PrimitiveVS<Machine> res = schedule.getRepeatSchedulingChoice(choiceDepth);
+    PrimitiveVS<Machine> res;
+    if (reader != null) {
+      res = readSchedulingChoice();
+      schedule.addRepeatSchedulingChoice(res, choiceDepth);
+    } else {
+      res = schedule.getRepeatSchedulingChoice(choiceDepth);
+    }
     if (res.isEmptyVS()) {
       allMachinesHalted = Guard.constTrue();
     }
@@ -188,9 +255,113 @@ public class ReplayScheduler extends Scheduler {
     return res;
   }
 
+  /**
+   * Pick the machine whose next event is the next delivery of the schedule file, matching the
+   * event, its target and its sender
+   *
+   * @return Machine to schedule, or an empty value summary at the end of the file
+   */
+  private PrimitiveVS<Machine> readSchedulingChoice() {
+    Step step = reader.peek();
+    if (step == null) {
+      return new PrimitiveVS<>();
+    }
+    if (step.getType() != StepType.RECEIVE) {
+      throw reader.divergence(step, "a delivery");
+    }
+    Machine target = getMachine(step.getTargetName(), step.getTargetOrdinal());
+    Machine sender =
+        step.getSenderName() == null
+            ? null
+            : getMachine(step.getSenderName(), step.getSenderOrdinal());
+    for (Machine machine : getMachinesWithEvents()) {
+      if (step.getSenderName() != null && machine != sender) {
+        continue;
+      }
+      Message head = machine.getEventBuffer().peek(machine.getEventBuffer().isEnabledUnderGuard());
+      // the target of a create is not started yet
+      if (!BooleanVS.isEverTrue(head.canRun())
+          && !BooleanVS.isEverTrue(head.isCreateMachine())) {
+        continue;
+      }
+      Machine headTarget = head.getTarget().getGuardedValues().get(0).getValue();
+      Event headEvent = head.getEvent().getGuardedValues().get(0).getValue();
+      if (headTarget == target && headEvent.toString().equals(step.getEvent())) {
+        return new PrimitiveVS<>(machine);
+      }
+    }
+    throw reader.divergence(step, "a delivery of one of the pending events");
+  }
+
+  /**
+   * Get how the target of an event takes it, following the order of {@link
+   * Machine#processEventToCompletion}: a receive takes any event not ignored, except the halt
+   * event
+   */
+  private Delivery getDelivery(Machine target, State state, Event event) {
+    if (state.isIgnored(event)) {
+      return Delivery.IGNORED;
+    }
+    if (event.equals(Event.haltEvent)) {
+      return Delivery.HANDLED;
+    }
+    if (!target.getBlockedOnReceiveGuard().isFalse()) {
+      return Delivery.RECEIVED;
+    }
+    return state.isDeferred(event) ? Delivery.DEFERRED : Delivery.HANDLED;
+  }
+
+  /**
+   * Log the delivery of an event to the schedule file, and check it against the schedule file when
+   * replaying one
+   *
+   * @param sender Machine whose send buffer the event comes from
+   * @param effect Event delivered
+   */
+  private void logDelivery(Machine sender, Message effect) {
+    Machine target = effect.getTarget().getGuardedValues().get(0).getValue();
+    Event event = effect.getEvent().getGuardedValues().get(0).getValue();
+    State state = target.getCurrentState().getGuardedValues().get(0).getValue();
+    Delivery delivery = getDelivery(target, state, event);
+    if (reader != null) {
+      Step step = reader.next(StepType.RECEIVE);
+      if (step.getDelivery() != delivery) {
+        throw reader.divergence(
+            step, String.format("receive %s at %s%s", event, target, delivery.getMarker()));
+      }
+    }
+    ScheduleWriter.logDequeue(sender, target, state, event, delivery);
+  }
+
+  /**
+   * Get a machine by name and the order of creation among the machines of that name
+   *
+   * @param name Name of the machine
+   * @param ordinal Position among the machines of that name
+   * @return Machine, or null if not created yet
+   */
+  private Machine getMachine(String name, int ordinal) {
+    for (Machine machine : machines) {
+      if (machine.getName().equals(name)) {
+        if (ordinal == 0) {
+          return machine;
+        }
+        ordinal--;
+      }
+    }
+    return null;
+  }
+
   @Override
   public PrimitiveVS<Boolean> getNextBoolean(Guard pc) {
-    PrimitiveVS<Boolean> res = schedule.getRepeatBool(choiceDepth);
+    PrimitiveVS<Boolean> res;
+    if (reader != null) {
+      Step step = reader.next(StepType.BOOLEAN);
+      res = new PrimitiveVS<>(step.getValue().equals("True")).restrict(pc);
+      schedule.addRepeatBool(res, choiceDepth);
+    } else {
+      res = schedule.getRepeatBool(choiceDepth);
+    }
     ScheduleWriter.logBoolean(res);
     choiceDepth++;
     return res;
@@ -205,7 +376,23 @@ public class ReplayScheduler extends Scheduler {
               String.format("choose expects a parameter with at most 10,000 choices, got %d choices instead.", maxBound),
               maxBoundGuard);
     }
-    PrimitiveVS<Integer> res = schedule.getRepeatInt(choiceDepth);
+    PrimitiveVS<Integer> res;
+    if (reader != null) {
+      Step step = reader.next(StepType.INTEGER);
+      int value;
+      try {
+        value = Integer.parseInt(step.getValue());
+      } catch (NumberFormatException e) {
+        throw reader.divergence(step, "an integer choice");
+      }
+      if (value < 0 || (value >= maxBound && value != 0)) {
+        throw reader.divergence(step, String.format("an integer choice below %d", maxBound));
+      }
+      res = new PrimitiveVS<>(value).restrict(pc);
+      schedule.addRepeatInt(res, choiceDepth);
+    } else {
+      res = schedule.getRepeatInt(choiceDepth);
+    }
     ScheduleWriter.logInteger(res);
     choiceDepth++;
     return res;
@@ -221,7 +408,14 @@ public class ReplayScheduler extends Scheduler {
               String.format("choose expects a parameter with at most 10,000 choices, got %d choices instead.", maxSize),
               maxSizeGuard);
     }
-    ValueSummary res = getNextElementFlattener(schedule.getRepeatElement(choiceDepth));
+    PrimitiveVS<ValueSummary> choice;
+    if (reader != null) {
+      choice = readElement(candidates, pc);
+      schedule.addRepeatElement(choice, choiceDepth);
+    } else {
+      choice = schedule.getRepeatElement(choiceDepth);
+    }
+    ValueSummary res = getNextElementFlattener(choice);
     List<GuardedValue<?>> gv = ValueSummary.getGuardedValues(res);
     assert (gv.size() == 1);
     ScheduleWriter.logElement(gv);
@@ -229,8 +423,24 @@ public class ReplayScheduler extends Scheduler {
     return res;
   }
 
+  /** Pick the element named by the next element choice of the schedule file */
+  private PrimitiveVS<ValueSummary> readElement(
+      ListVS<? extends ValueSummary> candidates, Guard pc) {
+    Step step = reader.next(StepType.ELEMENT);
+    for (ValueSummary candidate : getNextElementChoices(candidates, pc)) {
+      List<GuardedValue<?>> gv = ValueSummary.getGuardedValues(candidate);
+      if (gv.size() == 1 && String.valueOf(gv.get(0).getValue()).equals(step.getValue())) {
+        return new PrimitiveVS<ValueSummary>(candidate).restrict(candidate.getUniverse());
+      }
+    }
+    throw reader.divergence(step, "an element choice among " + candidates);
+  }
+
   @Override
   public boolean isDone() {
+    if (reader != null) {
+      return super.isDone();
+    }
     return super.isDone() || this.getChoiceDepth() >= schedule.size();
   }
 }
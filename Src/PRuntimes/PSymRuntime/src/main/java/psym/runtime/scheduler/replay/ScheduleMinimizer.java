@@ -0,0 +1,360 @@
+package psym.runtime.scheduler.replay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import psym.commandline.PSymConfiguration;
+import psym.runtime.PSymContext;
+import psym.runtime.PSymGlobal;
+import psym.runtime.Program;
+import psym.runtime.logger.PSymLogger;
+import psym.runtime.logger.TraceLogger;
+import psym.runtime.machine.Machine;
+import psym.runtime.scheduler.Schedule;
+import psym.runtime.scheduler.Scheduler;
+import psym.runtime.scheduler.replay.MinimizationScheduler.ReplayChoice;
+import psym.utils.exception.BugFoundException;
+import psym.utils.exception.LivenessException;
+import psym.utils.exception.MemoutException;
+import psym.valuesummary.GuardedValue;
+import psym.valuesummary.ValueSummary;
+import psym.valuesummary.solvers.SolverEngine;
+
+/**
+ * Minimizes the schedule of a counterexample by delta debugging. Candidate schedules drop chunks
+ * of choices, first halves and then ever smaller chunks, and then flip data choices back to their
+ * defaults. A candidate is kept if replaying it fails with the same bug, with machine ids left out
+ * of the comparison. Candidates of each round are replayed in parallel on a local pool, each with a
+ * new instance of the program in a context forked from the one that found the bug.
+ *
+ * <p>Replays are lenient, see {@link MinimizationScheduler}, so a kept candidate is replaced by the
+ * choices its replay actually made, which replay exactly.
+ */
+public class ScheduleMinimizer {
+  private static final Pattern MACHINE_ID = Pattern.compile("\\((\\d+)\\)");
+
+  /** Context that found the bug */
+  private final PSymContext mainContext;
+  /** Program that found the bug */
+  private final Program mainProgram;
+  /** Bug to reproduce, without machine ids */
+  private final String bugSignature;
+  /** Whether the bug is a liveness bug, checked at the end of a replay */
+  private final boolean liveness;
+  /** Max number of candidate replays */
+  private final int budget;
+  /** Check of candidates used instead of replaying them, or null to replay them */
+  private final Predicate<List<ReplayChoice>> fails;
+
+  @Getter private int numReplays = 0;
+  private boolean stopped = false;
+  /** Smallest failing candidate so far */
+  private Candidate best = null;
+
+  /**
+   * Constructor, to be called in the context that found the bug
+   *
+   * @param program Program that found the bug
+   * @param bug Bug found
+   */
+  public ScheduleMinimizer(Program program, BugFoundException bug) {
+    this.mainContext = PSymContext.getCurrent();
+    this.mainProgram = program;
+    this.bugSignature = getSignature(bug);
+    this.liveness = bug instanceof LivenessException;
+    this.budget = PSymGlobal.getConfiguration().getMinimizeBudget();
+    this.fails = null;
+  }
+
+  /**
+   * Constructor of a minimizer that checks candidates with a predicate instead of replaying them
+   *
+   * @param fails Whether a candidate list of choices fails
+   * @param budget Max number of candidates checked
+   */
+  ScheduleMinimizer(Predicate<List<ReplayChoice>> fails, int budget) {
+    this.mainContext = null;
+    this.mainProgram = null;
+    this.bugSignature = null;
+    this.liveness = false;
+    this.budget = budget;
+    this.fails = fails;
+  }
+
+  private static String getSignature(BugFoundException bug) {
+    String message = MACHINE_ID.matcher(String.valueOf(bug.getMessage())).replaceAll("(_)");
+    return bug.getClass().getName() + ": " + message;
+  }
+
+  /**
+   * Minimize the schedule of the counterexample
+   *
+   * @param schedule Single schedule of the counterexample
+   * @return Whether a failing schedule was found, available from {@link #getContext} and {@link
+   *     #getScheduler}
+   * @throws InterruptedException Throws exception if interrupted
+   */
+  public boolean minimize(Schedule schedule) throws InterruptedException {
+    List<ReplayChoice> original = getChoices(schedule);
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    PSymLogger.info(
+        String.format(
+            "... Minimizing counterexample of %d choices with %d threads",
+            original.size(), numThreads));
+
+    // replays run in forked contexts, which keep their own failure and are not profiled
+    TraceLogger.disable();
+    PSymGlobal.getConfiguration().setToReplay();
+    if (!minimize(original, numThreads)) {
+      PSymLogger.info("... Could not reproduce the counterexample for minimization");
+      return false;
+    }
+
+    PSymLogger.info(
+        String.format(
+            "... Minimized counterexample from %d to %d choices in %d replays%s",
+            original.size(),
+            best.getChoices().size(),
+            numReplays,
+            stopped ? " (stopped early)" : ""));
+    return true;
+  }
+
+  /**
+   * Minimize a list of choices
+   *
+   * @param original Choices of the counterexample
+   * @param numThreads Number of candidates checked in parallel
+   * @return Whether the original choices fail, in which case {@link #getMinimizedChoices} holds the
+   *     smallest failing choices found
+   * @throws InterruptedException Throws exception if interrupted
+   */
+  boolean minimize(List<ReplayChoice> original, int numThreads) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      best = getBest(executor, Collections.singletonList(original));
+      if (best == null) {
+        return false;
+      }
+      removeChoices(executor);
+      resetDataChoices(executor);
+    } finally {
+      executor.shutdownNow();
+    }
+    return true;
+  }
+
+  /** Delta debugging: drop chunks of choices, halving the chunks while no chunk can be dropped */
+  private void removeChoices(ExecutorService executor) throws InterruptedException {
+    int numChunks = 2;
+    while (!stopped && best.getChoices().size() >= 2) {
+      List<ReplayChoice> current = best.getChoices();
+      numChunks = Math.min(numChunks, current.size());
+      List<List<ReplayChoice>> candidates = new ArrayList<>();
+      for (int i = 0; i < numChunks; i++) {
+        int start = i * current.size() / numChunks;
+        int end = (i + 1) * current.size() / numChunks;
+        List<ReplayChoice> complement = new ArrayList<>(current.subList(0, start));
+        complement.addAll(current.subList(end, current.size()));
+        candidates.add(complement);
+      }
+      Candidate found = getBest(executor, candidates);
+      if (found != null && found.isBetterThan(best)) {
+        best = found;
+        numChunks = Math.max(numChunks - 1, 2);
+      } else if (numChunks >= current.size()) {
+        break;
+      } else {
+        numChunks = Math.min(numChunks * 2, current.size());
+      }
+    }
+  }
+
+  /** Flip data choices back to their defaults, one at a time */
+  private void resetDataChoices(ExecutorService executor) throws InterruptedException {
+    while (!stopped) {
+      List<ReplayChoice> current = best.getChoices();
+      List<List<ReplayChoice>> candidates = new ArrayList<>();
+      for (int i = 0; i < current.size(); i++) {
+        if (current.get(i).isNonDefaultData()) {
+          List<ReplayChoice> candidate = new ArrayList<>(current);
+          candidate.set(i, current.get(i).getDefault());
+          candidates.add(candidate);
+        }
+      }
+      if (candidates.isEmpty()) {
+        return;
+      }
+      Candidate found = getBest(executor, candidates);
+      if (found == null || !found.isBetterThan(best)) {
+        return;
+      }
+      best = found;
+    }
+  }
+
+  /**
+   * Replay candidates in parallel
+   *
+   * @param executor Pool to replay on
+   * @param candidates Candidate lists of choices
+   * @return Smallest failing candidate, or null if none fails
+   */
+  private Candidate getBest(ExecutorService executor, List<List<ReplayChoice>> candidates)
+      throws InterruptedException {
+    List<Future<Candidate>> futures = new ArrayList<>();
+    for (List<ReplayChoice> choices : candidates) {
+      if (numReplays >= budget) {
+        stopped = true;
+        break;
+      }
+      numReplays++;
+      if (fails != null) {
+        futures.add(
+            executor.submit(
+                () -> fails.test(choices) ? new Candidate(null, null, choices) : null));
+        continue;
+      }
+      PSymContext context = mainContext.fork();
+      futures.add(executor.submit(() -> context.call(() -> replay(context, choices))));
+    }
+
+    Candidate result = null;
+    for (Future<Candidate> future : futures) {
+      try {
+        Candidate candidate = future.get();
+        if (candidate != null && (result == null || candidate.isBetterThan(result))) {
+          result = candidate;
+        }
+      } catch (ExecutionException e) {
+        // out of time or memory
+        stopped = true;
+      }
+    }
+    return result;
+  }
+
+  /** Replay a candidate in the current context, which must be fresh */
+  private Candidate replay(PSymContext context, List<ReplayChoice> choices) throws Exception {
+    PSymConfiguration config = PSymGlobal.getConfiguration();
+    SolverEngine.resetEngine(config.getSolverType(), config.getExprLibType());
+    PSymGlobal.initializeSymmetryTracker(false);
+
+    Program program = mainProgram.getClass().getDeclaredConstructor().newInstance();
+    program.setTestDriver(
+        mainProgram.getTestDriver().getClass().getDeclaredConstructor().newInstance());
+    MinimizationScheduler scheduler = new MinimizationScheduler(program, choices, liveness);
+    PSymGlobal.setScheduler(scheduler);
+    try {
+      scheduler.doSearch();
+    } catch (BugFoundException e) {
+      if (getSignature(e).equals(bugSignature)) {
+        return new Candidate(context, scheduler, scheduler.getRecorded());
+      }
+    } catch (MemoutException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      // candidate breaks the program in another way
+    }
+    return null;
+  }
+
+  /**
+   * Get the choices of a single schedule
+   *
+   * @param schedule Single schedule
+   * @return List of choices
+   */
+  private static List<ReplayChoice> getChoices(Schedule schedule) {
+    List<ReplayChoice> result = new ArrayList<>();
+    for (Schedule.Choice choice : schedule.getChoices()) {
+      if (!choice.getRepeatSchedulingChoice().isEmptyVS()) {
+        Machine machine = choice.getRepeatSchedulingChoice().getGuardedValues().get(0).getValue();
+        result.add(ReplayChoice.ofMachine(machine.getClass(), schedule.getMachineIndex(machine)));
+      } else if (!choice.getRepeatBool().isEmptyVS()) {
+        result.add(
+            ReplayChoice.ofBoolean(choice.getRepeatBool().getGuardedValues().get(0).getValue()));
+      } else if (!choice.getRepeatInt().isEmptyVS()) {
+        result.add(
+            ReplayChoice.ofInteger(choice.getRepeatInt().getGuardedValues().get(0).getValue()));
+      } else if (!choice.getRepeatElement().isEmptyVS()) {
+        List<GuardedValue<ValueSummary>> gv = choice.getRepeatElement().getGuardedValues();
+        // position among the candidates is unknown, so match by value
+        String element = MinimizationScheduler.getElementString(gv.get(0).getValue());
+        result.add(ReplayChoice.ofElement(-1, element));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the context of the smallest failing schedule
+   *
+   * @return Context, or null if no failing schedule was found
+   */
+  public PSymContext getContext() {
+    return (best == null) ? null : best.context;
+  }
+
+  /**
+   * Get the scheduler of the smallest failing schedule, whose schedule holds the choices made
+   *
+   * @return Scheduler, or null if no failing schedule was found
+   */
+  public Scheduler getScheduler() {
+    return (best == null) ? null : best.scheduler;
+  }
+
+  /**
+   * Get the choices of the smallest failing schedule
+   *
+   * @return Choices, or null if no failing schedule was found
+   */
+  List<ReplayChoice> getMinimizedChoices() {
+    return (best == null) ? null : best.getChoices();
+  }
+
+  /** Failing candidate along with the context and scheduler that replayed it, if replayed */
+  private static class Candidate {
+    private final PSymContext context;
+    private final MinimizationScheduler scheduler;
+    /** Choices made by the replay */
+    private final List<ReplayChoice> choices;
+
+    Candidate(
+        PSymContext context, MinimizationScheduler scheduler, List<ReplayChoice> choices) {
+      this.context = context;
+      this.scheduler = scheduler;
+      this.choices = choices;
+    }
+
+    List<ReplayChoice> getChoices() {
+      return choices;
+    }
+
+    int getNumNonDefaultData() {
+      int result = 0;
+      for (ReplayChoice choice : getChoices()) {
+        if (choice.isNonDefaultData()) {
+          result++;
+        }
+      }
+      return result;
+    }
+
+    /** Whether this candidate has fewer choices, or as many but fewer non-default data choices */
+    boolean isBetterThan(Candidate other) {
+      if (getChoices().size() != other.getChoices().size()) {
+        return getChoices().size() < other.getChoices().size();
+      }
+      return getNumNonDefaultData() < other.getNumNonDefaultData();
+    }
+  }
+}
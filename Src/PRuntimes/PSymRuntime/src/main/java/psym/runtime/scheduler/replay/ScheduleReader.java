@@ -0,0 +1,354 @@
+package psym.runtime.scheduler.replay;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import psym.runtime.logger.ScheduleWriter;
+import psym.runtime.logger.ScheduleWriter.Delivery;
+
+/**
+ * Streaming parser of the schedule files written by {@link ScheduleWriter}. Steps are read from
+ * the file one at a time as the replay asks for them, so a schedule is never loaded as a whole.
+ *
+ * <p>Each step is a comment line {@code // Step N: description} followed by a value line. Boolean,
+ * integer and element choices are read back from their values. Event deliveries are read back from
+ * their descriptions, naming the event, the target and sending machines, and whether the target
+ * ignored, deferred or received the event instead of handling it. Machine instance ids depend on the
+ * search that found the schedule, so each machine is identified by its name and the order in which
+ * machines of that name first appear in the file, which is the order in which they are created.
+ * All other steps, such as sends, are implied by the deliveries and choices, and are skipped.
+ */
+public class ScheduleReader implements AutoCloseable {
+  private static final Pattern STEP = Pattern.compile("^// Step \\d+: (.*)$");
+  private static final Pattern MACHINE = Pattern.compile("([A-Za-z_][\\w.]*)\\((\\d+)\\)");
+  private static final Pattern RECEIVE = Pattern.compile("^receive (\\S+) at ");
+  private static final Pattern SENDER =
+      Pattern.compile(" from ([A-Za-z_][\\w.]*)\\((\\d+)\\)(?: \\[(\\w+)\\])?$");
+  private static final Pattern UNBLOCK = Pattern.compile(" on receiving (\\S+)$");
+  private static final String TEST_METHOD = "--test-method:";
+  private static final String CYCLE_DETECTED = "--cycle-detected:";
+
+  /** Name of the schedule file */
+  @Getter private final String fileName;
+
+  private final BufferedReader reader;
+  private int lineNumber = 0;
+  /** Line read ahead of the steps, if any */
+  private String pendingLine = null;
+  /** Next step, if already read */
+  private Step nextStep = null;
+  /** Whether the end of the file was reached */
+  private boolean finished = false;
+
+  /** Test case named in the header, or null if the schedule is for the default test case */
+  @Getter private String testMethod = null;
+
+  /** Message of the cycle named in the header, or null if no cycle was detected */
+  @Getter private String cycleMessage = null;
+
+  /** For each machine name, the position of each instance id in the order of first appearance */
+  private final Map<String, Map<Integer, Integer>> machineOrdinals = new HashMap<>();
+
+  /**
+   * Open a schedule file and read its header
+   *
+   * @param fileName Name of the schedule file
+   * @throws IOException Throws exception if the file cannot be read
+   */
+  public ScheduleReader(String fileName) throws IOException {
+    this.fileName = fileName;
+    this.reader = new BufferedReader(new FileReader(fileName));
+    readHeader();
+  }
+
+  private String readLine() throws IOException {
+    if (pendingLine != null) {
+      String line = pendingLine;
+      pendingLine = null;
+      return line;
+    }
+    String line = reader.readLine();
+    if (line != null) {
+      lineNumber++;
+    }
+    return line;
+  }
+
+  private void readHeader() throws IOException {
+    String line;
+    while ((line = readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (line.startsWith(TEST_METHOD)) {
+        testMethod = line.substring(TEST_METHOD.length()).trim();
+      } else if (line.startsWith(CYCLE_DETECTED)) {
+        cycleMessage = line.substring(CYCLE_DETECTED.length()).trim();
+      } else if (!line.startsWith("--")) {
+        pendingLine = line;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Read the next step of the file, skipping the steps that are not choices or deliveries
+   *
+   * @return Next step, or null at the end of the file
+   */
+  private Step readStep() {
+    if (finished) {
+      return null;
+    }
+    try {
+      while (true) {
+        String line = readLine();
+        if (line == null) {
+          finished = true;
+          close();
+          return null;
+        }
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        Matcher step = STEP.matcher(line);
+        if (!step.matches()) {
+          throw new RuntimeException(
+              String.format(
+                  "Unexpected line %d in schedule file %s: %s", lineNumber, fileName, line));
+        }
+        String description = step.group(1);
+        int stepLine = lineNumber;
+        String value = readLine();
+        if (value == null) {
+          throw new RuntimeException(
+              String.format(
+                  "Missing value of step at line %d in schedule file %s", stepLine, fileName));
+        }
+        value = value.trim();
+
+        switch (description) {
+          case "boolean choice":
+            return Step.ofChoice(StepType.BOOLEAN, stepLine, value);
+          case "integer choice":
+            return Step.ofChoice(StepType.INTEGER, stepLine, value);
+          case "element choice":
+            return Step.ofChoice(StepType.ELEMENT, stepLine, value);
+          case "create GodMachine":
+          case "start GodMachine":
+          case "create Main(2)":
+            // fixed steps written by ScheduleWriter.logHeader
+            continue;
+          default:
+            break;
+        }
+
+        Matcher machine = MACHINE.matcher(description);
+        String targetName = null;
+        int targetOrdinal = 0;
+        while (machine.find()) {
+          int ordinal = getOrdinal(machine.group(1), Integer.parseInt(machine.group(2)));
+          if (targetName == null) {
+            targetName = machine.group(1);
+            targetOrdinal = ordinal;
+          }
+        }
+        Matcher receive = RECEIVE.matcher(description);
+        if (receive.find()) {
+          Matcher sender = SENDER.matcher(description);
+          if (!sender.find()) {
+            // written by older versions, without the sender
+            return new Step(
+                stepLine, value, receive.group(1), targetName, targetOrdinal, null, 0,
+                Delivery.HANDLED);
+          }
+          return new Step(
+              stepLine,
+              value,
+              receive.group(1),
+              targetName,
+              targetOrdinal,
+              sender.group(1),
+              getOrdinal(sender.group(1), Integer.parseInt(sender.group(2))),
+              sender.group(3) == null ? Delivery.HANDLED : getDelivery(sender.group(3), stepLine));
+        }
+        Matcher unblock = UNBLOCK.matcher(description);
+        if (description.startsWith("unblocked ") && unblock.find()) {
+          // written by older versions, without the sender
+          return new Step(
+              stepLine, value, unblock.group(1), targetName, targetOrdinal, null, 0,
+              Delivery.RECEIVED);
+        }
+        // sends follow from the deliveries and choices
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(String.format("Failed to read schedule file %s", fileName), e);
+    }
+  }
+
+  private Delivery getDelivery(String marker, int stepLine) {
+    for (Delivery delivery : Delivery.values()) {
+      if (delivery.getMarker().equals(" [" + marker + "]")) {
+        return delivery;
+      }
+    }
+    throw new RuntimeException(
+        String.format(
+            "Unknown delivery [%s] of step at line %d in schedule file %s",
+            marker, stepLine, fileName));
+  }
+
+  private int getOrdinal(String machineName, int instanceId) {
+    Map<Integer, Integer> ordinals =
+        machineOrdinals.computeIfAbsent(machineName, k -> new HashMap<>());
+    return ordinals.computeIfAbsent(instanceId, k -> ordinals.size());
+  }
+
+  /**
+   * Get the next step without consuming it
+   *
+   * @return Next step, or null at the end of the file
+   */
+  public Step peek() {
+    if (nextStep == null) {
+      nextStep = readStep();
+    }
+    return nextStep;
+  }
+
+  /**
+   * Consume the next step, which must be of the expected type
+   *
+   * @param type Expected type of the step
+   * @return Next step
+   */
+  public Step next(StepType type) {
+    Step step = peek();
+    if (step == null || step.getType() != type) {
+      throw divergence(step, type.toString());
+    }
+    nextStep = null;
+    return step;
+  }
+
+  /**
+   * Make the exception for a replay that no longer follows the schedule file
+   *
+   * @param step Step read from the file, or null at the end of the file
+   * @param expected Description of what the replay expected instead
+   * @return Exception to throw
+   */
+  public RuntimeException divergence(Step step, String expected) {
+    if (step == null) {
+      return new RuntimeException(
+          String.format(
+              "Replay diverged from schedule file %s: expected %s at the end of the file",
+              fileName, expected));
+    }
+    return new RuntimeException(
+        String.format(
+            "Replay diverged from schedule file %s at line %d: expected %s, found %s",
+            fileName, step.getLineNumber(), expected, step));
+  }
+
+  @Override
+  public void close() {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      // nothing left to read
+    }
+  }
+
+  public enum StepType {
+    BOOLEAN,
+    INTEGER,
+    ELEMENT,
+    RECEIVE
+  }
+
+  /** Step of a schedule file */
+  public static class Step {
+    @Getter private final StepType type;
+    @Getter private final int lineNumber;
+    /** Value line of the step */
+    @Getter private final String value;
+    /** Name of the event received */
+    @Getter private final String event;
+    /** Name of the machine receiving the event */
+    @Getter private final String targetName;
+    /** Position of the receiving machine among the machines of the same name */
+    @Getter private final int targetOrdinal;
+    /** Name of the machine that sent the event, or null if not recorded */
+    @Getter private final String senderName;
+    /** Position of the sending machine among the machines of the same name */
+    @Getter private final int senderOrdinal;
+    /** How the receiving machine took the event */
+    @Getter private final Delivery delivery;
+
+    static Step ofChoice(StepType type, int lineNumber, String value) {
+      return new Step(type, lineNumber, value, null, null, 0, null, 0, null);
+    }
+
+    Step(
+        int lineNumber,
+        String value,
+        String event,
+        String targetName,
+        int targetOrdinal,
+        String senderName,
+        int senderOrdinal,
+        Delivery delivery) {
+      this(
+          StepType.RECEIVE,
+          lineNumber,
+          value,
+          event,
+          targetName,
+          targetOrdinal,
+          senderName,
+          senderOrdinal,
+          delivery);
+    }
+
+    private Step(
+        StepType type,
+        int lineNumber,
+        String value,
+        String event,
+        String targetName,
+        int targetOrdinal,
+        String senderName,
+        int senderOrdinal,
+        Delivery delivery) {
+      this.type = type;
+      this.lineNumber = lineNumber;
+      this.value = value;
+      this.event = event;
+      this.targetName = targetName;
+      this.targetOrdinal = targetOrdinal;
+      this.senderName = senderName;
+      this.senderOrdinal = senderOrdinal;
+      this.delivery = delivery;
+    }
+
+    @Override
+    public String toString() {
+      if (type == StepType.RECEIVE) {
+        String sender =
+            senderName == null ? "" : String.format(" from %s#%d", senderName, senderOrdinal);
+        return String.format(
+            "receive %s at %s#%d%s%s",
+            event, targetName, targetOrdinal, sender, delivery.getMarker());
+      }
+      return String.format("%s choice %s", type.toString().toLowerCase(), value);
+    }
+  }
+}
@@ -1,16 +1,21 @@
 package psym.runtime.scheduler.search;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.Setter;
+import psym.runtime.PSymContext;
 import psym.runtime.PSymGlobal;
 import psym.runtime.Program;
 import psym.runtime.logger.*;
@@ -22,11 +27,16 @@ import psym.runtime.scheduler.search.choiceorchestration.*;
 import psym.runtime.scheduler.search.symmetry.SymmetryMode;
 import psym.runtime.scheduler.search.taskorchestration.BacktrackTask;
 import psym.runtime.scheduler.search.taskorchestration.TaskOrchestrationMode;
+import psym.runtime.statistics.MetricsRegistry;
 import psym.runtime.statistics.SearchStats;
 import psym.utils.Assert;
 import psym.utils.monitor.MemoryMonitor;
+import psym.utils.monitor.events.BacktrackRestoreEvent;
+import psym.utils.monitor.events.ChoiceGenerationEvent;
+import psym.utils.monitor.events.SchedulerStepEvent;
 import psym.utils.random.NondetUtil;
 import psym.valuesummary.*;
+import psym.valuesummary.solvers.SolverEngine;
 
 /** Represents the search scheduler */
 public abstract class SearchScheduler extends Scheduler {
@@ -50,6 +60,13 @@ public abstract class SearchScheduler extends Scheduler {
   /** Time of last report */
   @Getter @Setter
   private transient Instant lastReportTime = Instant.now();
+  /** Metric counters of schedules and steps */
+  private static final LongAdder numSchedulesMetric = MetricsRegistry.counter("schedules");
+  private static final LongAdder numStepsMetric = MetricsRegistry.counter("steps");
+  /** Highest stage of memory mitigation applied since memory usage was last below it */
+  private transient int memoryStage = 0;
+  /** Condition checked before each schedule to stop early, such as when a worker found a bug */
+  @Setter private transient BooleanSupplier stopCondition = null;
   protected SearchScheduler(Program p) {
     super(p);
     switch (PSymGlobal.getConfiguration().getChoiceOrchestration()) {
@@ -65,6 +82,14 @@ public abstract class SearchScheduler extends Scheduler {
       case EpsilonGreedy:
         choiceOrchestrator = new ChoiceOrchestratorEpsilonGreedy();
         break;
+      case Novelty:
+        choiceOrchestrator = new ChoiceOrchestratorNovelty();
+        break;
+      case LinearApproximation:
+        PSymGlobal.getChoiceLearningStats()
+                .useApproximation(PSymGlobal.getConfiguration().getLearnFeatureBits());
+        choiceOrchestrator = new ChoiceOrchestratorEpsilonGreedy();
+        break;
       default:
         throw new RuntimeException(
                 "Unrecognized choice orchestration mode: " + PSymGlobal.getConfiguration().getChoiceOrchestration());
@@ -78,11 +103,12 @@ public abstract class SearchScheduler extends Scheduler {
     PSymGlobal.setResult("incomplete");
     iter++;
     SearchLogger.logStartExecution(iter, getDepth());
+    registerMetrics();
     initializeSearch();
     if (PSymGlobal.getConfiguration().getVerbosity() == 0) {
       printProgressHeader(true);
     }
-    while (!isDoneIterating) {
+    while (!isDoneIterating && !isStopped()) {
       if (initialRun) {
         initialRun = false;
       } else {
@@ -90,6 +116,7 @@ public abstract class SearchScheduler extends Scheduler {
         SearchLogger.logStartExecution(iter, getDepth());
       }
       searchStats.startNewIteration(iter, backtrackDepth);
+      numSchedulesMetric.increment();
       performSearch();
       summarizeIteration(backtrackDepth);
     }
@@ -102,6 +129,7 @@ public abstract class SearchScheduler extends Scheduler {
     isDoneIterating = false;
     start_iter = iter;
     reset_stats();
+    registerMetrics();
     schedule.setNumBacktracksInSchedule();
     boolean resetAfterInitial = isDone();
     if (PSymGlobal.getConfiguration().getVerbosity() == 0) {
@@ -116,6 +144,7 @@ public abstract class SearchScheduler extends Scheduler {
         SearchLogger.logStartExecution(iter, getDepth());
       }
       searchStats.startNewIteration(iter, backtrackDepth);
+      numSchedulesMetric.increment();
       performSearch();
       summarizeIteration(backtrackDepth);
       if (resetAfterInitial) {
@@ -130,11 +159,27 @@ public abstract class SearchScheduler extends Scheduler {
     schedule.setNumBacktracksInSchedule();
     while (!isDone()) {
       printProgress(false);
+      if (isMainWorker()) {
+        MetricsWriter.poll();
+      }
+      if (MemoryMonitor.getPressureStage() != memoryStage) {
+        governMemory();
+      }
       Assert.prop(
               getDepth() < PSymGlobal.getConfiguration().getMaxStepBound(),
               "Maximum allowed depth " + PSymGlobal.getConfiguration().getMaxStepBound() + " exceeded",
               schedule.getLengthCond(schedule.size()));
+      SchedulerStepEvent stepEvent = new SchedulerStepEvent();
+      stepEvent.begin();
       step();
+      if (stepEvent.shouldCommit()) {
+        stepEvent.iter = getIter();
+        stepEvent.depth = getDepth();
+        stepEvent.choiceDepth = getChoiceDepth();
+        stepEvent.guardCount = SolverEngine.getGuardCount();
+        stepEvent.commit();
+      }
+      numStepsMetric.increment();
       checkLiveness(allMachinesHalted);
     }
     if (terminalLivenessEnabled) {
@@ -257,9 +302,23 @@ public abstract class SearchScheduler extends Scheduler {
     printProgress(false);
     if (!isDoneIterating) {
       postIterationCleanup();
+      int reclaimFrequency = PSymGlobal.getConfiguration().getMachineReclaimFrequency();
+      if (reclaimFrequency > 0 && iter % reclaimFrequency == 0) {
+        reclaimMachines();
+      }
     }
   }
 
+  /** Release machines unreachable from the current schedule and all pending tasks */
+  private void reclaimMachines() {
+    Set<Machine> live = new HashSet<>();
+    Schedule.collectMachines(schedule.getChoices(), live);
+    for (Integer taskId : pendingTasks) {
+      getTask(taskId).collectMachines(live);
+    }
+    releaseMachines(live);
+  }
+
   private void postIterationCleanup() {
     schedule.resetFilter();
     for (int d = schedule.size() - 1; d >= 0; d--) {
@@ -461,21 +520,176 @@ public abstract class SearchScheduler extends Scheduler {
     return originalChoices;
   }
 
+  /**
+   * Mitigate memory pressure in stages as memory usage crosses each watermark of the memory limit,
+   * so that a long run keeps its progress instead of ending in a memout:
+   *
+   * <ol>
+   *   <li>clean up unused solver nodes and shrink the learned Q-table
+   *   <li>shrink the state cache and spill pending backtrack tasks to files
+   *   <li>write a checkpoint that can be resumed with --read
+   * </ol>
+   *
+   * Stages are computed by {@link MemoryMonitor} after each garbage collection, so the search
+   * only calls this when the stage changed. Each stage is applied once, and again only after
+   * memory usage drops below its watermark. Where no checkpoint can be written, the last stage
+   * repeats the cleanup of the earlier ones instead.
+   */
+  private void governMemory() {
+    int stage = MemoryMonitor.getPressureStage();
+    if (!PSymGlobal.getConfiguration().isMemGovernor()) {
+      memoryStage = stage;
+      return;
+    }
+    double memUsed = MemoryMonitor.getMemSpent();
+    for (int s = memoryStage + 1; s <= stage; s++) {
+      PSymLogger.info(
+          String.format(
+              "Memory usage %.1f MB reached %.0f %% of the limit, applying stage %d of memory mitigation",
+              memUsed, MemoryMonitor.getPressureWatermark(s) * 100, s));
+      switch (s) {
+        case 1:
+          cleanupLearnedStates();
+          break;
+        case 2:
+          cleanupPendingStates();
+          break;
+        case 3:
+          if (!writeCheckpoint()) {
+            cleanupLearnedStates();
+            cleanupPendingStates();
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    memoryStage = stage;
+  }
+
+  /** Clean up unused solver nodes and drop the least recently used half of the Q-table */
+  private void cleanupLearnedStates() {
+    SolverEngine.cleanupEngine();
+    int numDropped = PSymGlobal.getChoiceLearningStats().shrinkQTable();
+    PSymLogger.info(
+        String.format("  Cleaned up solver nodes and dropped %d learned states", numDropped));
+  }
+
+  /** Shrink the state cache and spill the pending backtrack tasks still in memory */
+  private void cleanupPendingStates() {
+    int numStates = shrinkStateCache();
+    int numTasks = spillPendingTasks();
+    PSymLogger.info(
+        String.format(
+            "  Dropped %d cached states and spilled %d pending tasks", numStates, numTasks));
+  }
+
+  /**
+   * Drop states from the state cache that are not needed for correctness
+   *
+   * @return Number of states dropped
+   */
+  protected int shrinkStateCache() {
+    return 0;
+  }
+
+  /**
+   * Write a checkpoint of the search that can be resumed
+   *
+   * @return Whether a checkpoint was written
+   */
+  protected boolean writeCheckpoint() {
+    return false;
+  }
+
+  /**
+   * Spill the choices of pending backtrack tasks to files in the output folder
+   *
+   * @return Number of tasks spilled
+   */
+  private int spillPendingTasks() {
+    int result = 0;
+    long pid = ProcessHandle.current().pid();
+    for (Integer taskId : pendingTasks) {
+      BacktrackTask task = getTask(taskId);
+      if (task.isSpilled()) {
+        continue;
+      }
+      String fileName =
+          String.format(
+              "%s/spill/task%d_w%d_pid%d.out",
+              PSymGlobal.getConfiguration().getOutputFolder(),
+              taskId,
+              PSymContext.getCurrent().getWorkerId(),
+              pid);
+      try {
+        task.spill(fileName, schedule);
+        result++;
+      } catch (IOException e) {
+        PSymLogger.warn("Failed to spill backtrack task to file " + fileName + ": " + e.getMessage());
+        break;
+      }
+    }
+    return result;
+  }
+
+  private boolean isStopped() {
+    return (stopCondition != null) && stopCondition.getAsBoolean();
+  }
+
+  /**
+   * Check whether this search runs as the main worker, which reports progress and metrics
+   *
+   * @return Whether or not this is the main worker
+   */
+  protected boolean isMainWorker() {
+    return PSymContext.getCurrent().getWorkerId() == 0;
+  }
+
+  /** Register gauges of the search progress with the metrics registry */
+  protected void registerMetrics() {
+    registerGauge("depth", this::getDepth);
+    registerGauge("choice_depth", this::getChoiceDepth);
+    registerGauge("pending_tasks", pendingTasks::size);
+    registerGauge("backtracks", this::getTotalNumBacktracks);
+  }
+
+  /**
+   * Register a gauge of this search. With several workers, each worker labels its gauges with its
+   * id, such as depth_w1, and the gauges that add up are also registered as sums over the workers.
+   *
+   * @param name Name of the metric
+   * @param supplier Supplier of the current value
+   */
+  protected void registerGauge(String name, DoubleSupplier supplier) {
+    if (PSymGlobal.getConfiguration().getNumWorkers() > 1) {
+      name = String.format("%s_w%d", name, PSymContext.getCurrent().getWorkerId());
+    }
+    MetricsRegistry.gauge(name, supplier);
+  }
+
   /** Set next backtrack task with given orchestration mode */
   public BacktrackTask setNextBacktrackTask() throws InterruptedException {
     if (pendingTasks.isEmpty()) return null;
+    BacktrackRestoreEvent restoreEvent = new BacktrackRestoreEvent();
+    restoreEvent.begin();
     BacktrackTask latestTask = BacktrackTask.getNextTask();
     latestTaskId = latestTask.getId();
     assert (!latestTask.isCompleted());
     removePendingTask(latestTask);
 
     schedule.getChoices().clear();
-    PSymGlobal.getCoverage().getPerChoiceDepthStats().clear();
     assert (!latestTask.isInitialTask());
     latestTask.getParentTask().cleanup();
 
     schedule.setChoices(latestTask.getChoices());
-    PSymGlobal.getCoverage().setPerChoiceDepthStats(latestTask.getPerChoiceDepthStats());
+    PSymGlobal.getCoverage().restorePathCoverage(latestTask.getPerChoiceDepthStats());
+    if (restoreEvent.shouldCommit()) {
+      restoreEvent.taskId = latestTask.getId();
+      restoreEvent.choiceDepth = latestTask.getChoices().size();
+      restoreEvent.numPendingTasks = pendingTasks.size();
+      restoreEvent.commit();
+    }
     return latestTask;
   }
 
@@ -517,6 +731,8 @@ public abstract class SearchScheduler extends Scheduler {
           Supplier<List> getChoices,
           Function<List, PrimitiveVS> generateNext,
           boolean isData) {
+    ChoiceGenerationEvent choiceEvent = new ChoiceGenerationEvent();
+    choiceEvent.begin();
     List<ValueSummary> choices = new ArrayList();
     boolean isNewChoice = false;
     int bound = isData ? PSymGlobal.getConfiguration().getDataChoiceBound() : PSymGlobal.getConfiguration().getSchChoiceBound();
@@ -525,6 +741,13 @@ public abstract class SearchScheduler extends Scheduler {
       PrimitiveVS repeat = getRepeat.apply(depth);
       if (!repeat.getUniverse().isFalse()) {
         schedule.restrictFilterForDepth(depth);
+        if (choiceEvent.shouldCommit()) {
+          choiceEvent.depth = depth;
+          choiceEvent.choiceDepth = getChoiceDepth();
+          choiceEvent.isData = isData;
+          choiceEvent.isRepeat = true;
+          choiceEvent.commit();
+        }
         return repeat;
       }
       // nothing to repeat, so look at backtrack set
@@ -551,6 +774,7 @@ public abstract class SearchScheduler extends Scheduler {
       choiceOrchestrator.reorderChoices(choices, bound, isData);
     }
 
+    boolean isLearning = PSymGlobal.getConfiguration().isChoiceOrchestrationLearning();
     List<ValueSummary> chosen = new ArrayList();
     ChoiceQTable.ChoiceQStateKey chosenQStateKey = new ChoiceQTable.ChoiceQStateKey();
     List<ValueSummary> backtrack = new ArrayList();
@@ -558,16 +782,20 @@ public abstract class SearchScheduler extends Scheduler {
       ValueSummary choice = choices.get(i);
       if ((bound <= 0) || (i < bound)) {
         chosen.add(choice);
-        chosenQStateKey.add(choice);
+        if (isLearning) {
+          chosenQStateKey.add(choice);
+        }
       } else {
         backtrack.add(choice);
       }
     }
     ChoiceQTable.ChoiceQTableKey chosenActions = null;
-    if (PSymGlobal.getConfiguration().isChoiceOrchestrationLearning()) {
+    if (isLearning) {
       chosenActions =
               new ChoiceQTable.ChoiceQTableKey(
-                      PSymGlobal.getChoiceLearningStats().getProgramStateHash(), chosenQStateKey);
+                      PSymGlobal.getChoiceLearningStats().getProgramStateHash(),
+                      PSymGlobal.getChoiceLearningStats().getProgramStateFeatures(),
+                      chosenQStateKey);
     }
     PSymGlobal.getCoverage()
             .updateDepthCoverage(
@@ -585,6 +813,14 @@ public abstract class SearchScheduler extends Scheduler {
     addBacktrack.accept(backtrack, depth);
     schedule.restrictFilterForDepth(depth);
 
+    if (choiceEvent.shouldCommit()) {
+      choiceEvent.depth = depth;
+      choiceEvent.choiceDepth = getChoiceDepth();
+      choiceEvent.isData = isData;
+      choiceEvent.numChosen = chosen.size();
+      choiceEvent.numBacktrack = backtrack.size();
+      choiceEvent.commit();
+    }
     return chosenVS;
   }
 
@@ -717,25 +953,24 @@ public abstract class SearchScheduler extends Scheduler {
   }
 
   protected List<PrimitiveVS> getNextSchedulingChoices() {
+    // only machines with a non-empty event buffer can be scheduled
+    List<Machine> machinesWithEvents = getMachinesWithEvents();
+
     // prioritize the create actions
-    for (Machine machine : machines) {
-      if (!machine.getEventBuffer().isEmpty()) {
-        Guard initCond = machine.getEventBuffer().hasCreateMachineUnderGuard().getGuardFor(true).and(schedule.getFilter());
-        if (!initCond.isFalse()) {
-          PrimitiveVS<Machine> ret = new PrimitiveVS<>(machine).restrict(initCond);
-          return new ArrayList<>(Collections.singletonList(ret));
-        }
+    for (Machine machine : machinesWithEvents) {
+      Guard initCond = machine.getEventBuffer().hasCreateMachineUnderGuard().getGuardFor(true).and(schedule.getFilter());
+      if (!initCond.isFalse()) {
+        PrimitiveVS<Machine> ret = new PrimitiveVS<>(machine).restrict(initCond);
+        return new ArrayList<>(Collections.singletonList(ret));
       }
     }
 
     // prioritize the sync actions i.e. events that are marked as synchronous
-    for (Machine machine : machines) {
-      if (!machine.getEventBuffer().isEmpty()) {
-        Guard syncCond = machine.getEventBuffer().hasSyncEventUnderGuard().getGuardFor(true).and(schedule.getFilter());
-        if (!syncCond.isFalse()) {
-          PrimitiveVS<Machine> ret = new PrimitiveVS<>(machine).restrict(syncCond);
-          return new ArrayList<>(Collections.singletonList(ret));
-        }
+    for (Machine machine : machinesWithEvents) {
+      Guard syncCond = machine.getEventBuffer().hasSyncEventUnderGuard().getGuardFor(true).and(schedule.getFilter());
+      if (!syncCond.isFalse()) {
+        PrimitiveVS<Machine> ret = new PrimitiveVS<>(machine).restrict(syncCond);
+        return new ArrayList<>(Collections.singletonList(ret));
       }
     }
 
@@ -743,15 +978,13 @@ public abstract class SearchScheduler extends Scheduler {
     List<GuardedValue<Machine>> guardedMachines = new ArrayList<>();
 
     allMachinesHalted = Guard.constTrue();
-    for (Machine machine : machines) {
-      if (!machine.getEventBuffer().isEmpty()) {
-        Guard canRun =
-            machine.getEventBuffer().satisfiesPredUnderGuard(x -> x.canRun()).getGuardFor(true).and(schedule.getFilter());
-        if (!canRun.isFalse()) {
-          guardedMachines.add(new GuardedValue(machine, canRun));
-        }
-        allMachinesHalted = allMachinesHalted.and(canRun.not());
+    for (Machine machine : machinesWithEvents) {
+      Guard canRun =
+          machine.getEventBuffer().satisfiesPredUnderGuard(x -> x.canRun()).getGuardFor(true).and(schedule.getFilter());
+      if (!canRun.isFalse()) {
+        guardedMachines.add(new GuardedValue(machine, canRun));
       }
+      allMachinesHalted = allMachinesHalted.and(canRun.not());
     }
 
     List<PrimitiveVS> candidates = new ArrayList<>();
@@ -1,27 +1,59 @@
 package psym.runtime.scheduler.search.choiceorchestration;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import lombok.Getter;
 import psym.runtime.logger.PSymLogger;
 import psym.runtime.machine.Machine;
+import psym.runtime.machine.State;
 import psym.runtime.machine.events.Message;
 import psym.runtime.scheduler.Scheduler;
 import psym.valuesummary.Guard;
 import psym.valuesummary.PrimitiveVS;
 import psym.valuesummary.ValueSummary;
 
-public class ChoiceLearningStats<S, A> implements Serializable {
+public class ChoiceLearningStats implements Serializable {
   @Getter private static final double defaultQValue = 0;
   @Getter private static final double defaultReward = -1;
   @Getter private static final double ALPHA = 0.3;
   @Getter private static final double GAMMA = 0.7;
-  @Getter private final ChoiceComparator choiceComparator = new ChoiceComparator();
-  private final ChoiceQTable<S, A> qValues;
+  /** Magic number and format version of learned Q-table files */
+  private static final int FILE_MAGIC = 0x50514c54;
+
+  private static final int FILE_VERSION = 2;
+  private final ChoiceQTable qValues;
+  /** Dense id of each action class */
+  private final Map<Class, Integer> classIds = new HashMap<>();
+  /** Action classes, indexed by class id */
+  private final List<Class> classes = new ArrayList<>();
+  /** Dense ids of actions, keyed by class id and machine id or value id of the action */
+  private final LongInterner actionIds = new LongInterner();
+  /** Dense id of each value of a choice other than a machine, keyed by the value itself */
+  private final Map<Object, Integer> valueIds = new HashMap<>();
+  /** Dense id of each value of a choice other than a machine, keyed by the value string */
+  private final Map<String, Integer> valueIdsByName = new HashMap<>();
+  /** Value strings, indexed by value id */
+  private final List<String> valueNames = new ArrayList<>();
+  /** Linear Q-value approximation, used instead of the Q-table if not null */
+  private ChoiceQApproximation approximation = null;
   /** State hash corresponding to current environment state */
-  @Getter private Integer programStateHash = 0;
+  @Getter private int programStateHash = 0;
+  /** Features of the current environment state, from which the state hash is computed */
+  @Getter private int[] programStateFeatures = new int[0];
 
   public ChoiceLearningStats() {
     qValues = new ChoiceQTable();
@@ -36,7 +68,7 @@ public class ChoiceLearningStats<S, A> implements Serializable {
   }
 
   public void rewardIteration(
-      ChoiceQTable.ChoiceQTableKey<S, A> stateActions,
+      ChoiceQTable.ChoiceQTableKey stateActions,
       double reward,
       ChoiceLearningRewardMode rewardMode) {
     switch (rewardMode) {
@@ -54,22 +86,35 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     }
   }
 
-  public void rewardStep(ChoiceQTable.ChoiceQTableKey<S, A> stateActions, int reward) {
+  public void rewardStep(ChoiceQTable.ChoiceQTableKey stateActions, int reward) {
     //        reward(stateActions, BigDecimal.valueOf(reward));
   }
 
-  private void reward(ChoiceQTable.ChoiceQTableKey<S, A> stateActions, double reward) {
+  private void reward(ChoiceQTable.ChoiceQTableKey stateActions, double reward) {
     if (reward == getDefaultQValue()) {
       return;
     }
-    S state = stateActions.getState();
-    ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.get(state);
+    if (approximation != null) {
+      rewardApproximation(stateActions, reward);
+      return;
+    }
+    ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.get(stateActions.getState());
+    stateEntry.setNumVisits(stateEntry.getNumVisits() + 1);
+    ChoiceQTable.ChoiceQStateKey actions = stateActions.getActions();
 
-    for (Class cls : stateActions.getActions().getClasses()) {
-      ChoiceQTable.ChoiceQClassEntry classEntry = stateEntry.get(cls);
+    for (int i = 0; i < actions.size(); i++) {
+      int classId = actions.getClassId(i);
+      if (isRepeatedClass(actions, i)) {
+        continue;
+      }
+      ChoiceQTable.ChoiceQClassEntry classEntry = stateEntry.get(classId);
       double maxQ = classEntry.getMaxQ();
 
-      for (A action : stateActions.getActions().get(cls)) {
+      for (int j = i; j < actions.size(); j++) {
+        if (actions.getClassId(j) != classId) {
+          continue;
+        }
+        int action = actionIds.intern(actions.getActionKey(j));
         double oldVal = classEntry.get(action);
         double newVal = (1 - ALPHA) * oldVal + ALPHA * (reward + GAMMA * maxQ);
         classEntry.update(action, newVal);
@@ -77,16 +122,58 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     }
   }
 
+  /**
+   * Reward chosen actions in the linear approximation. The max Q-value of a class is approximated
+   * over the chosen actions of that class, since the approximation does not track the actions seen
+   * in a state.
+   */
+  private void rewardApproximation(ChoiceQTable.ChoiceQTableKey stateActions, double reward) {
+    int[] features = stateActions.getFeatures();
+    ChoiceQTable.ChoiceQStateKey actions = stateActions.getActions();
+
+    for (int i = 0; i < actions.size(); i++) {
+      int classId = actions.getClassId(i);
+      if (isRepeatedClass(actions, i)) {
+        continue;
+      }
+      double maxQ = getDefaultQValue();
+      for (int j = i; j < actions.size(); j++) {
+        if (actions.getClassId(j) == classId) {
+          maxQ = Math.max(maxQ, approximation.get(features, actions.getActionKey(j)));
+        }
+      }
+
+      for (int j = i; j < actions.size(); j++) {
+        if (actions.getClassId(j) == classId) {
+          approximation.update(features, actions.getActionKey(j), reward + GAMMA * maxQ, ALPHA);
+        }
+      }
+    }
+  }
+
+  /** Check if the class of the action at an index already appears at a lower index */
+  private static boolean isRepeatedClass(ChoiceQTable.ChoiceQStateKey actions, int index) {
+    for (int i = 0; i < index; i++) {
+      if (actions.getClassId(i) == actions.getClassId(index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public int numQStates() {
     return qValues.size();
   }
 
   public int numQValues() {
+    if (approximation != null) {
+      return approximation.numNonZero();
+    }
     int result = 0;
-    for (S state : qValues.getStates()) {
-      ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.get(state);
-      for (Object cls : stateEntry.getClasses()) {
-        result += stateEntry.get((Class) cls).size();
+    for (int i = 0; i < qValues.size(); i++) {
+      ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.getEntry(i);
+      for (int classId : stateEntry.getClassIds()) {
+        result += stateEntry.get(classId).size();
       }
     }
     return result;
@@ -97,21 +184,21 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     PSymLogger.info("Q Table");
     PSymLogger.log("--------------------");
     PSymLogger.info(String.format("  #QStates = %d", qValues.size()));
-    for (S state : qValues.getStates()) {
-      ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.get(state);
-      String stateStr = String.valueOf(state);
+    for (int i = 0; i < qValues.size(); i++) {
+      ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.getEntry(i);
+      String stateStr = String.valueOf(qValues.getState(i));
       if (stateStr.length() > 10) {
         stateStr = stateStr.substring(0, 5).concat("...");
       }
 
-      for (Object obj : stateEntry.getClasses()) {
-        Class cls = (Class) obj;
-        ChoiceQTable.ChoiceQClassEntry classEntry = stateEntry.get(cls);
+      for (int classId : stateEntry.getClassIds()) {
+        Class cls = classes.get(classId);
+        ChoiceQTable.ChoiceQClassEntry classEntry = stateEntry.get(classId);
         if (classEntry.size() <= 1) {
           continue;
         }
-        Object bestAction = classEntry.getBestAction();
-        if (bestAction != null) {
+        int bestAction = classEntry.getBestAction();
+        if (bestAction >= 0) {
           double maxQ = classEntry.get(bestAction);
           PSymLogger.info(
               String.format(
@@ -122,21 +209,288 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     }
   }
 
-  public double getQvalue(S state, Class cls, A action) {
-    return qValues.get(state, cls, action);
+  public double getQvalue(int state, int classId, int actionId) {
+    return qValues.get(state, classId, actionId);
   }
 
   public double getCurrentQvalue(ValueSummary action) {
-    Class cls = getActionClass(action);
-    return getQvalue((S) programStateHash, cls, (A) getActionHash(cls, action));
+    int classId = getClassId(getActionClass(action));
+    if (approximation != null) {
+      return approximation.get(programStateFeatures, getActionKey(classId, action));
+    }
+    return getQvalue(programStateHash, classId, getActionId(classId, action));
+  }
+
+  /**
+   * Approximate Q-values with a linear function of hashed state features instead of a Q-table
+   *
+   * @param numBits Log2 of the number of weights of the approximation
+   */
+  public void useApproximation(int numBits) {
+    approximation = new ChoiceQApproximation(numBits);
   }
 
   public int getNumQStates() {
     return qValues.size();
   }
 
-  public Object getActionHash(Class cls, ValueSummary action) {
-    return action.toString();
+  /**
+   * Bound the number of states in the Q-table
+   *
+   * @param maxStates Number of states to keep when pruning (0 means unbounded)
+   */
+  public void setMaxQStates(int maxStates) {
+    qValues.setMaxStates(maxStates);
+  }
+
+  /**
+   * Drop the least recently used half of the states in the Q-table
+   *
+   * @return Number of states dropped
+   */
+  public int shrinkQTable() {
+    int numStates = qValues.size();
+    qValues.prune(numStates / 2);
+    return numStates - qValues.size();
+  }
+
+  /**
+   * Write the Q-table and visit counts to a binary file. Learned values are only meaningful for
+   * the same model and state abstraction, so both are recorded in the file header.
+   *
+   * @param fileName Name of the file to write
+   * @param projectName Name of the project
+   * @param stateMode State abstraction of the Q-table
+   * @param modelHash Hash of the compiled model
+   * @throws RuntimeException Throws exception if writing fails
+   */
+  public void writeToFile(
+      String fileName, String projectName, ChoiceLearningStateMode stateMode, long modelHash)
+      throws RuntimeException {
+    if (qValues.getMaxStates() > 0) {
+      qValues.prune(qValues.getMaxStates());
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(fileName))))) {
+      out.writeInt(FILE_MAGIC);
+      out.writeInt(FILE_VERSION);
+      out.writeUTF(projectName);
+      out.writeUTF(stateMode.name());
+      out.writeLong(modelHash);
+
+      out.writeInt(classes.size());
+      for (Class cls : classes) {
+        out.writeUTF(cls.getName());
+      }
+      out.writeInt(valueNames.size());
+      for (String name : valueNames) {
+        out.writeUTF(name);
+      }
+      out.writeInt(actionIds.size());
+      for (int actionId = 0; actionId < actionIds.size(); actionId++) {
+        out.writeLong(actionIds.getKey(actionId));
+      }
+
+      out.writeInt(qValues.size());
+      for (int i = 0; i < qValues.size(); i++) {
+        ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.getEntry(i);
+        List<Integer> stateClassIds = stateEntry.getClassIds();
+        out.writeInt(qValues.getState(i));
+        out.writeInt(stateEntry.getNumVisits());
+        out.writeInt(stateClassIds.size());
+        for (int classId : stateClassIds) {
+          ChoiceQTable.ChoiceQClassEntry classEntry = stateEntry.get(classId);
+          out.writeInt(classId);
+          out.writeInt(classEntry.size());
+          for (int j = 0; j < classEntry.size(); j++) {
+            out.writeInt(classEntry.getActionId(j));
+            out.writeDouble(classEntry.getQValue(j));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to write Q-table in file " + fileName, e);
+    }
+  }
+
+  /**
+   * Read a Q-table and visit counts written by {@link #writeToFile} and add them to this table.
+   * Files of another version, project, model or state abstraction are ignored.
+   *
+   * @param fileName Name of the file to read
+   * @param projectName Name of the project
+   * @param stateMode State abstraction of the Q-table
+   * @param modelHash Hash of the compiled model
+   * @return Whether or not the file was loaded
+   * @throws RuntimeException Throws exception if reading fails
+   */
+  public boolean readFromFile(
+      String fileName, String projectName, ChoiceLearningStateMode stateMode, long modelHash)
+      throws RuntimeException {
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(new FileInputStream(fileName))))) {
+      if (in.readInt() != FILE_MAGIC) {
+        throw new IOException("Unrecognized file format");
+      }
+      if (in.readInt() != FILE_VERSION
+          || !in.readUTF().equals(projectName)
+          || !in.readUTF().equals(stateMode.name())
+          || in.readLong() != modelHash) {
+        return false;
+      }
+
+      // map class and action ids of the file to ids of this run, or -1 if the class is unknown
+      int[] fileClassIds = new int[in.readInt()];
+      for (int i = 0; i < fileClassIds.length; i++) {
+        String className = in.readUTF();
+        try {
+          fileClassIds[i] =
+              getClassId(Class.forName(className, false, ChoiceLearningStats.class.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+          fileClassIds[i] = -1;
+        }
+      }
+      int[] fileValueIds = new int[in.readInt()];
+      for (int i = 0; i < fileValueIds.length; i++) {
+        fileValueIds[i] = getValueId(in.readUTF());
+      }
+      int[] fileActionIds = new int[in.readInt()];
+      for (int i = 0; i < fileActionIds.length; i++) {
+        long key = in.readLong();
+        int classId = fileClassIds[(int) (key >>> 32)];
+        int low = (int) key;
+        if (classId >= 0 && !Machine.class.isAssignableFrom(classes.get(classId))) {
+          low = fileValueIds[low];
+        }
+        fileActionIds[i] =
+            classId < 0 ? -1 : actionIds.intern(((long) classId << 32) | (low & 0xFFFFFFFFL));
+      }
+
+      int numStates = in.readInt();
+      for (int i = 0; i < numStates; i++) {
+        ChoiceQTable.ChoiceQStateEntry stateEntry = qValues.get(in.readInt());
+        stateEntry.setNumVisits(stateEntry.getNumVisits() + in.readInt());
+        int numClasses = in.readInt();
+        for (int j = 0; j < numClasses; j++) {
+          int classId = fileClassIds[in.readInt()];
+          int numActions = in.readInt();
+          for (int k = 0; k < numActions; k++) {
+            int action = fileActionIds[in.readInt()];
+            double qValue = in.readDouble();
+            if (classId >= 0 && action >= 0) {
+              ChoiceQTable.ChoiceQClassEntry classEntry = stateEntry.get(classId);
+              classEntry.get(action);
+              classEntry.update(action, qValue);
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read Q-table from file " + fileName, e);
+    }
+    return true;
+  }
+
+  /**
+   * Get the dense id of an action class
+   *
+   * @param cls Action class
+   * @return Id of the class
+   */
+  public int getClassId(Class cls) {
+    Integer classId = classIds.get(cls);
+    if (classId == null) {
+      classId = classes.size();
+      classIds.put(cls, classId);
+      classes.add(cls);
+    }
+    return classId;
+  }
+
+  /**
+   * Get the dense id of an action
+   *
+   * @param classId Id of the action class
+   * @param action Action to get the id of
+   * @return Id of the action
+   */
+  public int getActionId(int classId, ValueSummary action) {
+    return actionIds.intern(getActionKey(classId, action));
+  }
+
+  /**
+   * Get the key of an action, made of the class id and either the machine id of a machine choice
+   * or the value id of any other choice. Distinct actions have distinct keys. The approximation
+   * hashes its keys into features anyway, so there the value is hashed directly instead of being
+   * interned, and values are neither kept nor turned into strings.
+   *
+   * @param classId Id of the action class
+   * @param action Action to get the key of
+   * @return Key of the action
+   */
+  public long getActionKey(int classId, ValueSummary action) {
+    int id;
+    Object value = null;
+    if (action instanceof PrimitiveVS) {
+      PrimitiveVS pv = (PrimitiveVS) action;
+      if (pv.getValues().size() == 1) {
+        value = pv.getValues().iterator().next();
+      }
+    }
+    if (value instanceof Machine) {
+      id = ((Machine) value).getInstanceId();
+    } else if (approximation != null) {
+      id = action.getConcreteHash();
+    } else {
+      id = getValueId((value != null) ? value : action.toString());
+    }
+    return ((long) classId << 32) | (id & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Get the dense id of a choice value. Values are looked up by equality, and matched by their
+   * string the first time they are seen, so that values read from a Q-table file get the same id.
+   *
+   * @param value Concrete value, or the string of a choice that is not a single primitive value
+   * @return Id of the value
+   */
+  private int getValueId(Object value) {
+    Integer id = valueIds.get(value);
+    if (id == null) {
+      String name = String.valueOf(value);
+      id = valueIdsByName.get(name);
+      if (id == null) {
+        id = valueNames.size();
+        valueNames.add(name);
+        valueIdsByName.put(name, id);
+      }
+      valueIds.put(value, id);
+    }
+    return id;
+  }
+
+  /**
+   * Stable sort of choices in decreasing order of their current Q-value. Q-values are looked up
+   * once per choice rather than once per comparison.
+   *
+   * @param choices Choices to sort
+   */
+  public void sortByQValue(List<ValueSummary> choices) {
+    int size = choices.size();
+    double[] qValues = new double[size];
+    Integer[] order = new Integer[size];
+    ValueSummary[] original = new ValueSummary[size];
+    for (int i = 0; i < size; i++) {
+      original[i] = choices.get(i);
+      qValues[i] = getCurrentQvalue(original[i]);
+      order[i] = i;
+    }
+    Arrays.sort(order, (lhs, rhs) -> Double.compare(qValues[rhs], qValues[lhs]));
+    for (int i = 0; i < size; i++) {
+      choices.set(i, original[order[i]]);
+    }
   }
 
   public void setProgramStateHash(
@@ -171,12 +525,22 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     }
   }
 
+  private void setProgramState(List<Integer> features) {
+    programStateHash = features.hashCode();
+    programStateFeatures = new int[features.size()];
+    for (int i = 0; i < programStateFeatures.length; i++) {
+      programStateFeatures[i] = features.get(i);
+    }
+  }
+
   private void setProgramHashNone() {
     programStateHash = 0;
+    programStateFeatures = new int[0];
   }
 
   private void setProgramHashDepth(int depth) {
     programStateHash = depth;
+    programStateFeatures = new int[] {depth};
   }
 
   private void setProgramHashLastStep(PrimitiveVS<Machine> lastChoice) {
@@ -185,7 +549,7 @@ public class ChoiceLearningStats<S, A> implements Serializable {
       for (Machine m : lastChoice.getValues()) {
         addMachineFeatures(features, m);
       }
-      programStateHash = features.hashCode();
+      setProgramState(features);
     }
   }
 
@@ -193,9 +557,9 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     List<Integer> features = new ArrayList<>();
     for (Machine m : sch.getMachines()) {
       features.add(m.hashCode());
-      features.add(m.getCurrentState().getConcreteHash());
+      features.add(getStateHash(m));
     }
-    programStateHash = features.hashCode();
+    setProgramState(features);
   }
 
   private void setProgramHashMachineStateAndLastStep(
@@ -203,14 +567,14 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     List<Integer> features = new ArrayList<>();
     for (Machine m : sch.getMachines()) {
       features.add(m.hashCode());
-      features.add(m.getCurrentState().getConcreteHash());
+      features.add(getStateHash(m));
     }
     if (lastChoice != null) {
       for (Machine m : lastChoice.getValues()) {
         addMachineFeatures(features, m);
       }
     }
-    programStateHash = features.hashCode();
+    setProgramState(features);
   }
 
   private void setProgramHashMachineStateEvents(Scheduler sch) {
@@ -218,12 +582,12 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     for (Machine m : sch.getMachines()) {
       addMachineFeatures(features, m);
     }
-    programStateHash = features.hashCode();
+    setProgramState(features);
   }
 
   private void addMachineFeatures(List<Integer> features, Machine m) {
     features.add(m.hashCode());
-    features.add(m.getCurrentState().getConcreteHash());
+    features.add(getStateHash(m));
     if (!m.getEventBuffer().isEmpty()) {
       Message msg = m.getEventBuffer().peek(Guard.constTrue());
       features.add(msg.getTarget().getConcreteHash());
@@ -231,6 +595,37 @@ public class ChoiceLearningStats<S, A> implements Serializable {
     }
   }
 
+  /**
+   * Get a hash of the current state of a machine that is the same in every run, so that features
+   * saved to a Q-table file match in a later run. The hash code of a state includes the identity
+   * hash of its temperature, which is not.
+   *
+   * @param m Machine
+   * @return Hash of the current state
+   */
+  private static int getStateHash(Machine m) {
+    State state = m.getCurrentState().getConcreteValue();
+    if (state == null) {
+      return 0;
+    }
+    return Objects.hash(state.name, state.machineName, state.temperature.ordinal());
+  }
+
+  /**
+   * Get a hash of a machine, its current state and the event at the head of its queue
+   *
+   * @param m Machine
+   * @return Hash of the machine features
+   */
+  public static int getMachineEventHash(Machine m) {
+    int result = 31 * m.hashCode() + getStateHash(m);
+    if (!m.getEventBuffer().isEmpty()) {
+      Message msg = m.getEventBuffer().peek(Guard.constTrue());
+      result = 31 * result + msg.getEvent().getConcreteHash();
+    }
+    return result;
+  }
+
   private void setProgramHashFullState(Scheduler sch) {
     List<Integer> features = new ArrayList<>();
     for (Machine m : sch.getMachines()) {
@@ -239,7 +634,7 @@ public class ChoiceLearningStats<S, A> implements Serializable {
         features.add(val.getConcreteHash());
       }
     }
-    programStateHash = features.hashCode();
+    setProgramState(features);
   }
 
   private void setProgramHashTimelineAbstraction(Scheduler sch) {
@@ -248,15 +643,6 @@ public class ChoiceLearningStats<S, A> implements Serializable {
       features.add(m.hashCode());
       features.add(m.getHappensBeforePairs().hashCode());
     }
-    programStateHash = features.hashCode();
-  }
-
-  private class ChoiceComparator implements Comparator<ValueSummary>, Serializable {
-    public ChoiceComparator() {}
-
-    @Override
-    public int compare(ValueSummary lhs, ValueSummary rhs) {
-      return Double.compare(getCurrentQvalue(rhs), getCurrentQvalue(lhs));
-    }
+    setProgramState(features);
   }
 }
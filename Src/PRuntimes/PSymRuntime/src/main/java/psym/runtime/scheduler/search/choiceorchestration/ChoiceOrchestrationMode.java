@@ -4,5 +4,7 @@ public enum ChoiceOrchestrationMode {
     None,
     Random,
     QLearning,
-    EpsilonGreedy
+    EpsilonGreedy,
+    LinearApproximation,
+    Novelty
 }
@@ -10,7 +10,7 @@ public class ChoiceOrchestratorEpsilonGreedy implements ChoiceOrchestrator {
   private static final double EPSILON_MIN = 0.3;
 
   @Setter private static double EPSILON_DECAY_FACTOR = 0.9999;
-  private static double epsilon = EPSILON_MAX;
+  private double epsilon = EPSILON_MAX;
   private final ChoiceOrchestrator choiceOrchestratorExplore;
   private final ChoiceOrchestrator choiceOrchestratorExploit;
 
@@ -0,0 +1,129 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.util.List;
+import psym.runtime.PSymGlobal;
+import psym.runtime.machine.Machine;
+import psym.utils.random.RandomNumberGenerator;
+import psym.valuesummary.PrimitiveVS;
+import psym.valuesummary.ValueSummary;
+
+/**
+ * Choice orchestrator in the spirit of coverage-guided fuzzing. It keeps a bitmap of saturating hit
+ * counters, indexed by hashes of the features a choice covers:
+ *
+ * <ul>
+ *   <li>for a scheduling choice, the machine with its current state and head-of-queue event, and
+ *       the machine paired with the current program state hash
+ *   <li>for a data choice, the value paired with the last scheduled machine triple, and the value
+ *       paired with the current program state hash
+ * </ul>
+ *
+ * Choices are shuffled and then stably sorted by total hits, so that choices covering the fewest
+ * hit entries are explored first. The bitmap has a fixed size and reordering does not allocate.
+ */
+public class ChoiceOrchestratorNovelty implements ChoiceOrchestrator {
+  private static final int BITMAP_BITS = 16;
+  private static final int BITMAP_MASK = (1 << BITMAP_BITS) - 1;
+
+  /** Saturating hit counters, read as unsigned bytes */
+  private final byte[] hits = new byte[1 << BITMAP_BITS];
+  /** Feature hash of the last chosen scheduling choice */
+  private int lastScheduleHash = 0;
+  /** Scratch buffers of choice scores and bitmap indices */
+  private int[] scores = new int[16];
+
+  private int[] firstIndices = new int[16];
+  private int[] secondIndices = new int[16];
+
+  public ChoiceOrchestratorNovelty() {}
+
+  private static int index(int feature, int value) {
+    return LongInterner.mix(((long) feature << 32) | (value & 0xFFFFFFFFL)) & BITMAP_MASK;
+  }
+
+  private static Machine getMachine(ValueSummary choice) {
+    if (choice instanceof PrimitiveVS) {
+      for (Object value : ((PrimitiveVS<?>) choice).getValues()) {
+        if (value instanceof Machine) {
+          return (Machine) value;
+        }
+      }
+    }
+    return null;
+  }
+
+  public void reorderChoices(List<ValueSummary> choices, int bound, boolean isData) {
+    int size = choices.size();
+    if (size > scores.length) {
+      scores = new int[2 * size];
+      firstIndices = new int[2 * size];
+      secondIndices = new int[2 * size];
+    }
+    int stateHash = PSymGlobal.getChoiceLearningStats().getProgramStateHash();
+    for (int i = 0; i < size; i++) {
+      ValueSummary choice = choices.get(i);
+      Machine machine = isData ? null : getMachine(choice);
+      if (machine != null) {
+        firstIndices[i] = index(ChoiceLearningStats.getMachineEventHash(machine), 0);
+        secondIndices[i] = index(stateHash, machine.hashCode());
+      } else {
+        int valueHash = choice.getConcreteHash();
+        firstIndices[i] = index(lastScheduleHash, valueHash);
+        secondIndices[i] = index(stateHash, valueHash);
+      }
+      scores[i] = (hits[firstIndices[i]] & 0xFF) + (hits[secondIndices[i]] & 0xFF);
+    }
+
+    if (bound > 0 && size > bound) {
+      shuffle(choices, size);
+      sortByScore(choices, size);
+    }
+
+    int numChosen = (bound > 0) ? Math.min(bound, size) : size;
+    for (int i = 0; i < numChosen; i++) {
+      hit(firstIndices[i]);
+      hit(secondIndices[i]);
+    }
+    if (!isData && numChosen > 0) {
+      Machine machine = getMachine(choices.get(0));
+      if (machine != null) {
+        lastScheduleHash = ChoiceLearningStats.getMachineEventHash(machine);
+      }
+    }
+  }
+
+  private void hit(int index) {
+    if (hits[index] != (byte) 0xFF) {
+      hits[index]++;
+    }
+  }
+
+  private void swap(List<ValueSummary> choices, int i, int j) {
+    choices.set(i, choices.set(j, choices.get(i)));
+    int score = scores[i];
+    scores[i] = scores[j];
+    scores[j] = score;
+    int index = firstIndices[i];
+    firstIndices[i] = firstIndices[j];
+    firstIndices[j] = index;
+    index = secondIndices[i];
+    secondIndices[i] = secondIndices[j];
+    secondIndices[j] = index;
+  }
+
+  /** Fisher-Yates shuffle of choices along with their scores and indices */
+  private void shuffle(List<ValueSummary> choices, int size) {
+    for (int i = size - 1; i > 0; i--) {
+      swap(choices, i, RandomNumberGenerator.getInstance().getRandomInt(i + 1));
+    }
+  }
+
+  /** Stable insertion sort of choices in increasing order of score */
+  private void sortByScore(List<ValueSummary> choices, int size) {
+    for (int i = 1; i < size; i++) {
+      for (int j = i; j > 0 && scores[j - 1] > scores[j]; j--) {
+        swap(choices, j - 1, j);
+      }
+    }
+  }
+}
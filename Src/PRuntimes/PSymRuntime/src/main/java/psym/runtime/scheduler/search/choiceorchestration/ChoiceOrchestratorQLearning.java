@@ -1,8 +1,6 @@
 package psym.runtime.scheduler.search.choiceorchestration;
 
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 import psym.runtime.PSymGlobal;
 import psym.utils.random.RandomNumberGenerator;
 import psym.valuesummary.ValueSummary;
@@ -14,7 +12,7 @@ public class ChoiceOrchestratorQLearning implements ChoiceOrchestrator {
     if ((bound <= 0) || choices.size() <= bound) {
       return;
     }
-    Collections.shuffle(choices, new Random(RandomNumberGenerator.getInstance().getRandomLong()));
-    Collections.sort(choices, PSymGlobal.getChoiceLearningStats().getChoiceComparator());
+    RandomNumberGenerator.getInstance().shuffle(choices);
+    PSymGlobal.getChoiceLearningStats().sortByQValue(choices);
   }
 }
@@ -1,8 +1,6 @@
 package psym.runtime.scheduler.search.choiceorchestration;
 
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 import psym.utils.random.RandomNumberGenerator;
 import psym.valuesummary.ValueSummary;
 
@@ -15,6 +13,6 @@ public class ChoiceOrchestratorRandom implements ChoiceOrchestrator {
         if ((bound <= 0) || choices.size() <= bound) {
             return;
         }
-        Collections.shuffle(choices, new Random(RandomNumberGenerator.getInstance().getRandomLong()));
+        RandomNumberGenerator.getInstance().shuffle(choices);
     }
 }
@@ -0,0 +1,87 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.io.Serializable;
+
+/**
+ * Linear approximation of Q-values over hashed state features. Each state feature is paired with
+ * the feature before it, such as a machine with its current state, and each such pair is hashed
+ * together with an action to a weight in a fixed-size array. The Q-value of an action is the sum of
+ * its weights plus a per-action bias. Memory stays constant however many states are visited, and
+ * states that share features share what was learned about them.
+ */
+public class ChoiceQApproximation implements Serializable {
+  private final double[] weights;
+  private final int mask;
+
+  /**
+   * Constructor
+   *
+   * @param numBits Log2 of the number of weights
+   */
+  public ChoiceQApproximation(int numBits) {
+    this.weights = new double[1 << numBits];
+    this.mask = weights.length - 1;
+  }
+
+  private int index(long feature, long actionKey) {
+    return LongInterner.mix(feature * 0x9e3779b97f4a7c15L + actionKey) & mask;
+  }
+
+  private static long pair(int previous, int feature) {
+    return ((long) previous << 32) | (feature & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Get the approximate Q-value of an action
+   *
+   * @param features State features
+   * @param actionKey Key of the action
+   * @return Approximate Q-value
+   */
+  public double get(int[] features, long actionKey) {
+    double result = weights[index(Long.MIN_VALUE, actionKey)];
+    int previous = 0;
+    for (int feature : features) {
+      result += weights[index(pair(previous, feature), actionKey)];
+      previous = feature;
+    }
+    return result;
+  }
+
+  /**
+   * Move the approximate Q-value of an action towards a target value
+   *
+   * @param features State features
+   * @param actionKey Key of the action
+   * @param target Target Q-value
+   * @param rate Learning rate
+   */
+  public void update(int[] features, long actionKey, double target, double rate) {
+    double step = rate * (target - get(features, actionKey)) / (features.length + 1);
+    weights[index(Long.MIN_VALUE, actionKey)] += step;
+    int previous = 0;
+    for (int feature : features) {
+      weights[index(pair(previous, feature), actionKey)] += step;
+      previous = feature;
+    }
+  }
+
+  public int size() {
+    return weights.length;
+  }
+
+  /**
+   * Get the number of weights that were updated at least once
+   *
+   * @return Number of non-zero weights
+   */
+  public int numNonZero() {
+    int result = 0;
+    for (double weight : weights) {
+      if (weight != 0) {
+        result++;
+      }
+    }
+    return result;
+  }
+}
@@ -3,103 +3,161 @@ package psym.runtime.scheduler.search.choiceorchestration;
 import java.io.Serializable;
 import java.util.*;
 import lombok.Getter;
+import lombok.Setter;
 import psym.runtime.PSymGlobal;
 import psym.valuesummary.ValueSummary;
 
-public class ChoiceQTable<S, A> implements Serializable {
-  private final Map<S, ChoiceQStateEntry<A>> table = new HashMap<>();
+/**
+ * Q-values of choice actions per program state. Action classes and actions are identified by the
+ * dense ids interned in {@link ChoiceLearningStats}, and states by their int hash, so no lookup
+ * boxes a key. When bounded, the table prunes least recently used states once it grows to twice
+ * its bound.
+ */
+public class ChoiceQTable implements Serializable {
+  private final IntObjectHashMap<ChoiceQStateEntry> table = new IntObjectHashMap<>();
+  /** Maximum number of states to keep after pruning (0 means unbounded) */
+  @Getter @Setter private int maxStates = 0;
+  /** Logical clock of state accesses */
+  private long clock = 0;
 
-  public double get(S state, Class cls, A action) {
-    if (!table.containsKey(state)) {
-      table.put(state, new ChoiceQStateEntry());
-    }
-    return table.get(state).get(cls, action);
+  public double get(int state, int classId, int actionId) {
+    return get(state).get(classId).get(actionId);
   }
 
   public int size() {
     return table.size();
   }
 
-  public ChoiceQStateEntry get(S state) {
-    if (!table.containsKey(state)) {
-      table.put(state, new ChoiceQStateEntry());
+  public ChoiceQStateEntry get(int state) {
+    ChoiceQStateEntry entry = table.get(state);
+    if (entry == null) {
+      entry = new ChoiceQStateEntry();
+      table.put(state, entry);
+      // stamp the new state before pruning, so that it is kept as the most recently used one
+      entry.lastAccess = ++clock;
+      if (maxStates > 0 && table.size() > 2 * maxStates) {
+        prune(maxStates);
+      }
+    } else {
+      entry.lastAccess = ++clock;
     }
-    return table.get(state);
+    return entry;
+  }
+
+  /**
+   * Get the state at a position of the table, without counting it as an access
+   *
+   * @param index Position in the table, from 0 to size() - 1
+   * @return State hash
+   */
+  public int getState(int index) {
+    return table.keyAt(index);
+  }
+
+  /**
+   * Get the entry at a position of the table, without counting it as an access
+   *
+   * @param index Position in the table, from 0 to size() - 1
+   * @return State entry
+   */
+  public ChoiceQStateEntry getEntry(int index) {
+    return table.valueAt(index);
   }
 
-  public Set<S> getStates() {
-    return table.keySet();
+  /**
+   * Remove the least recently used states, breaking ties by fewer visits
+   *
+   * @param numStates Number of states to keep
+   */
+  public void prune(int numStates) {
+    if (table.size() <= numStates) {
+      return;
+    }
+    Integer[] order = new Integer[table.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(
+        order,
+        Comparator.comparingLong((Integer i) -> table.valueAt(i).lastAccess)
+            .thenComparingInt(i -> table.valueAt(i).numVisits));
+    // keep the most recently used states, in their order in the table
+    int[] kept = new int[numStates];
+    for (int i = 0; i < numStates; i++) {
+      kept[i] = order[order.length - numStates + i];
+    }
+    Arrays.sort(kept);
+    table.retain(kept);
   }
 
   @Override
   public String toString() {
     StringBuilder out = new StringBuilder();
     out.append("{ ");
-    for (Map.Entry<S, ChoiceQStateEntry<A>> entry : table.entrySet()) {
-      out.append(entry.getKey().toString());
+    for (int i = 0; i < table.size(); i++) {
+      out.append(table.keyAt(i));
       out.append(" -> ");
-      out.append(entry.getValue().toString());
+      out.append(table.valueAt(i).toString());
       out.append(", ");
     }
     out.append(" }");
     return out.toString();
   }
 
-  public static class ChoiceQTableKey<S, A> implements Serializable {
-    @Getter final ChoiceQTable.ChoiceQStateKey<A> actions;
-    @Getter S state;
+  public static class ChoiceQTableKey implements Serializable {
+    @Getter final ChoiceQTable.ChoiceQStateKey actions;
+    @Getter final int state;
+    @Getter final int[] features;
 
-    public ChoiceQTableKey() {
-      this(null, new ChoiceQTable.ChoiceQStateKey());
-    }
-
-    public ChoiceQTableKey(S s, ChoiceQTable.ChoiceQStateKey<A> a) {
+    public ChoiceQTableKey(int s, int[] f, ChoiceQTable.ChoiceQStateKey a) {
       this.state = s;
+      this.features = f;
       this.actions = a;
     }
 
-    public void clear() {
-      this.state = null;
-      actions.clear();
-    }
-
     @Override
     public String toString() {
-      return "{ " + state.toString() + " -> " + actions.toString() + " }";
+      return "{ " + state + " -> " + actions.toString() + " }";
     }
   }
 
-  public static class ChoiceQStateKey<A> implements Serializable {
-    final Map<Class, List<A>> table = new HashMap<>();
+  /** Class ids and keys of the actions chosen at a step */
+  public static class ChoiceQStateKey implements Serializable {
+    private int[] classIds = new int[2];
+    private long[] actionKeys = new long[2];
+    private int size = 0;
 
     public void add(ValueSummary action) {
-      Class cls = ChoiceLearningStats.getActionClass(action);
-      if (!table.containsKey(cls)) {
-        table.put(cls, new ArrayList<>());
+      ChoiceLearningStats stats = PSymGlobal.getChoiceLearningStats();
+      if (size == classIds.length) {
+        classIds = Arrays.copyOf(classIds, 2 * size);
+        actionKeys = Arrays.copyOf(actionKeys, 2 * size);
       }
-      table.get(cls).add((A) PSymGlobal.getChoiceLearningStats().getActionHash(cls, action));
+      classIds[size] = stats.getClassId(ChoiceLearningStats.getActionClass(action));
+      actionKeys[size] = stats.getActionKey(classIds[size], action);
+      size++;
     }
 
-    public List<A> get(Class cls) {
-      return table.getOrDefault(cls, new ArrayList<>());
+    public int size() {
+      return size;
     }
 
-    public Set<Class> getClasses() {
-      return table.keySet();
+    public int getClassId(int index) {
+      return classIds[index];
     }
 
-    public void clear() {
-      table.clear();
+    public long getActionKey(int index) {
+      return actionKeys[index];
     }
 
     @Override
     public String toString() {
       StringBuilder out = new StringBuilder();
       out.append("{ ");
-      for (Map.Entry<Class, List<A>> entry : table.entrySet()) {
-        out.append(entry.getKey().toString());
+      for (int i = 0; i < size; i++) {
+        out.append(classIds[i]);
         out.append(" -> ");
-        out.append(entry.getValue().toString());
+        out.append((int) actionKeys[i]);
         out.append(", ");
       }
       out.append(" }");
@@ -107,35 +165,49 @@ public class ChoiceQTable<S, A> implements Serializable {
     }
   }
 
-  public static class ChoiceQStateEntry<A> implements Serializable {
-    private final Map<Class, ChoiceQTable.ChoiceQClassEntry> table = new HashMap<>();
+  public static class ChoiceQStateEntry implements Serializable {
+    /** Entry of each action class, indexed by class id */
+    private ChoiceQClassEntry[] table = new ChoiceQClassEntry[0];
+    /** Number of times this state was rewarded */
+    @Getter @Setter private int numVisits = 0;
+    /** Logical time of the last access to this state */
+    private long lastAccess = 0;
 
-    public double get(Class cls, A action) {
-      if (!table.containsKey(cls)) {
-        table.put(cls, new ChoiceQClassEntry());
+    public ChoiceQClassEntry get(int classId) {
+      if (classId >= table.length) {
+        table = Arrays.copyOf(table, classId + 1);
       }
-      return table.get(cls).get(action);
-    }
-
-    public ChoiceQClassEntry<A> get(Class cls) {
-      if (!table.containsKey(cls)) {
-        table.put(cls, new ChoiceQClassEntry<A>());
+      ChoiceQClassEntry entry = table[classId];
+      if (entry == null) {
+        entry = new ChoiceQClassEntry();
+        table[classId] = entry;
       }
-      return table.get(cls);
+      return entry;
     }
 
-    public Set<Class> getClasses() {
-      return table.keySet();
+    /**
+     * Get the ids of classes with an entry in this state
+     *
+     * @return List of class ids
+     */
+    public List<Integer> getClassIds() {
+      List<Integer> result = new ArrayList<>();
+      for (int classId = 0; classId < table.length; classId++) {
+        if (table[classId] != null) {
+          result.add(classId);
+        }
+      }
+      return result;
     }
 
     @Override
     public String toString() {
       StringBuilder out = new StringBuilder();
       out.append("{ ");
-      for (Map.Entry<Class, ChoiceQTable.ChoiceQClassEntry> entry : table.entrySet()) {
-        out.append(entry.getKey().toString());
+      for (int classId : getClassIds()) {
+        out.append(classId);
         out.append(" -> ");
-        out.append(entry.getValue().toString());
+        out.append(table[classId].toString());
         out.append(", ");
       }
       out.append(" }");
@@ -143,53 +215,66 @@ public class ChoiceQTable<S, A> implements Serializable {
     }
   }
 
-  public static class ChoiceQClassEntry<A> implements Serializable {
-    private final Map<A, Double> table = new HashMap<>();
+  public static class ChoiceQClassEntry implements Serializable {
+    private final IntDoubleHashMap table = new IntDoubleHashMap();
 
-    public double get(A action) {
-      if (!table.containsKey(action)) {
-        table.put(action, ChoiceLearningStats.getDefaultQValue());
-      }
-      return table.get(action);
+    public double get(int actionId) {
+      return table.getOrInsert(actionId, ChoiceLearningStats.getDefaultQValue());
     }
 
-    public void update(A action, double val) {
-      assert (table.containsKey(action));
-      table.put(action, val);
+    public void update(int actionId, double val) {
+      assert (table.indexOf(actionId) >= 0);
+      table.put(actionId, val);
     }
 
     public double getMaxQ() {
-      if (table.isEmpty()) {
+      if (table.size() == 0) {
         return ChoiceLearningStats.getDefaultQValue();
-      } else {
-        return Collections.max(table.values());
       }
+      double maxQ = table.valueAt(0);
+      for (int i = 1; i < table.size(); i++) {
+        maxQ = Math.max(maxQ, table.valueAt(i));
+      }
+      return maxQ;
     }
 
-    public A getBestAction() {
-      if (!table.isEmpty()) {
+    /**
+     * Get the action with the highest Q-value
+     *
+     * @return Id of the best action, or -1 if there is no action
+     */
+    public int getBestAction() {
+      if (table.size() != 0) {
         double maxQ = getMaxQ();
-        for (A action : table.keySet()) {
-          if (get(action) == maxQ) {
-            return action;
+        for (int i = 0; i < table.size(); i++) {
+          if (table.valueAt(i) == maxQ) {
+            return table.keyAt(i);
           }
         }
       }
-      return null;
+      return -1;
     }
 
     public int size() {
       return table.size();
     }
 
+    public int getActionId(int index) {
+      return table.keyAt(index);
+    }
+
+    public double getQValue(int index) {
+      return table.valueAt(index);
+    }
+
     @Override
     public String toString() {
       StringBuilder out = new StringBuilder();
       out.append("{ ");
-      for (Map.Entry<A, Double> entry : table.entrySet()) {
-        out.append(entry.getKey().toString());
+      for (int i = 0; i < table.size(); i++) {
+        out.append(table.keyAt(i));
         out.append(" -> ");
-        out.append(String.format("%.5f", entry.getValue()));
+        out.append(String.format("%.5f", table.valueAt(i)));
         out.append(", ");
       }
       out.append(" }");
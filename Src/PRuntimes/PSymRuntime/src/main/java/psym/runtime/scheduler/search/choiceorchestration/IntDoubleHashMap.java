@@ -0,0 +1,100 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Map from int keys to double values, backed by an open-addressing table with linear probing.
+ * Entries are stored densely in insertion order and are never removed.
+ */
+final class IntDoubleHashMap implements Serializable {
+  /** Index plus one of the entry hashed to each slot, or 0 if the slot is empty */
+  private int[] slots = new int[8];
+
+  private int[] keys = new int[4];
+  private double[] values = new double[4];
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  int keyAt(int index) {
+    return keys[index];
+  }
+
+  double valueAt(int index) {
+    return values[index];
+  }
+
+  /**
+   * Get the index of the entry of a key
+   *
+   * @param key Key to look up
+   * @return Index of the entry, or -1 if the key is absent
+   */
+  int indexOf(int key) {
+    int mask = slots.length - 1;
+    int slot = LongInterner.mix(key) & mask;
+    while (slots[slot] != 0) {
+      int index = slots[slot] - 1;
+      if (keys[index] == key) {
+        return index;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Get the value of a key, inserting a default value if the key is absent
+   *
+   * @param key Key to look up
+   * @param defaultValue Value to insert if the key is absent
+   * @return Value of the key
+   */
+  double getOrInsert(int key, double defaultValue) {
+    int index = indexOf(key);
+    if (index >= 0) {
+      return values[index];
+    }
+    put(key, defaultValue);
+    return defaultValue;
+  }
+
+  void put(int key, double value) {
+    int mask = slots.length - 1;
+    int slot = LongInterner.mix(key) & mask;
+    while (slots[slot] != 0) {
+      int index = slots[slot] - 1;
+      if (keys[index] == key) {
+        values[index] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int index = size++;
+    if (index == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * keys.length);
+      values = Arrays.copyOf(values, 2 * values.length);
+    }
+    keys[index] = key;
+    values[index] = value;
+    slots[slot] = index + 1;
+    if (2 * size > slots.length) {
+      rehash();
+    }
+  }
+
+  private void rehash() {
+    slots = new int[2 * slots.length];
+    int mask = slots.length - 1;
+    for (int index = 0; index < size; index++) {
+      int slot = LongInterner.mix(keys[index]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = index + 1;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Map from int keys to objects, backed by an open-addressing table with linear probing. Entries
+ * are stored densely in insertion order. Single entries are never removed; {@link #retain} keeps a
+ * subset of the entries and rebuilds the table.
+ *
+ * @param <V> Type of the values
+ */
+final class IntObjectHashMap<V> implements Serializable {
+  /** Index plus one of the entry hashed to each slot, or 0 if the slot is empty */
+  private int[] slots = new int[8];
+
+  private int[] keys = new int[4];
+  private Object[] values = new Object[4];
+  private int size = 0;
+
+  int size() {
+    return size;
+  }
+
+  int keyAt(int index) {
+    return keys[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  V valueAt(int index) {
+    return (V) values[index];
+  }
+
+  /**
+   * Get the index of the entry of a key
+   *
+   * @param key Key to look up
+   * @return Index of the entry, or -1 if the key is absent
+   */
+  int indexOf(int key) {
+    int mask = slots.length - 1;
+    int slot = LongInterner.mix(key) & mask;
+    while (slots[slot] != 0) {
+      int index = slots[slot] - 1;
+      if (keys[index] == key) {
+        return index;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Get the value of a key
+   *
+   * @param key Key to look up
+   * @return Value of the key, or null if the key is absent
+   */
+  V get(int key) {
+    int index = indexOf(key);
+    return index < 0 ? null : valueAt(index);
+  }
+
+  void put(int key, V value) {
+    int mask = slots.length - 1;
+    int slot = LongInterner.mix(key) & mask;
+    while (slots[slot] != 0) {
+      int index = slots[slot] - 1;
+      if (keys[index] == key) {
+        values[index] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int index = size++;
+    if (index == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * keys.length);
+      values = Arrays.copyOf(values, 2 * values.length);
+    }
+    keys[index] = key;
+    values[index] = value;
+    slots[slot] = index + 1;
+    if (2 * size > slots.length) {
+      rehash(2 * slots.length);
+    }
+  }
+
+  /**
+   * Keep only the entries at the given indices, in that order
+   *
+   * @param indices Distinct indices of the entries to keep
+   */
+  void retain(int[] indices) {
+    int[] newKeys = new int[Math.max(4, indices.length)];
+    Object[] newValues = new Object[newKeys.length];
+    for (int i = 0; i < indices.length; i++) {
+      newKeys[i] = keys[indices[i]];
+      newValues[i] = values[indices[i]];
+    }
+    keys = newKeys;
+    values = newValues;
+    size = indices.length;
+    int numSlots = 8;
+    while (2 * size > numSlots) {
+      numSlots *= 2;
+    }
+    rehash(numSlots);
+  }
+
+  private void rehash(int numSlots) {
+    slots = new int[numSlots];
+    int mask = slots.length - 1;
+    for (int index = 0; index < size; index++) {
+      int slot = LongInterner.mix(keys[index]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = index + 1;
+    }
+  }
+}
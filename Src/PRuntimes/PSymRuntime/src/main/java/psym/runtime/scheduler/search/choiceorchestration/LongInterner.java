@@ -0,0 +1,72 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Assigns dense integer ids to long keys, in order of first appearance. Keys are stored in an
+ * open-addressing table with linear probing, so interning does not box or allocate per lookup.
+ */
+final class LongInterner implements Serializable {
+  /** Id plus one of the key hashed to each slot, or 0 if the slot is empty */
+  private int[] slots = new int[16];
+  /** Interned keys, indexed by id */
+  private long[] keys = new long[8];
+
+  private int size = 0;
+
+  static int mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  int size() {
+    return size;
+  }
+
+  long getKey(int id) {
+    return keys[id];
+  }
+
+  /**
+   * Get the id of a key, assigning the next free id if the key is new
+   *
+   * @param key Key to intern
+   * @return Dense id of the key
+   */
+  int intern(long key) {
+    int mask = slots.length - 1;
+    int slot = mix(key) & mask;
+    while (slots[slot] != 0) {
+      int id = slots[slot] - 1;
+      if (keys[id] == key) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int id = size++;
+    if (id == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * keys.length);
+    }
+    keys[id] = key;
+    slots[slot] = id + 1;
+    if (2 * size > slots.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  private void rehash() {
+    slots = new int[2 * slots.length];
+    int mask = slots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = mix(keys[id]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id + 1;
+    }
+  }
+}
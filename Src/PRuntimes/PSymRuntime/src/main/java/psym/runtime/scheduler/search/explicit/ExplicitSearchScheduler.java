@@ -9,6 +9,7 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 import psym.runtime.Concretizer;
 import psym.runtime.PSymGlobal;
@@ -25,6 +26,8 @@ import psym.runtime.statistics.SolverStats;
 import psym.utils.Assert;
 import psym.utils.monitor.MemoryMonitor;
 import psym.utils.monitor.TimeMonitor;
+import psym.utils.monitor.events.CheckpointWriteEvent;
+import psym.utils.monitor.events.StateCachingEvent;
 import psym.valuesummary.Guard;
 import psym.valuesummary.GuardedValue;
 import psym.valuesummary.PrimitiveVS;
@@ -33,9 +36,15 @@ import psym.valuesummary.solvers.SolverEngine;
 
 public class ExplicitSearchScheduler extends SearchScheduler {
   /** Total number of states */
-  private int totalStateCount = 0;
-  /** Total number of distinct states */
-  private int totalDistinctStateCount = 0;
+  @Getter private int totalStateCount = 0;
+  /**
+   * Total number of distinct states. A state evicted from the cache under memory pressure is
+   * counted again if revisited, so this is an upper bound once {@link #totalEvictedStateCount} is
+   * non-zero.
+   */
+  @Getter private int totalDistinctStateCount = 0;
+  /** Total number of states evicted from the cache under memory pressure */
+  @Getter private int totalEvictedStateCount = 0;
   /** Map of distinct concrete state to schedule when first visited */
   private transient Map<Object, Integer> distinctStates = new HashMap<>();
   /** Guard corresponding on distinct states at a step */
@@ -135,7 +144,7 @@ public class ExplicitSearchScheduler extends SearchScheduler {
 
     SolverStats.checkResourceLimits();
 
-    if (PSymGlobal.getConfiguration().isChoiceOrchestrationLearning()) {
+    if (PSymGlobal.getConfiguration().isChoiceOrchestrationStateHashing()) {
       PSymGlobal.getChoiceLearningStats()
           .setProgramStateHash(this, PSymGlobal.getConfiguration().getChoiceLearningStateMode(), schedulingChoices);
     }
@@ -200,18 +209,18 @@ public class ExplicitSearchScheduler extends SearchScheduler {
             String.format(
                 "%.1f",
                 SolverStats.getDoublePercent(
-                    SolverStats.timeTotalCreateGuards / 1000.0, timeUsed)));
+                    SolverStats.timeTotalCreateGuards.sum() / 1000.0, timeUsed)));
         SearchLogger.log(
             "time-solve-guards-%",
             String.format(
                 "%.1f",
-                SolverStats.getDoublePercent(SolverStats.timeTotalSolveGuards / 1000.0, timeUsed)));
+                SolverStats.getDoublePercent(SolverStats.timeTotalSolveGuards.sum() / 1000.0, timeUsed)));
         SearchLogger.log(
             "time-create-guards-max-seconds",
-            String.format("%.3f", SolverStats.timeMaxCreateGuards / 1000.0));
+            String.format("%.3f", SolverStats.timeMaxCreateGuards.get() / 1000.0));
         SearchLogger.log(
             "time-solve-guards-max-seconds",
-            String.format("%.3f", SolverStats.timeMaxSolveGuards / 1000.0));
+            String.format("%.3f", SolverStats.timeMaxSolveGuards.get() / 1000.0));
         SolverStats.logSolverStats();
         SearchLogger.log("--------------------");
         SearchLogger.log("Detailed Solver Stats::");
@@ -250,6 +259,37 @@ public class ExplicitSearchScheduler extends SearchScheduler {
     }
   }
 
+  /** Drop cached states first visited in earlier schedules, keeping those of the current one */
+  @Override
+  protected int shrinkStateCache() {
+    int numStates = distinctStates.size();
+    distinctStates.values().removeIf(firstVisitIter -> firstVisitIter != getIter());
+    int numEvicted = numStates - distinctStates.size();
+    totalEvictedStateCount += numEvicted;
+    return numEvicted;
+  }
+
+  @Override
+  protected boolean writeCheckpoint() {
+    if (!isMainWorker()) {
+      return false;
+    }
+    long pid = ProcessHandle.current().pid();
+    String writeFileName =
+        PSymGlobal.getConfiguration().getOutputFolder() + "/checkpoint_pid" + pid + ".out";
+    writeToFile(writeFileName);
+    PSymLogger.info("  Wrote checkpoint in " + writeFileName + ", resume with --read");
+    return true;
+  }
+
+  @Override
+  protected void registerMetrics() {
+    super.registerMetrics();
+    registerGauge("states", () -> totalStateCount);
+    registerGauge("distinct_states", () -> totalDistinctStateCount);
+    registerGauge("evicted_states", () -> totalEvictedStateCount);
+  }
+
   @Override
   protected void printCurrentStatus(double newRuntime) {
     StringBuilder s = new StringBuilder(100);
@@ -268,6 +308,9 @@ public class ExplicitSearchScheduler extends SearchScheduler {
     if (PSymGlobal.getConfiguration().getStateCachingMode() != StateCachingMode.None) {
       s.append(String.format("\n      States:           %d", totalStateCount));
       s.append(String.format("\n      DistinctStates:   %d", totalDistinctStateCount));
+      if (totalEvictedStateCount > 0) {
+        s.append(String.format("\n      EvictedStates:    %d", totalEvictedStateCount));
+      }
     }
 
     ScratchLogger.log(s.toString());
@@ -275,6 +318,9 @@ public class ExplicitSearchScheduler extends SearchScheduler {
 
   @Override
   protected void printProgressHeader(boolean consolePrint) {
+    if (!isMainWorker()) {
+      return;
+    }
     StringBuilder s = new StringBuilder(100);
     s.append(StringUtils.center("Time", 11));
     s.append(StringUtils.center("Memory", 9));
@@ -297,6 +343,9 @@ public class ExplicitSearchScheduler extends SearchScheduler {
 
   @Override
   protected void printProgress(boolean forcePrint) {
+    if (!isMainWorker()) {
+      return;
+    }
     if (forcePrint || (TimeMonitor.getInstance().findInterval(getLastReportTime()) > 5)) {
       setLastReportTime(Instant.now());
       double newRuntime = TimeMonitor.getInstance().getRuntime();
@@ -361,6 +410,7 @@ public class ExplicitSearchScheduler extends SearchScheduler {
     // print states statistics
     StatWriter.log("#-states", String.format("%d", totalStateCount));
     StatWriter.log("#-distinct-states", String.format("%d", totalDistinctStateCount));
+    StatWriter.log("#-evicted-states", String.format("%d", totalEvictedStateCount));
 
     // print symmetry statistics
     StatWriter.log("#-pruned-symmetry", String.format("%d", ExplicitSymmetryTracker.getPruneCount()));
@@ -372,6 +422,12 @@ public class ExplicitSearchScheduler extends SearchScheduler {
 
     if (PSymGlobal.getConfiguration().getStateCachingMode() != StateCachingMode.None) {
       SearchLogger.log(String.format("Distinct States Explored %d", totalDistinctStateCount));
+      if (totalEvictedStateCount > 0) {
+        SearchLogger.log(
+            String.format(
+                "States Evicted           %d (revisits of these count as distinct)",
+                totalEvictedStateCount));
+      }
     }
 
     BigDecimal coverage22 = PSymGlobal.getCoverage().getEstimatedCoverage(22);
@@ -430,7 +486,7 @@ public class ExplicitSearchScheduler extends SearchScheduler {
   protected void reset_stats() {
     searchStats.reset_stats();
     PSymGlobal.getCoverage().resetCoverage();
-    if (PSymGlobal.getConfiguration().isChoiceOrchestrationLearning()) {
+    if (PSymGlobal.getConfiguration().isChoiceOrchestrationStateHashing()) {
       PSymGlobal.getChoiceLearningStats()
               .setProgramStateHash(this, PSymGlobal.getConfiguration().getChoiceLearningStateMode(), null);
     }
@@ -438,6 +494,7 @@ public class ExplicitSearchScheduler extends SearchScheduler {
     distinctStates.clear();
     totalStateCount = 0;
     totalDistinctStateCount = 0;
+    totalEvictedStateCount = 0;
   }
 
   /** Reinitialize scheduler */
@@ -458,11 +515,19 @@ public class ExplicitSearchScheduler extends SearchScheduler {
    * @throws Exception Throw error if writing fails
    */
   public void writeToFile(String writeFileName) throws RuntimeException {
+    CheckpointWriteEvent writeEvent = new CheckpointWriteEvent();
+    writeEvent.begin();
     try {
       FileOutputStream fos = new FileOutputStream(writeFileName);
       ObjectOutputStream oos = new ObjectOutputStream(fos);
       oos.writeObject(this);
       oos.writeObject(PSymGlobal.getInstance());
+      if (writeEvent.shouldCommit()) {
+        oos.flush();
+        writeEvent.fileName = writeFileName;
+        writeEvent.bytes = Files.size(Paths.get(writeFileName));
+        writeEvent.commit();
+      }
       if (PSymGlobal.getConfiguration().getVerbosity() > 0) {
         long szBytes = Files.size(Paths.get(writeFileName));
         PSymLogger.info(
@@ -570,6 +635,8 @@ public class ExplicitSearchScheduler extends SearchScheduler {
       return new int[] {0, 0, -1};
     }
 
+    StateCachingEvent cachingEvent = new StateCachingEvent();
+    cachingEvent.begin();
     List<List<Object>> globalStateConcrete = new ArrayList<>();
     for (Machine m : currentMachines) {
       assert (srcState.containsKey(m));
@@ -592,12 +659,13 @@ public class ExplicitSearchScheduler extends SearchScheduler {
 
     String concreteState = globalStateConcrete.toString();
     totalStateCount += 1;
+    int[] result;
     if (distinctStates.containsKey(concreteState)) {
       if (PSymGlobal.getConfiguration().getVerbosity() > 5) {
         PSymLogger.info("Repeated State: " + getConcreteStateString(globalStateConcrete));
       }
       isDistinctState = false;
-      return new int[] {1, 0, distinctStates.get(concreteState)};
+      result = new int[] {1, 0, distinctStates.get(concreteState)};
     } else {
       if (PSymGlobal.getConfiguration().getVerbosity() > 4) {
         PSymLogger.info("New State:      " + getConcreteStateString(globalStateConcrete));
@@ -605,7 +673,14 @@ public class ExplicitSearchScheduler extends SearchScheduler {
       distinctStates.put(concreteState, getIter());
       totalDistinctStateCount += 1;
       isDistinctState = true;
-      return new int[] {1, 1, -1};
+      result = new int[] {1, 1, -1};
+    }
+    if (cachingEvent.shouldCommit()) {
+      cachingEvent.depth = getDepth();
+      cachingEvent.isDistinct = isDistinctState;
+      cachingEvent.numDistinctStates = distinctStates.size();
+      cachingEvent.commit();
     }
+    return result;
   }
 }
@@ -0,0 +1,239 @@
+package psym.runtime.scheduler.search.explicit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToIntFunction;
+import psym.commandline.PSymConfiguration;
+import psym.runtime.PSymContext;
+import psym.runtime.PSymGlobal;
+import psym.runtime.Program;
+import psym.runtime.statistics.MetricsRegistry;
+import psym.utils.exception.MemoutException;
+import psym.utils.monitor.MemoryMonitor;
+import psym.utils.random.RandomNumberGenerator;
+import psym.valuesummary.solvers.SolverEngine;
+
+/**
+ * Explicit search by several workers in one JVM. Each worker runs its own schedules with its own
+ * scheduler, machines, solver guards and random number generator, split from the generator of the
+ * main run, in a context forked from the main one. Workers only share a stop flag, raised by the
+ * first worker that finds a bug or fails, and the budget of schedules.
+ *
+ * <p>Worker 0 runs the given scheduler in the main context, so progress, statistics and results are
+ * reported as for a single worker. Counts of schedules and states are also reported summed over
+ * all workers, and each worker registers its metric gauges labeled with its id.
+ */
+public class ExplicitSearchWorkers implements Callable<Integer> {
+  /** Gauges of the workers that add up, registered as sums over the workers */
+  private static final String[] summedGauges = {
+    "states", "distinct_states", "evicted_states", "pending_tasks", "backtracks"
+  };
+  private final List<Worker> workers = new ArrayList<>();
+  private final AtomicBoolean stop = new AtomicBoolean(false);
+  private final AtomicInteger numSchedulesStarted = new AtomicInteger(0);
+  /** Worker that failed first, or null if none failed */
+  private volatile Worker failedWorker = null;
+
+  /**
+   * Constructor, to be called in the main context
+   *
+   * @param scheduler Scheduler of the main worker
+   * @param numWorkers Number of workers
+   */
+  public ExplicitSearchWorkers(ExplicitSearchScheduler scheduler, int numWorkers) {
+    PSymContext mainContext = PSymContext.getCurrent();
+    workers.add(new Worker(mainContext, scheduler));
+    for (int i = 1; i < numWorkers; i++) {
+      PSymContext context = mainContext.fork();
+      context.setWorkerId(i);
+      context.setRandomNumberGenerator(RandomNumberGenerator.getInstance().split());
+      workers.add(new Worker(context, null));
+    }
+    for (String name : summedGauges) {
+      MetricsRegistry.gauge(name, () -> sumGauges(name));
+    }
+  }
+
+  /** Sum the gauges of a metric registered by the workers so far */
+  private double sumGauges(String name) {
+    double result = 0;
+    for (int i = 0; i < workers.size(); i++) {
+      DoubleSupplier gauge = MetricsRegistry.getGauges().get(String.format("%s_w%d", name, i));
+      if (gauge != null) {
+        result += gauge.getAsDouble();
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public Integer call() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers.size() - 1));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Worker worker : workers.subList(1, workers.size())) {
+        futures.add(executor.submit(() -> worker.context.call(() -> run(worker))));
+      }
+      workers.get(0).context.call(() -> run(workers.get(0)));
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      stop();
+      executor.shutdownNow();
+    }
+
+    Worker failed = failedWorker;
+    if (failed != null) {
+      if (failed.failure instanceof Exception) {
+        throw (Exception) failed.failure;
+      }
+      throw (Error) failed.failure;
+    }
+    return 0;
+  }
+
+  /** Stop all workers before their next schedule */
+  public void stop() {
+    stop.set(true);
+  }
+
+  private boolean shouldStop() {
+    if (stop.get()) {
+      return true;
+    }
+    int maxSchedules = PSymGlobal.getConfiguration().getMaxExecutions();
+    return (maxSchedules > 0) && (numSchedulesStarted.incrementAndGet() > maxSchedules);
+  }
+
+  /** Run a worker in its context, recording its failure if any */
+  private Integer run(Worker worker) {
+    try {
+      if (worker.scheduler == null) {
+        worker.scheduler = createScheduler();
+      }
+      worker.scheduler.setStopCondition(this::shouldStop);
+      worker.scheduler.doSearch();
+    } catch (OutOfMemoryError e) {
+      fail(worker, new MemoutException(e.getMessage(), MemoryMonitor.getMemSpent(), e));
+    } catch (Exception | Error e) {
+      fail(worker, e);
+    }
+    return 0;
+  }
+
+  /** Set up the solver engine and a new instance of the program in the current context */
+  private ExplicitSearchScheduler createScheduler() throws ReflectiveOperationException {
+    PSymConfiguration config = PSymGlobal.getConfiguration();
+    SolverEngine.resetEngine(config.getSolverType(), config.getExprLibType());
+    PSymGlobal.initializeSymmetryTracker(false);
+    PSymGlobal.getChoiceLearningStats().setMaxQStates(config.getLearnMaxStates());
+
+    Program mainProgram = workers.get(0).scheduler.getProgram();
+    Program program = mainProgram.getClass().getDeclaredConstructor().newInstance();
+    program.setTestDriver(
+        mainProgram.getTestDriver().getClass().getDeclaredConstructor().newInstance());
+    ExplicitSearchScheduler scheduler = new ExplicitSearchScheduler(program);
+    PSymGlobal.setScheduler(scheduler);
+    return scheduler;
+  }
+
+  private synchronized void fail(Worker worker, Throwable failure) {
+    stop();
+    if (failedWorker == null) {
+      worker.failure = failure;
+      failedWorker = worker;
+    }
+  }
+
+  /**
+   * Get the context of the worker that failed first, such as by finding a bug
+   *
+   * @return Context of the failed worker, or null if no worker failed
+   */
+  public PSymContext getFailedContext() {
+    Worker failed = failedWorker;
+    return (failed == null) ? null : failed.context;
+  }
+
+  /**
+   * Get the scheduler of the worker that failed first, such as by finding a bug
+   *
+   * @return Scheduler of the failed worker, or null if no worker failed
+   */
+  public ExplicitSearchScheduler getFailedScheduler() {
+    Worker failed = failedWorker;
+    return (failed == null) ? null : failed.scheduler;
+  }
+
+  /**
+   * Get the number of schedules explored by all workers
+   *
+   * @return Number of schedules
+   */
+  public int getNumSchedules() {
+    return sum(scheduler -> scheduler.getIter() - scheduler.getStart_iter());
+  }
+
+  /**
+   * Get the number of states explored by all workers
+   *
+   * @return Number of states
+   */
+  public int getNumStates() {
+    return sum(ExplicitSearchScheduler::getTotalStateCount);
+  }
+
+  /**
+   * Get the sum of the numbers of distinct states of each worker. Workers cache states separately,
+   * so a state explored by several workers is counted once by each.
+   *
+   * @return Number of distinct states summed over the workers
+   */
+  public int getNumDistinctStates() {
+    return sum(ExplicitSearchScheduler::getTotalDistinctStateCount);
+  }
+
+  /**
+   * Get the number of states evicted from the state caches of all workers
+   *
+   * @return Number of evicted states
+   */
+  public int getNumEvictedStates() {
+    return sum(ExplicitSearchScheduler::getTotalEvictedStateCount);
+  }
+
+  /** Sum a statistic over the workers that have a scheduler */
+  private int sum(ToIntFunction<ExplicitSearchScheduler> stat) {
+    int result = 0;
+    for (Worker worker : workers) {
+      ExplicitSearchScheduler scheduler = worker.scheduler;
+      if (scheduler != null) {
+        result += stat.applyAsInt(scheduler);
+      }
+    }
+    return result;
+  }
+
+  public int getNumWorkers() {
+    return workers.size();
+  }
+
+  private static class Worker {
+    private final PSymContext context;
+    private volatile ExplicitSearchScheduler scheduler;
+    private Throwable failure = null;
+
+    Worker(PSymContext context, ExplicitSearchScheduler scheduler) {
+      this.context = context;
+      this.scheduler = scheduler;
+    }
+  }
+}
@@ -20,7 +20,7 @@ public class ExplicitSymmetryTracker extends SymmetryTracker {
 
   public ExplicitSymmetryTracker() {
     typeToSymmetryClasses = new HashMap<>();
-    for (String type : typeToAllSymmetricMachines.keySet()) {
+    for (String type : getTypeToAllSymmetricMachines().keySet()) {
       typeToSymmetryClasses.put(type, null);
     }
     pendingMerges = new HashSet<>();
@@ -62,7 +62,7 @@ public class ExplicitSymmetryTracker extends SymmetryTracker {
   }
 
   public void reset() {
-    for (Set<Machine> symMachines : typeToAllSymmetricMachines.values()) {
+    for (Set<Machine> symMachines : getTypeToAllSymmetricMachines().values()) {
       symMachines.clear();
     }
     typeToSymmetryClasses.replaceAll((t, v) -> null);
@@ -107,7 +107,7 @@ public class ExplicitSymmetryTracker extends SymmetryTracker {
   public void createMachine(Machine machine, Guard guard) {
     assert (guard.isTrue());
 
-    Set<Machine> symMachines = typeToAllSymmetricMachines.get(machine.getName());
+    Set<Machine> symMachines = getTypeToAllSymmetricMachines().get(machine.getName());
     if (symMachines != null) {
       symMachines.add(machine);
     }
@@ -229,7 +229,7 @@ public class ExplicitSymmetryTracker extends SymmetryTracker {
       // update symmetry classes map
       symClasses.add(selfSet);
 
-      assert (symClasses.size() <= typeToAllSymmetricMachines.get(type).size());
+      assert (symClasses.size() <= getTypeToAllSymmetricMachines().get(type).size());
       pendingMerges.add(machine);
     }
   }
@@ -262,7 +262,7 @@ public class ExplicitSymmetryTracker extends SymmetryTracker {
     symClasses.removeIf(x -> x.isEmpty());
 
     // update symmetry classes map
-    assert (symClasses.size() <= typeToAllSymmetricMachines.get(type).size());
+    assert (symClasses.size() <= getTypeToAllSymmetricMachines().get(type).size());
     typeToSymmetryClasses.put(type, symClasses);
   }
 
@@ -101,7 +101,7 @@ public class SymbolicSearchScheduler extends SearchScheduler {
 
     SolverStats.checkResourceLimits();
 
-    if (PSymGlobal.getConfiguration().isChoiceOrchestrationLearning()) {
+    if (PSymGlobal.getConfiguration().isChoiceOrchestrationStateHashing()) {
       PSymGlobal.getChoiceLearningStats()
               .setProgramStateHash(this, PSymGlobal.getConfiguration().getChoiceLearningStateMode(), schedulingChoices);
     }
@@ -190,18 +190,18 @@ public class SymbolicSearchScheduler extends SearchScheduler {
             String.format(
                 "%.1f",
                 SolverStats.getDoublePercent(
-                    SolverStats.timeTotalCreateGuards / 1000.0, timeUsed)));
+                    SolverStats.timeTotalCreateGuards.sum() / 1000.0, timeUsed)));
         SearchLogger.log(
             "time-solve-guards-%",
             String.format(
                 "%.1f",
-                SolverStats.getDoublePercent(SolverStats.timeTotalSolveGuards / 1000.0, timeUsed)));
+                SolverStats.getDoublePercent(SolverStats.timeTotalSolveGuards.sum() / 1000.0, timeUsed)));
         SearchLogger.log(
             "time-create-guards-max-seconds",
-            String.format("%.3f", SolverStats.timeMaxCreateGuards / 1000.0));
+            String.format("%.3f", SolverStats.timeMaxCreateGuards.get() / 1000.0));
         SearchLogger.log(
             "time-solve-guards-max-seconds",
-            String.format("%.3f", SolverStats.timeMaxSolveGuards / 1000.0));
+            String.format("%.3f", SolverStats.timeMaxSolveGuards.get() / 1000.0));
         SolverStats.logSolverStats();
         SearchLogger.log("--------------------");
         SearchLogger.log("Detailed Solver Stats::");
@@ -342,24 +342,24 @@ public class SymbolicSearchScheduler extends SearchScheduler {
         "time-create-guards-%",
         String.format(
             "%.1f",
-            SolverStats.getDoublePercent(SolverStats.timeTotalCreateGuards / 1000.0, timeUsed)));
+            SolverStats.getDoublePercent(SolverStats.timeTotalCreateGuards.sum() / 1000.0, timeUsed)));
     StatWriter.log(
         "time-solve-guards-%",
         String.format(
             "%.1f",
-            SolverStats.getDoublePercent(SolverStats.timeTotalSolveGuards / 1000.0, timeUsed)));
+            SolverStats.getDoublePercent(SolverStats.timeTotalSolveGuards.sum() / 1000.0, timeUsed)));
     StatWriter.log(
         "time-create-guards-seconds",
-        String.format("%.1f", SolverStats.timeTotalCreateGuards / 1000.0));
+        String.format("%.1f", SolverStats.timeTotalCreateGuards.sum() / 1000.0));
     StatWriter.log(
         "time-solve-guards-seconds",
-        String.format("%.1f", SolverStats.timeTotalSolveGuards / 1000.0));
+        String.format("%.1f", SolverStats.timeTotalSolveGuards.sum() / 1000.0));
     StatWriter.log(
         "time-create-guards-max-seconds",
-        String.format("%.3f", SolverStats.timeMaxCreateGuards / 1000.0));
+        String.format("%.3f", SolverStats.timeMaxCreateGuards.get() / 1000.0));
     StatWriter.log(
         "time-solve-guards-max-seconds",
-        String.format("%.3f", SolverStats.timeMaxSolveGuards / 1000.0));
+        String.format("%.3f", SolverStats.timeMaxSolveGuards.get() / 1000.0));
 
     StatWriter.log(
         "#-events", String.format("%d", totalStats.getDepthStats().getNumOfTransitions()));
@@ -403,7 +403,7 @@ public class SymbolicSearchScheduler extends SearchScheduler {
   protected void reset_stats() {
     searchStats.reset_stats();
     PSymGlobal.getCoverage().resetCoverage();
-    if (PSymGlobal.getConfiguration().isChoiceOrchestrationLearning()) {
+    if (PSymGlobal.getConfiguration().isChoiceOrchestrationStateHashing()) {
       PSymGlobal.getChoiceLearningStats()
               .setProgramStateHash(this, PSymGlobal.getConfiguration().getChoiceLearningStateMode(), null);
     }
@@ -422,6 +422,15 @@ public class SymbolicSearchScheduler extends SearchScheduler {
     depthToCachedProtocolState.clear();
   }
 
+  /** Drop the protocol states cached at earlier depths, which only prune the search */
+  @Override
+  protected int shrinkStateCache() {
+    SortedMap<Integer, ProtocolState> earlier = depthToCachedProtocolState.headMap(depth);
+    int numDropped = earlier.size();
+    earlier.clear();
+    return numDropped;
+  }
+
   public static class ProtocolState {
     @Getter
     Map<Machine, MachineLocalState> stateMap = null;
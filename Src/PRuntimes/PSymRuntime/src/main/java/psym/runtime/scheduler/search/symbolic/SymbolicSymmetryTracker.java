@@ -14,7 +14,7 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
 
   public SymbolicSymmetryTracker() {
     typeToSymmetryClasses = new HashMap<>();
-    for (String type : typeToAllSymmetricMachines.keySet()) {
+    for (String type : getTypeToAllSymmetricMachines().keySet()) {
       typeToSymmetryClasses.put(type, null);
     }
     typeToPendingMerges = new HashMap<>();
@@ -32,7 +32,7 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
   }
 
   public void reset() {
-    for (Set<Machine> symMachines : typeToAllSymmetricMachines.values()) {
+    for (Set<Machine> symMachines : getTypeToAllSymmetricMachines().values()) {
       symMachines.clear();
     }
     typeToSymmetryClasses.replaceAll((t, v) -> null);
@@ -42,7 +42,7 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
   public void createMachine(Machine machine, Guard guard) {
     assert (guard.isTrue());
 
-    Set<Machine> symMachines = typeToAllSymmetricMachines.get(machine.getName());
+    Set<Machine> symMachines = getTypeToAllSymmetricMachines().get(machine.getName());
     if (symMachines != null) {
       symMachines.add(machine);
     }
@@ -185,7 +185,7 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
           if (!isNonEmpty.isFalse()) {
             assert (!BooleanVS.isEverTrue(
                 IntegerVS.lessThan(
-                    typeToAllSymmetricMachines.get(type).size(), symClassI.size())));
+                    getTypeToAllSymmetricMachines().get(type).size(), symClassI.size())));
             newClasses = newClasses.add(symClassI.restrict(isNonEmpty));
           }
         }
@@ -199,7 +199,7 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
 
       // update symmetry classes map
       assert (!BooleanVS.isEverTrue(
-          IntegerVS.lessThan(typeToAllSymmetricMachines.get(type).size(), newClasses.size())));
+          IntegerVS.lessThan(getTypeToAllSymmetricMachines().get(type).size(), newClasses.size())));
       typeToSymmetryClasses.put(type, newClasses);
       //                    checkSymmetryClassesForType(type);
 
@@ -268,14 +268,14 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
       Guard isNonEmpty = BooleanVS.getFalseGuard(IntegerVS.equalTo(symClass.size(), zero));
       if (!isNonEmpty.isFalse()) {
         assert (!BooleanVS.isEverTrue(
-            IntegerVS.lessThan(typeToAllSymmetricMachines.get(type).size(), symClass.size())));
+            IntegerVS.lessThan(getTypeToAllSymmetricMachines().get(type).size(), symClass.size())));
         newClasses = newClasses.add(symClass.restrict(isNonEmpty));
       }
     }
 
     // update symmetry classes map
     assert (!BooleanVS.isEverTrue(
-        IntegerVS.lessThan(typeToAllSymmetricMachines.get(type).size(), newClasses.size())));
+        IntegerVS.lessThan(getTypeToAllSymmetricMachines().get(type).size(), newClasses.size())));
     typeToSymmetryClasses.put(type, newClasses);
     //        checkSymmetryClassesForType(type);
   }
@@ -410,7 +410,7 @@ public class SymbolicSymmetryTracker extends SymmetryTracker {
       assert (!BooleanVS.isEverFalse(
           IntegerVS.equalTo(
               typeToSymmetryClasses.get(type).size(),
-              new PrimitiveVS<>(typeToAllSymmetricMachines.get(type).size()))));
+              new PrimitiveVS<>(getTypeToAllSymmetricMachines().get(type).size()))));
     }
   }
 
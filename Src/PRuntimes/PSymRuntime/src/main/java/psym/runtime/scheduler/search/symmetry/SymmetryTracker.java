@@ -2,14 +2,22 @@ package psym.runtime.scheduler.search.symmetry;
 
 import java.io.Serializable;
 import java.util.*;
+import psym.runtime.PSymContext;
 import psym.runtime.machine.Machine;
 import psym.valuesummary.*;
 
 public abstract class SymmetryTracker implements Serializable {
-  public static final Map<String, Set<Machine>> typeToAllSymmetricMachines = new HashMap<>();
+  /**
+   * Get the machines of each symmetric type in the current context
+   *
+   * @return Map from machine type to machines
+   */
+  public static Map<String, Set<Machine>> getTypeToAllSymmetricMachines() {
+    return PSymContext.getCurrent().getTypeToAllSymmetricMachines();
+  }
 
   public static void addSymmetryType(String type) {
-    typeToAllSymmetricMachines.put(type, new TreeSet<>());
+    getTypeToAllSymmetricMachines().put(type, new TreeSet<>());
   }
 
   public abstract SymmetryTracker getCopy();
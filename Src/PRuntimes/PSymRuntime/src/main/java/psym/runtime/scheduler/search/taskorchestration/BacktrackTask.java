@@ -1,23 +1,39 @@
 package psym.runtime.scheduler.search.taskorchestration;
 
-import java.io.Serializable;
+import java.io.*;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import psym.runtime.PSymContext;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.State;
 import psym.runtime.scheduler.Schedule;
 import psym.runtime.statistics.CoverageStats;
+import psym.valuesummary.solvers.SolverGuard;
+import psym.valuesummary.util.PersistentVector;
 
 public class BacktrackTask implements Serializable {
-  @Setter private static TaskOrchestrationMode orchestration;
-  private static TaskOrchestrator taskOrchestrator = null;
-  @Getter private final List<Schedule.Choice> choices = new ArrayList<>();
+  private final List<Schedule.Choice> choices = new ArrayList<>();
+  /** File the choices were spilled to, or null if the choices are in memory */
+  @Getter private transient String spillFile = null;
+  /** Schedule the spilled choices belong to */
+  private transient Schedule spillSchedule = null;
+  /** Names of the machines referenced by the spilled choices */
+  private transient Set<String> spillMachines = null;
 
   @Getter
-  private final List<CoverageStats.CoverageChoiceDepthStats> perChoiceDepthStats =
-      new ArrayList<>();
+  private PersistentVector<CoverageStats.CoverageChoiceDepthStats> perChoiceDepthStats =
+      PersistentVector.empty();
 
   @Getter private final int id;
   @Getter private final List<BacktrackTask> children = new ArrayList<>();
@@ -35,11 +51,21 @@ public class BacktrackTask implements Serializable {
     this.id = id;
   }
 
-  public static void initialize(TaskOrchestrationMode orch) {
-    orchestration = orch;
+  public static void setOrchestration(TaskOrchestrationMode orch) {
+    PSymContext.getCurrent().setTaskOrchestration(orch);
+  }
+
+  private static TaskOrchestrator getTaskOrchestrator() {
+    return PSymContext.getCurrent().getTaskOrchestrator();
+  }
+
+  public static void initialize(TaskOrchestrationMode orchestration) {
+    setOrchestration(orchestration);
+    TaskOrchestrator taskOrchestrator;
     switch (orchestration) {
       case DepthFirst:
         // do nothing
+        taskOrchestrator = null;
         break;
       case Random:
         taskOrchestrator = new TaskOrchestratorRandom();
@@ -53,13 +79,19 @@ public class BacktrackTask implements Serializable {
       case CoverageEpsilonGreedy:
         taskOrchestrator = new TaskOrchestratorCoverageEpsilonGreedy();
         break;
+      case Portfolio:
+        taskOrchestrator = new TaskOrchestratorPortfolio();
+        break;
       default:
         throw new RuntimeException("Unrecognized orchestration mode: " + orchestration);
     }
+    PSymContext.getCurrent().setTaskOrchestrator(taskOrchestrator);
   }
 
   public static BacktrackTask getNextTask() throws InterruptedException {
     BacktrackTask result;
+    TaskOrchestrationMode orchestration = PSymContext.getCurrent().getTaskOrchestration();
+    TaskOrchestrator taskOrchestrator = getTaskOrchestrator();
     switch (orchestration) {
       case DepthFirst:
         throw new RuntimeException("Unexpected orchestration mode: " + orchestration);
@@ -67,6 +99,7 @@ public class BacktrackTask implements Serializable {
       case CoverageAStar:
       case CoverageEstimate:
       case CoverageEpsilonGreedy:
+      case Portfolio:
         result = taskOrchestrator.getNext();
         break;
       default:
@@ -76,11 +109,111 @@ public class BacktrackTask implements Serializable {
     return result;
   }
 
+  public List<Schedule.Choice> getChoices() {
+    if (spillFile != null) {
+      unspill();
+    }
+    return choices;
+  }
+
+  public boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  /**
+   * Write the choices of this task to a file and release them from memory. The schedule,
+   * machines, states and solver guards the choices refer to are shared with the rest of the
+   * search, so they are written by name or id and looked up again when the choices are read back.
+   * Only the names of the referenced machines stay in memory, so that they are not released.
+   *
+   * @param fileName Name of the file to write
+   * @param schedule Schedule the choices belong to
+   * @throws IOException Throws exception if writing fails
+   */
+  public void spill(String fileName, Schedule schedule) throws IOException {
+    assert (spillFile == null);
+    File file = new File(fileName);
+    file.getParentFile().mkdirs();
+    Set<String> machineNames = new HashSet<>();
+    try (SpillOutputStream out =
+        new SpillOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)), machineNames)) {
+      out.writeObject(new ArrayList<>(choices));
+    }
+    choices.clear();
+    spillFile = fileName;
+    spillSchedule = schedule;
+    spillMachines = machineNames;
+  }
+
+  /** Read back the choices of this task from its spill file */
+  private void unspill() {
+    choices.addAll(readSpilledChoices());
+    deleteSpillFile();
+  }
+
+  private List<Schedule.Choice> readSpilledChoices() {
+    try (SpillInputStream in =
+        new SpillInputStream(
+            new BufferedInputStream(new FileInputStream(spillFile)), spillSchedule)) {
+      return (List<Schedule.Choice>) in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new RuntimeException("Failed to read backtrack task from file " + spillFile, e);
+    }
+  }
+
+  private void deleteSpillFile() {
+    try {
+      Files.deleteIfExists(Paths.get(spillFile));
+    } catch (IOException e) {
+      // the file is only left behind in the output folder
+    }
+    spillFile = null;
+    spillSchedule = null;
+    spillMachines = null;
+  }
+
+  /** Write spilled choices in place, so that a checkpoint does not depend on the spill file */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeObject(spillFile != null ? readSpilledChoices() : null);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    List<Schedule.Choice> spilled = (List<Schedule.Choice>) in.readObject();
+    if (spilled != null) {
+      choices.addAll(spilled);
+    }
+  }
+
+  /**
+   * Add machines referenced by the choices of this task to a set, without reading back spilled
+   * choices
+   *
+   * @param result Set of machines to add to
+   */
+  public void collectMachines(Set<Machine> result) {
+    if (spillFile != null) {
+      for (String name : spillMachines) {
+        Machine machine = Machine.getNameToMachine().get(name);
+        if (machine != null) {
+          result.add(machine);
+        }
+      }
+    } else {
+      Schedule.collectMachines(choices, result);
+    }
+  }
+
   public void cleanup() {
+    if (spillFile != null) {
+      deleteSpillFile();
+    }
     choices.clear();
     numBacktracks = 0;
     numDataBacktracks = 0;
-    perChoiceDepthStats.clear();
+    perChoiceDepthStats = PersistentVector.empty();
   }
 
   public void setChoices(List<Schedule.Choice> inputChoices) {
@@ -96,11 +229,10 @@ public class BacktrackTask implements Serializable {
     }
   }
 
-  public void setPerChoiceDepthStats(List<CoverageStats.CoverageChoiceDepthStats> inputStats) {
+  public void setPerChoiceDepthStats(
+      PersistentVector<CoverageStats.CoverageChoiceDepthStats> inputStats) {
     assert (perChoiceDepthStats.isEmpty());
-    for (CoverageStats.CoverageChoiceDepthStats stat : inputStats) {
-      perChoiceDepthStats.add(stat.getCopy());
-    }
+    perChoiceDepthStats = inputStats;
   }
 
   public boolean isInitialTask() {
@@ -116,6 +248,112 @@ public class BacktrackTask implements Serializable {
     return String.format("task%d", id);
   }
 
+  /** Reference to the schedule of the spilled choices */
+  private static class ScheduleRef implements Serializable {}
+
+  /** Reference to a machine by its name and instance id */
+  private static class MachineRef implements Serializable {
+    private final String name;
+
+    MachineRef(Machine machine) {
+      this.name = machine.toString();
+    }
+  }
+
+  /** Reference to a state by its name and the name of its machine */
+  private static class StateRef implements Serializable {
+    private final String machineName;
+    private final String name;
+
+    StateRef(State state) {
+      this.machineName = state.machineName;
+      this.name = state.name;
+    }
+  }
+
+  /** Reference to a solver guard by its id */
+  private static class GuardRef implements Serializable {
+    private final int id;
+
+    GuardRef(SolverGuard guard) {
+      this.id = guard.getId();
+    }
+  }
+
+  private static class SpillOutputStream extends ObjectOutputStream {
+    private final Set<String> machineNames;
+
+    SpillOutputStream(OutputStream out, Set<String> machineNames) throws IOException {
+      super(out);
+      this.machineNames = machineNames;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj instanceof Schedule) {
+        return new ScheduleRef();
+      } else if (obj instanceof Machine) {
+        MachineRef ref = new MachineRef((Machine) obj);
+        machineNames.add(ref.name);
+        return ref;
+      } else if (obj instanceof State) {
+        return new StateRef((State) obj);
+      } else if (obj instanceof SolverGuard) {
+        return new GuardRef((SolverGuard) obj);
+      }
+      return obj;
+    }
+  }
+
+  private static class SpillInputStream extends ObjectInputStream {
+    private final Schedule schedule;
+    /** States of the registered machines by machine name and state name, built when needed */
+    private Map<ImmutablePair<String, String>, State> states = null;
+
+    SpillInputStream(InputStream in, Schedule schedule) throws IOException {
+      super(in);
+      this.schedule = schedule;
+      enableResolveObject(true);
+    }
+
+    private State getState(StateRef ref) throws InvalidObjectException {
+      if (states == null) {
+        states = new HashMap<>();
+        for (Machine machine : Machine.getNameToMachine().values()) {
+          for (State state : machine.getStates()) {
+            states.put(ImmutablePair.of(state.machineName, state.name), state);
+          }
+        }
+      }
+      State state = states.get(ImmutablePair.of(ref.machineName, ref.name));
+      if (state == null) {
+        throw new InvalidObjectException(
+            String.format("No machine has state %s of %s", ref.name, ref.machineName));
+      }
+      return state;
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof ScheduleRef) {
+        return schedule;
+      } else if (obj instanceof MachineRef) {
+        String name = ((MachineRef) obj).name;
+        Machine machine = Machine.getNameToMachine().get(name);
+        if (machine == null) {
+          throw new InvalidObjectException("Machine " + name + " is no longer registered");
+        }
+        return machine;
+      } else if (obj instanceof StateRef) {
+        return getState((StateRef) obj);
+      } else if (obj instanceof GuardRef) {
+        return SolverGuard.getSolverGuardById(((GuardRef) obj).id);
+      }
+      return obj;
+    }
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == this) return true;
@@ -152,6 +390,7 @@ public class BacktrackTask implements Serializable {
 
   /** Set priority of the task with given orchestration mode */
   public void setPriority() {
+    TaskOrchestrationMode orchestration = PSymContext.getCurrent().getTaskOrchestration();
     switch (orchestration) {
       case DepthFirst:
         throw new RuntimeException("Unexpected orchestration mode: " + orchestration);
@@ -161,12 +400,13 @@ public class BacktrackTask implements Serializable {
         // do nothing
         break;
       case CoverageEstimate:
+      case Portfolio:
         setCoverageEstimate();
         break;
       default:
         throw new RuntimeException("Unrecognized orchestration mode: " + orchestration);
     }
-    taskOrchestrator.addPriority(this);
+    getTaskOrchestrator().addPriority(this);
   }
 
   public void postProcess(BigDecimal inputCoverage) {
@@ -178,6 +418,7 @@ public class BacktrackTask implements Serializable {
     estimatedCoverage = inputCoverage;
     completed = true;
 
+    TaskOrchestrationMode orchestration = PSymContext.getCurrent().getTaskOrchestration();
     switch (orchestration) {
       case DepthFirst:
         throw new RuntimeException("Unexpected orchestration mode: " + orchestration);
@@ -187,12 +428,13 @@ public class BacktrackTask implements Serializable {
         // do nothing
         break;
       case CoverageEstimate:
+      case Portfolio:
         if (!isInitialTask()) {
           assert (parentTask != null);
           for (BacktrackTask t : parentTask.getChildren()) {
             if (!t.completed) {
               t.setCoverageEstimate();
-              taskOrchestrator.addPriority(t);
+              getTaskOrchestrator().addPriority(t);
             }
           }
         }
@@ -5,5 +5,6 @@ public enum TaskOrchestrationMode {
     Random,
     CoverageAStar,
     CoverageEstimate,
-    CoverageEpsilonGreedy
+    CoverageEpsilonGreedy,
+    Portfolio
 }
@@ -7,7 +7,7 @@ public class TaskOrchestratorCoverageEpsilonGreedy implements TaskOrchestrator {
   private static final double EPSILON_MAX = 1.0;
   private static final double EPSILON_MIN = 0.3;
   @Setter private static double EPSILON_DECAY_FACTOR = 0.999;
-  private static double epsilon = EPSILON_MAX;
+  private double epsilon = EPSILON_MAX;
   private final TaskOrchestrator taskOrchestratorExplore;
   private final TaskOrchestrator taskOrchestratorExploit;
 
@@ -0,0 +1,9 @@
+package psym.runtime.scheduler.search.taskorchestration;
+
+/** Task orchestrator that picks the most recently created task, like a depth-first search */
+public class TaskOrchestratorLatest extends TaskOrchestratorPriority {
+  @Override
+  protected double getPriority(BacktrackTask task) {
+    return task.getId();
+  }
+}
@@ -0,0 +1,109 @@
+package psym.runtime.scheduler.search.taskorchestration;
+
+import java.math.BigDecimal;
+import psym.runtime.PSymGlobal;
+
+/**
+ * Task orchestrator that treats other task orchestrators as arms of a multi-armed bandit. Every
+ * arm tracks all pending tasks, and each time a task is needed one arm picks it. The reward of an
+ * arm is the estimated coverage gained per second until the next task is picked, averaged with
+ * exponential discounting so that the portfolio follows the search as it moves on. Arms are
+ * selected by UCB1 over rewards normalized by the best arm.
+ */
+public class TaskOrchestratorPortfolio implements TaskOrchestrator {
+  /** Weight of the latest reward in the discounted reward of an arm */
+  private static final double DISCOUNT = 0.2;
+  /** Weight of the exploration term of UCB1 */
+  private static final double EXPLORATION = 0.5;
+  /** Scale of estimated coverage used to measure coverage gains */
+  private static final int COVERAGE_SCALE = 40;
+
+  private final TaskOrchestrator[] arms;
+  private final int[] numPulls;
+  private final double[] rewards;
+  private int totalPulls = 0;
+  /** Arm that picked the latest task, or -1 if none */
+  private int currentArm = -1;
+  /** Estimated coverage when the latest task was picked */
+  private BigDecimal startCoverage = BigDecimal.ZERO;
+  /** Time in nanoseconds when the latest task was picked, or 0 if unknown */
+  private transient long startTime = 0;
+
+  public TaskOrchestratorPortfolio() {
+    arms =
+        new TaskOrchestrator[] {
+          new TaskOrchestratorLatest(),
+          new TaskOrchestratorRandom(),
+          new TaskOrchestratorCoverageAStar(),
+          new TaskOrchestratorCoverageEstimate()
+        };
+    numPulls = new int[arms.length];
+    rewards = new double[arms.length];
+  }
+
+  public void addPriority(BacktrackTask task) {
+    for (TaskOrchestrator arm : arms) {
+      arm.addPriority(task);
+    }
+  }
+
+  public BacktrackTask getNext() {
+    BigDecimal coverage = PSymGlobal.getCoverage().getEstimatedCoverage(COVERAGE_SCALE);
+    long time = System.nanoTime();
+    if (currentArm >= 0 && startTime != 0) {
+      double seconds = Math.max((time - startTime) / 1e9, 1e-6);
+      double reward = coverage.subtract(startCoverage).doubleValue() / seconds;
+      if (numPulls[currentArm] == 1) {
+        rewards[currentArm] = reward;
+      } else {
+        rewards[currentArm] = (1 - DISCOUNT) * rewards[currentArm] + DISCOUNT * reward;
+      }
+    }
+
+    currentArm = selectArm();
+    numPulls[currentArm]++;
+    totalPulls++;
+    startCoverage = coverage;
+    startTime = time;
+    return arms[currentArm].getNext();
+  }
+
+  private int selectArm() {
+    double maxReward = 0;
+    for (int arm = 0; arm < arms.length; arm++) {
+      if (numPulls[arm] == 0) {
+        return arm;
+      }
+      maxReward = Math.max(maxReward, rewards[arm]);
+    }
+    int best = 0;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int arm = 0; arm < arms.length; arm++) {
+      double score =
+          (maxReward > 0 ? rewards[arm] / maxReward : 0)
+              + EXPLORATION * Math.sqrt(Math.log(totalPulls) / numPulls[arm]);
+      if (score > bestScore) {
+        best = arm;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  public void remove(BacktrackTask task) throws InterruptedException {
+    for (TaskOrchestrator arm : arms) {
+      arm.remove(task);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder out = new StringBuilder();
+    for (int arm = 0; arm < arms.length; arm++) {
+      out.append(
+          String.format(
+              "%s%s: %d picks", (arm == 0 ? "" : ", "), arms[arm].getClass().getSimpleName(), numPulls[arm]));
+    }
+    return out.toString();
+  }
+}
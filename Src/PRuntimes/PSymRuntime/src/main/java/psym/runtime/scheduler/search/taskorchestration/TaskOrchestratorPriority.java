@@ -0,0 +1,135 @@
+package psym.runtime.scheduler.search.taskorchestration;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Task orchestrator that picks the task with the highest priority. Tasks are kept in a binary
+ * max-heap that tracks the position of each task, so that updating the priority of a queued task
+ * or removing it is O(log n). Priorities are computed once when a task is added or updated and
+ * cached as doubles.
+ */
+public abstract class TaskOrchestratorPriority implements TaskOrchestrator {
+  private static final double LOG_2 = Math.log(2);
+  private static final double LOG_10 = Math.log(10);
+
+  private final List<BacktrackTask> heap = new ArrayList<>();
+  private double[] priorities = new double[16];
+  private final Map<BacktrackTask, Integer> positions = new HashMap<>();
+
+  /**
+   * Get the priority of a task, where higher priority tasks are picked first
+   *
+   * @param task Backtrack task
+   * @return Priority of the task
+   */
+  protected abstract double getPriority(BacktrackTask task);
+
+  /**
+   * Natural logarithm of a non-negative coverage value. Unlike BigDecimal.doubleValue, this does not
+   * underflow for the tiny coverage values of deep schedules.
+   *
+   * @param value Coverage value
+   * @return Logarithm of the value, or negative infinity if the value is zero
+   */
+  protected static double logOf(BigDecimal value) {
+    if (value.signum() <= 0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    BigInteger unscaled = value.unscaledValue();
+    int shift = Math.max(0, unscaled.bitLength() - 62);
+    double mantissa = unscaled.shiftRight(shift).doubleValue();
+    return Math.log(mantissa) + shift * LOG_2 - value.scale() * LOG_10;
+  }
+
+  public void addPriority(BacktrackTask task) {
+    double priority = getPriority(task);
+    Integer position = positions.get(task);
+    if (position == null) {
+      position = heap.size();
+      heap.add(task);
+      if (position == priorities.length) {
+        priorities = Arrays.copyOf(priorities, 2 * priorities.length);
+      }
+      positions.put(task, position);
+    } else {
+      heap.set(position, task);
+    }
+    priorities[position] = priority;
+    siftDown(siftUp(position));
+  }
+
+  public BacktrackTask getNext() {
+    assert (!heap.isEmpty());
+    return heap.get(0);
+  }
+
+  public void remove(BacktrackTask task) {
+    Integer position = positions.remove(task);
+    if (position == null) {
+      return;
+    }
+    int last = heap.size() - 1;
+    if (position != last) {
+      move(last, position);
+      heap.remove(last);
+      siftDown(siftUp(position));
+    } else {
+      heap.remove(last);
+    }
+  }
+
+  private void move(int from, int to) {
+    BacktrackTask task = heap.get(from);
+    heap.set(to, task);
+    priorities[to] = priorities[from];
+    positions.put(task, to);
+  }
+
+  private void place(int position, BacktrackTask task, double priority) {
+    heap.set(position, task);
+    priorities[position] = priority;
+    positions.put(task, position);
+  }
+
+  private int siftUp(int position) {
+    BacktrackTask task = heap.get(position);
+    double priority = priorities[position];
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (priorities[parent] >= priority) {
+        break;
+      }
+      move(parent, position);
+      position = parent;
+    }
+    place(position, task, priority);
+    return position;
+  }
+
+  private void siftDown(int position) {
+    BacktrackTask task = heap.get(position);
+    double priority = priorities[position];
+    int size = heap.size();
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && priorities[child + 1] > priorities[child]) {
+        child++;
+      }
+      if (priorities[child] <= priority) {
+        break;
+      }
+      move(child, position);
+      position = child;
+    }
+    place(position, task, priority);
+  }
+}
@@ -23,8 +23,7 @@ public class TaskOrchestratorRandom implements TaskOrchestrator {
 
   public BacktrackTask getNext() {
     assert (!elementList.isEmpty());
-    Collections.shuffle(
-        elementList, new Random(RandomNumberGenerator.getInstance().getRandomLong()));
+    RandomNumberGenerator.getInstance().shuffle(elementList);
     return elementList.get(RandomNumberGenerator.getInstance().getRandomInt(elementList.size()));
   }
 
@@ -2,6 +2,7 @@ package psym.runtime.statistics;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,17 +15,34 @@ import psym.runtime.logger.CoverageWriter;
 import psym.runtime.logger.StatWriter;
 import psym.runtime.scheduler.search.choiceorchestration.ChoiceLearningRewardMode;
 import psym.runtime.scheduler.search.choiceorchestration.ChoiceQTable;
+import psym.valuesummary.util.PersistentVector;
 
 /** Class to track all coverage statistics */
 public class CoverageStats implements Serializable {
+  /** Number of fractional bits of fixed-point path coverage values */
+  private static final int FIXED_BITS = 128;
+  /** Fixed-point representation of coverage 1 */
+  private static final BigInteger FIXED_ONE = BigInteger.ONE.shiftLeft(FIXED_BITS);
+  /** Value of the least significant bit of a fixed-point coverage value */
+  private static final BigDecimal FIXED_ULP =
+      BigDecimal.ONE.divide(new BigDecimal(FIXED_ONE), FIXED_BITS, RoundingMode.UNNECESSARY);
+
+  private static final double LOG_10 = Math.log(10);
+
   /** Track of number of choices explored versus remaining in aggregate at each depth */
   private final List<CoverageDepthStats> perDepthStats = new ArrayList<>();
-  /** Estimated state-space coverage */
-  private BigDecimal estimatedCoverage = new BigDecimal(0);
+  /** Estimated state-space coverage, in fixed point */
+  private BigInteger estimatedCoverage = BigInteger.ZERO;
 
   @Getter @Setter
-  /** Track of path coverage during depth-first iterative search */
-  private List<CoverageChoiceDepthStats> perChoiceDepthStats = new ArrayList<>();
+  /**
+   * Track of path coverage during depth-first iterative search. Entries are immutable, so backtrack
+   * tasks can keep a snapshot of this vector without copying it.
+   */
+  private PersistentVector<CoverageChoiceDepthStats> perChoiceDepthStats = PersistentVector.empty();
+
+  /** Chosen state actions at each choice depth of the current schedule */
+  private final List<ChoiceQTable.ChoiceQTableKey> perChoiceDepthActions = new ArrayList<>();
 
   public CoverageStats() {}
 
@@ -83,11 +101,19 @@ public class CoverageStats implements Serializable {
       boolean isNewChoice,
       ChoiceQTable.ChoiceQTableKey chosenActions) {
     CoverageChoiceDepthStats prefix;
-    if (choiceDepth == 0) prefix = new CoverageChoiceDepthStats();
+    if (choiceDepth == 0) prefix = CoverageChoiceDepthStats.INITIAL;
     else prefix = perChoiceDepthStats.get(choiceDepth - 1);
-    perChoiceDepthStats
-        .get(choiceDepth)
-        .update(prefix, numExplored, numRemaining, isNewChoice, chosenActions);
+    perChoiceDepthStats =
+        perChoiceDepthStats.with(
+            choiceDepth,
+            perChoiceDepthStats
+                .get(choiceDepth)
+                .update(prefix, numExplored, numRemaining, isNewChoice));
+    // actions are cleared when path coverage is restored from a backtrack task
+    while (choiceDepth >= perChoiceDepthActions.size()) {
+      perChoiceDepthActions.add(null);
+    }
+    perChoiceDepthActions.set(choiceDepth, chosenActions);
   }
 
   /**
@@ -113,7 +139,7 @@ public class CoverageStats implements Serializable {
       perDepthStats.add(new CoverageDepthStats());
     }
     while (choiceDepth >= perChoiceDepthStats.size()) {
-      perChoiceDepthStats.add(new CoverageChoiceDepthStats());
+      perChoiceDepthStats = perChoiceDepthStats.plus(CoverageChoiceDepthStats.INITIAL);
     }
 
     if (isData) {
@@ -141,17 +167,17 @@ public class CoverageStats implements Serializable {
    */
   public void updateIterationCoverage(
       int choiceDepth, int startDepth, ChoiceLearningRewardMode rewardMode) {
-    BigDecimal iterationCoverage = getPathCoverageAtDepth(choiceDepth);
-    estimatedCoverage = estimatedCoverage.add(iterationCoverage);
-    //        assert (estimatedCoverage.compareTo(BigDecimal.ONE) <= 0): "Error in path coverage
+    CoverageChoiceDepthStats iterationStats = perChoiceDepthStats.get(choiceDepth);
+    estimatedCoverage = estimatedCoverage.add(iterationStats.pathCoverage);
+    //        assert (estimatedCoverage.compareTo(FIXED_ONE) <= 0): "Error in path coverage
     // estimation";
     if (rewardMode != ChoiceLearningRewardMode.None) {
-      for (int i = startDepth; i <= choiceDepth; i++) {
-        CoverageChoiceDepthStats stats = perChoiceDepthStats.get(i);
-        if (stats != null) {
+      double iterationCoverage = Math.exp(iterationStats.logPathCoverage);
+      for (int i = startDepth; i <= choiceDepth && i < perChoiceDepthActions.size(); i++) {
+        ChoiceQTable.ChoiceQTableKey stateActions = perChoiceDepthActions.get(i);
+        if (stateActions != null) {
           PSymGlobal.getChoiceLearningStats()
-              .rewardIteration(
-                  stats.getStateActions(), iterationCoverage.doubleValue(), rewardMode);
+              .rewardIteration(stateActions, iterationCoverage, rewardMode);
         }
       }
     }
@@ -159,17 +185,31 @@ public class CoverageStats implements Serializable {
 
   /** Reset coverage statistics after a resumed run */
   public void resetCoverage() {
-    estimatedCoverage = new BigDecimal(0);
+    estimatedCoverage = BigInteger.ZERO;
     perDepthStats.clear();
   }
 
   /** Reset running path coverage at a given choice depth */
   public void resetPathCoverage(int choiceDepth) {
     if (choiceDepth < perChoiceDepthStats.size()) {
-      perChoiceDepthStats.get(choiceDepth).reset();
+      perChoiceDepthStats = perChoiceDepthStats.with(choiceDepth, CoverageChoiceDepthStats.INITIAL);
+    }
+    if (choiceDepth < perChoiceDepthActions.size()) {
+      perChoiceDepthActions.set(choiceDepth, null);
     }
   }
 
+  /**
+   * Restore running path coverage from a backtrack task. State actions chosen before the task was
+   * created are not restored.
+   *
+   * @param stats Snapshot of path coverage at each choice depth
+   */
+  public void restorePathCoverage(PersistentVector<CoverageChoiceDepthStats> stats) {
+    perChoiceDepthStats = stats;
+    perChoiceDepthActions.clear();
+  }
+
   public String getCoverageGoalAchieved() {
     String coverageString = String.format("%.22f", getEstimatedCoverage(22));
     String coverageGoal = "?";
@@ -189,7 +229,9 @@ public class CoverageStats implements Serializable {
   }
 
   public BigDecimal getEstimatedCoverage(int scale) {
-    return estimatedCoverage.setScale(scale, RoundingMode.FLOOR);
+    return new BigDecimal(estimatedCoverage)
+        .multiply(FIXED_ULP)
+        .setScale(scale, RoundingMode.FLOOR);
   }
 
   /**
@@ -199,7 +241,7 @@ public class CoverageStats implements Serializable {
    */
   public BigDecimal getPathCoverageAtDepth(int choiceDepth) {
     assert (choiceDepth < perChoiceDepthStats.size());
-    return perChoiceDepthStats.get(choiceDepth).pathCoverage;
+    return perChoiceDepthStats.get(choiceDepth).getPathCoverage();
   }
 
   /**
@@ -342,59 +384,70 @@ public class CoverageStats implements Serializable {
     }
   }
 
+  /**
+   * Path coverage at a choice depth. Coverage is tracked both in 128-bit fixed point, which is
+   * summed into the estimated coverage, and as a natural logarithm, which keeps the relative
+   * precision of tiny coverage values of deep schedules.
+   */
   public static class CoverageChoiceDepthStats implements Serializable {
-    BigDecimal pathCoverage;
-    int numTotal;
-    @Getter ChoiceQTable.ChoiceQTableKey stateActions;
+    static final CoverageChoiceDepthStats INITIAL = new CoverageChoiceDepthStats(FIXED_ONE, 0, 0);
 
-    CoverageChoiceDepthStats() {
-      this(new BigDecimal(1), 0, new ChoiceQTable.ChoiceQTableKey());
-    }
-
-    private CoverageChoiceDepthStats(BigDecimal inputPathCoverage, int inputNumTotal) {
-      this(inputPathCoverage, inputNumTotal, new ChoiceQTable.ChoiceQTableKey());
-    }
+    final BigInteger pathCoverage;
+    final double logPathCoverage;
+    final int numTotal;
 
     private CoverageChoiceDepthStats(
-        BigDecimal inputPathCoverage,
-        int inputNumTotal,
-        ChoiceQTable.ChoiceQTableKey inputStateActions) {
+        BigInteger inputPathCoverage, double inputLogPathCoverage, int inputNumTotal) {
       this.pathCoverage = inputPathCoverage;
+      this.logPathCoverage = inputLogPathCoverage;
       this.numTotal = inputNumTotal;
-      this.stateActions = inputStateActions;
     }
 
-    void update(
-        CoverageChoiceDepthStats prefix,
-        int numExplored,
-        int numRemaining,
-        boolean isNewChoice,
-        ChoiceQTable.ChoiceQTableKey chosenActions) {
-      pathCoverage = prefix.pathCoverage;
+    CoverageChoiceDepthStats update(
+        CoverageChoiceDepthStats prefix, int numExplored, int numRemaining, boolean isNewChoice) {
+      int total = numTotal;
       if (isNewChoice) {
         assert (numRemaining >= 0);
-        numTotal = numExplored + numRemaining;
+        total = numExplored + numRemaining;
       }
-      if (numTotal != 0) {
-        assert (numExplored <= numTotal);
-        pathCoverage =
-            prefix.pathCoverage.multiply(
-                BigDecimal.valueOf(numExplored)
-                    .divide(BigDecimal.valueOf(numTotal), 20, RoundingMode.FLOOR));
+      if (total == 0) {
+        return new CoverageChoiceDepthStats(prefix.pathCoverage, prefix.logPathCoverage, total);
       }
-      this.stateActions = chosenActions;
+      assert (numExplored <= total);
+      return new CoverageChoiceDepthStats(
+          prefix
+              .pathCoverage
+              .multiply(BigInteger.valueOf(numExplored))
+              .divide(BigInteger.valueOf(total)),
+          prefix.logPathCoverage + Math.log((double) numExplored / total),
+          total);
     }
 
-    public void reset() {
-      pathCoverage = new BigDecimal(1);
-      numTotal = 0;
-      if (stateActions != null) {
-        stateActions.clear();
+    /**
+     * Get the path coverage as a decimal. Values too small for the fixed-point representation to
+     * be precise are recovered from the logarithm instead.
+     *
+     * @return Path coverage
+     */
+    public BigDecimal getPathCoverage() {
+      if (pathCoverage.bitLength() > 64) {
+        return new BigDecimal(pathCoverage).multiply(FIXED_ULP);
+      }
+      if (logPathCoverage == Double.NEGATIVE_INFINITY) {
+        return BigDecimal.ZERO;
       }
+      int exponent = (int) Math.floor(logPathCoverage / LOG_10);
+      double mantissa = Math.exp(logPathCoverage - exponent * LOG_10);
+      return new BigDecimal(mantissa).scaleByPowerOfTen(exponent);
     }
 
-    public CoverageChoiceDepthStats getCopy() {
-      return new CoverageChoiceDepthStats(this.pathCoverage, this.numTotal);
+    /**
+     * Get the natural logarithm of the path coverage
+     *
+     * @return Logarithm of the path coverage, or negative infinity if it is zero
+     */
+    public double getLogPathCoverage() {
+      return logPathCoverage;
     }
   }
 }
@@ -0,0 +1,252 @@
+package psym.runtime.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import psym.runtime.PSymContext;
+import psym.runtime.logger.PSymLogger;
+import psym.valuesummary.solvers.SolverEngine;
+
+/**
+ * Profiler of P handlers. Attributes wall time, guard operations, guards created and allocated
+ * bytes to each (machine, state, event) handler, and to the entry and exit functions of each state.
+ * Handlers run nested, such as the entry function of a state reached by a goto, so each handler is
+ * reported both with its total cost and with its self cost, which excludes the nested handlers.
+ *
+ * <p>There is one profiler per {@link PSymContext}, set up with the run, and contexts forked from
+ * it have none, so the handlers of search workers and counterexample replays are not profiled.
+ * When disabled, {@link #enter} and {@link #exit} only check that the current context has no
+ * profiler.
+ */
+public class HandlerProfiler {
+  public static final String ENTRY = "<entry>";
+  public static final String EXIT = "<exit>";
+
+  private static volatile com.sun.management.ThreadMXBean threadBean = null;
+  private final Map<String, HandlerStats> handlerStats = new HashMap<>();
+  private final List<Frame> stack = new ArrayList<>();
+  private int stackSize = 0;
+
+  private HandlerProfiler() {}
+
+  /**
+   * Setup the profiler of the current context
+   *
+   * @param enable Whether or not to profile handlers
+   */
+  public static void setup(boolean enable) {
+    PSymContext.getCurrent().setHandlerProfiler(enable ? new HandlerProfiler() : null);
+    if (enable && threadBean == null) {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean
+          && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+        ((com.sun.management.ThreadMXBean) bean).setThreadAllocatedMemoryEnabled(true);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+      }
+    }
+  }
+
+  private static long getGuardOps() {
+    return SolverStats.andOperations.sum()
+        + SolverStats.orOperations.sum()
+        + SolverStats.notOperations.sum();
+  }
+
+  private static long getAllocatedBytes() {
+    if (threadBean == null) {
+      return 0;
+    }
+    return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Start profiling a handler. Must be followed by a call to {@link #exit}, even if the handler
+   * throws.
+   *
+   * @param machineName Name of the machine type
+   * @param stateName Name of the state
+   * @param event Event handled, or {@link #ENTRY} or {@link #EXIT}
+   */
+  public static void enter(String machineName, String stateName, Object event) {
+    HandlerProfiler profiler = PSymContext.getCurrent().getHandlerProfiler();
+    if (profiler != null) {
+      profiler.push(machineName, stateName, event);
+    }
+  }
+
+  /** Stop profiling the handler started last */
+  public static void exit() {
+    HandlerProfiler profiler = PSymContext.getCurrent().getHandlerProfiler();
+    if (profiler != null) {
+      profiler.pop();
+    }
+  }
+
+  private void push(String machineName, String stateName, Object event) {
+    String key = machineName + ":" + stateName + ":" + event;
+    HandlerStats stats = handlerStats.get(key);
+    if (stats == null) {
+      stats = new HandlerStats(machineName, stateName, event.toString());
+      handlerStats.put(key, stats);
+    }
+    if (stackSize == stack.size()) {
+      stack.add(new Frame());
+    }
+    Frame frame = stack.get(stackSize++);
+    frame.stats = stats;
+    frame.childNanos = 0;
+    frame.childGuardOps = 0;
+    frame.childGuards = 0;
+    frame.childBytes = 0;
+    frame.startGuardOps = getGuardOps();
+    frame.startGuards = SolverEngine.getGuardCount();
+    frame.startBytes = getAllocatedBytes();
+    frame.startNanos = System.nanoTime();
+  }
+
+  private void pop() {
+    if (stackSize == 0) {
+      return;
+    }
+    long nanos = System.nanoTime();
+    Frame frame = stack.get(--stackSize);
+    nanos -= frame.startNanos;
+    long guardOps = getGuardOps() - frame.startGuardOps;
+    long guards = SolverEngine.getGuardCount() - frame.startGuards;
+    long bytes = getAllocatedBytes() - frame.startBytes;
+
+    HandlerStats stats = frame.stats;
+    stats.numCalls++;
+    stats.selfNanos += nanos - frame.childNanos;
+    stats.selfGuardOps += guardOps - frame.childGuardOps;
+    stats.selfGuards += guards - frame.childGuards;
+    stats.selfBytes += bytes - frame.childBytes;
+    // a recursive handler is only counted in its total cost once
+    if (!isActive(stats)) {
+      stats.totalNanos += nanos;
+      stats.totalGuardOps += guardOps;
+      stats.totalGuards += guards;
+      stats.totalBytes += bytes;
+    }
+    frame.stats = null;
+
+    if (stackSize > 0) {
+      Frame parent = stack.get(stackSize - 1);
+      parent.childNanos += nanos;
+      parent.childGuardOps += guardOps;
+      parent.childGuards += guards;
+      parent.childBytes += bytes;
+    }
+  }
+
+  private boolean isActive(HandlerStats stats) {
+    for (int i = 0; i < stackSize; i++) {
+      if (stack.get(i).stats == stats) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Write the profile, sorted by self time, to a file in the output folder and log the top
+   * handlers
+   *
+   * @param projectName Name of the project
+   * @param outputFolder Output folder
+   */
+  public static void report(String projectName, String outputFolder) {
+    HandlerProfiler profiler = PSymContext.getCurrent().getHandlerProfiler();
+    if (profiler == null || profiler.handlerStats.isEmpty()) {
+      return;
+    }
+    List<HandlerStats> sorted = new ArrayList<>(profiler.handlerStats.values());
+    sorted.sort((a, b) -> Long.compare(b.selfNanos, a.selfNanos));
+
+    String header =
+        String.format(
+            "%-60s%10s%12s%12s%16s%16s%14s%14s%10s%10s",
+            "Handler",
+            "Calls",
+            "Self(ms)",
+            "Total(ms)",
+            "Self-GuardOps",
+            "Total-GuardOps",
+            "Self-Guards",
+            "Total-Guards",
+            "Self-MB",
+            "Total-MB");
+    String fileName = outputFolder + "/profile-" + projectName + ".log";
+    try {
+      File profileFile = new File(fileName);
+      profileFile.getParentFile().mkdirs();
+      try (PrintWriter out = new PrintWriter(profileFile)) {
+        out.println(header);
+        for (HandlerStats stats : sorted) {
+          out.println(stats.toString());
+        }
+      }
+    } catch (IOException e) {
+      PSymLogger.warn("Failed to write handler profile to " + fileName);
+    }
+
+    PSymLogger.info("--------------------");
+    PSymLogger.info("Handler Profile (top 10 by self time, see " + fileName + ")");
+    PSymLogger.info(header);
+    for (int i = 0; i < Math.min(10, sorted.size()); i++) {
+      PSymLogger.info(sorted.get(i).toString());
+    }
+  }
+
+  /** Cost of a single handler */
+  private static class HandlerStats {
+    private final String name;
+    private long numCalls = 0;
+    private long selfNanos = 0;
+    private long totalNanos = 0;
+    private long selfGuardOps = 0;
+    private long totalGuardOps = 0;
+    private long selfGuards = 0;
+    private long totalGuards = 0;
+    private long selfBytes = 0;
+    private long totalBytes = 0;
+
+    HandlerStats(String machineName, String stateName, String event) {
+      this.name = String.format("%s.%s.%s", machineName, stateName, event);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%-60s%10d%12.1f%12.1f%16d%16d%14d%14d%10.1f%10.1f",
+          name,
+          numCalls,
+          selfNanos / 1e6,
+          totalNanos / 1e6,
+          selfGuardOps,
+          totalGuardOps,
+          selfGuards,
+          totalGuards,
+          selfBytes / 1024.0 / 1024.0,
+          totalBytes / 1024.0 / 1024.0);
+    }
+  }
+
+  /** Handler in progress along with the starting counts and the cost of its nested handlers */
+  private static class Frame {
+    private HandlerStats stats;
+    private long startNanos;
+    private long startGuardOps;
+    private long startGuards;
+    private long startBytes;
+    private long childNanos;
+    private long childGuardOps;
+    private long childGuards;
+    private long childBytes;
+  }
+}
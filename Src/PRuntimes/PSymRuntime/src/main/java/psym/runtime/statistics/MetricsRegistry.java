@@ -0,0 +1,88 @@
+package psym.runtime.statistics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of named run-time metrics. Counters and sums are adders that can be updated from any
+ * thread without contention, maximums are accumulators, and gauges are read on demand. Metrics are
+ * kept sorted by name so that every snapshot lists them in the same order.
+ */
+public class MetricsRegistry {
+  private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+  private static final Map<String, DoubleAdder> sums = new ConcurrentSkipListMap<>();
+  private static final Map<String, DoubleAccumulator> maximums = new ConcurrentSkipListMap<>();
+  private static final Map<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+
+  /**
+   * Get or create a monotonically increasing counter
+   *
+   * @param name Name of the metric
+   * @return Counter of the metric
+   */
+  public static LongAdder counter(String name) {
+    return counters.computeIfAbsent(name, k -> new LongAdder());
+  }
+
+  /**
+   * Get or create a sum of double values
+   *
+   * @param name Name of the metric
+   * @return Sum of the metric
+   */
+  public static DoubleAdder sum(String name) {
+    return sums.computeIfAbsent(name, k -> new DoubleAdder());
+  }
+
+  /**
+   * Get or create a maximum of double values, starting at zero
+   *
+   * @param name Name of the metric
+   * @return Maximum of the metric
+   */
+  public static DoubleAccumulator maximum(String name) {
+    return maximums.computeIfAbsent(name, k -> new DoubleAccumulator(Math::max, 0));
+  }
+
+  /**
+   * Register a gauge, replacing any gauge with the same name
+   *
+   * @param name Name of the metric
+   * @param supplier Supplier of the current value
+   */
+  public static void gauge(String name, DoubleSupplier supplier) {
+    gauges.put(name, supplier);
+  }
+
+  /**
+   * Zero all counters, sums and maximums, and drop all gauges, so that a run does not report the
+   * metrics of an earlier run in the same process. Counters, sums and maximums are zeroed in place,
+   * since classes keep references to them.
+   */
+  public static void reset() {
+    counters.values().forEach(LongAdder::reset);
+    sums.values().forEach(DoubleAdder::reset);
+    maximums.values().forEach(DoubleAccumulator::reset);
+    gauges.clear();
+  }
+
+  public static Map<String, LongAdder> getCounters() {
+    return counters;
+  }
+
+  public static Map<String, DoubleAdder> getSums() {
+    return sums;
+  }
+
+  public static Map<String, DoubleAccumulator> getMaximums() {
+    return maximums;
+  }
+
+  public static Map<String, DoubleSupplier> getGauges() {
+    return gauges;
+  }
+}
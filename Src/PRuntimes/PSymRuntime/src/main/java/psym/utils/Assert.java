@@ -2,52 +2,65 @@ package psym.utils;
 
 import java.util.List;
 import java.util.stream.Collectors;
-import lombok.Getter;
+import psym.runtime.PSymContext;
 import psym.utils.exception.BugFoundException;
 import psym.utils.exception.LivenessException;
 import psym.valuesummary.Guard;
 import psym.valuesummary.GuardedValue;
 import psym.valuesummary.PrimitiveVS;
 
+/** Property checks. The type and message of the last failure are kept in the current context. */
 public class Assert {
-  @Getter
-  private static String failureType = "";
-  @Getter
-  private static String failureMsg = "";
+
+  public static String getFailureType() {
+    return PSymContext.getCurrent().getFailureType();
+  }
+
+  public static void setFailureType(String failureType) {
+    PSymContext.getCurrent().setFailureType(failureType);
+  }
+
+  public static String getFailureMsg() {
+    return PSymContext.getCurrent().getFailureMsg();
+  }
+
+  public static void setFailureMsg(String failureMsg) {
+    PSymContext.getCurrent().setFailureMsg(failureMsg);
+  }
 
   public static void prop(boolean p, String msg, Guard pc) {
     if (!p) {
-      failureType = "prop";
-      failureMsg = "Property violated: " + msg;
-      throw new BugFoundException(failureMsg, pc);
+      setFailureType("prop");
+      setFailureMsg("Property violated: " + msg);
+      throw new BugFoundException(getFailureMsg(), pc);
     }
   }
 
   public static void progProp(boolean p, PrimitiveVS<String> msg, Guard pc) {
     if (!p) {
-      failureType = "progProp";
       List<String> msgs =
           msg.restrict(pc).getGuardedValues().stream()
               .map(GuardedValue::getValue)
               .collect(Collectors.toList());
-      failureMsg = "Properties violated: " + msgs;
-      throw new BugFoundException(failureMsg, pc);
+      setFailureType("progProp");
+      setFailureMsg("Properties violated: " + msgs);
+      throw new BugFoundException(getFailureMsg(), pc);
     }
   }
 
   public static void liveness(boolean p, String msg, Guard pc) {
     if (!p) {
-      failureType = "liveness";
-      failureMsg = "Property violated: " + msg;
-      throw new LivenessException(failureMsg, pc);
+      setFailureType("liveness");
+      setFailureMsg("Property violated: " + msg);
+      throw new LivenessException(getFailureMsg(), pc);
     }
   }
 
   public static void cycle(boolean p, String msg, Guard pc) {
     if (!p) {
-      failureType = "cycle";
-      failureMsg = "Property violated: " + msg;
-      throw new LivenessException(failureMsg, pc);
+      setFailureType("cycle");
+      setFailureMsg("Property violated: " + msg);
+      throw new LivenessException(getFailureMsg(), pc);
     }
   }
 }
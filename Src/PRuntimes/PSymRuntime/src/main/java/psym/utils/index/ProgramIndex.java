@@ -0,0 +1,70 @@
+package psym.utils.index;
+
+import java.util.LinkedHashSet;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.reflections.Reflections;
+import psym.runtime.PTestDriver;
+import psym.runtime.Program;
+import psym.runtime.logger.PSymLogger;
+
+/**
+ * Index of the programs and test drivers of the P model on the class path. Classes are looked up
+ * in the {@link java.util.ServiceLoader} provider files written by {@link ProgramIndexProcessor}
+ * when the model was compiled, without instantiating them. Models compiled without the index fall
+ * back to scanning the model package with Reflections.
+ */
+public class ProgramIndex {
+  static final String PROGRAM = "psym.runtime.Program";
+  static final String TEST_DRIVER = "psym.runtime.PTestDriver";
+  private static final String MODEL_PACKAGE = "psym.model";
+
+  private static Reflections reflections = null;
+
+  private static Reflections getReflections() {
+    if (reflections == null) {
+      PSymLogger.info("... Program index not found, scanning package " + MODEL_PACKAGE);
+      reflections = new Reflections(MODEL_PACKAGE);
+    }
+    return reflections;
+  }
+
+  private static <T> Set<Class<? extends T>> load(Class<T> service) {
+    try {
+      return ServiceLoader.load(service).stream()
+          .map(ServiceLoader.Provider::type)
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+    } catch (ServiceConfigurationError e) {
+      PSymLogger.warn("Ignored invalid program index: " + e.getMessage());
+      return new LinkedHashSet<>();
+    }
+  }
+
+  /**
+   * Get the program classes of the model
+   *
+   * @return Set of program classes
+   */
+  public static Set<Class<? extends Program>> getPrograms() {
+    Set<Class<? extends Program>> result = load(Program.class);
+    if (result.isEmpty()) {
+      result = getReflections().getSubTypesOf(Program.class);
+    }
+    return result;
+  }
+
+  /**
+   * Get the test driver classes of the model
+   *
+   * @return Set of test driver classes
+   */
+  public static Set<Class<? extends PTestDriver>> getTestDrivers() {
+    Set<Class<? extends PTestDriver>> result = load(PTestDriver.class);
+    if (result.isEmpty()) {
+      result = getReflections().getSubTypesOf(PTestDriver.class);
+    }
+    return result;
+  }
+}
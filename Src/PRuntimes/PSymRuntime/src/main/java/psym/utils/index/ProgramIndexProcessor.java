@@ -0,0 +1,122 @@
+package psym.utils.index;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that indexes the programs and test drivers of a compiled P model. It writes
+ * the public concrete subclasses of {@code psym.runtime.Program} and {@code
+ * psym.runtime.PTestDriver} to the {@link java.util.ServiceLoader} provider files read by {@link
+ * ProgramIndex}. This spares scanning the class path for them on every launch.
+ *
+ * <p>The processor is not registered for discovery, so that it does not run when other projects
+ * are compiled against the runtime. The pom generated for a P model names it explicitly with
+ * {@code -processor}.
+ */
+@SupportedAnnotationTypes("*")
+public class ProgramIndexProcessor extends AbstractProcessor {
+  private final Set<String> programs = new TreeSet<>();
+  private final Set<String> testDrivers = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement programType = processingEnv.getElementUtils().getTypeElement(ProgramIndex.PROGRAM);
+    TypeElement testDriverType =
+        processingEnv.getElementUtils().getTypeElement(ProgramIndex.TEST_DRIVER);
+    if (programType == null || testDriverType == null) {
+      return false;
+    }
+    for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      indexType(type, programType.asType(), testDriverType.asType());
+    }
+    if (roundEnv.processingOver()) {
+      writeIndex(ProgramIndex.PROGRAM, programs);
+      writeIndex(ProgramIndex.TEST_DRIVER, testDrivers);
+    }
+    // do not claim any annotations, so that other processors still see them
+    return false;
+  }
+
+  private void indexType(TypeElement type, TypeMirror programType, TypeMirror testDriverType) {
+    if (type.getKind() != ElementKind.CLASS || !type.getModifiers().contains(Modifier.PUBLIC)) {
+      return;
+    }
+    if (isLoadable(type)) {
+      String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+      if (processingEnv.getTypeUtils().isAssignable(type.asType(), programType)) {
+        programs.add(name);
+      } else if (processingEnv.getTypeUtils().isAssignable(type.asType(), testDriverType)) {
+        testDrivers.add(name);
+      }
+    }
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      if (nested.getModifiers().contains(Modifier.STATIC)) {
+        indexType(nested, programType, testDriverType);
+      }
+    }
+  }
+
+  /** Check if a service loader can instantiate the type with a public no-argument constructor */
+  private static boolean isLoadable(TypeElement type) {
+    if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+      return false;
+    }
+    Element enclosing = type.getEnclosingElement();
+    if (enclosing.getKind() == ElementKind.CLASS
+        && !type.getModifiers().contains(Modifier.STATIC)) {
+      return false;
+    }
+    for (ExecutableElement constructor :
+        ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()) {
+        return constructor.getModifiers().contains(Modifier.PUBLIC);
+      }
+    }
+    return false;
+  }
+
+  private void writeIndex(String service, Set<String> providers) {
+    if (providers.isEmpty()) {
+      return;
+    }
+    try {
+      FileObject file =
+          processingEnv
+              .getFiler()
+              .createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + service);
+      try (Writer writer = file.openWriter()) {
+        for (String provider : providers) {
+          writer.write(provider);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              "Failed to write PSym program index for " + service + ": " + e.getMessage());
+    }
+  }
+}
@@ -3,6 +3,7 @@ package psym.utils.monitor;
 import com.sun.management.GarbageCollectionNotificationInfo;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
+import javax.management.ListenerNotFoundException;
 import javax.management.Notification;
 import javax.management.NotificationEmitter;
 import javax.management.NotificationListener;
@@ -14,11 +15,27 @@ public class MemoryMonitor {
   @Getter private static double maxMemSpent = 0; // max memory in megabytes
   @Getter private static double memSpent = 0; // max memory in megabytes
   @Getter private static double memLimit = 0; // memory limit in megabytes (0 means infinite)
+  // fractions of the memory limit at which each stage of memory pressure starts
+  private static final double[] pressureWatermarks = {0.75, 0.85, 0.95};
+  // number of watermarks reached by the memory in use after the last garbage collection
+  @Getter private static volatile int pressureStage = 0;
 
   public static void setup(double ml) {
     memSpent = 0;
     maxMemSpent = 0;
     memLimit = ml;
+    pressureStage = 0;
+
+    // unregister the listener of an earlier run
+    if (notificationListener != null) {
+      for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+        try {
+          ((NotificationEmitter) gcBean).removeNotificationListener(notificationListener);
+        } catch (ListenerNotFoundException e) {
+          // not registered with this bean
+        }
+      }
+    }
 
     notificationListener =
         new NotificationListener() {
@@ -30,6 +47,14 @@ public class MemoryMonitor {
               Runtime runtime = Runtime.getRuntime();
               memSpent = (runtime.totalMemory() - runtime.freeMemory()) / 1000000.0;
               if (maxMemSpent < memSpent) maxMemSpent = memSpent;
+              if (memLimit > 0) {
+                int stage = 0;
+                while (stage < pressureWatermarks.length
+                    && memSpent >= pressureWatermarks[stage] * memLimit) {
+                  stage++;
+                }
+                pressureStage = stage;
+              }
             }
           }
         };
@@ -41,6 +66,16 @@ public class MemoryMonitor {
     }
   }
 
+  /**
+   * Get the fraction of the memory limit at which a stage of memory pressure starts
+   *
+   * @param stage Stage of memory pressure, starting from 1
+   * @return Fraction of the memory limit
+   */
+  public static double getPressureWatermark(int stage) {
+    return pressureWatermarks[stage - 1];
+  }
+
   public static void checkMemout() throws MemoutException {
     if (memLimit > 0) {
       if (MemoryMonitor.getMemSpent() > memLimit) {
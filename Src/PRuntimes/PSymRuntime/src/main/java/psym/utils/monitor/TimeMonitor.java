@@ -4,11 +4,9 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.TimeoutException;
 import lombok.Getter;
+import psym.runtime.PSymContext;
 
 public class TimeMonitor {
-  /** Represents the private field that refers to the singleton object */
-  private static TimeMonitor timeMonitorObject;
-
   /** Stores the start time to track total runtime */
   @Getter private final Instant start;
   // time limit in seconds (0 means infinite)
@@ -23,14 +21,15 @@ public class TimeMonitor {
   }
 
   public static TimeMonitor getInstance() {
+    TimeMonitor timeMonitorObject = PSymContext.getCurrent().getTimeMonitor();
     assert (timeMonitorObject != null);
 
-    // returns the singleton object
+    // returns the time monitor of the current context
     return timeMonitorObject;
   }
 
   public static void setup(double tl) {
-    timeMonitorObject = new TimeMonitor(tl);
+    PSymContext.getCurrent().setTimeMonitor(new TimeMonitor(tl));
   }
 
   public double getRuntime() {
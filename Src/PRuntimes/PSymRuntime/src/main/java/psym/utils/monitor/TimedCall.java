@@ -2,6 +2,7 @@ package psym.utils.monitor;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeoutException;
+import psym.runtime.PSymContext;
 import psym.runtime.scheduler.search.SearchScheduler;
 import psym.utils.exception.BugFoundException;
 import psym.utils.exception.MemoutException;
@@ -9,15 +10,19 @@ import psym.utils.exception.MemoutException;
 public class TimedCall implements Callable<Integer> {
   private final SearchScheduler scheduler;
   private final boolean resume;
+  private final PSymContext context;
 
   public TimedCall(SearchScheduler scheduler, boolean resume) {
     this.scheduler = scheduler;
     this.resume = resume;
+    this.context = PSymContext.getCurrent();
   }
 
   @Override
   public Integer call()
       throws MemoutException, BugFoundException, TimeoutException, InterruptedException {
+    // run the search in the context of the caller
+    PSymContext.setCurrent(context);
     try {
       if (!this.resume) this.scheduler.doSearch();
       else this.scheduler.resumeSearch();
@@ -31,6 +36,8 @@ public class TimedCall implements Callable<Integer> {
       throw e;
     } catch (InterruptedException e) {
       throw e;
+    } finally {
+      PSymContext.setCurrent(null);
     }
     return 0;
   }
@@ -0,0 +1,19 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of restoring the schedule of a backtrack task */
+@Name("psym.BacktrackRestore")
+@Label("Backtrack Restore")
+@Category("PSym")
+@StackTrace(false)
+public class BacktrackRestoreEvent extends Event {
+  @Label("Task Id")
+  public int taskId;
+
+  @Label("Choice Depth")
+  public int choiceDepth;
+
+  @Label("Pending Tasks")
+  public int numPendingTasks;
+}
@@ -0,0 +1,17 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of writing the search state to a checkpoint file */
+@Name("psym.CheckpointWrite")
+@Label("Checkpoint Write")
+@Category("PSym")
+@StackTrace(false)
+public class CheckpointWriteEvent extends Event {
+  @Label("File")
+  public String fileName;
+
+  @Label("Size")
+  @DataAmount
+  public long bytes;
+}
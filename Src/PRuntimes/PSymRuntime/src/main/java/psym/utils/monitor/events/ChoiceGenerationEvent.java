@@ -0,0 +1,29 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of generating the next scheduling or data choice */
+@Name("psym.ChoiceGeneration")
+@Label("Choice Generation")
+@Category("PSym")
+@StackTrace(false)
+public class ChoiceGenerationEvent extends Event {
+  @Label("Depth")
+  public int depth;
+
+  @Label("Choice Depth")
+  public int choiceDepth;
+
+  @Label("Data Choice")
+  public boolean isData;
+
+  @Label("Repeated")
+  @Description("Whether the choice repeats the one already in the schedule")
+  public boolean isRepeat;
+
+  @Label("Chosen")
+  public int numChosen;
+
+  @Label("Backtrack")
+  public int numBacktrack;
+}
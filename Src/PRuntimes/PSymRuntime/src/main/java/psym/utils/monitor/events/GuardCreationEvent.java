@@ -0,0 +1,20 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of creating a solver guard. Fired per guard, so disabled by default. */
+@Name("psym.GuardCreation")
+@Label("Guard Creation")
+@Category("PSym")
+@Enabled(false)
+@StackTrace(false)
+public class GuardCreationEvent extends Event {
+  @Label("Guard Id")
+  public int id;
+
+  @Label("Guard Type")
+  public String type;
+
+  @Label("Children")
+  public int numChildren;
+}
@@ -0,0 +1,23 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of delivering a message to its target machines */
+@Name("psym.PerformEffect")
+@Label("Perform Effect")
+@Category("PSym")
+@StackTrace(false)
+public class PerformEffectEvent extends Event {
+  @Label("Depth")
+  public int depth;
+
+  @Label("Target")
+  public String target;
+
+  @Label("Event")
+  public String event;
+
+  @Label("Guard Count")
+  @Description("Number of solver guards created during the operation")
+  public int guardCount;
+}
@@ -0,0 +1,20 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of a machine processing an event to completion */
+@Name("psym.ProcessEvent")
+@Label("Process Event")
+@Category("PSym")
+@StackTrace(false)
+public class ProcessEventEvent extends Event {
+  @Label("Machine")
+  public String machine;
+
+  @Label("Event")
+  public String event;
+
+  @Label("Guard Count")
+  @Description("Number of solver guards created during the operation")
+  public int guardCount;
+}
@@ -0,0 +1,23 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of a single scheduler step */
+@Name("psym.SchedulerStep")
+@Label("Scheduler Step")
+@Category("PSym")
+@StackTrace(false)
+public class SchedulerStepEvent extends Event {
+  @Label("Iteration")
+  public int iter;
+
+  @Label("Depth")
+  public int depth;
+
+  @Label("Choice Depth")
+  public int choiceDepth;
+
+  @Label("Guard Count")
+  @Description("Total number of solver guards created so far")
+  public int guardCount;
+}
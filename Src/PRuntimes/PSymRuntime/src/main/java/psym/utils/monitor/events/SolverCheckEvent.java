@@ -0,0 +1,24 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of a satisfiability query to the solver backend */
+@Name("psym.SolverCheck")
+@Label("Solver Check")
+@Category("PSym")
+@StackTrace(false)
+public class SolverCheckEvent extends Event {
+  @Label("Guard Id")
+  public int id;
+
+  @Label("Negated")
+  @Description("Whether the query checks validity through the negated formula")
+  public boolean isNegated;
+
+  @Label("Satisfiable")
+  public boolean isSat;
+
+  @Label("Node Count")
+  @Description("Number of nodes in the solver backend after the query")
+  public int nodeCount;
+}
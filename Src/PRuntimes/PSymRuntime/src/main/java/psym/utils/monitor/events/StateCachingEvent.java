@@ -0,0 +1,20 @@
+package psym.utils.monitor.events;
+
+import jdk.jfr.*;
+
+/** JFR event of looking up the current state in the state cache */
+@Name("psym.StateCaching")
+@Label("State Caching")
+@Category("PSym")
+@StackTrace(false)
+public class StateCachingEvent extends Event {
+  @Label("Depth")
+  public int depth;
+
+  @Label("Distinct")
+  @Description("Whether the state was not visited before")
+  public boolean isDistinct;
+
+  @Label("Distinct States")
+  public int numDistinctStates;
+}
@@ -0,0 +1,13 @@
+/**
+ * Java Flight Recorder events of the main search operations. Events are emitted with the usual
+ * pattern of creating an event, calling {@code begin()} before the operation, and filling in fields
+ * and calling {@code commit()} only if {@code shouldCommit()} holds. When JFR is not recording an
+ * event, the JIT removes the event allocation and the checks reduce to a constant false, so the
+ * operations cost the same as without instrumentation.
+ *
+ * <p>Record a run with, for example, {@code java -XX:StartFlightRecording=filename=psym.jfr -jar
+ * ...} and inspect the events under the "PSym" category with JDK Mission Control or {@code jfr
+ * print --categories PSym psym.jfr}. Events fired per guard are disabled by default and can be
+ * enabled in a custom JFR settings file.
+ */
+package psym.utils.monitor.events;
@@ -1,24 +1,41 @@
 package psym.utils.random;
 
-import java.util.Random;
-
+import java.util.List;
+import java.util.SplittableRandom;
+import psym.runtime.PSymContext;
+
+/**
+ * Random number generator of the current context. Backed by a {@link SplittableRandom}, so that
+ * each search worker can be given an independent stream split from the generator of the main run.
+ */
 public class RandomNumberGenerator {
-  private static RandomNumberGenerator randomNumberGenerator;
-  private final Random rand;
+  private final SplittableRandom rand;
 
-  private RandomNumberGenerator(long seed) {
-    rand = new Random(seed);
+  private RandomNumberGenerator(SplittableRandom rand) {
+    this.rand = rand;
   }
 
   public static void setup(long seed) {
-    randomNumberGenerator = new RandomNumberGenerator(seed);
+    PSymContext.getCurrent()
+        .setRandomNumberGenerator(new RandomNumberGenerator(new SplittableRandom(seed)));
   }
 
   public static RandomNumberGenerator getInstance() {
+    RandomNumberGenerator randomNumberGenerator =
+        PSymContext.getCurrent().getRandomNumberGenerator();
     assert (randomNumberGenerator != null);
     return randomNumberGenerator;
   }
 
+  /**
+   * Split off a new generator with an independent stream of random numbers
+   *
+   * @return New random number generator
+   */
+  public RandomNumberGenerator split() {
+    return new RandomNumberGenerator(rand.split());
+  }
+
   public int getRandomInt(int bound) {
     return rand.nextInt(bound);
   }
@@ -30,4 +47,15 @@ public class RandomNumberGenerator {
   public double getRandomDouble() {
     return rand.nextDouble();
   }
+
+  /**
+   * Fisher-Yates shuffle of a list in place
+   *
+   * @param list List to shuffle
+   */
+  public <T> void shuffle(List<T> list) {
+    for (int i = list.size() - 1; i > 0; i--) {
+      list.set(i, list.set(rand.nextInt(i + 1), list.get(i)));
+    }
+  }
 }
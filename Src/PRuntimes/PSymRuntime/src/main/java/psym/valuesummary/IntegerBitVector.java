@@ -0,0 +1,195 @@
+package psym.valuesummary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a bit-blasted Integer value summary, where each bit of a fixed-width two's complement
+ * integer is a Guard under which that bit is set. Arithmetic and comparison are implemented as
+ * circuits over these guards, so their cost is linear in the width rather than quadratic in the
+ * number of possible values.
+ */
+public final class IntegerBitVector {
+  /** Maximum width of a bit vector, matching the width of a Java int */
+  private static final int MAX_WIDTH = 32;
+
+  /** Guards under which each bit is set, with index 0 being the least significant bit */
+  private final Guard[] bits;
+
+  /** Universe under which the bit vector is defined */
+  private final Guard universe;
+
+  private IntegerBitVector(Guard[] bits, Guard universe) {
+    this.bits = bits;
+    this.universe = universe;
+  }
+
+  /**
+   * Encode an Integer primitive value summary as a bit vector
+   *
+   * @param a Value summary to encode, must not contain null values
+   * @param width Number of bits of the bit vector
+   * @return Bit vector representing the value summary
+   */
+  public static IntegerBitVector fromPrimitiveVS(PrimitiveVS<Integer> a, int width) {
+    Guard[] bits = new Guard[width];
+    for (int i = 0; i < width; i++) {
+      bits[i] = Guard.constFalse();
+    }
+    for (GuardedValue<Integer> guardedValue : a.getGuardedValues()) {
+      int value = guardedValue.getValue();
+      for (int i = 0; i < width; i++) {
+        if (((value >>> i) & 1) == 1) {
+          bits[i] = bits[i].or(guardedValue.getGuard());
+        }
+      }
+    }
+    return new IntegerBitVector(bits, a.getUniverse());
+  }
+
+  /**
+   * Get the number of bits needed to represent all values of a value summary in two's complement
+   *
+   * @param a Integer value summary
+   * @return Minimum width required for the value summary
+   */
+  public static int requiredWidth(PrimitiveVS<Integer> a) {
+    int width = 1;
+    for (Integer value : a.getValues()) {
+      int magnitude = value < 0 ? ~value : value;
+      width = Math.max(width, MAX_WIDTH - Integer.numberOfLeadingZeros(magnitude) + 1);
+    }
+    return Math.min(width, MAX_WIDTH);
+  }
+
+  /**
+   * Get the width to use for an operation whose result needs one more bit than its operands
+   *
+   * @param a First operand
+   * @param b Second operand
+   * @return Width that cannot overflow unless the operands already span a full int
+   */
+  public static int operationWidth(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    return Math.min(Math.max(requiredWidth(a), requiredWidth(b)) + 1, MAX_WIDTH);
+  }
+
+  private static Guard xor(Guard a, Guard b) {
+    return a.ifThenElse(b.not(), b);
+  }
+
+  private static Guard majority(Guard a, Guard b, Guard c) {
+    return (a.and(b)).or(c.and(a.or(b)));
+  }
+
+  private int width() {
+    return bits.length;
+  }
+
+  private IntegerBitVector addWithCarry(IntegerBitVector other, boolean invertOther, Guard carry) {
+    assert (width() == other.width());
+    Guard[] result = new Guard[width()];
+    for (int i = 0; i < width(); i++) {
+      Guard a = bits[i];
+      Guard b = invertOther ? other.bits[i].not() : other.bits[i];
+      result[i] = xor(xor(a, b), carry);
+      carry = majority(a, b, carry);
+    }
+    return new IntegerBitVector(result, universe.and(other.universe));
+  }
+
+  /**
+   * Add two bit vectors using a ripple-carry adder
+   *
+   * @param other Bit vector to add
+   * @return Bit vector representing the sum
+   */
+  public IntegerBitVector add(IntegerBitVector other) {
+    return addWithCarry(other, false, Guard.constFalse());
+  }
+
+  /**
+   * Subtract a bit vector as addition of its two's complement
+   *
+   * @param other Bit vector to subtract
+   * @return Bit vector representing the difference
+   */
+  public IntegerBitVector subtract(IntegerBitVector other) {
+    return addWithCarry(other, true, Guard.constTrue());
+  }
+
+  /**
+   * Get the guard under which this bit vector is less than another, as signed integers
+   *
+   * @param other Bit vector to compare with
+   * @return Guard under which this is less than other
+   */
+  public Guard lessThan(IntegerBitVector other) {
+    assert (width() == other.width());
+    Guard less = Guard.constFalse();
+    for (int i = 0; i < width() - 1; i++) {
+      Guard a = bits[i];
+      Guard b = other.bits[i];
+      less = (a.not().and(b)).or(xor(a, b).not().and(less));
+    }
+    Guard signA = bits[width() - 1];
+    Guard signB = other.bits[width() - 1];
+    less = (signA.and(signB.not())).or(xor(signA, signB).not().and(less));
+    return less.and(universe).and(other.universe);
+  }
+
+  /**
+   * Get the guard under which this bit vector is equal to another
+   *
+   * @param other Bit vector to compare with
+   * @return Guard under which this is equal to other
+   */
+  public Guard equalTo(IntegerBitVector other) {
+    assert (width() == other.width());
+    Guard equal = universe.and(other.universe);
+    for (int i = 0; i < width() && !equal.isFalse(); i++) {
+      equal = equal.and(xor(bits[i], other.bits[i]).not());
+    }
+    return equal;
+  }
+
+  /**
+   * Convert the bit vector back to an enumerated Integer value summary. Prefixes of the bit vector
+   * are expanded one bit at a time, discarding unsatisfiable prefixes, so the cost is proportional
+   * to the width times the number of resulting values.
+   *
+   * @return Integer value summary with the same values as the bit vector
+   */
+  public PrimitiveVS<Integer> toPrimitiveVS() {
+    List<GuardedValue<Integer>> prefixes = new ArrayList<>();
+    if (!universe.isFalse()) {
+      prefixes.add(new GuardedValue<>(0, universe));
+    }
+    for (int i = 0; i < width(); i++) {
+      List<GuardedValue<Integer>> next = new ArrayList<>();
+      for (GuardedValue<Integer> prefix : prefixes) {
+        Guard set = prefix.getGuard().and(bits[i]);
+        Guard unset = prefix.getGuard().and(bits[i].not());
+        if (!set.isFalse()) {
+          next.add(new GuardedValue<>(prefix.getValue() | (1 << i), set));
+        }
+        if (!unset.isFalse()) {
+          next.add(new GuardedValue<>(prefix.getValue(), unset));
+        }
+      }
+      prefixes = next;
+    }
+
+    Map<Integer, Guard> result = new HashMap<>();
+    for (GuardedValue<Integer> guardedValue : prefixes) {
+      int value = guardedValue.getValue();
+      if (width() < MAX_WIDTH && ((value >>> (width() - 1)) & 1) == 1) {
+        // sign extend
+        value -= (1 << width());
+      }
+      result.merge(value, guardedValue.getGuard(), Guard::or);
+    }
+    return new PrimitiveVS<>(result);
+  }
+}
@@ -1,7 +1,35 @@
 package psym.valuesummary;
 
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+
 /** Class containing static methods that are useful for Integer primitive value summaries */
 public class IntegerVS {
+  /**
+   * Number of value pairs above which binary operations are bit-blasted into circuits over guards
+   * instead of enumerating every pair of values (0 means never bit-blast)
+   */
+  @Getter @Setter private static int bitBlastThreshold = 0;
+
+  /**
+   * Check whether a binary operation on two Integer value summaries should be bit-blasted
+   *
+   * @param a Value summary of first Integer
+   * @param b Value summary of second Integer
+   * @return Whether the operation should use the bit-vector encoding
+   */
+  private static boolean useBitBlast(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    if (bitBlastThreshold <= 0) {
+      return false;
+    }
+    long numPairs = (long) a.getGuardedValues().size() * b.getGuardedValues().size();
+    if (numPairs <= bitBlastThreshold) {
+      return false;
+    }
+    return !a.hasValue(null) && !b.hasValue(null);
+  }
   /**
    * Add two Integer primitive value summaries
    *
@@ -10,6 +38,12 @@ public class IntegerVS {
    * @return The value summary representing the arguments' sum
    */
   public static PrimitiveVS<Integer> add(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    if (useBitBlast(a, b)) {
+      int width = IntegerBitVector.operationWidth(a, b);
+      return IntegerBitVector.fromPrimitiveVS(a, width)
+          .add(IntegerBitVector.fromPrimitiveVS(b, width))
+          .toPrimitiveVS();
+    }
     return a.apply(b, Integer::sum);
   }
 
@@ -32,6 +66,12 @@ public class IntegerVS {
    * @return The value summary representing the arguments' difference
    */
   public static PrimitiveVS<Integer> subtract(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    if (useBitBlast(a, b)) {
+      int width = IntegerBitVector.operationWidth(a, b);
+      return IntegerBitVector.fromPrimitiveVS(a, width)
+          .subtract(IntegerBitVector.fromPrimitiveVS(b, width))
+          .toPrimitiveVS();
+    }
     return a.apply(b, (x, y) -> x - y);
   }
 
@@ -54,6 +94,13 @@ public class IntegerVS {
    * @return The value summary representing whether the first argument is less than the second
    */
   public static PrimitiveVS<Boolean> lessThan(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    if (useBitBlast(a, b)) {
+      int width = IntegerBitVector.operationWidth(a, b);
+      Guard less =
+          IntegerBitVector.fromPrimitiveVS(a, width)
+              .lessThan(IntegerBitVector.fromPrimitiveVS(b, width));
+      return fromGuard(less, a.getUniverse().and(b.getUniverse()));
+    }
     return a.apply(b, (x, y) -> x < y);
   }
 
@@ -88,6 +135,19 @@ public class IntegerVS {
    *     positive indicating b < a, and 0 indicating a = b.
    */
   public static PrimitiveVS<Integer> compare(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    if (useBitBlast(a, b)) {
+      int width = IntegerBitVector.operationWidth(a, b);
+      IntegerBitVector aBits = IntegerBitVector.fromPrimitiveVS(a, width);
+      IntegerBitVector bBits = IntegerBitVector.fromPrimitiveVS(b, width);
+      Guard less = aBits.lessThan(bBits);
+      Guard equal = aBits.equalTo(bBits);
+      Guard greater = a.getUniverse().and(b.getUniverse()).and(less.or(equal).not());
+      Map<Integer, Guard> result = new HashMap<>();
+      if (!less.isFalse()) result.put(-1, less);
+      if (!equal.isFalse()) result.put(0, equal);
+      if (!greater.isFalse()) result.put(1, greater);
+      return new PrimitiveVS<>(result);
+    }
     return a.apply(b, Integer::compareTo);
   }
 
@@ -131,6 +191,28 @@ public class IntegerVS {
    * @return The value summary representing whether the first argument is equal to the second
    */
   public static PrimitiveVS<Boolean> equalTo(PrimitiveVS<Integer> a, PrimitiveVS<Integer> b) {
+    if (useBitBlast(a, b)) {
+      int width = IntegerBitVector.operationWidth(a, b);
+      Guard equal =
+          IntegerBitVector.fromPrimitiveVS(a, width)
+              .equalTo(IntegerBitVector.fromPrimitiveVS(b, width));
+      return fromGuard(equal, a.getUniverse().and(b.getUniverse()));
+    }
     return a.apply(b, Integer::equals);
   }
+
+  /**
+   * Create a Boolean value summary that is true under a guard and false elsewhere in a universe
+   *
+   * @param trueGuard Guard under which the result is true
+   * @param universe Universe of the result
+   * @return The Boolean value summary
+   */
+  private static PrimitiveVS<Boolean> fromGuard(Guard trueGuard, Guard universe) {
+    Map<Boolean, Guard> result = new HashMap<>();
+    Guard falseGuard = universe.and(trueGuard.not());
+    if (!trueGuard.isFalse()) result.put(true, trueGuard);
+    if (!falseGuard.isFalse()) result.put(false, falseGuard);
+    return new PrimitiveVS<>(result);
+  }
 }
@@ -10,29 +10,26 @@ import java.util.stream.IntStream;
 import lombok.Getter;
 import psym.runtime.machine.Machine;
 import psym.utils.exception.BugFoundException;
+import psym.valuesummary.util.PersistentVector;
 
 /** Represents the list value summaries. */
 public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>> {
-  @Getter
-  /** Concrete hash used for hashing in explicit-state search */
-  private final int concreteHash;
-  @Getter
-  /** Concrete value used in explicit-state search */
-  private final List<Object> concreteValue;
+  /** Concrete hash used for hashing in explicit-state search, computed on first use */
+  private Integer concreteHash = null;
+  /** Concrete value used in explicit-state search, computed on first use */
+  private List<Object> concreteValue = null;
 
   /** The size of the list under all guards */
   private final PrimitiveVS<Integer> size;
   /**
    * The contents of the list, where T is a value summary itself, value summary at index i
-   * represents the possible content at that index
+   * represents the possible content at that index. Structure is shared across updates.
    */
-  @Getter private final List<T> items;
+  @Getter private final PersistentVector<T> items;
 
   public ListVS(PrimitiveVS<Integer> size, List<T> items) {
     this.size = size;
-    this.items = items;
-    this.concreteHash = computeConcreteHash();
-    this.concreteValue = computeConcreteValue();
+    this.items = PersistentVector.from(items);
   }
 
   /**
@@ -41,7 +38,7 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
    * @param universe The universe for the new ListVS
    */
   public ListVS(Guard universe) {
-    this(new PrimitiveVS<>(0).restrict(universe), new ArrayList<>());
+    this(new PrimitiveVS<>(0).restrict(universe), PersistentVector.empty());
   }
 
   /**
@@ -50,7 +47,7 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
    * @param old The ListVS to copy
    */
   public ListVS(ListVS<T> old) {
-    this(new PrimitiveVS<>(old.size), new ArrayList<>(old.items));
+    this(new PrimitiveVS<>(old.size), old.items);
   }
 
   /**
@@ -214,7 +211,7 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
     // assert(Checks.includedIn(item.getUniverse(), getUniverse()));
     PrimitiveVS<Integer> newSize =
         size.updateUnderGuard(item.getUniverse(), IntegerVS.add(size, 1));
-    final List<T> newItems = new ArrayList<>(this.items);
+    PersistentVector<T> newItems = this.items;
 
     for (GuardedValue<Integer> possibleSize :
         this.size.restrict(item.getUniverse()).getGuardedValues()) {
@@ -222,11 +219,12 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
       final T guardedItemToAdd = item.restrict(possibleSize.getGuard());
 
       if (sizeValue == newItems.size()) {
-        newItems.add(guardedItemToAdd);
+        newItems = newItems.plus(guardedItemToAdd);
       } else {
-        newItems.set(
-            sizeValue,
-            newItems.get(sizeValue).updateUnderGuard(possibleSize.getGuard(), guardedItemToAdd));
+        newItems =
+            newItems.with(
+                sizeValue,
+                newItems.get(sizeValue).updateUnderGuard(possibleSize.getGuard(), guardedItemToAdd));
       }
     }
     // assert(Checks.sameUniverse(this.getUniverse(), newListVS.getUniverse()));
@@ -329,11 +327,9 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
     List<ListVS<T>> toMerge = new ArrayList<>();
     // for each possible index value
     for (GuardedValue<Integer> index : indexSummary.getGuardedValues()) {
-      final List<T> newItems = new ArrayList<>(items);
       // the original item is updated when this is the index (i.e., index.guard holds)
-      final T newEntry =
-          newItems.get(index.getValue()).updateUnderGuard(index.getGuard(), itemToSet);
-      newItems.set(index.getValue(), newEntry);
+      final T newEntry = items.get(index.getValue()).updateUnderGuard(index.getGuard(), itemToSet);
+      final PersistentVector<T> newItems = items.with(index.getValue(), newEntry);
       ListVS<T> newList = new ListVS<>(size, newItems).restrict(index.getGuard());
       if (merger == null) merger = newList;
       else toMerge.add(newList);
@@ -445,12 +441,10 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
     /* Optimize case where the index can only take on one value */
     if (indexSummary.getValues().size() == 1) {
       int idx = indexSummary.getValues().iterator().next();
-      List<T> newItems = new ArrayList<T>(items);
-      newItems.remove(idx);
-      return new ListVS<>(newSize, newItems);
+      return new ListVS<>(newSize, items.minus(idx));
     }
 
-    ListVS<T> newList = new ListVS<>(newSize, items.subList(0, items.size() - 1));
+    ListVS<T> newList = new ListVS<>(newSize, items.pop());
     PrimitiveVS<Integer> current = indexSummary;
 
     // Setting everything after removal index to be the next element
@@ -465,6 +459,23 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
     return newList;
   }
 
+  /**
+   * Remove a prefix of the ListVS. The removed items must be present under every guard, so this
+   * only shifts the storage and does not restrict any remaining item.
+   *
+   * @param count Number of items to remove from the front
+   * @return The result of removing the prefix from the ListVS
+   */
+  public ListVS<T> removeFirst(int count) {
+    assert (count >= 0);
+    assert (IntegerVS.minValue(size) == null || IntegerVS.minValue(size) >= count);
+    PersistentVector<T> newItems = items;
+    for (int i = 0; i < count; i++) {
+      newItems = newItems.popFirst();
+    }
+    return new ListVS<>(IntegerVS.subtract(size, count), newItems);
+  }
+
   /**
    * Get the index of an element in the ListVS
    *
@@ -507,6 +518,22 @@ public class ListVS<T extends ValueSummary<T>> implements ValueSummary<ListVS<T>
     return getUniverse().and(size.getGuardFor(0).not());
   }
 
+  @Override
+  public int getConcreteHash() {
+    if (concreteHash == null) {
+      concreteHash = computeConcreteHash();
+    }
+    return concreteHash;
+  }
+
+  @Override
+  public List<Object> getConcreteValue() {
+    if (concreteValue == null) {
+      concreteValue = computeConcreteValue();
+    }
+    return concreteValue;
+  }
+
   @Override
   public int computeConcreteHash() {
     int hashCode = 1;
@@ -1,24 +1,24 @@
 package psym.valuesummary;
 
 import java.util.*;
-import lombok.Getter;
 import psym.runtime.machine.Machine;
 import psym.utils.Assert;
+import psym.valuesummary.util.PersistentHashMap;
 
 /** Class for map value summaries */
 public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
     implements ValueSummary<MapVS<K, T, V>> {
   /** The set of keys */
   public final SetVS<T> keys;
-  /** The mapping from all possible keys to values */
-  public final Map<K, V> entries;
-  /** The mapping from all possible keys to values */
-  @Getter
-  /** Concrete hash used for hashing in explicit-state search */
-  private final int concreteHash;
-  @Getter
-  /** Concrete value used in explicit-state search */
-  private final Map<K, Object> concreteValue;
+  /** The mapping from all possible keys to values, with structure shared across updates */
+  public final PersistentHashMap<K, V> entries;
+  /**
+   * Concrete hash used for hashing in explicit-state search, computed on first use so that map
+   * updates do not pay a full traversal of the entries
+   */
+  private Integer concreteHash = null;
+  /** Concrete value used in explicit-state search, computed on first use */
+  private Map<K, Object> concreteValue = null;
 
   /**
    * Make a new MapVS with the specified set of keys and mapping
@@ -28,9 +28,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
    */
   public MapVS(SetVS<T> keys, Map<K, V> entries) {
     this.keys = keys;
-    this.entries = entries;
-    this.concreteHash = computeConcreteHash();
-    this.concreteValue = computeConcreteValue();
+    this.entries = PersistentHashMap.from(entries);
   }
 
   /**
@@ -40,9 +38,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
    */
   public MapVS(Guard universe) {
     this.keys = new SetVS<>(universe);
-    this.entries = new HashMap<>();
-    this.concreteHash = computeConcreteHash();
-    this.concreteValue = computeConcreteValue();
+    this.entries = PersistentHashMap.empty();
   }
 
   /**
@@ -51,7 +47,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
    * @param old The MapVS to copy
    */
   public MapVS(MapVS<K, T, V> old) {
-    this(new SetVS<>(old.keys), new HashMap<>(old.entries));
+    this(new SetVS<>(old.keys), old.entries);
   }
 
   /**
@@ -64,7 +60,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
   }
 
   public MapVS<K, T, V> swap(Map<Machine, Machine> mapping) {
-    Map<K, V> newEntries = new HashMap<>();
+    PersistentHashMap<K, V> newEntries = PersistentHashMap.empty();
     for (Map.Entry<K, V> kv : this.entries.entrySet()) {
       K key = kv.getKey();
       if (key instanceof Machine) {
@@ -75,7 +71,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
         }
       }
       V val = kv.getValue().swap(mapping);
-      newEntries.put(key, val);
+      newEntries = newEntries.plus(key, val);
     }
     return new MapVS(this.keys.swap(mapping), newEntries);
   }
@@ -119,7 +115,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
   @Override
   public MapVS<K, T, V> restrict(Guard guard) {
     final SetVS<T> newKeys = keys.restrict(guard);
-    final Map<K, V> newEntries = new HashMap<>();
+    PersistentHashMap<K, V> newEntries = PersistentHashMap.empty();
 
     for (T keySummary : newKeys.getElements().getItems()) {
       for (GuardedValue<?> guardedKey : ValueSummary.getGuardedValues(keySummary)) {
@@ -128,7 +124,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
         if (val != null) {
           val = val.restrict(guard);
         }
-        newEntries.put(key, val);
+        newEntries = newEntries.plus(key, val);
       }
     }
 
@@ -159,12 +155,13 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
 
     final SetVS<T> mergedKeys = keys.merge(keysToMerge);
 
-    final Map<K, V> mergedValues = new HashMap<>();
+    PersistentHashMap<K, V> mergedValues = PersistentHashMap.empty();
     for (Map.Entry<K, List<V>> entriesToMerge : valuesToMerge.entrySet()) {
       List<V> toMerge = entriesToMerge.getValue();
       if (toMerge.size() > 0) {
-        mergedValues.put(
-            entriesToMerge.getKey(), toMerge.get(0).merge(toMerge.subList(1, toMerge.size())));
+        mergedValues =
+            mergedValues.plus(
+                entriesToMerge.getKey(), toMerge.get(0).merge(toMerge.subList(1, toMerge.size())));
       }
     }
 
@@ -221,14 +218,16 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
    */
   public MapVS<K, T, V> put(T keySummary, V valSummary) {
     final SetVS<T> newKeys = keys.add(keySummary);
-    final Map<K, V> newEntries = new HashMap<>(entries);
+    PersistentHashMap<K, V> newEntries = entries;
     for (GuardedValue<?> guardedKey : ValueSummary.getGuardedValues(keySummary)) {
       V oldVal = entries.get(guardedKey.getValue());
       if (oldVal == null || oldVal.isEmptyVS()) {
-        newEntries.put((K) guardedKey.getValue(), valSummary);
+        newEntries = newEntries.plus((K) guardedKey.getValue(), valSummary);
       } else {
-        newEntries.put(
-            (K) guardedKey.getValue(), oldVal.updateUnderGuard(guardedKey.getGuard(), valSummary));
+        newEntries =
+            newEntries.plus(
+                (K) guardedKey.getValue(),
+                oldVal.updateUnderGuard(guardedKey.getGuard(), valSummary));
       }
     }
 
@@ -279,7 +278,7 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
   public MapVS<K, T, V> remove(T keySummary) {
     final SetVS<T> newKeys = keys.remove(keySummary);
 
-    final Map<K, V> newEntries = new HashMap<>(entries);
+    PersistentHashMap<K, V> newEntries = entries;
     for (GuardedValue<?> guardedKey : ValueSummary.getGuardedValues(keySummary)) {
       V oldVal = entries.get(guardedKey.getValue());
       if (oldVal == null) {
@@ -288,9 +287,9 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
 
       final V remainingVal = oldVal.restrict(guardedKey.getGuard().not());
       if (remainingVal.isEmptyVS()) {
-        newEntries.remove(guardedKey.getValue());
+        newEntries = newEntries.minus(guardedKey.getValue());
       } else {
-        newEntries.put((K) guardedKey.getValue(), remainingVal);
+        newEntries = newEntries.plus((K) guardedKey.getValue(), remainingVal);
       }
     }
 
@@ -373,6 +372,22 @@ public class MapVS<K, T extends ValueSummary<T>, V extends ValueSummary<V>>
     return keys.contains(keySummary);
   }
 
+  @Override
+  public int getConcreteHash() {
+    if (concreteHash == null) {
+      concreteHash = computeConcreteHash();
+    }
+    return concreteHash;
+  }
+
+  @Override
+  public Map<K, Object> getConcreteValue() {
+    if (concreteValue == null) {
+      concreteValue = computeConcreteValue();
+    }
+    return concreteValue;
+  }
+
   @Override
   public int computeConcreteHash() {
     int hashCode = 1;
@@ -1,17 +1,36 @@
 package psym.valuesummary.solvers;
 
 import java.util.Objects;
-import lombok.Getter;
-import lombok.Setter;
+import psym.runtime.PSymContext;
 import psym.runtime.logger.SearchLogger;
 import psym.valuesummary.solvers.bdd.PJBDDImpl;
 import psym.valuesummary.solvers.sat.expr.ExprLibType;
 
 /** Represents the generic backend engine */
 public class SolverEngine {
-  @Getter @Setter private static SolverLib solver;
-  @Getter @Setter private static SolverType solverType = SolverType.BDD;
-  @Getter @Setter private static ExprLibType exprLibType = ExprLibType.Bdd;
+  public static SolverLib getSolver() {
+    return PSymContext.getCurrent().getSolver();
+  }
+
+  public static void setSolver(SolverLib solver) {
+    PSymContext.getCurrent().setSolver(solver);
+  }
+
+  public static SolverType getSolverType() {
+    return PSymContext.getCurrent().getSolverType();
+  }
+
+  public static void setSolverType(SolverType solverType) {
+    PSymContext.getCurrent().setSolverType(solverType);
+  }
+
+  public static ExprLibType getExprLibType() {
+    return PSymContext.getCurrent().getExprLibType();
+  }
+
+  public static void setExprLibType(ExprLibType exprLibType) {
+    PSymContext.getCurrent().setExprLibType(exprLibType);
+  }
 
   public static void resumeEngine() {
     if (SearchLogger.getVerbosity() > 1) {
@@ -32,14 +51,14 @@ public class SolverEngine {
   }
 
   public static void cleanupEngine() {
-    solver.cleanup();
+    getSolver().cleanup();
   }
 
   public static void setSolver(SolverType type, ExprLibType etype) {
     setSolverType(type);
     setExprLibType(etype);
     if (Objects.requireNonNull(type) == SolverType.BDD) {
-      solver = new PJBDDImpl(false);
+      setSolver(new PJBDDImpl(false));
     } else {
       assert false
           : String.format(
@@ -49,7 +68,7 @@ public class SolverEngine {
   }
 
   public static int getVarCount() {
-    return solver.getVarCount();
+    return getSolver().getVarCount();
   }
 
   public static int getGuardCount() {
@@ -58,6 +77,6 @@ public class SolverEngine {
   }
 
   public static String getStats() {
-    return solver.getStats();
+    return getSolver().getStats();
   }
 }
@@ -2,18 +2,16 @@ package psym.valuesummary.solvers;
 
 import com.google.common.collect.ImmutableList;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import psym.runtime.PSymContext;
 import psym.runtime.statistics.SolverStats;
+import psym.utils.monitor.events.GuardCreationEvent;
+import psym.utils.monitor.events.SolverCheckEvent;
 
 /** Represents the generic solver based implementation of Guard */
 public class SolverGuard implements Serializable {
-  private static final List<SolverGuard> varList = new ArrayList<>();
-  private static final List<SolverGuard> guardList = new ArrayList<>();
-  private static final HashMap<Object, SolverGuard> table = new HashMap<Object, SolverGuard>();
-  private static boolean resume = false;
   private final SolverGuardType type;
   private final String name;
   private final ImmutableList<SolverGuard> children;
@@ -37,41 +35,72 @@ public class SolverGuard implements Serializable {
     this.children = children;
     this.statusTrue = SolverTrueStatus.Unknown;
     this.statusFalse = SolverFalseStatus.Unknown;
-    this.id = guardList.size();
-    table.put(formula, this);
-    guardList.add(this);
+    PSymContext context = PSymContext.getCurrent();
+    this.id = context.getSolverGuards().size();
+    context.getSolverGuardTable().put(formula, this);
+    context.getSolverGuards().add(this);
+
+    GuardCreationEvent creationEvent = new GuardCreationEvent();
+    if (creationEvent.shouldCommit()) {
+      creationEvent.id = id;
+      creationEvent.type = type.toString();
+      creationEvent.numChildren = (children == null) ? 0 : children.size();
+      creationEvent.commit();
+    }
+  }
+
+  private static List<SolverGuard> varList() {
+    return PSymContext.getCurrent().getSolverGuardVars();
+  }
+
+  private static List<SolverGuard> guardList() {
+    return PSymContext.getCurrent().getSolverGuards();
+  }
+
+  private static Map<Object, SolverGuard> table() {
+    return PSymContext.getCurrent().getSolverGuardTable();
+  }
+
+  /**
+   * Get a solver guard of the current context by its id
+   *
+   * @param id Id of the solver guard
+   * @return Solver guard with the id
+   */
+  public static SolverGuard getSolverGuardById(int id) {
+    return guardList().get(id);
   }
 
   /** Global reset for the solver guard class */
   public static void reset() {
-    table.clear();
+    table().clear();
   }
 
   /** Resume solver guard implementation to the new solver backend */
   public static void resumeSolverGuard() {
     // reset the old table
-    table.clear();
+    table().clear();
 
     // recreate all vars first (in order)
-    for (SolverGuard oldGuard : varList) {
+    for (SolverGuard oldGuard : varList()) {
       recreateSolverGuard(oldGuard);
     }
 
-    resume = true;
+    PSymContext.getCurrent().setSolverGuardResume(true);
   }
 
   /** (Experimental) Simplify the solver guard */
   public static void simplifySolverGuard() {
     // reset the old table
-    table.clear();
+    table().clear();
 
     // recreate all vars first (in order)
-    for (SolverGuard oldGuard : varList) {
+    for (SolverGuard oldGuard : varList()) {
       simplifySolverGuard(oldGuard);
     }
 
     // recreate remaining guards
-    for (SolverGuard oldGuard : guardList) {
+    for (SolverGuard oldGuard : guardList()) {
       simplifySolverGuard(oldGuard);
     }
   }
@@ -83,29 +112,29 @@ public class SolverGuard implements Serializable {
    */
   private static void simplifySolverGuard(SolverGuard original) {
     // return if already cached in new table
-    if (table.containsKey(original.formula)) {
-      original.formula = table.get(original.formula).formula;
+    if (table().containsKey(original.formula)) {
+      original.formula = table().get(original.formula).formula;
       return;
     }
 
     original.formula = SolverEngine.getSolver().simplify(original.formula);
 
     // cache result
-    table.put(original.formula, original);
+    table().put(original.formula, original);
   }
 
   /** Switch solver guard implementation to the new solver backend */
   public static void switchSolverGuard() {
     // reset the old table
-    table.clear();
+    table().clear();
 
     // recreate all vars first (in order)
-    for (SolverGuard oldGuard : varList) {
+    for (SolverGuard oldGuard : varList()) {
       recreateSolverGuard(oldGuard);
     }
 
     // recreate remaining guards
-    for (SolverGuard oldGuard : guardList) {
+    for (SolverGuard oldGuard : guardList()) {
       recreateSolverGuard(oldGuard);
     }
   }
@@ -117,8 +146,8 @@ public class SolverGuard implements Serializable {
    */
   private static void recreateSolverGuard(SolverGuard original) {
     // return if already cached in new table
-    if (original.formula != null && table.containsKey(original.formula)) {
-      original.formula = table.get(original.formula).formula;
+    if (original.formula != null && table().containsKey(original.formula)) {
+      original.formula = table().get(original.formula).formula;
       return;
     }
 
@@ -164,7 +193,7 @@ public class SolverGuard implements Serializable {
     // SolverEngine.getSolver().hashCode(original.formula));
 
     // cache result
-    table.put(original.formula, original);
+    table().put(original.formula, original);
   }
 
   /**
@@ -177,8 +206,8 @@ public class SolverGuard implements Serializable {
    */
   private static SolverGuard getSolverGuard(
       Object formula, SolverGuardType type, String name, ImmutableList<SolverGuard> children) {
-    if (table.containsKey(formula)) {
-      return table.get(formula);
+    if (table().containsKey(formula)) {
+      return table().get(formula);
     }
     return new SolverGuard(formula, type, name, children);
   }
@@ -189,7 +218,7 @@ public class SolverGuard implements Serializable {
    * @return the number of solver guards
    */
   public static int getGuardCount() {
-    return table.size();
+    return table().size();
   }
 
   /**
@@ -247,7 +276,7 @@ public class SolverGuard implements Serializable {
    * @return solver guard representing a new Boolean variable
    */
   public static SolverGuard newVar() {
-    String name = "x" + varList.size();
+    String name = "x" + varList().size();
     SolverGuard g =
         getSolverGuard(
             SolverEngine.getSolver().newVar(name),
@@ -256,17 +285,18 @@ public class SolverGuard implements Serializable {
             ImmutableList.of());
     g.statusTrue = SolverTrueStatus.NotTrue;
     g.statusFalse = SolverFalseStatus.NotFalse;
-    varList.add(g);
+    varList().add(g);
     return g;
   }
 
   /** Sanity check if the list of input solver guards are already stored */
   private static void checkInput(List<SolverGuard> inputs) {
+    boolean resume = PSymContext.getCurrent().isSolverGuardResume();
     for (SolverGuard input : inputs) {
       if (resume) {
         recreateSolverGuard(input);
       } else {
-        if (input.formula == null || !table.containsKey(input.formula)) {
+        if (input.formula == null || !table().containsKey(input.formula)) {
           System.out.println("\tMissing SolverGuard: " + input);
           System.out.println("\tSolverGuard: " + input);
           System.out.println("\thashcode: " + SolverEngine.getSolver().hashCode(input.formula));
@@ -286,6 +316,15 @@ public class SolverGuard implements Serializable {
     return others.stream().reduce(SolverGuard.constFalse(), SolverGuard::or);
   }
 
+  /**
+   * Get the id of the solver guard, which is its index in the solver guards of the context
+   *
+   * @return Id of the solver guard
+   */
+  public int getId() {
+    return id;
+  }
+
   /**
    * Check if the solver guard is logical `true`
    *
@@ -300,9 +339,12 @@ public class SolverGuard implements Serializable {
       default:
         checkInput(List.of(this));
         //                Instant start = Instant.now();
+        SolverCheckEvent checkEvent = new SolverCheckEvent();
+        checkEvent.begin();
         boolean isSatNeg = SolverEngine.getSolver().isSat(SolverEngine.getSolver().not(formula));
         //                SolverStats.updateSolveGuardTime((Duration.between(start,
         // Instant.now()).toMillis()));
+        commitCheckEvent(checkEvent, true, isSatNeg);
         if (!isSatNeg) {
           statusTrue = SolverTrueStatus.True;
           statusFalse = SolverFalseStatus.NotFalse;
@@ -315,6 +357,16 @@ public class SolverGuard implements Serializable {
     }
   }
 
+  private void commitCheckEvent(SolverCheckEvent checkEvent, boolean isNegated, boolean isSat) {
+    if (checkEvent.shouldCommit()) {
+      checkEvent.id = id;
+      checkEvent.isNegated = isNegated;
+      checkEvent.isSat = isSat;
+      checkEvent.nodeCount = SolverEngine.getSolver().getNodeCount();
+      checkEvent.commit();
+    }
+  }
+
   /**
    * Check if the solver guard is logical `false`
    *
@@ -329,9 +381,12 @@ public class SolverGuard implements Serializable {
       default:
         checkInput(List.of(this));
         //                Instant start = Instant.now();
+        SolverCheckEvent checkEvent = new SolverCheckEvent();
+        checkEvent.begin();
         boolean isSat = SolverEngine.getSolver().isSat(formula);
         //                SolverStats.updateSolveGuardTime((Duration.between(start,
         // Instant.now()).toMillis()));
+        commitCheckEvent(checkEvent, false, isSat);
         if (!isSat) {
           statusTrue = SolverTrueStatus.NotTrue;
           statusFalse = SolverFalseStatus.False;
@@ -351,7 +406,7 @@ public class SolverGuard implements Serializable {
    */
   public SolverGuard not() {
     checkInput(List.of(this));
-    SolverStats.notOperations++;
+    SolverStats.notOperations.increment();
     //        Instant start = Instant.now();
     SolverGuard result =
         getSolverGuard(
@@ -369,7 +424,7 @@ public class SolverGuard implements Serializable {
    */
   public SolverGuard and(SolverGuard other) {
     checkInput(Arrays.asList(this, other));
-    SolverStats.andOperations++;
+    SolverStats.andOperations.increment();
     //        Instant start = Instant.now();
     SolverGuard result =
         getSolverGuard(
@@ -390,7 +445,7 @@ public class SolverGuard implements Serializable {
    */
   public SolverGuard or(SolverGuard other) {
     checkInput(Arrays.asList(this, other));
-    SolverStats.orOperations++;
+    SolverStats.orOperations.increment();
     //        Instant start = Instant.now();
     SolverGuard result =
         getSolverGuard(
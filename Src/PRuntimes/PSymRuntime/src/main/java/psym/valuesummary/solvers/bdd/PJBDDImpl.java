@@ -50,10 +50,10 @@ public class PJBDDImpl implements SolverLib<DD> {
   }
 
   public boolean isSat(DD bdd) {
-    SolverStats.isSatOperations++;
+    SolverStats.isSatOperations.increment();
     boolean result = !bdd.isFalse();
     if (result) {
-      SolverStats.isSatResult++;
+      SolverStats.isSatResult.increment();
     }
     return result;
   }
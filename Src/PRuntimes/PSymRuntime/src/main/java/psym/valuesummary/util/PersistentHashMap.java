@@ -0,0 +1,415 @@
+package psym.valuesummary.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable hash map implemented as a hash array mapped trie (HAMT). Updates return a new map that
+ * shares all untouched nodes with the original, so put and remove are O(log n) and copies are
+ * free. Null keys and null values are supported. Mutating methods inherited from {@link Map}
+ * throw {@link UnsupportedOperationException}; use {@link #plus} and {@link #minus} instead.
+ *
+ * @param <K> Type of keys
+ * @param <V> Type of values
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> implements Serializable {
+  private static final int BITS_PER_LEVEL = 5;
+  private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+  private static final int HASH_BITS = 32;
+  private static final Object NOT_FOUND = new Object();
+  private static final Node EMPTY_NODE =
+      new Node(0, 0, new Object[0], new Object[0], new Node[0], false);
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(EMPTY_NODE, 0);
+
+  private final Node root;
+  private final int size;
+  private transient Set<Map.Entry<K, V>> entrySet = null;
+
+  private PersistentHashMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Get the empty map
+   *
+   * @return An empty persistent map
+   */
+  public static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Get a persistent map with the same entries as the given map
+   *
+   * @param map Map to copy, returned as is if already persistent
+   * @return A persistent map with the same entries
+   */
+  public static <K, V> PersistentHashMap<K, V> from(Map<K, V> map) {
+    if (map instanceof PersistentHashMap) {
+      return (PersistentHashMap<K, V>) map;
+    }
+    PersistentHashMap<K, V> result = empty();
+    for (Map.Entry<K, V> entry : map.entrySet()) {
+      result = result.plus(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  private static int hash(Object key) {
+    return Objects.hashCode(key);
+  }
+
+  private static int index(int bitmap, int bit) {
+    return Integer.bitCount(bitmap & (bit - 1));
+  }
+
+  /**
+   * Get a map with the key mapped to the value
+   *
+   * @param key The key
+   * @param value The value
+   * @return A new map sharing structure with this one, or this map if nothing changed
+   */
+  public PersistentHashMap<K, V> plus(K key, V value) {
+    boolean[] added = new boolean[1];
+    Node newRoot = root.put(key, hash(key), value, 0, added);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Get a map without the key
+   *
+   * @param key The key to remove
+   * @return A new map sharing structure with this one, or this map if the key is absent
+   */
+  public PersistentHashMap<K, V> minus(Object key) {
+    Node newRoot = root.remove(key, hash(key), 0);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(newRoot, size - 1);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return root.find(key, hash(key), 0) != NOT_FOUND;
+  }
+
+  @Override
+  public V get(Object key) {
+    Object result = root.find(key, hash(key), 0);
+    return result == NOT_FOUND ? null : (V) result;
+  }
+
+  @Override
+  public V getOrDefault(Object key, V defaultValue) {
+    Object result = root.find(key, hash(key), 0);
+    return result == NOT_FOUND ? defaultValue : (V) result;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet =
+          new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+              return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+              return size;
+            }
+          };
+    }
+    return entrySet;
+  }
+
+  /**
+   * Node of the trie. Entries whose hash fragment at this level is unique are stored inline, others
+   * are pushed into child nodes. Once all hash bits are used up, a collision node stores entries
+   * with equal hashes in plain arrays.
+   */
+  private static final class Node implements Serializable {
+    private final int dataMap;
+    private final int nodeMap;
+    private final Object[] keys;
+    private final Object[] values;
+    private final Node[] nodes;
+    private final boolean collision;
+
+    Node(int dataMap, int nodeMap, Object[] keys, Object[] values, Node[] nodes, boolean collision) {
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.keys = keys;
+      this.values = values;
+      this.nodes = nodes;
+      this.collision = collision;
+    }
+
+    private static Node mergeTwo(
+        Object key0, int hash0, Object value0, Object key1, int hash1, Object value1, int shift) {
+      if (shift >= HASH_BITS) {
+        return new Node(
+            0, 0, new Object[] {key0, key1}, new Object[] {value0, value1}, new Node[0], true);
+      }
+      int frag0 = (hash0 >>> shift) & LEVEL_MASK;
+      int frag1 = (hash1 >>> shift) & LEVEL_MASK;
+      if (frag0 == frag1) {
+        Node child = mergeTwo(key0, hash0, value0, key1, hash1, value1, shift + BITS_PER_LEVEL);
+        return new Node(0, 1 << frag0, new Object[0], new Object[0], new Node[] {child}, false);
+      }
+      int dataMap = (1 << frag0) | (1 << frag1);
+      if (frag0 < frag1) {
+        return new Node(
+            dataMap, 0, new Object[] {key0, key1}, new Object[] {value0, value1}, new Node[0], false);
+      }
+      return new Node(
+          dataMap, 0, new Object[] {key1, key0}, new Object[] {value1, value0}, new Node[0], false);
+    }
+
+    private static Object[] insertAt(Object[] array, int idx, Object element) {
+      Object[] result = new Object[array.length + 1];
+      System.arraycopy(array, 0, result, 0, idx);
+      result[idx] = element;
+      System.arraycopy(array, idx, result, idx + 1, array.length - idx);
+      return result;
+    }
+
+    private static Object[] removeAt(Object[] array, int idx) {
+      Object[] result = new Object[array.length - 1];
+      System.arraycopy(array, 0, result, 0, idx);
+      System.arraycopy(array, idx + 1, result, idx, array.length - idx - 1);
+      return result;
+    }
+
+    private static Object[] replaceAt(Object[] array, int idx, Object element) {
+      Object[] result = array.clone();
+      result[idx] = element;
+      return result;
+    }
+
+    private static Node[] insertNodeAt(Node[] array, int idx, Node element) {
+      Node[] result = new Node[array.length + 1];
+      System.arraycopy(array, 0, result, 0, idx);
+      result[idx] = element;
+      System.arraycopy(array, idx, result, idx + 1, array.length - idx);
+      return result;
+    }
+
+    private static Node[] removeNodeAt(Node[] array, int idx) {
+      Node[] result = new Node[array.length - 1];
+      System.arraycopy(array, 0, result, 0, idx);
+      System.arraycopy(array, idx + 1, result, idx, array.length - idx - 1);
+      return result;
+    }
+
+    private int collisionIndex(Object key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (Objects.equals(keys[i], key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /** Whether this node holds a single entry and no children, so it can be inlined */
+    private boolean isSingleton() {
+      return keys.length == 1 && nodes.length == 0;
+    }
+
+    Object find(Object key, int hash, int shift) {
+      if (collision) {
+        int idx = collisionIndex(key);
+        return idx < 0 ? NOT_FOUND : values[idx];
+      }
+      int bit = 1 << ((hash >>> shift) & LEVEL_MASK);
+      if ((dataMap & bit) != 0) {
+        int idx = index(dataMap, bit);
+        return Objects.equals(keys[idx], key) ? values[idx] : NOT_FOUND;
+      }
+      if ((nodeMap & bit) != 0) {
+        return nodes[index(nodeMap, bit)].find(key, hash, shift + BITS_PER_LEVEL);
+      }
+      return NOT_FOUND;
+    }
+
+    Node put(Object key, int hash, Object value, int shift, boolean[] added) {
+      if (collision) {
+        int idx = collisionIndex(key);
+        if (idx >= 0) {
+          if (values[idx] == value) {
+            return this;
+          }
+          return new Node(0, 0, keys, replaceAt(values, idx, value), nodes, true);
+        }
+        added[0] = true;
+        return new Node(
+            0,
+            0,
+            insertAt(keys, keys.length, key),
+            insertAt(values, values.length, value),
+            nodes,
+            true);
+      }
+      int bit = 1 << ((hash >>> shift) & LEVEL_MASK);
+      if ((dataMap & bit) != 0) {
+        int idx = index(dataMap, bit);
+        Object existingKey = keys[idx];
+        if (Objects.equals(existingKey, key)) {
+          if (values[idx] == value) {
+            return this;
+          }
+          return new Node(dataMap, nodeMap, keys, replaceAt(values, idx, value), nodes, false);
+        }
+        added[0] = true;
+        Node child =
+            mergeTwo(
+                existingKey,
+                hash(existingKey),
+                values[idx],
+                key,
+                hash,
+                value,
+                shift + BITS_PER_LEVEL);
+        int nodeIdx = index(nodeMap, bit);
+        return new Node(
+            dataMap ^ bit,
+            nodeMap | bit,
+            removeAt(keys, idx),
+            removeAt(values, idx),
+            insertNodeAt(nodes, nodeIdx, child),
+            false);
+      }
+      if ((nodeMap & bit) != 0) {
+        int nodeIdx = index(nodeMap, bit);
+        Node child = nodes[nodeIdx];
+        Node newChild = child.put(key, hash, value, shift + BITS_PER_LEVEL, added);
+        if (newChild == child) {
+          return this;
+        }
+        Node[] newNodes = nodes.clone();
+        newNodes[nodeIdx] = newChild;
+        return new Node(dataMap, nodeMap, keys, values, newNodes, false);
+      }
+      added[0] = true;
+      int idx = index(dataMap, bit);
+      return new Node(
+          dataMap | bit,
+          nodeMap,
+          insertAt(keys, idx, key),
+          insertAt(values, idx, value),
+          nodes,
+          false);
+    }
+
+    Node remove(Object key, int hash, int shift) {
+      if (collision) {
+        int idx = collisionIndex(key);
+        if (idx < 0) {
+          return this;
+        }
+        return new Node(0, 0, removeAt(keys, idx), removeAt(values, idx), nodes, true);
+      }
+      int bit = 1 << ((hash >>> shift) & LEVEL_MASK);
+      if ((dataMap & bit) != 0) {
+        int idx = index(dataMap, bit);
+        if (!Objects.equals(keys[idx], key)) {
+          return this;
+        }
+        return new Node(
+            dataMap ^ bit, nodeMap, removeAt(keys, idx), removeAt(values, idx), nodes, false);
+      }
+      if ((nodeMap & bit) != 0) {
+        int nodeIdx = index(nodeMap, bit);
+        Node child = nodes[nodeIdx];
+        Node newChild = child.remove(key, hash, shift + BITS_PER_LEVEL);
+        if (newChild == child) {
+          return this;
+        }
+        if (newChild.keys.length == 0 && newChild.nodes.length == 0) {
+          // child became empty
+          return new Node(
+              dataMap, nodeMap ^ bit, keys, values, removeNodeAt(nodes, nodeIdx), false);
+        }
+        if (newChild.isSingleton()) {
+          // inline the remaining entry of the child
+          int idx = index(dataMap, bit);
+          return new Node(
+              dataMap | bit,
+              nodeMap ^ bit,
+              insertAt(keys, idx, newChild.keys[0]),
+              insertAt(values, idx, newChild.values[0]),
+              removeNodeAt(nodes, nodeIdx),
+              false);
+        }
+        Node[] newNodes = nodes.clone();
+        newNodes[nodeIdx] = newChild;
+        return new Node(dataMap, nodeMap, keys, values, newNodes, false);
+      }
+      return this;
+    }
+  }
+
+  /** Depth-first iterator over all entries of a trie */
+  private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+    private final Deque<Node> pending = new ArrayDeque<>();
+    private Node current = null;
+    private int dataIdx = 0;
+
+    EntryIterator(Node root) {
+      pending.push(root);
+      advance();
+    }
+
+    private void advance() {
+      while (current == null || dataIdx >= current.keys.length) {
+        if (pending.isEmpty()) {
+          current = null;
+          return;
+        }
+        current = pending.pop();
+        dataIdx = 0;
+        for (Node child : current.nodes) {
+          pending.push(child);
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return current != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<K, V> entry =
+          new AbstractMap.SimpleImmutableEntry<>(
+              (K) current.keys[dataIdx], (V) current.values[dataIdx]);
+      dataIdx++;
+      advance();
+      return entry;
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package psym.valuesummary.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list implemented as a 32-way vector trie with a tail buffer. Updates return a new
+ * vector that shares all untouched nodes with the original, so append, update and removal at
+ * either end are O(log n) and copies are free. Removal from the front only advances an offset, and
+ * the trie is compacted once the dropped prefix outgrows the live elements. Mutating methods
+ * inherited from {@link List} throw {@link UnsupportedOperationException}; use {@link #plus},
+ * {@link #with} and {@link #minus} instead.
+ *
+ * @param <E> Type of elements
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+    implements RandomAccess, Serializable {
+  private static final int BITS_PER_LEVEL = 5;
+  private static final int WIDTH = 1 << BITS_PER_LEVEL;
+  private static final int LEVEL_MASK = WIDTH - 1;
+  private static final Object[] EMPTY_NODE = new Object[WIDTH];
+  private static final PersistentVector<?> EMPTY =
+      new PersistentVector<>(EMPTY_NODE, BITS_PER_LEVEL, new Object[0], 0, 0);
+
+  /** Root of the trie holding all elements before the tail */
+  private final Object[] root;
+  /** Shift of the root level */
+  private final int shift;
+  /** Last, possibly partial, leaf of the vector */
+  private final Object[] tail;
+  /** Number of elements in the trie and tail, including dropped ones */
+  private final int count;
+  /** Number of elements dropped from the front */
+  private final int start;
+
+  private PersistentVector(Object[] root, int shift, Object[] tail, int count, int start) {
+    this.root = root;
+    this.shift = shift;
+    this.tail = tail;
+    this.count = count;
+    this.start = start;
+  }
+
+  /**
+   * Get the empty vector
+   *
+   * @return An empty persistent vector
+   */
+  public static <E> PersistentVector<E> empty() {
+    return (PersistentVector<E>) EMPTY;
+  }
+
+  /**
+   * Get a persistent vector with the same elements as the given list
+   *
+   * @param list List to copy, returned as is if already persistent
+   * @return A persistent vector with the same elements
+   */
+  public static <E> PersistentVector<E> from(List<? extends E> list) {
+    if (list instanceof PersistentVector) {
+      return (PersistentVector<E>) list;
+    }
+    Object[] elements = list.toArray();
+    return build(elements, 0, elements.length);
+  }
+
+  /** Build a compact vector from a range of an array, one leaf at a time */
+  private static <E> PersistentVector<E> build(Object[] elements, int from, int to) {
+    PersistentVector<E> result = empty();
+    for (int i = from; i < to; i += WIDTH) {
+      Object[] leaf = Arrays.copyOfRange(elements, i, Math.min(i + WIDTH, to));
+      if (result.count == 0) {
+        result = new PersistentVector<>(EMPTY_NODE, BITS_PER_LEVEL, leaf, leaf.length, 0);
+      } else {
+        result = result.pushTail(leaf);
+      }
+    }
+    return result;
+  }
+
+  private static Object[] newPath(int level, Object[] node) {
+    if (level == 0) {
+      return node;
+    }
+    Object[] result = new Object[WIDTH];
+    result[0] = newPath(level - BITS_PER_LEVEL, node);
+    return result;
+  }
+
+  private static Object[] doAssoc(int level, Object[] node, int idx, Object value) {
+    Object[] result = node.clone();
+    if (level == 0) {
+      result[idx & LEVEL_MASK] = value;
+    } else {
+      int subIdx = (idx >>> level) & LEVEL_MASK;
+      result[subIdx] = doAssoc(level - BITS_PER_LEVEL, (Object[]) node[subIdx], idx, value);
+    }
+    return result;
+  }
+
+  private int tailOffset() {
+    return count < WIDTH ? 0 : ((count - 1) >>> BITS_PER_LEVEL) << BITS_PER_LEVEL;
+  }
+
+  /** Get the leaf holding the element at an absolute position */
+  private Object[] leafFor(int absoluteIdx) {
+    if (absoluteIdx >= tailOffset()) {
+      return tail;
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS_PER_LEVEL) {
+      node = (Object[]) node[(absoluteIdx >>> level) & LEVEL_MASK];
+    }
+    return node;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+  }
+
+  @Override
+  public int size() {
+    return count - start;
+  }
+
+  @Override
+  public E get(int index) {
+    checkIndex(index);
+    int absoluteIdx = start + index;
+    return (E) leafFor(absoluteIdx)[absoluteIdx & LEVEL_MASK];
+  }
+
+  /**
+   * Get a vector with an element appended at the end
+   *
+   * @param element The element to append
+   * @return A new vector sharing structure with this one
+   */
+  public PersistentVector<E> plus(E element) {
+    if (count - tailOffset() < WIDTH) {
+      Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+      newTail[tail.length] = element;
+      return new PersistentVector<>(root, shift, newTail, count + 1, start);
+    }
+    return pushTail(new Object[] {element});
+  }
+
+  /** Move the full tail into the trie and start a new tail */
+  private PersistentVector<E> pushTail(Object[] newTail) {
+    Object[] newRoot;
+    int newShift = shift;
+    if ((count >>> BITS_PER_LEVEL) > (1 << shift)) {
+      // root overflow
+      newRoot = new Object[WIDTH];
+      newRoot[0] = root;
+      newRoot[1] = newPath(shift, tail);
+      newShift += BITS_PER_LEVEL;
+    } else {
+      newRoot = pushTail(shift, root, tail);
+    }
+    return new PersistentVector<>(newRoot, newShift, newTail, count + newTail.length, start);
+  }
+
+  private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+    int subIdx = ((count - 1) >>> level) & LEVEL_MASK;
+    Object[] result = parent.clone();
+    Object[] toInsert;
+    if (level == BITS_PER_LEVEL) {
+      toInsert = tailNode;
+    } else {
+      Object[] child = (Object[]) parent[subIdx];
+      toInsert =
+          child != null
+              ? pushTail(level - BITS_PER_LEVEL, child, tailNode)
+              : newPath(level - BITS_PER_LEVEL, tailNode);
+    }
+    result[subIdx] = toInsert;
+    return result;
+  }
+
+  /**
+   * Get a vector with the element at an index replaced
+   *
+   * @param index The index to update
+   * @param element The new element
+   * @return A new vector sharing structure with this one
+   */
+  public PersistentVector<E> with(int index, E element) {
+    checkIndex(index);
+    int absoluteIdx = start + index;
+    if (absoluteIdx >= tailOffset()) {
+      Object[] newTail = tail.clone();
+      newTail[absoluteIdx & LEVEL_MASK] = element;
+      return new PersistentVector<>(root, shift, newTail, count, start);
+    }
+    return new PersistentVector<>(
+        doAssoc(shift, root, absoluteIdx, element), shift, tail, count, start);
+  }
+
+  /**
+   * Get a vector without its last element
+   *
+   * @return A new vector sharing structure with this one
+   */
+  public PersistentVector<E> pop() {
+    if (size() == 0) {
+      throw new IllegalStateException("Can't pop empty vector");
+    }
+    if (size() == 1) {
+      return empty();
+    }
+    if (count - tailOffset() > 1) {
+      Object[] newTail = Arrays.copyOf(tail, tail.length - 1);
+      return new PersistentVector<>(root, shift, newTail, count - 1, start);
+    }
+    Object[] newTail = leafFor(count - 2);
+    Object[] newRoot = popTail(shift, root);
+    int newShift = shift;
+    if (newRoot == null) {
+      newRoot = EMPTY_NODE;
+    }
+    if (shift > BITS_PER_LEVEL && newRoot[1] == null) {
+      newRoot = (Object[]) newRoot[0];
+      newShift -= BITS_PER_LEVEL;
+    }
+    return new PersistentVector<>(newRoot, newShift, newTail, count - 1, start);
+  }
+
+  private Object[] popTail(int level, Object[] node) {
+    int subIdx = ((count - 2) >>> level) & LEVEL_MASK;
+    if (level > BITS_PER_LEVEL) {
+      Object[] newChild = popTail(level - BITS_PER_LEVEL, (Object[]) node[subIdx]);
+      if (newChild == null && subIdx == 0) {
+        return null;
+      }
+      Object[] result = node.clone();
+      result[subIdx] = newChild;
+      return result;
+    } else if (subIdx == 0) {
+      return null;
+    }
+    Object[] result = node.clone();
+    result[subIdx] = null;
+    return result;
+  }
+
+  /**
+   * Get a vector without its first element. The dropped element stays in the shared trie until
+   * dropped elements outnumber live ones, at which point the vector is rebuilt, so the amortized
+   * cost is O(1).
+   *
+   * @return A new vector sharing structure with this one
+   */
+  public PersistentVector<E> popFirst() {
+    if (size() == 0) {
+      throw new IllegalStateException("Can't pop empty vector");
+    }
+    if (size() == 1) {
+      return empty();
+    }
+    int newStart = start + 1;
+    if (newStart >= WIDTH && newStart > count - newStart) {
+      return build(toArray(), 1, size());
+    }
+    return new PersistentVector<>(root, shift, tail, count, newStart);
+  }
+
+  /**
+   * Get a vector without the element at an index. Removal at either end shares structure with
+   * this vector, removal in the middle rebuilds it.
+   *
+   * @param index The index to remove
+   * @return A new vector without the element
+   */
+  public PersistentVector<E> minus(int index) {
+    checkIndex(index);
+    if (index == 0) {
+      return popFirst();
+    }
+    if (index == size() - 1) {
+      return pop();
+    }
+    Object[] elements = toArray();
+    System.arraycopy(elements, index + 1, elements, index, elements.length - index - 1);
+    return build(elements, 0, elements.length - 1);
+  }
+
+  @Override
+  public Object[] toArray() {
+    Object[] result = new Object[size()];
+    int i = 0;
+    for (E element : this) {
+      result[i++] = element;
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private int absoluteIdx = start;
+      private Object[] leaf = null;
+
+      @Override
+      public boolean hasNext() {
+        return absoluteIdx < count;
+      }
+
+      @Override
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        if (leaf == null || (absoluteIdx & LEVEL_MASK) == 0) {
+          leaf = leafFor(absoluteIdx);
+        }
+        return (E) leaf[absoluteIdx++ & LEVEL_MASK];
+      }
+    };
+  }
+}
@@ -0,0 +1,160 @@
+package psym;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.PSymGlobal;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.MachineLocalState;
+import psym.runtime.machine.State;
+import psym.runtime.machine.StateTemperature;
+import psym.runtime.machine.events.Event;
+import psym.runtime.scheduler.Schedule;
+import psym.runtime.scheduler.search.taskorchestration.BacktrackTask;
+import psym.valuesummary.Guard;
+import psym.valuesummary.PrimitiveVS;
+import psym.valuesummary.ValueSummary;
+
+public class TestBacktrackTask {
+  private static final String OUTPUT = "output/testCases/testBacktrackTask";
+
+  private Machine client;
+  private Machine server;
+  private State busy;
+  private Schedule schedule;
+
+  private static Machine newMachine(String name, State init, State... states) {
+    return new Machine(name, 0, init, states) {};
+  }
+
+  private static State newState(String name, String machineName) {
+    return new State(name, machineName, StateTemperature.Warm) {};
+  }
+
+  /** Create two machines and a schedule of two choices, with the state of both machines stored */
+  private void initialize() {
+    PSym.initializeDefault(OUTPUT);
+    State init = newState("Init", "Server");
+    busy = newState("Busy", "Server");
+    server = newMachine("Server", init, init, busy);
+    State clientInit = newState("Init", "Client");
+    client = newMachine("Client", clientInit, clientInit);
+
+    schedule = new Schedule(PSymGlobal.getSymmetryTracker());
+    schedule.addRepeatSchedulingChoice(new PrimitiveVS<>(client), 0);
+    schedule.addBacktrackSchedulingChoice(List.of(new PrimitiveVS<>(server)), 0);
+    schedule.addRepeatInt(new PrimitiveVS<>(3), 1);
+    schedule.addBacktrackBool(List.of(new PrimitiveVS<>(true)), 1);
+    schedule.addBacktrackElement(
+        List.of(new PrimitiveVS<ValueSummary>(new PrimitiveVS<>(server))), 1);
+
+    MachineLocalState local = new MachineLocalState();
+    local.setLocals(new ArrayList<>(List.of(new PrimitiveVS<>(busy))));
+    local.setObservedEvents(new HashSet<>(Set.of(new Event("Ping"))));
+    Map<Machine, MachineLocalState> machineStates = new HashMap<>();
+    machineStates.put(server, local);
+    schedule
+        .getChoice(1)
+        .storeState(
+            4,
+            2,
+            new Schedule.ChoiceState(machineStates, new HashMap<>()),
+            Guard.constTrue(),
+            PSymGlobal.getSymmetryTracker());
+  }
+
+  private BacktrackTask newTask() {
+    BacktrackTask task = new BacktrackTask(1);
+    task.setChoices(schedule.getChoices());
+    return task;
+  }
+
+  private static <T> T only(PrimitiveVS<T> vs) {
+    return vs.getGuardedValues().get(0).getValue();
+  }
+
+  /** Check that the choices of a task are those of the schedule */
+  private void assertChoices(List<Schedule.Choice> choices, boolean sameMachines) {
+    Assertions.assertEquals(2, choices.size());
+    Schedule.Choice first = choices.get(0);
+    Schedule.Choice second = choices.get(1);
+    Machine repeated = only(first.getRepeatSchedulingChoice());
+    Machine backtrack = only(first.getBacktrackSchedulingChoice().get(0));
+    Assertions.assertEquals(client.toString(), repeated.toString());
+    Assertions.assertEquals(server.toString(), backtrack.toString());
+    Assertions.assertEquals(3, only(second.getRepeatInt()));
+    Assertions.assertEquals(true, only(second.getBacktrackBool().get(0)));
+    Assertions.assertTrue(second.getFilter().isTrue());
+    Assertions.assertEquals(4, second.getSchedulerDepth());
+    Assertions.assertEquals(2, second.getSchedulerChoiceDepth());
+
+    Map.Entry<Machine, MachineLocalState> stored =
+        second.getChoiceState().getMachineStates().entrySet().iterator().next();
+    ValueSummary storedState = stored.getValue().getLocals().get(0);
+    Assertions.assertEquals(busy, only((PrimitiveVS<?>) storedState));
+    Assertions.assertEquals(Set.of(new Event("Ping")), stored.getValue().getObservedEvents());
+    if (sameMachines) {
+      Assertions.assertSame(client, repeated);
+      Assertions.assertSame(server, backtrack);
+      Assertions.assertSame(server, stored.getKey());
+      ValueSummary element = only(second.getBacktrackElement().get(0));
+      Assertions.assertSame(server, only((PrimitiveVS<?>) element));
+    }
+  }
+
+  @Test
+  public void testSpillRoundTrip() throws IOException {
+    initialize();
+    BacktrackTask task = newTask();
+    String fileName = OUTPUT + "/spill/task1.out";
+    task.spill(fileName, schedule);
+    Assertions.assertTrue(task.isSpilled());
+    Assertions.assertTrue(Files.exists(Paths.get(fileName)));
+
+    // the referenced machines are known without reading back the choices
+    Set<Machine> machines = new HashSet<>();
+    task.collectMachines(machines);
+    Assertions.assertEquals(Set.of(client, server), machines);
+    Assertions.assertTrue(task.isSpilled());
+
+    // machines, states and guards are looked up again, rather than read back as copies
+    assertChoices(task.getChoices(), true);
+    Assertions.assertFalse(task.isSpilled());
+    Assertions.assertFalse(Files.exists(Paths.get(fileName)));
+  }
+
+  @Test
+  public void testSpillUnregisteredMachine() throws IOException {
+    initialize();
+    BacktrackTask task = newTask();
+    task.spill(OUTPUT + "/spill/task1.out", schedule);
+    Machine.releaseMachine(server);
+    RuntimeException e = Assertions.assertThrows(RuntimeException.class, task::getChoices);
+    Assertions.assertTrue(e.getMessage().contains("task1.out"), e.getMessage());
+  }
+
+  @Test
+  public void testCheckpointSpilledTask() throws IOException, ClassNotFoundException {
+    initialize();
+    BacktrackTask task = newTask();
+    String fileName = OUTPUT + "/spill/task1.out";
+    task.spill(fileName, schedule);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(task);
+    }
+    // the spilled choices are written with the task, which stays spilled
+    Assertions.assertTrue(task.isSpilled());
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      BacktrackTask read = (BacktrackTask) in.readObject();
+      Assertions.assertFalse(read.isSpilled());
+      assertChoices(read.getChoices(), false);
+    }
+    assertChoices(task.getChoices(), true);
+  }
+}
@@ -0,0 +1,60 @@
+package psym;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.valuesummary.Guard;
+import psym.valuesummary.GuardedValue;
+import psym.valuesummary.IntegerVS;
+import psym.valuesummary.PrimitiveVS;
+
+public class TestIntegerVS {
+
+  private PrimitiveVS<Integer> symbolicInteger(int... values) {
+    List<Guard> vars = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      vars.add(Guard.newVar());
+    }
+    Map<Integer, Guard> guardedValues = new HashMap<>();
+    Guard remaining = Guard.constTrue();
+    for (int i = 0; i < values.length; i++) {
+      Guard g = (i == values.length - 1) ? remaining : remaining.and(vars.get(i));
+      guardedValues.merge(values[i], g, Guard::or);
+      remaining = remaining.and(g.not());
+    }
+    return new PrimitiveVS<>(guardedValues);
+  }
+
+  private <T> void assertSameVS(PrimitiveVS<T> expected, PrimitiveVS<T> actual) {
+    Assertions.assertEquals(expected.getValues(), actual.getValues());
+    for (GuardedValue<T> guardedValue : expected.getGuardedValues()) {
+      Assertions.assertEquals(
+          guardedValue.getGuard(), actual.getGuardFor(guardedValue.getValue()));
+    }
+  }
+
+  @Test
+  public void testBitBlastMatchesEnumeration() {
+    PSym.initializeDefault("output/testCases/testIntegerVS");
+    PrimitiveVS<Integer> a = symbolicInteger(-7, 0, 3, 12, Integer.MAX_VALUE);
+    PrimitiveVS<Integer> b = symbolicInteger(-1, 2, 5, Integer.MIN_VALUE);
+
+    IntegerVS.setBitBlastThreshold(0);
+    PrimitiveVS<Integer> sum = IntegerVS.add(a, b);
+    PrimitiveVS<Integer> difference = IntegerVS.subtract(a, b);
+    PrimitiveVS<Boolean> less = IntegerVS.lessThan(a, b);
+    PrimitiveVS<Boolean> equal = IntegerVS.equalTo(a, a);
+    PrimitiveVS<Integer> compare = IntegerVS.compare(b, a);
+
+    IntegerVS.setBitBlastThreshold(1);
+    assertSameVS(sum, IntegerVS.add(a, b));
+    assertSameVS(difference, IntegerVS.subtract(a, b));
+    assertSameVS(less, IntegerVS.lessThan(a, b));
+    assertSameVS(equal, IntegerVS.equalTo(a, a));
+    assertSameVS(compare, IntegerVS.compare(b, a));
+    IntegerVS.setBitBlastThreshold(0);
+  }
+}
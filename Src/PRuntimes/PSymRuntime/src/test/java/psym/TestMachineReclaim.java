@@ -0,0 +1,56 @@
+package psym;
+
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.PSymGlobal;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.State;
+import psym.runtime.machine.StateTemperature;
+import psym.runtime.scheduler.Schedule;
+import psym.valuesummary.Guard;
+
+public class TestMachineReclaim {
+
+  private static class Server extends Machine {
+    Server() {
+      super("Server", 0, newInit());
+    }
+
+    private static State newInit() {
+      return new State("Init", "Server", StateTemperature.Warm) {};
+    }
+  }
+
+  @Test
+  public void testReuseReleasedIds() {
+    PSym.initializeDefault("output/testCases/testMachineReclaim");
+    Schedule schedule = new Schedule(PSymGlobal.getSymmetryTracker());
+    Machine first = new Server();
+    Machine second = new Server();
+    Machine third = new Server();
+    schedule.makeMachine(first, Guard.constTrue());
+    schedule.makeMachine(second, Guard.constTrue());
+    schedule.makeMachine(third, Guard.constTrue());
+
+    // only the suffix of machines after the live one is released
+    Set<Machine> released = schedule.releaseMachines(Set.of(first));
+    Assertions.assertEquals(Set.of(second, third), released);
+    released.forEach(Machine::releaseMachine);
+    Assertions.assertNull(schedule.takeReleasedId(Server.class, 0));
+
+    // the machine allocated again at the position of a released one gets its id
+    Machine again = new Server();
+    int freshId = again.getInstanceId();
+    again.reuseInstanceId(schedule.takeReleasedId(Server.class, 1));
+    Assertions.assertEquals(second.getInstanceId(), again.getInstanceId());
+    Assertions.assertEquals(second, again);
+    Assertions.assertSame(again, Machine.getNameToMachine().get(second.toString()));
+    Assertions.assertNull(schedule.takeReleasedId(Server.class, 1));
+
+    // the fresh id is given back to the context
+    Assertions.assertEquals(freshId, new Server().getInstanceId());
+    Assertions.assertEquals(
+        third.getInstanceId(), (int) schedule.takeReleasedId(Server.class, 2));
+  }
+}
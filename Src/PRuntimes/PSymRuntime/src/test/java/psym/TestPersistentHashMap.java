@@ -0,0 +1,172 @@
+package psym;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.valuesummary.util.PersistentHashMap;
+
+public class TestPersistentHashMap {
+
+  /** Key with a chosen hash code, to force collisions at any level of the trie */
+  private static class Key implements Serializable {
+    private final int id;
+    private final int hash;
+
+    Key(int id, int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return (o instanceof Key) && ((Key) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key" + id + "#" + hash;
+    }
+  }
+
+  private <K, V> void assertSameMap(Map<K, V> expected, PersistentHashMap<K, V> actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (Map.Entry<K, V> entry : expected.entrySet()) {
+      Assertions.assertTrue(actual.containsKey(entry.getKey()), "missing " + entry.getKey());
+      Assertions.assertEquals(entry.getValue(), actual.get(entry.getKey()));
+    }
+    Map<K, V> iterated = new HashMap<>();
+    for (Map.Entry<K, V> entry : actual.entrySet()) {
+      Assertions.assertFalse(iterated.containsKey(entry.getKey()), "repeated " + entry.getKey());
+      iterated.put(entry.getKey(), entry.getValue());
+    }
+    Assertions.assertEquals(expected, iterated);
+  }
+
+  /**
+   * Apply random puts and removes to a persistent map and a hash map, and check that they agree
+   * after every operation and that earlier versions of the persistent map are unchanged
+   *
+   * @param seed Seed of the operations
+   * @param numOps Number of operations
+   * @param numKeys Number of distinct keys
+   * @param numHashes Number of distinct hash codes among the keys
+   */
+  private void checkRandomOps(long seed, int numOps, int numKeys, int numHashes) {
+    Random random = new Random(seed);
+    Map<Key, Integer> expected = new HashMap<>();
+    PersistentHashMap<Key, Integer> actual = PersistentHashMap.empty();
+    List<Map<Key, Integer>> expectedVersions = new ArrayList<>();
+    List<PersistentHashMap<Key, Integer>> versions = new ArrayList<>();
+    for (int i = 0; i < numOps; i++) {
+      int id = random.nextInt(numKeys);
+      Key key = new Key(id, id % numHashes);
+      Key absent = new Key(numKeys + id, id % numHashes);
+      if (random.nextInt(3) == 0) {
+        PersistentHashMap<Key, Integer> next = actual.minus(key);
+        Assertions.assertEquals(expected.containsKey(key), next != actual);
+        expected.remove(key);
+        actual = next;
+      } else {
+        Integer value = random.nextInt(4) == 0 ? null : random.nextInt(100);
+        actual = actual.plus(key, value);
+        expected.put(key, value);
+      }
+      Assertions.assertEquals(expected.size(), actual.size());
+      Assertions.assertEquals(expected.containsKey(key), actual.containsKey(key));
+      Assertions.assertEquals(expected.get(key), actual.get(key));
+      Assertions.assertFalse(actual.containsKey(absent));
+      Assertions.assertEquals(-1, (int) actual.getOrDefault(absent, -1));
+      Assertions.assertSame(actual, actual.minus(absent));
+      if (i % 50 == 0) {
+        assertSameMap(expected, actual);
+        expectedVersions.add(new HashMap<>(expected));
+        versions.add(actual);
+      }
+    }
+    assertSameMap(expected, actual);
+    for (int v = 0; v < versions.size(); v++) {
+      assertSameMap(expectedVersions.get(v), versions.get(v));
+    }
+  }
+
+  @Test
+  public void testRandomOpsDistinctHashes() {
+    checkRandomOps(1, 5000, 2000, Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void testRandomOpsFewHashes() {
+    checkRandomOps(2, 5000, 300, 7);
+  }
+
+  @Test
+  public void testRandomOpsFullCollisions() {
+    checkRandomOps(3, 2000, 50, 1);
+  }
+
+  @Test
+  public void testHashesSharingLowBits() {
+    // hashes equal in their low 5, 10, ... bits share the path through the upper levels
+    Map<Key, Integer> expected = new HashMap<>();
+    PersistentHashMap<Key, Integer> actual = PersistentHashMap.empty();
+    int id = 0;
+    for (int shift = 0; shift < 32; shift += 5) {
+      for (int high = 0; high < 3; high++) {
+        Key key = new Key(id++, 17 | (high << shift));
+        expected.put(key, id);
+        actual = actual.plus(key, id);
+      }
+    }
+    assertSameMap(expected, actual);
+    for (Key key : new ArrayList<>(expected.keySet())) {
+      expected.remove(key);
+      actual = actual.minus(key);
+      assertSameMap(expected, actual);
+    }
+    Assertions.assertTrue(actual.isEmpty());
+  }
+
+  @Test
+  public void testNullKeyAndUnchangedPut() {
+    PersistentHashMap<String, String> map =
+        PersistentHashMap.<String, String>empty().plus(null, "a");
+    Assertions.assertTrue(map.containsKey(null));
+    Assertions.assertEquals("a", map.get(null));
+    Assertions.assertSame(map, map.plus(null, "a"));
+    Assertions.assertEquals(0, map.minus(null).size());
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> map.put("b", "b"));
+  }
+
+  @Test
+  public void testFromAndSerialization() throws IOException, ClassNotFoundException {
+    Map<Key, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 500; i++) {
+      expected.put(new Key(i, i % 13), i);
+    }
+    PersistentHashMap<Key, Integer> map = PersistentHashMap.from(expected);
+    assertSameMap(expected, map);
+    Assertions.assertSame(map, PersistentHashMap.from(map));
+    Assertions.assertEquals(expected, map);
+    Assertions.assertEquals(expected.hashCode(), map.hashCode());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(map);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      PersistentHashMap<Key, Integer> read = (PersistentHashMap<Key, Integer>) in.readObject();
+      assertSameMap(expected, read);
+    }
+  }
+}
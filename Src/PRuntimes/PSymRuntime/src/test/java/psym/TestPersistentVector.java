@@ -0,0 +1,197 @@
+package psym;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.valuesummary.util.PersistentVector;
+
+public class TestPersistentVector {
+
+  private <E> void assertSameList(List<E> expected, PersistentVector<E> actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assertions.assertEquals(expected.get(i), actual.get(i), "index " + i);
+    }
+    Iterator<E> iterator = actual.iterator();
+    for (E element : expected) {
+      Assertions.assertTrue(iterator.hasNext());
+      Assertions.assertEquals(element, iterator.next());
+    }
+    Assertions.assertFalse(iterator.hasNext());
+    Assertions.assertEquals(expected, actual);
+    Assertions.assertEquals(expected, new ArrayList<>(actual));
+  }
+
+  /**
+   * Apply random appends, updates and removals to a persistent vector and an array list, and check
+   * that they agree after every operation and that earlier versions of the vector are unchanged
+   *
+   * @param seed Seed of the operations
+   * @param numOps Number of operations
+   * @param appendWeight Weight of appends against the other operations
+   */
+  private void checkRandomOps(long seed, int numOps, int appendWeight) {
+    Random random = new Random(seed);
+    List<Integer> expected = new ArrayList<>();
+    PersistentVector<Integer> actual = PersistentVector.empty();
+    List<List<Integer>> expectedVersions = new ArrayList<>();
+    List<PersistentVector<Integer>> versions = new ArrayList<>();
+    for (int i = 0; i < numOps; i++) {
+      int op = random.nextInt(appendWeight + 4);
+      if (op >= 4 || expected.isEmpty()) {
+        Integer element = random.nextInt(10) == 0 ? null : i;
+        expected.add(element);
+        actual = actual.plus(element);
+      } else if (op == 0) {
+        int index = random.nextInt(expected.size());
+        expected.set(index, -i);
+        actual = actual.with(index, -i);
+      } else if (op == 1) {
+        expected.remove(expected.size() - 1);
+        actual = actual.pop();
+      } else if (op == 2) {
+        expected.remove(0);
+        actual = actual.popFirst();
+      } else {
+        int index = random.nextInt(expected.size());
+        expected.remove(index);
+        actual = actual.minus(index);
+      }
+      Assertions.assertEquals(expected.size(), actual.size());
+      if (!expected.isEmpty()) {
+        Assertions.assertEquals(expected.get(0), actual.get(0));
+        Assertions.assertEquals(expected.get(expected.size() - 1), actual.get(actual.size() - 1));
+      }
+      if (i % 100 == 0) {
+        assertSameList(expected, actual);
+        expectedVersions.add(new ArrayList<>(expected));
+        versions.add(actual);
+      }
+    }
+    assertSameList(expected, actual);
+    for (int v = 0; v < versions.size(); v++) {
+      assertSameList(expectedVersions.get(v), versions.get(v));
+    }
+  }
+
+  @Test
+  public void testRandomOpsGrowing() {
+    checkRandomOps(1, 20000, 8);
+  }
+
+  @Test
+  public void testRandomOpsBalanced() {
+    checkRandomOps(2, 20000, 4);
+  }
+
+  @Test
+  public void testNodeAndTailBoundaries() {
+    // sizes around full tails, full leaves under the root, and a root split into a new level
+    int[] sizes = {31, 32, 33, 63, 64, 65, 1023, 1024, 1025, 1056, 1057, 32 * 32 * 32 + 33};
+    for (int size : sizes) {
+      List<Integer> expected = new ArrayList<>();
+      PersistentVector<Integer> actual = PersistentVector.empty();
+      for (int i = 0; i < size; i++) {
+        expected.add(i);
+        actual = actual.plus(i);
+      }
+      assertSameList(expected, actual);
+      Assertions.assertEquals(actual, PersistentVector.from(expected));
+
+      // pop back across the same boundaries
+      PersistentVector<Integer> popped = actual;
+      List<Integer> remaining = new ArrayList<>(expected);
+      while (remaining.size() > size - 70 && !remaining.isEmpty()) {
+        remaining.remove(remaining.size() - 1);
+        popped = popped.pop();
+        Assertions.assertEquals(remaining.size(), popped.size());
+        if (!remaining.isEmpty()) {
+          Assertions.assertEquals(
+              remaining.get(remaining.size() - 1), popped.get(popped.size() - 1));
+        }
+      }
+      assertSameList(remaining, popped);
+      assertSameList(expected, actual);
+
+      PersistentVector<Integer> updated = actual.with(size - 1, -1).with(0, -2);
+      expected.set(size - 1, -1);
+      expected.set(0, -2);
+      assertSameList(expected, updated);
+    }
+  }
+
+  @Test
+  public void testPopFirstOffsets() {
+    // drop from the front past leaf boundaries and until the trie is compacted, appending as we go
+    List<Integer> expected = new ArrayList<>();
+    PersistentVector<Integer> actual = PersistentVector.empty();
+    for (int i = 0; i < 200; i++) {
+      expected.add(i);
+      actual = actual.plus(i);
+    }
+    int next = 200;
+    for (int round = 0; round < 3000; round++) {
+      expected.remove(0);
+      actual = actual.popFirst();
+      int numAppends = (round % 5 == 0) ? 2 : (round % 5 == 1 ? 0 : 1);
+      for (int i = 0; i < numAppends; i++) {
+        expected.add(next);
+        actual = actual.plus(next);
+        next++;
+      }
+      Assertions.assertEquals(expected.size(), actual.size());
+      Assertions.assertEquals(expected.get(0), actual.get(0));
+      if (round % 37 == 0) {
+        assertSameList(expected, actual);
+        int index = expected.size() / 2;
+        expected.set(index, -round);
+        actual = actual.with(index, -round);
+        assertSameList(expected, actual);
+      }
+    }
+    while (!expected.isEmpty()) {
+      expected.remove(0);
+      actual = actual.popFirst();
+    }
+    assertSameList(expected, actual);
+    actual = actual.plus(7);
+    Assertions.assertEquals(7, (int) actual.get(0));
+  }
+
+  @Test
+  public void testOutOfBounds() {
+    PersistentVector<Integer> vector = PersistentVector.<Integer>empty().plus(1).plus(2);
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> vector.get(2));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> vector.get(-1));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> vector.popFirst().get(1));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> vector.add(3));
+  }
+
+  @Test
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    List<Integer> expected = new ArrayList<>();
+    PersistentVector<Integer> vector = PersistentVector.empty();
+    for (int i = 0; i < 1100; i++) {
+      expected.add(i);
+      vector = vector.plus(i);
+    }
+    for (int i = 0; i < 40; i++) {
+      expected.remove(0);
+      vector = vector.popFirst();
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(vector);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      PersistentVector<Integer> read = (PersistentVector<Integer>) in.readObject();
+      assertSameList(expected, read);
+      assertSameList(expected, read.plus(-1).pop());
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package psym;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.PSymGlobal;
+import psym.runtime.logger.ScheduleWriter;
+import psym.runtime.logger.ScheduleWriter.Delivery;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.State;
+import psym.runtime.machine.StateTemperature;
+import psym.runtime.machine.events.Event;
+import psym.runtime.machine.events.Message;
+import psym.runtime.scheduler.replay.ScheduleReader;
+import psym.runtime.scheduler.replay.ScheduleReader.Step;
+import psym.runtime.scheduler.replay.ScheduleReader.StepType;
+import psym.utils.Assert;
+import psym.valuesummary.PrimitiveVS;
+import psym.valuesummary.ValueSummary;
+
+public class TestScheduleReader {
+  private final Event ping = new Event("Ping");
+  private final Event pong = new Event("Pong");
+
+  private State newState(String name, String machineName) {
+    return new State(name, machineName, StateTemperature.Warm) {};
+  }
+
+  private Machine newMachine(String name) {
+    State init = newState("Init", name);
+    return new Machine(name, 0, init, init) {};
+  }
+
+  private State currentState(Machine machine) {
+    return machine.getCurrentState().getGuardedValues().get(0).getValue();
+  }
+
+  /**
+   * Write a schedule with ScheduleWriter. Two servers are created after the client, and the second
+   * one is the first to appear in the file, so it must be read back as the first server.
+   *
+   * @return Name of the schedule file
+   */
+  private String writeSchedule() {
+    PSym.initializeDefault("output/testCases/testScheduleReader");
+    PSymGlobal.getConfiguration().setTestDriver("PingPongTest");
+    Assert.setFailureType("cycle");
+    Assert.setFailureMsg("Cycle detected: Client(3) keeps sending Ping");
+    Machine client = newMachine("Client");
+    Machine server0 = newMachine("Server");
+    Machine server1 = newMachine("Server");
+    try {
+      ScheduleWriter.Initialize();
+      ScheduleWriter.logHeader();
+      ScheduleWriter.logBoolean(new PrimitiveVS<>(true));
+      ScheduleWriter.logEnqueue(client, new Message(ping, new PrimitiveVS<>(server1)));
+      ScheduleWriter.logInteger(new PrimitiveVS<>(3));
+      ScheduleWriter.logDequeue(client, server1, currentState(server1), ping, Delivery.HANDLED);
+      ScheduleWriter.logEnqueue(server1, new Message(pong, new PrimitiveVS<>(client)));
+      ScheduleWriter.logEnqueue(client, new Message(ping, new PrimitiveVS<>(server0)));
+      ScheduleWriter.logElement(ValueSummary.getGuardedValues(new PrimitiveVS<>("item")));
+      ScheduleWriter.logUnblock(client, new Message(pong, new PrimitiveVS<>(client)));
+      ScheduleWriter.logDequeue(client, server0, currentState(server0), ping, Delivery.DEFERRED);
+      ScheduleWriter.logDequeue(server1, client, currentState(client), pong, Delivery.IGNORED);
+    } finally {
+      Assert.setFailureType("");
+      Assert.setFailureMsg("");
+    }
+    return ScheduleWriter.getFileName();
+  }
+
+  private void assertReceive(
+      Step step,
+      String event,
+      String targetName,
+      int targetOrdinal,
+      String senderName,
+      int senderOrdinal,
+      Delivery delivery) {
+    Assertions.assertEquals(StepType.RECEIVE, step.getType());
+    Assertions.assertEquals(event, step.getEvent());
+    Assertions.assertEquals(targetName, step.getTargetName());
+    Assertions.assertEquals(targetOrdinal, step.getTargetOrdinal());
+    Assertions.assertEquals(senderName, step.getSenderName());
+    if (senderName != null) {
+      Assertions.assertEquals(senderOrdinal, step.getSenderOrdinal());
+    }
+    Assertions.assertEquals(delivery, step.getDelivery());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    try (ScheduleReader reader = new ScheduleReader(writeSchedule())) {
+      Assertions.assertEquals("PingPongTest", reader.getTestMethod());
+      Assertions.assertEquals(
+          "Cycle detected: Client(3) keeps sending Ping", reader.getCycleMessage());
+
+      // the fixed steps of the header and the sends are skipped
+      Assertions.assertEquals("True", reader.next(StepType.BOOLEAN).getValue());
+      Assertions.assertEquals("3", reader.next(StepType.INTEGER).getValue());
+      assertReceive(reader.peek(), "Ping", "Server", 0, "Client", 0, Delivery.HANDLED);
+      assertReceive(
+          reader.next(StepType.RECEIVE), "Ping", "Server", 0, "Client", 0, Delivery.HANDLED);
+      Assertions.assertEquals("item", reader.next(StepType.ELEMENT).getValue());
+      // an unblock line of older versions is a delivery taken by a receive, with no sender
+      assertReceive(
+          reader.next(StepType.RECEIVE), "Pong", "Client", 0, null, 0, Delivery.RECEIVED);
+      assertReceive(
+          reader.next(StepType.RECEIVE), "Ping", "Server", 1, "Client", 0, Delivery.DEFERRED);
+      assertReceive(
+          reader.next(StepType.RECEIVE), "Pong", "Client", 0, "Server", 0, Delivery.IGNORED);
+      Assertions.assertNull(reader.peek());
+    }
+  }
+
+  @Test
+  public void testDivergence() throws IOException {
+    try (ScheduleReader reader = new ScheduleReader(writeSchedule())) {
+      Step step = reader.peek();
+      RuntimeException e =
+          Assertions.assertThrows(RuntimeException.class, () -> reader.next(StepType.INTEGER));
+      Assertions.assertTrue(
+          e.getMessage().contains("at line " + step.getLineNumber()), e.getMessage());
+      Assertions.assertTrue(e.getMessage().contains("expected INTEGER"), e.getMessage());
+      // the step is not consumed by the failed attempt
+      Assertions.assertSame(step, reader.next(StepType.BOOLEAN));
+
+      while (reader.peek() != null) {
+        reader.next(reader.peek().getType());
+      }
+      e = Assertions.assertThrows(RuntimeException.class, () -> reader.next(StepType.RECEIVE));
+      Assertions.assertTrue(e.getMessage().contains("at the end of the file"), e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package psym;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.PSymGlobal;
+import psym.runtime.PTestDriver;
+import psym.runtime.Program;
+import psym.runtime.logger.PSymLogger;
+import psym.runtime.logger.ScheduleWriter;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.Monitor;
+import psym.runtime.machine.State;
+import psym.runtime.machine.StateTemperature;
+import psym.runtime.machine.buffer.EventQueue;
+import psym.runtime.machine.eventhandlers.DeferEventHandler;
+import psym.runtime.machine.eventhandlers.EventHandler;
+import psym.runtime.machine.eventhandlers.EventHandlerReturnReason;
+import psym.runtime.machine.eventhandlers.GotoEventHandler;
+import psym.runtime.machine.eventhandlers.IgnoreEventHandler;
+import psym.runtime.machine.events.Event;
+import psym.runtime.scheduler.replay.ReplayScheduler;
+import psym.runtime.scheduler.replay.ScheduleReader;
+import psym.utils.Assert;
+import psym.utils.exception.BugFoundException;
+import psym.valuesummary.Guard;
+import psym.valuesummary.PrimitiveVS;
+import psym.valuesummary.UnionVS;
+
+/**
+ * Replays schedule files end to end through {@link ReplayScheduler}. The server of the program
+ * ignores, defers, handles and receives the same events depending on its state, and gets them from
+ * two senders, so each delivery of the schedule must be matched exactly.
+ */
+public class TestScheduleReplay {
+  private static final String OUTPUT = "output/testCases/testScheduleReplay";
+  private static final Event ping = new Event("Ping");
+  private static final Event data = new Event("Data");
+  private static final Event go = new Event("Go");
+
+  /** Schedule that ignores, defers, handles and receives events, and ends in the bug */
+  private static final String SCHEDULE =
+      String.join(
+          "\n",
+          "// Step 1: create GodMachine",
+          "(0)",
+          "// Step 2: start GodMachine",
+          "(1)",
+          "// Step 3: create Main(2)",
+          "(1)",
+          "// Step 4: receive createMachine at PingServer(3) in state Wait from Main(2)",
+          "(3)",
+          "// Step 5: receive createMachine at PingClient(4) in state Init from Main(2)",
+          "(4)",
+          "// Step 6: receive Ping at PingServer(3) in state Wait from Main(2) [ignored]",
+          "(3)",
+          "// Step 7: receive Data at PingServer(3) in state Wait from Main(2) [deferred]",
+          "(3)",
+          "// Step 8: receive Ping at PingServer(3) in state Wait from PingClient(4) [ignored]",
+          "(3)",
+          "// Step 9: receive Go at PingServer(3) in state Wait from PingClient(4)",
+          "(3)",
+          "// Step 10: receive Go at PingServer(3) in state Ready from Main(2) [ignored]",
+          "(3)",
+          "// Step 11: receive Ping at PingServer(3) in state Ready from Main(2)",
+          "(3)",
+          "// Step 12: boolean choice",
+          "True",
+          "// Step 13: receive Data at PingServer(3) in state Ready from Main(2) [received]",
+          "(3)",
+          "");
+
+  /** Handler of Ping in the ready state, which waits for Data in a receive if chosen to */
+  private static class WaitForData extends EventHandler {
+    WaitForData() {
+      super(ping);
+    }
+
+    @Override
+    public void handleEvent(
+        Guard pc, Machine target, UnionVS payload, EventHandlerReturnReason outcome) {
+      Guard wait = target.getScheduler().getNextBoolean(pc).getGuardFor(true);
+      if (!wait.isFalse()) {
+        target.receive("onData", wait);
+      }
+    }
+  }
+
+  /** Handler of Data outside a receive, which does nothing */
+  private static class DropData extends EventHandler {
+    DropData() {
+      super(data);
+    }
+
+    @Override
+    public void handleEvent(
+        Guard pc, Machine target, UnionVS payload, EventHandlerReturnReason outcome) {}
+  }
+
+  private static class Server extends Machine {
+    static final State wait = new State("Wait", "PingServer", StateTemperature.Warm) {};
+    static final State ready = new State("Ready", "PingServer", StateTemperature.Warm) {};
+
+    Server() {
+      super("PingServer", 0, wait, wait, ready);
+      wait.addHandlers(
+          new IgnoreEventHandler(ping), new DeferEventHandler(data), new GotoEventHandler(go, ready));
+      ready.addHandlers(new WaitForData(), new DropData(), new IgnoreEventHandler(go));
+      continuations.put(
+          "onData",
+          pc ->
+              (outcome, message) -> {
+                Assert.prop(false, "Data taken by a receive", pc);
+                return Guard.constFalse();
+              });
+    }
+  }
+
+  private static class Client extends Machine {
+    Client(Machine server) {
+      super("PingClient", 0, newInit("PingClient", server, ping, go));
+    }
+  }
+
+  private static class Main extends Machine {
+    Main() {
+      super("Main", 0, newMainInit());
+    }
+  }
+
+  /** State that sends the given events to the server on entry */
+  private static State newInit(String machineName, Machine server, Event... events) {
+    return new State("Init", machineName, StateTemperature.Warm) {
+      @Override
+      public void entry(
+          Guard pc, Machine machine, EventHandlerReturnReason outcome, UnionVS payload) {
+        super.entry(pc, machine, outcome, payload);
+        send(pc, machine.getSendBuffer(), new PrimitiveVS<>(server).restrict(pc), events);
+      }
+    };
+  }
+
+  private static State newMainInit() {
+    return new State("Init", "Main", StateTemperature.Warm) {
+      @Override
+      public void entry(
+          Guard pc, Machine machine, EventHandlerReturnReason outcome, UnionVS payload) {
+        super.entry(pc, machine, outcome, payload);
+        EventQueue sends = machine.getSendBuffer();
+        PrimitiveVS<Machine> server =
+            sends.create(pc, machine.getScheduler(), Server.class, null, id -> new Server());
+        Machine serverMachine = server.getGuardedValues().get(0).getValue();
+        sends.create(
+            pc, machine.getScheduler(), Client.class, null, id -> new Client(serverMachine));
+        send(pc, sends, server, ping, data, go, ping, data);
+      }
+    };
+  }
+
+  private static void send(Guard pc, EventQueue sends, PrimitiveVS<Machine> dest, Event... events) {
+    for (Event event : events) {
+      sends.send(pc, dest, new PrimitiveVS<>(event).restrict(pc), null);
+    }
+  }
+
+  private static class PingProgram implements Program {
+    @Override
+    public Machine getStart() {
+      return new Main();
+    }
+
+    @Override
+    public Map<Event, List<Monitor>> getListeners() {
+      return new HashMap<>();
+    }
+
+    @Override
+    public List<Monitor> getMonitors() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public PTestDriver getTestDriver() {
+      return null;
+    }
+
+    @Override
+    public void setTestDriver(PTestDriver input) {}
+  }
+
+  /**
+   * Replay a schedule file
+   *
+   * @param schedule Contents of the schedule file
+   * @param name Name of the schedule file
+   */
+  private void replay(String schedule, String name) throws Exception {
+    PSym.initializeDefault(OUTPUT);
+    PSymLogger.Initialize(PSymGlobal.getConfiguration().getVerbosity());
+    Path file = Paths.get(OUTPUT, name);
+    Files.createDirectories(file.getParent());
+    Files.write(file, schedule.getBytes());
+    EntryPoint.replayBug(ReplayScheduler.readFromFile(new PingProgram(), file.toString()));
+  }
+
+  /**
+   * Replay a schedule file, which must end in the bug
+   *
+   * @param schedule Contents of the schedule file
+   * @param name Name of the schedule file
+   * @return Contents of the schedule file written by the replay
+   */
+  private String replayToBug(String schedule, String name) throws IOException {
+    BugFoundException e =
+        Assertions.assertThrows(BugFoundException.class, () -> replay(schedule, name));
+    Assertions.assertTrue(e.getMessage().contains("Data taken by a receive"), e.getMessage());
+    return new String(Files.readAllBytes(Paths.get(ScheduleWriter.getFileName())));
+  }
+
+  /** Contents of a schedule file without the machine ids, which differ from run to run */
+  private static String withoutIds(String schedule) {
+    return schedule.replaceAll("\\(\\d+\\)", "(_)");
+  }
+
+  /** Steps of a schedule file as read back, with machines named by their order of appearance */
+  private List<String> readSteps(String schedule) throws IOException {
+    Path file = Paths.get(OUTPUT, "steps.schedule");
+    Files.write(file, schedule.getBytes());
+    List<String> steps = new ArrayList<>();
+    try (ScheduleReader reader = new ScheduleReader(file.toString())) {
+      while (reader.peek() != null) {
+        steps.add(reader.next(reader.peek().getType()).toString());
+      }
+    }
+    return steps;
+  }
+
+  private static int count(String text, String marker) {
+    return text.split(Pattern.quote(marker), -1).length - 1;
+  }
+
+  @Test
+  public void testReplayWrittenSchedule() throws Exception {
+    String written = replayToBug(SCHEDULE, "handwritten.schedule");
+    Assertions.assertEquals(3, count(written, " [ignored]"), written);
+    Assertions.assertEquals(1, count(written, " [deferred]"), written);
+    Assertions.assertEquals(1, count(written, " [received]"), written);
+    Assertions.assertEquals(readSteps(SCHEDULE), readSteps(written));
+
+    // the written schedule replays to the same bug, and is written again as it was
+    String rewritten = replayToBug(written, "written.schedule");
+    Assertions.assertEquals(withoutIds(written), withoutIds(rewritten));
+  }
+
+  @Test
+  public void testDeliveryMismatch() throws Exception {
+    // the first Ping from Main is ignored, not handled
+    String handled =
+        SCHEDULE.replace(
+            "receive Ping at PingServer(3) in state Wait from Main(2) [ignored]",
+            "receive Ping at PingServer(3) in state Wait from Main(2)");
+    RuntimeException e =
+        Assertions.assertThrows(
+            RuntimeException.class, () -> replay(handled, "handled.schedule"));
+    Assertions.assertTrue(e.getMessage().contains("at line 11"), e.getMessage());
+    Assertions.assertTrue(e.getMessage().contains("[ignored]"), e.getMessage());
+
+    // the client sends Go after Ping, so its Go cannot come first
+    String reordered =
+        SCHEDULE.replace(
+            "receive Ping at PingServer(3) in state Wait from PingClient(4) [ignored]",
+            "receive Go at PingServer(3) in state Wait from PingClient(4)");
+    e =
+        Assertions.assertThrows(
+            RuntimeException.class, () -> replay(reordered, "reordered.schedule"));
+    Assertions.assertTrue(e.getMessage().contains("at line 15"), e.getMessage());
+  }
+}
@@ -0,0 +1,148 @@
+package psym;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.eventhandlers.DeferEventHandler;
+import psym.runtime.machine.eventhandlers.EventHandler;
+import psym.runtime.machine.eventhandlers.EventHandlerReturnReason;
+import psym.runtime.machine.eventhandlers.IgnoreEventHandler;
+import psym.runtime.machine.events.Event;
+import psym.runtime.machine.events.StateEvents;
+import psym.valuesummary.Guard;
+import psym.valuesummary.UnionVS;
+
+public class TestStateEvents {
+
+  /** Handler that does nothing, standing in for the generated handlers of a state */
+  private static class Handler extends EventHandler {
+    Handler(Event event) {
+      super(event);
+    }
+
+    @Override
+    public void handleEvent(
+        Guard pc, Machine target, UnionVS payload, EventHandlerReturnReason outcome) {}
+  }
+
+  private void assertLookups(
+      StateEvents events, Event event, EventHandler handler, boolean ignored, boolean deferred) {
+    Assertions.assertSame(handler, events.getHandler(event));
+    Assertions.assertEquals(handler != null, events.hasHandler(event));
+    Assertions.assertEquals(ignored, events.isIgnored(event));
+    Assertions.assertEquals(deferred, events.isDeferred(event));
+  }
+
+  @Test
+  public void testLookupsById() {
+    StateEvents events = StateEvents.get("TestStateEvents.testLookupsById");
+    Event handled = new Event("TestStateEvents.Handled");
+    Event ignored = new Event("TestStateEvents.Ignored");
+    Event deferred = new Event("TestStateEvents.Deferred");
+    Event unhandled = new Event("TestStateEvents.Unhandled");
+    EventHandler handler = new Handler(handled);
+    EventHandler ignoreHandler = new IgnoreEventHandler(ignored);
+    EventHandler deferHandler = new DeferEventHandler(deferred);
+
+    assertLookups(events, handled, null, false, false);
+    events.addHandler(handler);
+    events.addHandler(ignoreHandler);
+    events.addHandler(deferHandler);
+    assertLookups(events, handled, handler, false, false);
+    assertLookups(events, ignored, ignoreHandler, true, false);
+    assertLookups(events, deferred, deferHandler, false, true);
+    assertLookups(events, unhandled, null, false, false);
+
+    // an event with the same name shares the id, and an event created after the tables were
+    // built has an id past their end
+    assertLookups(events, new Event("TestStateEvents.Ignored"), ignoreHandler, true, false);
+    assertLookups(events, new Event("TestStateEvents.Later"), null, false, false);
+    Assertions.assertSame(events, StateEvents.get("TestStateEvents.testLookupsById"));
+  }
+
+  @Test
+  public void testReplaceHandler() {
+    StateEvents events = StateEvents.get("TestStateEvents.testReplaceHandler");
+    Event event = new Event("TestStateEvents.Replaced");
+    EventHandler ignoreHandler = new IgnoreEventHandler(event);
+    events.addHandler(ignoreHandler);
+
+    // a handler of the same class comes from another machine of the type and is skipped
+    events.addHandler(new IgnoreEventHandler(event));
+    assertLookups(events, event, ignoreHandler, true, false);
+
+    EventHandler deferHandler = new DeferEventHandler(event);
+    events.addHandler(deferHandler);
+    assertLookups(events, event, deferHandler, false, true);
+
+    EventHandler handler = new Handler(event);
+    events.addHandler(handler);
+    assertLookups(events, event, handler, false, false);
+  }
+
+  @Test
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    StateEvents events = new StateEvents();
+    Event handled = new Event("TestStateEvents.SerializedHandled");
+    Event deferred = new Event("TestStateEvents.SerializedDeferred");
+    events.addHandler(new Handler(handled));
+    events.addHandler(new DeferEventHandler(deferred));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(events);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      // the id-indexed tables are transient and rebuilt from the handler maps
+      StateEvents read = (StateEvents) in.readObject();
+      Assertions.assertTrue(read.getHandler(handled) instanceof Handler);
+      assertLookups(read, deferred, read.getHandler(deferred), false, true);
+      Assertions.assertTrue(read.getHandler(deferred) instanceof DeferEventHandler);
+      Assertions.assertFalse(read.isIgnored(handled));
+    }
+  }
+
+  @Test
+  public void testConcurrentRegistration() throws InterruptedException {
+    StateEvents events = StateEvents.get("TestStateEvents.testConcurrentRegistration");
+    int numThreads = 4;
+    int numEvents = 200;
+    AtomicInteger numMissing = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      int thread = t;
+      threads.add(
+          new Thread(
+              () -> {
+                for (int i = 0; i < numEvents; i++) {
+                  Event event = new Event("TestStateEvents.Concurrent" + thread + "_" + i);
+                  events.addHandler(
+                      i % 2 == 0 ? new IgnoreEventHandler(event) : new DeferEventHandler(event));
+                  // a registered handler is visible to the registering thread right away
+                  if (!events.hasHandler(event)) {
+                    numMissing.incrementAndGet();
+                  }
+                }
+              }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assertions.assertEquals(0, numMissing.get());
+    for (int t = 0; t < numThreads; t++) {
+      for (int i = 0; i < numEvents; i++) {
+        Event event = new Event("TestStateEvents.Concurrent" + t + "_" + i);
+        Assertions.assertEquals(i % 2 == 0, events.isIgnored(event));
+        Assertions.assertEquals(i % 2 != 0, events.isDeferred(event));
+      }
+    }
+  }
+}
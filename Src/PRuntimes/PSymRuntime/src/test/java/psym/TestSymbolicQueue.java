@@ -0,0 +1,186 @@
+package psym;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.machine.buffer.EventQueue;
+import psym.runtime.machine.events.Event;
+import psym.runtime.machine.events.Message;
+import psym.valuesummary.Guard;
+import psym.valuesummary.ListVS;
+import psym.valuesummary.PrimitiveVS;
+
+public class TestSymbolicQueue {
+  private static final int NUM_VARS = 3;
+  private static final int NUM_WORLDS = 1 << NUM_VARS;
+
+  private final Event[] events = {
+    new Event("Event0"), new Event("Event1"), new Event("Event2"), Event.createMachine
+  };
+
+  /** Guard of each assignment of the boolean variables, so exactly one holds in each world */
+  private final List<Guard> worlds = new ArrayList<>();
+
+  private void initWorlds() {
+    List<Guard> vars = new ArrayList<>();
+    for (int i = 0; i < NUM_VARS; i++) {
+      vars.add(Guard.newVar());
+    }
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      Guard world = Guard.constTrue();
+      for (int i = 0; i < NUM_VARS; i++) {
+        world = world.and(((w >> i) & 1) == 1 ? vars.get(i) : vars.get(i).not());
+      }
+      worlds.add(world);
+    }
+  }
+
+  /** Get a random non-empty subset of a non-empty set of worlds, as bitmasks */
+  private int randomSubset(Random random, int candidates) {
+    int subset;
+    do {
+      subset = random.nextInt(1 << NUM_WORLDS) & candidates;
+    } while (subset == 0);
+    return subset;
+  }
+
+  private Guard guardOf(int subset) {
+    Guard result = Guard.constFalse();
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      if (((subset >> w) & 1) == 1) {
+        result = result.or(worlds.get(w));
+      }
+    }
+    return result;
+  }
+
+  private <T> T valueIn(PrimitiveVS<T> vs, int world) {
+    List<T> values = new ArrayList<>(vs.restrict(worlds.get(world)).getValues());
+    Assertions.assertEquals(1, values.size(), "values in world " + world);
+    return values.get(0);
+  }
+
+  /** Check the queue against the expected queue of each world */
+  private void assertSameQueues(EventQueue queue, List<Deque<Event>> expected, boolean contents) {
+    Guard nonEmpty = queue.isEnabledUnderGuard();
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      Deque<Event> expectedQueue = expected.get(w);
+      Assertions.assertEquals(expectedQueue.size(), (int) valueIn(queue.size(), w));
+      Assertions.assertEquals(
+          !expectedQueue.isEmpty(), !nonEmpty.and(worlds.get(w)).isFalse(), "world " + w);
+      if (contents) {
+        ListVS<Message> list = ((ListVS<Message>) queue.getEvents()).restrict(worlds.get(w));
+        Assertions.assertEquals(expectedQueue.size(), (int) valueIn(list.size(), w));
+        int index = 0;
+        for (Event event : expectedQueue) {
+          Message message = list.get(new PrimitiveVS<>(index).restrict(worlds.get(w)));
+          Assertions.assertEquals(event, valueIn(message.getEvent(), w));
+          index++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Apply random enqueues, peeks and dequeues under random sets of worlds, so that the head of the
+   * queue advances by a different offset in each world, and check the queue of each world against
+   * a concrete queue
+   *
+   * @param seed Seed of the operations
+   * @param numOps Number of operations
+   */
+  private void checkRandomOps(long seed, int numOps) {
+    Random random = new Random(seed);
+    EventQueue queue = new EventQueue(null);
+    List<Deque<Event>> expected = new ArrayList<>();
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      expected.add(new ArrayDeque<>());
+    }
+    for (int i = 0; i < numOps; i++) {
+      int nonEmpty = 0;
+      for (int w = 0; w < NUM_WORLDS; w++) {
+        if (!expected.get(w).isEmpty()) {
+          nonEmpty |= 1 << w;
+        }
+      }
+      int op = random.nextInt(5);
+      if (op < 2 || nonEmpty == 0) {
+        int subset = randomSubset(random, (1 << NUM_WORLDS) - 1);
+        Event event = events[random.nextInt(events.length)];
+        queue.add(new Message(event, new PrimitiveVS<>()).restrict(guardOf(subset)));
+        for (int w = 0; w < NUM_WORLDS; w++) {
+          if (((subset >> w) & 1) == 1) {
+            expected.get(w).addLast(event);
+          }
+        }
+      } else {
+        int subset = randomSubset(random, nonEmpty);
+        boolean dequeue = op >= 3;
+        Message message =
+            dequeue ? queue.remove(guardOf(subset)) : queue.peek(guardOf(subset));
+        Assertions.assertEquals(guardOf(subset), message.getUniverse());
+        for (int w = 0; w < NUM_WORLDS; w++) {
+          if (((subset >> w) & 1) == 1) {
+            Event head = dequeue ? expected.get(w).pollFirst() : expected.get(w).peekFirst();
+            Assertions.assertEquals(head, valueIn(message.getEvent(), w));
+          }
+        }
+      }
+      assertSameQueues(queue, expected, i % 10 == 0);
+    }
+    assertSameQueues(queue, expected, true);
+  }
+
+  @Test
+  public void testHeadOffsets() {
+    PSym.initializeDefault("output/testCases/testSymbolicQueue");
+    initWorlds();
+    checkRandomOps(1, 300);
+    checkRandomOps(2, 300);
+  }
+
+  @Test
+  public void testDrainAndRefill() {
+    PSym.initializeDefault("output/testCases/testSymbolicQueue");
+    initWorlds();
+    EventQueue queue = new EventQueue(null);
+    List<Deque<Event>> expected = new ArrayList<>();
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      expected.add(new ArrayDeque<>());
+    }
+    for (int i = 0; i < 4; i++) {
+      queue.add(new Message(events[i], new PrimitiveVS<>()));
+      for (Deque<Event> expectedQueue : expected) {
+        expectedQueue.addLast(events[i]);
+      }
+    }
+    // dequeue one more element in each successive world, so each world has its own head
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      for (int i = 0; i < Math.min(w, 4); i++) {
+        queue.remove(worlds.get(w));
+        expected.get(w).pollFirst();
+      }
+    }
+    assertSameQueues(queue, expected, true);
+
+    // drain every world, after which the head is uniform again, and refill
+    for (int w = 0; w < NUM_WORLDS; w++) {
+      while (!expected.get(w).isEmpty()) {
+        queue.remove(worlds.get(w));
+        expected.get(w).pollFirst();
+      }
+    }
+    Assertions.assertTrue(queue.isEmpty());
+    assertSameQueues(queue, expected, true);
+    queue.add(new Message(events[2], new PrimitiveVS<>()));
+    for (Deque<Event> expectedQueue : expected) {
+      expectedQueue.addLast(events[2]);
+    }
+    assertSameQueues(queue, expected, true);
+    Assertions.assertEquals(events[2], valueIn(queue.peek(Guard.constTrue()).getEvent(), 0));
+  }
+}
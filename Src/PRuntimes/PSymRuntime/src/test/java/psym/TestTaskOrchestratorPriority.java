@@ -0,0 +1,112 @@
+package psym;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.scheduler.search.taskorchestration.BacktrackTask;
+import psym.runtime.scheduler.search.taskorchestration.TaskOrchestratorPriority;
+
+public class TestTaskOrchestratorPriority {
+
+  /** Orchestrator with priorities set by the test */
+  private static class MapPriority extends TaskOrchestratorPriority {
+    private final Map<BacktrackTask, Double> priorities = new HashMap<>();
+
+    @Override
+    protected double getPriority(BacktrackTask task) {
+      return priorities.get(task);
+    }
+
+    static double log(BigDecimal value) {
+      return logOf(value);
+    }
+  }
+
+  /**
+   * Apply random adds, priority updates and removals to the orchestrator and to a priority queue,
+   * and check that the next task has the highest priority after every operation
+   *
+   * @param seed Seed of the operations
+   * @param numOps Number of operations
+   * @param numPriorities Number of distinct priorities, small to force ties
+   */
+  private void checkRandomOps(long seed, int numOps, int numPriorities) {
+    Random random = new Random(seed);
+    MapPriority orchestrator = new MapPriority();
+    Map<BacktrackTask, Double> priorities = orchestrator.priorities;
+    PriorityQueue<BacktrackTask> expected =
+        new PriorityQueue<>(
+            Comparator.comparingDouble((BacktrackTask task) -> priorities.get(task)).reversed());
+    List<BacktrackTask> queued = new ArrayList<>();
+    int nextId = 0;
+    for (int i = 0; i < numOps; i++) {
+      int op = random.nextInt(5);
+      if (op < 2 || queued.isEmpty()) {
+        BacktrackTask task = new BacktrackTask(nextId++);
+        priorities.put(task, (double) random.nextInt(numPriorities));
+        orchestrator.addPriority(task);
+        expected.add(task);
+        queued.add(task);
+      } else if (op == 2) {
+        BacktrackTask task = queued.get(random.nextInt(queued.size()));
+        expected.remove(task);
+        priorities.put(task, (double) random.nextInt(numPriorities));
+        orchestrator.addPriority(task);
+        expected.add(task);
+      } else if (op == 3) {
+        BacktrackTask task = queued.remove(random.nextInt(queued.size()));
+        orchestrator.remove(task);
+        expected.remove(task);
+        // removing a task that is not queued does nothing
+        orchestrator.remove(task);
+      } else {
+        BacktrackTask task = orchestrator.getNext();
+        Assertions.assertTrue(queued.remove(task));
+        orchestrator.remove(task);
+        expected.remove(task);
+      }
+      if (!expected.isEmpty()) {
+        Assertions.assertEquals(
+            priorities.get(expected.peek()), priorities.get(orchestrator.getNext()));
+      }
+    }
+    while (!expected.isEmpty()) {
+      BacktrackTask task = orchestrator.getNext();
+      Assertions.assertEquals(priorities.get(expected.poll()), priorities.get(task));
+      Assertions.assertTrue(queued.remove(task));
+      orchestrator.remove(task);
+    }
+    Assertions.assertTrue(queued.isEmpty());
+  }
+
+  @Test
+  public void testRandomOpsDistinctPriorities() {
+    checkRandomOps(1, 20000, Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void testRandomOpsTiedPriorities() {
+    checkRandomOps(2, 20000, 5);
+  }
+
+  @Test
+  public void testLogOfTinyCoverage() {
+    Assertions.assertEquals(Double.NEGATIVE_INFINITY, MapPriority.log(BigDecimal.ZERO));
+    Assertions.assertEquals(Math.log(0.375), MapPriority.log(new BigDecimal("0.375")), 1e-12);
+    Assertions.assertEquals(
+        Math.log(12345.678), MapPriority.log(new BigDecimal("12345.678")), 1e-12);
+    // far below the smallest double, where doubleValue() would underflow to zero
+    double expected = Math.log(3) - 400 * Math.log(10);
+    Assertions.assertEquals(expected, MapPriority.log(new BigDecimal("3E-400")), 1e-9);
+    BigDecimal deep = BigDecimal.ONE.divide(new BigDecimal(3).pow(1000), new MathContext(30));
+    Assertions.assertEquals(-1000 * Math.log(3), MapPriority.log(deep), 1e-9);
+  }
+}
@@ -0,0 +1,117 @@
+package psym.runtime.scheduler.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.scheduler.replay.MinimizationScheduler.ReplayChoice;
+
+public class TestScheduleMinimizer {
+
+  private List<ReplayChoice> randomChoices(long seed, int size) {
+    Random random = new Random(seed);
+    List<ReplayChoice> choices = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      switch (random.nextInt(3)) {
+        case 0:
+          choices.add(ReplayChoice.ofBoolean(random.nextBoolean()));
+          break;
+        case 1:
+          choices.add(ReplayChoice.ofInteger(random.nextInt(5)));
+          break;
+        default:
+          choices.add(ReplayChoice.ofElement(random.nextInt(3), null));
+          break;
+      }
+    }
+    return choices;
+  }
+
+  private static boolean is(ReplayChoice choice, ReplayChoice.Kind kind, int value) {
+    return choice.getKind() == kind && choice.getValue() == value;
+  }
+
+  private static boolean contains(List<ReplayChoice> choices, ReplayChoice.Kind kind, int value) {
+    return choices.stream().anyMatch(choice -> is(choice, kind, value));
+  }
+
+  /** Whether an integer choice of 7 comes later than a boolean choice of true */
+  private static boolean trueThenSeven(List<ReplayChoice> choices) {
+    boolean seenTrue = false;
+    for (ReplayChoice choice : choices) {
+      if (is(choice, ReplayChoice.Kind.BOOLEAN, 1)) {
+        seenTrue = true;
+      } else if (seenTrue && is(choice, ReplayChoice.Kind.INTEGER, 7)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int numNonDefaultData(List<ReplayChoice> choices) {
+    return (int) choices.stream().filter(ReplayChoice::isNonDefaultData).count();
+  }
+
+  private List<ReplayChoice> minimize(
+      Predicate<List<ReplayChoice>> fails, List<ReplayChoice> original, int budget)
+      throws InterruptedException {
+    ScheduleMinimizer minimizer = new ScheduleMinimizer(fails, budget);
+    Assertions.assertTrue(minimizer.minimize(original, 4));
+    Assertions.assertTrue(minimizer.getNumReplays() <= budget);
+    List<ReplayChoice> result = minimizer.getMinimizedChoices();
+    Assertions.assertTrue(fails.test(result));
+    return result;
+  }
+
+  @Test
+  public void testRemoveChoices() throws InterruptedException {
+    List<ReplayChoice> original = randomChoices(1, 60);
+    original.add(17, ReplayChoice.ofBoolean(true));
+    original.add(41, ReplayChoice.ofInteger(7));
+    Assertions.assertTrue(trueThenSeven(original));
+
+    List<ReplayChoice> result = minimize(TestScheduleMinimizer::trueThenSeven, original, 10000);
+    Assertions.assertEquals(2, result.size());
+    Assertions.assertTrue(is(result.get(0), ReplayChoice.Kind.BOOLEAN, 1));
+    Assertions.assertTrue(is(result.get(1), ReplayChoice.Kind.INTEGER, 7));
+  }
+
+  @Test
+  public void testResetDataChoices() throws InterruptedException {
+    // at least four choices must remain, so the others can only be reset to their defaults
+    Predicate<List<ReplayChoice>> fails =
+        choices -> choices.size() >= 4 && contains(choices, ReplayChoice.Kind.INTEGER, 7);
+    List<ReplayChoice> original = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      original.add(i == 5 ? ReplayChoice.ofInteger(7) : ReplayChoice.ofElement(2, null));
+    }
+
+    List<ReplayChoice> result = minimize(fails, original, 10000);
+    Assertions.assertEquals(4, result.size());
+    Assertions.assertEquals(1, numNonDefaultData(result));
+    for (ReplayChoice choice : result) {
+      Assertions.assertTrue(
+          is(choice, ReplayChoice.Kind.INTEGER, 7) || is(choice, ReplayChoice.Kind.ELEMENT, 0));
+    }
+  }
+
+  @Test
+  public void testBudget() throws InterruptedException {
+    List<ReplayChoice> original = randomChoices(2, 200);
+    original.add(150, ReplayChoice.ofBoolean(true));
+    original.add(190, ReplayChoice.ofInteger(7));
+
+    List<ReplayChoice> result = minimize(TestScheduleMinimizer::trueThenSeven, original, 5);
+    Assertions.assertTrue(result.size() < original.size());
+  }
+
+  @Test
+  public void testNotReproduced() throws InterruptedException {
+    ScheduleMinimizer minimizer = new ScheduleMinimizer(choices -> false, 100);
+    Assertions.assertFalse(minimizer.minimize(randomChoices(3, 10), 2));
+    Assertions.assertNull(minimizer.getMinimizedChoices());
+    Assertions.assertEquals(1, minimizer.getNumReplays());
+  }
+}
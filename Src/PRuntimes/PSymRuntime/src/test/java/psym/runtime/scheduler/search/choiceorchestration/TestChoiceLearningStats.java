@@ -0,0 +1,141 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.PSym;
+import psym.runtime.PSymGlobal;
+import psym.runtime.machine.Machine;
+import psym.runtime.machine.State;
+import psym.runtime.machine.StateTemperature;
+import psym.valuesummary.PrimitiveVS;
+
+public class TestChoiceLearningStats {
+  private static final String OUTPUT = "output/testCases/testChoiceLearningStats";
+  private static final String PROJECT = "LearnedProject";
+  private static final long MODEL_HASH = 0x1234_5678_9abcL;
+
+  private Machine machine;
+
+  private void initialize() {
+    PSym.initializeDefault(OUTPUT);
+    State init = new State("Init", "Learner", StateTemperature.Hot) {};
+    machine = new Machine("Learner", 0, init, init) {};
+  }
+
+  /** Set the current state of the stats to the last step of the machine */
+  private void setState(ChoiceLearningStats stats) {
+    stats.setProgramStateHash(null, ChoiceLearningStateMode.LastStep, new PrimitiveVS<>(machine));
+  }
+
+  /**
+   * Learn Q-values for a boolean and an integer choice, and write them to a file
+   *
+   * @return Name of the file
+   */
+  private String writeLearned(ChoiceLearningStats stats) throws IOException {
+    setState(stats);
+    ChoiceQTable.ChoiceQStateKey actions = new ChoiceQTable.ChoiceQStateKey();
+    actions.add(new PrimitiveVS<>(true));
+    actions.add(new PrimitiveVS<>(3));
+    ChoiceQTable.ChoiceQTableKey key =
+        new ChoiceQTable.ChoiceQTableKey(
+            stats.getProgramStateHash(), stats.getProgramStateFeatures(), actions);
+    stats.rewardIteration(key, 5, ChoiceLearningRewardMode.Coverage);
+    stats.rewardIteration(key, 2, ChoiceLearningRewardMode.Coverage);
+
+    Path file = Paths.get(OUTPUT, "learned.qtable");
+    Files.createDirectories(file.getParent());
+    stats.writeToFile(file.toString(), PROJECT, ChoiceLearningStateMode.LastStep, MODEL_HASH);
+    return file.toString();
+  }
+
+  @Test
+  public void testStableStateFeatures() {
+    initialize();
+    ChoiceLearningStats stats = new ChoiceLearningStats();
+    setState(stats);
+    // the state is hashed from its names and the position of its temperature, which are the same
+    // in every run, unlike the identity hash of the temperature
+    Assertions.assertEquals(
+        Objects.hash("Init", "Learner", StateTemperature.Hot.ordinal()),
+        stats.getProgramStateFeatures()[1]);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    initialize();
+    ChoiceLearningStats stats = PSymGlobal.getChoiceLearningStats();
+    String file = writeLearned(stats);
+    double trueValue = stats.getCurrentQvalue(new PrimitiveVS<>(true));
+    double threeValue = stats.getCurrentQvalue(new PrimitiveVS<>(3));
+    Assertions.assertNotEquals(ChoiceLearningStats.getDefaultQValue(), trueValue);
+    Assertions.assertNotEquals(ChoiceLearningStats.getDefaultQValue(), threeValue);
+
+    ChoiceLearningStats loaded = new ChoiceLearningStats();
+    // files of another project, state abstraction or model are ignored
+    Assertions.assertFalse(
+        loaded.readFromFile(file, "OtherProject", ChoiceLearningStateMode.LastStep, MODEL_HASH));
+    Assertions.assertFalse(
+        loaded.readFromFile(file, PROJECT, ChoiceLearningStateMode.MachineState, MODEL_HASH));
+    Assertions.assertFalse(
+        loaded.readFromFile(file, PROJECT, ChoiceLearningStateMode.LastStep, MODEL_HASH + 1));
+    Assertions.assertEquals(0, loaded.numQStates());
+
+    Assertions.assertTrue(
+        loaded.readFromFile(file, PROJECT, ChoiceLearningStateMode.LastStep, MODEL_HASH));
+    setState(loaded);
+    Assertions.assertEquals(trueValue, loaded.getCurrentQvalue(new PrimitiveVS<>(true)), 0);
+    Assertions.assertEquals(threeValue, loaded.getCurrentQvalue(new PrimitiveVS<>(3)), 0);
+    Assertions.assertEquals(
+        ChoiceLearningStats.getDefaultQValue(), loaded.getCurrentQvalue(new PrimitiveVS<>(false)));
+  }
+
+  @Test
+  public void testApproximationKeys() {
+    initialize();
+    ChoiceLearningStats stats = new ChoiceLearningStats();
+    stats.useApproximation(10);
+    int classId = stats.getClassId(Integer.class);
+    // values are hashed rather than interned, so equal values have equal keys in any stats
+    long key = stats.getActionKey(classId, new PrimitiveVS<>(3));
+    Assertions.assertEquals(key, stats.getActionKey(classId, new PrimitiveVS<>(3)));
+    Assertions.assertEquals(((long) classId << 32) | Integer.hashCode(3), key);
+    Assertions.assertNotEquals(key, stats.getActionKey(classId, new PrimitiveVS<>(4)));
+    // machines are keyed by their instance id
+    Assertions.assertEquals(
+        machine.getInstanceId(),
+        (int) stats.getActionKey(stats.getClassId(Machine.class), new PrimitiveVS<>(machine)));
+  }
+
+  @Test
+  public void testOtherVersion() throws IOException {
+    initialize();
+    Path file = Paths.get(OUTPUT, "version1.qtable");
+    Files.createDirectories(file.getParent());
+    // header of a file of version 1, whose state features differ from run to run
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file.toString()))))) {
+      out.writeInt(0x50514c54);
+      out.writeInt(1);
+      out.writeUTF(PROJECT);
+      out.writeUTF(ChoiceLearningStateMode.LastStep.name());
+      out.writeLong(MODEL_HASH);
+    }
+    ChoiceLearningStats loaded = new ChoiceLearningStats();
+    Assertions.assertFalse(
+        loaded.readFromFile(
+            file.toString(), PROJECT, ChoiceLearningStateMode.LastStep, MODEL_HASH));
+    Assertions.assertEquals(0, loaded.numQStates());
+  }
+}
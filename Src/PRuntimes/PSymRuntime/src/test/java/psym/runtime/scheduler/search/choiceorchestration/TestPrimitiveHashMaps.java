@@ -0,0 +1,121 @@
+package psym.runtime.scheduler.search.choiceorchestration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestPrimitiveHashMaps {
+
+  /**
+   * Get a random key, drawn from a small range to repeat keys, from keys that only differ in their
+   * high bits, or from extreme values
+   */
+  private long randomKey(Random random, int numKeys) {
+    switch (random.nextInt(4)) {
+      case 0:
+        return random.nextInt(numKeys) - numKeys / 2;
+      case 1:
+        return ((long) random.nextInt(numKeys)) << 32;
+      case 2:
+        return ((long) random.nextInt(numKeys)) << 20;
+      default:
+        long[] extremes = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE};
+        return extremes[random.nextInt(extremes.length)];
+    }
+  }
+
+  @Test
+  public void testLongInterner() {
+    Random random = new Random(1);
+    LongInterner interner = new LongInterner();
+    Map<Long, Integer> expected = new LinkedHashMap<>();
+    for (int i = 0; i < 50000; i++) {
+      long key = randomKey(random, 5000);
+      int id = interner.intern(key);
+      Integer expectedId = expected.putIfAbsent(key, expected.size());
+      Assertions.assertEquals(expectedId == null ? expected.size() - 1 : expectedId, id);
+      Assertions.assertEquals(expected.size(), interner.size());
+      Assertions.assertEquals(key, interner.getKey(id));
+    }
+    int id = 0;
+    for (long key : expected.keySet()) {
+      Assertions.assertEquals(key, interner.getKey(id));
+      Assertions.assertEquals(id, interner.intern(key));
+      id++;
+    }
+    Assertions.assertEquals(expected.size(), interner.size());
+  }
+
+  @Test
+  public void testIntDoubleHashMap() {
+    Random random = new Random(2);
+    IntDoubleHashMap map = new IntDoubleHashMap();
+    Map<Integer, Double> expected = new LinkedHashMap<>();
+    for (int i = 0; i < 50000; i++) {
+      int key = (int) randomKey(random, 3000);
+      if (random.nextBoolean()) {
+        double value = random.nextDouble();
+        map.put(key, value);
+        expected.put(key, value);
+      } else {
+        double value = map.getOrInsert(key, -i);
+        Double previous = expected.putIfAbsent(key, (double) -i);
+        Assertions.assertEquals(previous == null ? -i : previous, value, 0);
+      }
+      int absent = 1_000_000 + random.nextInt(1000);
+      Assertions.assertEquals(-1, map.indexOf(absent));
+      Assertions.assertEquals(expected.size(), map.size());
+    }
+    int index = 0;
+    for (Map.Entry<Integer, Double> entry : expected.entrySet()) {
+      Assertions.assertEquals((int) entry.getKey(), map.keyAt(index));
+      Assertions.assertEquals(entry.getValue(), map.valueAt(index), 0);
+      Assertions.assertEquals(index, map.indexOf(entry.getKey()));
+      index++;
+    }
+  }
+
+  @Test
+  public void testIntObjectHashMap() {
+    Random random = new Random(3);
+    IntObjectHashMap<String> map = new IntObjectHashMap<>();
+    Map<Integer, String> expected = new LinkedHashMap<>();
+    for (int i = 0; i < 50000; i++) {
+      int key = (int) randomKey(random, 3000);
+      if (random.nextInt(1000) == 0) {
+        // keep a random subset in a random order, as pruning the Q-table does
+        List<Integer> indices = new ArrayList<>();
+        for (int index = 0; index < map.size(); index++) {
+          if (random.nextBoolean()) {
+            indices.add(random.nextInt(indices.size() + 1), index);
+          }
+        }
+        List<Integer> keys = new ArrayList<>(expected.keySet());
+        Map<Integer, String> kept = new LinkedHashMap<>();
+        for (int index : indices) {
+          kept.put(keys.get(index), expected.get(keys.get(index)));
+        }
+        map.retain(indices.stream().mapToInt(Integer::intValue).toArray());
+        expected = kept;
+      } else {
+        String value = "v" + i;
+        map.put(key, value);
+        expected.put(key, value);
+      }
+      Assertions.assertEquals(expected.get(key), map.get(key));
+      Assertions.assertNull(map.get(1_000_000 + random.nextInt(1000)));
+      Assertions.assertEquals(expected.size(), map.size());
+    }
+    int index = 0;
+    for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+      Assertions.assertEquals((int) entry.getKey(), map.keyAt(index));
+      Assertions.assertEquals(entry.getValue(), map.valueAt(index));
+      Assertions.assertEquals(index, map.indexOf(entry.getKey()));
+      index++;
+    }
+  }
+}
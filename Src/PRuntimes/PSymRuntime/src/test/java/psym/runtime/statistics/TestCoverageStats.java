@@ -0,0 +1,151 @@
+package psym.runtime.statistics;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import psym.runtime.scheduler.search.choiceorchestration.ChoiceLearningRewardMode;
+import psym.valuesummary.util.PersistentVector;
+
+/**
+ * Compares path coverage tracked in fixed point and log space with the earlier computation, which
+ * multiplied BigDecimal fractions truncated to 20 decimal places at each choice depth.
+ */
+public class TestCoverageStats {
+
+  /** Path coverage of the earlier computation, after a choice of one of the given total */
+  private static BigDecimal referenceUpdate(BigDecimal prefix, int total) {
+    return prefix.multiply(
+        BigDecimal.ONE.divide(BigDecimal.valueOf(total), 20, RoundingMode.FLOOR));
+  }
+
+  private static void assertClose(BigDecimal expected, BigDecimal actual, double relative) {
+    BigDecimal tolerance = expected.abs().multiply(BigDecimal.valueOf(relative));
+    Assertions.assertTrue(
+        expected.subtract(actual).abs().compareTo(tolerance) <= 0,
+        String.format("expected %s but was %s", expected.round(MathContext.DECIMAL64), actual));
+  }
+
+  /** Choose one of the given number of choices at a choice depth for the first time */
+  private static void choose(CoverageStats stats, int depth, int total) {
+    stats.updateDepthCoverage(depth, depth, 1, total - 1, false, true, null);
+  }
+
+  @Test
+  public void testDeepPaths() {
+    Random random = new Random(7);
+    CoverageStats stats = new CoverageStats();
+    BigDecimal referenceTotal = BigDecimal.ZERO;
+    for (int schedule = 0; schedule < 20; schedule++) {
+      int numDepths = 50 + random.nextInt(400);
+      BigDecimal reference = BigDecimal.ONE;
+      for (int depth = 0; depth < numDepths; depth++) {
+        int total = 1 + random.nextInt(5);
+        choose(stats, depth, total);
+        reference = referenceUpdate(reference, total);
+        // tiny coverage of deep paths keeps its relative precision
+        assertClose(reference, stats.getPathCoverageAtDepth(depth), 1e-9);
+      }
+      stats.updateIterationCoverage(numDepths - 1, 0, ChoiceLearningRewardMode.None);
+      referenceTotal = referenceTotal.add(reference);
+      for (int depth = 0; depth < numDepths; depth++) {
+        stats.resetPathCoverage(depth);
+      }
+    }
+    Assertions.assertEquals(
+        referenceTotal.setScale(22, RoundingMode.FLOOR), stats.getEstimatedCoverage(22));
+  }
+
+  @Test
+  public void testFullTree() {
+    // a choice tree of 40 depths with 2 * 3 * 2 * 5 * 3 = 180 paths
+    int[] totals = new int[40];
+    Arrays.fill(totals, 1);
+    totals[3] = 2;
+    totals[11] = 3;
+    totals[20] = 2;
+    totals[27] = 5;
+    totals[39] = 3;
+
+    CoverageStats stats = new CoverageStats();
+    BigDecimal referenceTotal = BigDecimal.ZERO;
+    int[] chosen = new int[totals.length];
+    int changed = 0;
+    while (changed >= 0) {
+      // choices up to the changed depth are kept, and those after it are made anew
+      for (int depth = changed; depth < totals.length; depth++) {
+        boolean isNewChoice = (depth > changed) || (chosen[depth] == 0);
+        stats.updateDepthCoverage(depth, depth, 1, totals[depth] - 1, false, isNewChoice, null);
+      }
+      stats.updateIterationCoverage(totals.length - 1, 0, ChoiceLearningRewardMode.None);
+      BigDecimal reference = BigDecimal.ONE;
+      for (int total : totals) {
+        reference = referenceUpdate(reference, total);
+      }
+      assertClose(reference, stats.getPathCoverageAtDepth(totals.length - 1), 1e-15);
+      referenceTotal = referenceTotal.add(reference);
+
+      // backtrack to the deepest choice with remaining choices
+      changed = totals.length - 1;
+      while (changed >= 0 && chosen[changed] == totals[changed] - 1) {
+        chosen[changed] = 0;
+        changed--;
+      }
+      if (changed >= 0) {
+        chosen[changed]++;
+      }
+    }
+    // truncation of the earlier computation only shows past 18 decimal places
+    assertClose(referenceTotal, stats.getEstimatedCoverage(22), 1e-18);
+    assertClose(BigDecimal.ONE, stats.getEstimatedCoverage(22), 1e-18);
+  }
+
+  @Test
+  public void testRestoreSharedSnapshot() {
+    CoverageStats stats = new CoverageStats();
+    int[] totals = {2, 3, 4, 5, 6, 7};
+    for (int depth = 0; depth < totals.length; depth++) {
+      choose(stats, depth, totals[depth]);
+    }
+    List<BigDecimal> expected = new ArrayList<>();
+    for (int depth = 0; depth < totals.length; depth++) {
+      expected.add(stats.getPathCoverageAtDepth(depth));
+    }
+
+    // a parent task and its child share the same snapshot
+    PersistentVector<CoverageStats.CoverageChoiceDepthStats> snapshot =
+        stats.getPerChoiceDepthStats();
+    PersistentVector<CoverageStats.CoverageChoiceDepthStats> parent = snapshot;
+    PersistentVector<CoverageStats.CoverageChoiceDepthStats> child = snapshot;
+
+    // the search goes on after the snapshot was taken
+    for (int depth = 2; depth < totals.length; depth++) {
+      stats.resetPathCoverage(depth);
+      choose(stats, depth, 11);
+    }
+    Assertions.assertNotEquals(expected.get(5), stats.getPathCoverageAtDepth(5));
+
+    // restoring the parent and exploring from it leaves the snapshot of the child unchanged
+    stats.restorePathCoverage(parent);
+    assertPathCoverage(expected, stats);
+    // the chosen actions are cleared on restore, so path coverage is updated without them
+    stats.updatePathCoverage(4, 1, 12, true, null);
+    stats.updatePathCoverage(5, 1, 0, true, null);
+    Assertions.assertNotEquals(expected.get(4), stats.getPathCoverageAtDepth(4));
+
+    stats.restorePathCoverage(child);
+    assertPathCoverage(expected, stats);
+    Assertions.assertSame(snapshot, stats.getPerChoiceDepthStats());
+  }
+
+  private static void assertPathCoverage(List<BigDecimal> expected, CoverageStats stats) {
+    for (int depth = 0; depth < expected.size(); depth++) {
+      Assertions.assertEquals(expected.get(depth), stats.getPathCoverageAtDepth(depth));
+    }
+  }
+}